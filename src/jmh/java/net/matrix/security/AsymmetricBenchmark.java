@@ -0,0 +1,87 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 非对称加密算法基准测试。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AsymmetricBenchmark {
+    @Param
+    CryptoAlgorithm.Asymmetric algorithm;
+
+    @Param({
+        "16", "64"
+    })
+    int size;
+
+    byte[] plainData;
+
+    byte[] cipherData;
+
+    Cipher encryptor;
+
+    Cipher decryptor;
+
+    @Setup
+    public void setup() {
+        plainData = RandomUtils.nextBytes(size);
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        encryptor = CryptoMx.AsymmetricCipherBuilder.newBuilder(algorithm).setPublicKey(keyPair.getPublic()).buildForEncrypt();
+        decryptor = CryptoMx.AsymmetricCipherBuilder.newBuilder(algorithm).setPrivateKey(keyPair.getPrivate()).buildForDecrypt();
+        cipherData = CryptoMx.encrypt(plainData, encryptor);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return CryptoMx.encrypt(plainData, encryptor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] encryptParallel() {
+        return CryptoMx.encrypt(plainData, encryptor);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return CryptoMx.decrypt(cipherData, decryptor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] decryptParallel() {
+        return CryptoMx.decrypt(cipherData, decryptor);
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() {
+        return CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+    }
+}
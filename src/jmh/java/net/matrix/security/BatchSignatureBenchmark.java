@@ -0,0 +1,85 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 批量验签基准测试，比较逐个验签与 {@link BatchSignatureVerifier} 并行验签。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSignatureBenchmark {
+    @Param({
+        "SHA_256_RSA", "SM3_SM2"
+    })
+    CryptoAlgorithm.Sign algorithm;
+
+    @Param({
+        "16", "256"
+    })
+    int batchSize;
+
+    KeyPair keyPair;
+
+    List<byte[]> plainData;
+
+    List<byte[]> signData;
+
+    BatchSignatureVerifier batchVerifier;
+
+    @Setup
+    public void setup() {
+        keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        Signature signer = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPrivateKey(keyPair.getPrivate()).buildForSign();
+        plainData = new ArrayList<>(batchSize);
+        signData = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            byte[] data = RandomUtils.nextBytes(1024);
+            plainData.add(data);
+            signData.add(CryptoMx.sign(data, signer));
+        }
+        batchVerifier = BatchSignatureVerifier.newBuilder(algorithm).build();
+    }
+
+    @Benchmark
+    public BitSet verifySerial() {
+        Signature verifier = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPublicKey(keyPair.getPublic()).buildForVerify();
+        BitSet result = new BitSet(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            if (!CryptoMx.verify(plainData.get(i), signData.get(i), verifier)) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public BitSet verifyBatch() {
+        return batchVerifier.verify(keyPair.getPublic(), plainData, signData);
+    }
+}
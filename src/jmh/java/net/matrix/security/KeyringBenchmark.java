@@ -0,0 +1,84 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 秘钥环基准测试，比较每次构建算法实例和使用秘钥环保留的算法实例。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyringBenchmark {
+    @Param({
+        "AES_GCM_NOPADDING", "CHACHA20_POLY1305"
+    })
+    CryptoAlgorithm.Symmetric algorithm;
+
+    @Param({
+        "64", "1024"
+    })
+    int size;
+
+    byte[] plainData;
+
+    SecretKey key;
+
+    CryptoKeyring keyring;
+
+    @Setup
+    public void setup() {
+        plainData = RandomUtils.nextBytes(size);
+        key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        keyring = new CryptoKeyring();
+        keyring.addSymmetricKey("k1", algorithm, key);
+    }
+
+    @Benchmark
+    public byte[] encryptBuilder() {
+        byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+        Cipher cipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForEncrypt();
+        return CryptoMx.encrypt(plainData, cipher);
+    }
+
+    @Benchmark
+    public byte[] encryptKeyring() {
+        byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+        return keyring.encrypt("k1", nonce, plainData);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] encryptBuilderParallel() {
+        return encryptBuilder();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] encryptKeyringParallel() {
+        return encryptKeyring();
+    }
+}
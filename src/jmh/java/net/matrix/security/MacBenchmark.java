@@ -0,0 +1,65 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 消息认证码算法基准测试。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MacBenchmark {
+    @Param
+    CryptoAlgorithm.Mac algorithm;
+
+    @Param({
+        "64", "1024", "16384", "1048576"
+    })
+    int size;
+
+    byte[] plainData;
+
+    Mac mac;
+
+    @Setup
+    public void setup() {
+        plainData = RandomUtils.nextBytes(size);
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build());
+        mac = CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build();
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return CryptoMx.sign(plainData, mac);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] signParallel() {
+        return CryptoMx.sign(plainData, mac);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JDK 与 BouncyCastle 加密算法实现对比基准测试。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProviderBenchmark {
+    @Param({
+        "JDK", "BC"
+    })
+    String provider;
+
+    @Param({
+        "1024", "65536"
+    })
+    int size;
+
+    byte[] plainData;
+
+    MessageDigest messageDigest;
+
+    Mac mac;
+
+    SecretKey aesKey;
+
+    Cipher gcmCipher;
+
+    Cipher cbcCipher;
+
+    Signature signer;
+
+    byte[] nonce;
+
+    SecureRandom secureRandom;
+
+    @Setup
+    public void setup()
+        throws GeneralSecurityException {
+        plainData = RandomUtils.nextBytes(size);
+        secureRandom = ThreadLocalSecureRandom.getDefault();
+        nonce = new byte[12];
+        aesKey = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING).build());
+        SecretKey macKey = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(CryptoAlgorithm.Mac.HMAC_SHA_256).build());
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Sign.SHA_256_RSA).build());
+        if ("BC".equals(provider)) {
+            Provider bc = CryptoMx.getBouncyCastleProvider();
+            messageDigest = MessageDigest.getInstance(CryptoConstant.SHA_256, bc);
+            mac = Mac.getInstance(CryptoConstant.HMAC_SHA_256, bc);
+            gcmCipher = Cipher.getInstance(CryptoConstant.AES_GCM_NOPADDING, bc);
+            cbcCipher = Cipher.getInstance(CryptoConstant.AES_CBC_PKCS5PADDING, bc);
+            signer = Signature.getInstance(CryptoConstant.SHA_256_RSA, bc);
+        } else {
+            messageDigest = MessageDigest.getInstance(CryptoConstant.SHA_256);
+            mac = Mac.getInstance(CryptoConstant.HMAC_SHA_256);
+            gcmCipher = Cipher.getInstance(CryptoConstant.AES_GCM_NOPADDING);
+            cbcCipher = Cipher.getInstance(CryptoConstant.AES_CBC_PKCS5PADDING);
+            signer = Signature.getInstance(CryptoConstant.SHA_256_RSA);
+        }
+        mac.init(macKey);
+        signer.initSign(keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public byte[] digestSha256() {
+        return CryptoMx.digest(plainData, messageDigest);
+    }
+
+    @Benchmark
+    public byte[] hmacSha256() {
+        return CryptoMx.sign(plainData, mac);
+    }
+
+    @Benchmark
+    public byte[] encryptAesGcm() {
+        CryptoMx.generateRandom(nonce, secureRandom);
+        CryptoMx.initCipherForEncrypt(gcmCipher, aesKey, new GCMParameterSpec(CryptoMx.DEFAULT_TAG_LENGTH, nonce));
+        return CryptoMx.encrypt(plainData, gcmCipher);
+    }
+
+    @Benchmark
+    public byte[] encryptAesCbc() {
+        CryptoMx.initCipherForEncrypt(cbcCipher, aesKey, secureRandom);
+        return CryptoMx.encrypt(plainData, cbcCipher);
+    }
+
+    @Benchmark
+    public byte[] signSha256Rsa() {
+        return CryptoMx.sign(plainData, signer);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.matrix.data.convert.BinaryStringConverter;
+
+/**
+ * 密封令牌基准测试，比较使用构建器加密、消息认证码和 Base64 手工拼接令牌与密封令牌编解码。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SealedTokenBenchmark {
+    @Param({
+        "64", "512"
+    })
+    int size;
+
+    byte[] payload;
+
+    SecretKey cipherKey;
+
+    SecretKey macKey;
+
+    String handRolledToken;
+
+    SealedTokenCodec codec;
+
+    String sealedToken;
+
+    @Setup
+    public void setup() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        payload = RandomUtils.nextBytes(size);
+        cipherKey = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        macKey = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(CryptoAlgorithm.Mac.HMAC_SHA_256).build());
+        handRolledToken = sealHandRolled();
+        CryptoKeyring keyring = new CryptoKeyring();
+        keyring.addSymmetricKey("v1", algorithm, cipherKey);
+        keyring.setPrimaryKeyId("v1");
+        codec = SealedTokenCodec.newBuilder(keyring).build();
+        sealedToken = codec.seal(payload);
+    }
+
+    @Benchmark
+    public String sealHandRolled() {
+        byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+        Cipher cipher = CryptoMx.SymmetricCipherBuilder.newBuilder(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING).setKey(cipherKey).setNonce(nonce)
+            .buildForEncrypt();
+        byte[] cipherData = CryptoMx.encrypt(payload, cipher);
+        byte[] signData = CryptoMx.sign(cipherData, CryptoMx.MacBuilder.newBuilder(CryptoAlgorithm.Mac.HMAC_SHA_256).setKey(macKey).build());
+        return BinaryStringConverter.BASE64_URL_SAFE.toString(nonce) + '.' + BinaryStringConverter.BASE64_URL_SAFE.toString(cipherData) + '.'
+            + BinaryStringConverter.BASE64_URL_SAFE.toString(signData);
+    }
+
+    @Benchmark
+    public byte[] openHandRolled() {
+        String[] parts = handRolledToken.split("\\.");
+        byte[] nonce = BinaryStringConverter.BASE64_URL_SAFE.toBinary(parts[0]);
+        byte[] cipherData = BinaryStringConverter.BASE64_URL_SAFE.toBinary(parts[1]);
+        byte[] signData = BinaryStringConverter.BASE64_URL_SAFE.toBinary(parts[2]);
+        if (!CryptoMx.verify(cipherData, signData, CryptoMx.MacBuilder.newBuilder(CryptoAlgorithm.Mac.HMAC_SHA_256).setKey(macKey).build())) {
+            throw new IllegalStateException();
+        }
+        Cipher cipher = CryptoMx.SymmetricCipherBuilder.newBuilder(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING).setKey(cipherKey).setNonce(nonce)
+            .buildForDecrypt();
+        return CryptoMx.decrypt(cipherData, cipher);
+    }
+
+    @Benchmark
+    public String sealCodec() {
+        return codec.seal(payload);
+    }
+
+    @Benchmark
+    public byte[] openCodec() {
+        return codec.open(sealedToken);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 签名算法基准测试。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SignBenchmark {
+    @Param
+    CryptoAlgorithm.Sign algorithm;
+
+    @Param({
+        "64", "1024", "16384", "1048576"
+    })
+    int size;
+
+    byte[] plainData;
+
+    byte[] signData;
+
+    Signature signer;
+
+    Signature verifier;
+
+    @Setup
+    public void setup() {
+        plainData = RandomUtils.nextBytes(size);
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        signer = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPrivateKey(keyPair.getPrivate()).buildForSign();
+        verifier = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPublicKey(keyPair.getPublic()).buildForVerify();
+        signData = CryptoMx.sign(plainData, signer);
+    }
+
+    @Benchmark
+    public byte[] sign() {
+        return CryptoMx.sign(plainData, signer);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] signParallel() {
+        return CryptoMx.sign(plainData, signer);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return CryptoMx.verify(plainData, signData, verifier);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean verifyParallel() {
+        return CryptoMx.verify(plainData, signData, verifier);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 流式处理基准测试，比较不同缓冲区大小对分段处理吞吐量的影响，流式接口使用相同长度的缓冲区池。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamBenchmark {
+    @Param({
+        "AES_CBC_PKCS5PADDING", "AES_GCM_NOPADDING", "SM4_CBC_PKCS5PADDING", "CHACHA20_POLY1305"
+    })
+    CryptoAlgorithm.Symmetric algorithm;
+
+    @Param({
+        "1024", "8192", "65536"
+    })
+    int bufferSize;
+
+    @Param({
+        "1048576", "16777216"
+    })
+    int size;
+
+    byte[] plainData;
+
+    byte[] outputBuffer;
+
+    SecretKey key;
+
+    byte[] nonce;
+
+    Cipher cipher;
+
+    MessageDigest messageDigest;
+
+    @Setup
+    public void setup() {
+        plainData = RandomUtils.nextBytes(size);
+        key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        nonce = new byte[12];
+        cipher = CryptoMx.getCipher(algorithm);
+        messageDigest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+        initForEncrypt();
+        outputBuffer = new byte[cipher.getOutputSize(bufferSize)];
+        CryptoBufferPool.setDefault(CryptoBufferPool.newBuilder().setBufferSize(bufferSize).setAutoTuning(false).build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        CryptoBufferPool.setDefault(CryptoBufferPool.newBuilder().build());
+    }
+
+    private void initForEncrypt() {
+        if (CryptoMx.isAead(algorithm.transformation)) {
+            CryptoMx.generateRandom(nonce, ThreadLocalSecureRandom.getDefault());
+            CryptoMx.initCipherForEncrypt(cipher, key, CryptoMx.getAeadParameterSpec(algorithm.transformation, nonce, CryptoMx.DEFAULT_TAG_LENGTH));
+        } else {
+            CryptoMx.initCipherForEncrypt(cipher, key, ThreadLocalSecureRandom.getDefault());
+        }
+    }
+
+    /**
+     * 使用指定缓冲区大小分段加密。
+     */
+    @Benchmark
+    public void encryptSegmented(Blackhole blackhole)
+        throws GeneralSecurityException {
+        initForEncrypt();
+        for (int offset = 0; offset < plainData.length; offset += bufferSize) {
+            int length = Math.min(bufferSize, plainData.length - offset);
+            blackhole.consume(cipher.update(plainData, offset, length, outputBuffer));
+        }
+        blackhole.consume(cipher.doFinal(new byte[cipher.getOutputSize(0)], 0));
+    }
+
+    /**
+     * 使用 CryptoMx 的流式接口加密，从缓冲区池借用指定长度的缓冲区。
+     */
+    @Benchmark
+    public void encryptStream()
+        throws IOException {
+        initForEncrypt();
+        CryptoMx.encrypt(new ByteArrayInputStream(plainData), NullOutputStream.INSTANCE, cipher);
+    }
+
+    /**
+     * 使用指定缓冲区大小分段计算摘要。
+     */
+    @Benchmark
+    public byte[] digestSegmented() {
+        for (int offset = 0; offset < plainData.length; offset += bufferSize) {
+            messageDigest.update(plainData, offset, Math.min(bufferSize, plainData.length - offset));
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * 使用 CryptoMx 的流式接口计算摘要，从缓冲区池借用指定长度的缓冲区。
+     */
+    @Benchmark
+    public byte[] digestStream()
+        throws IOException {
+        return CryptoMx.digest(new ByteArrayInputStream(plainData), messageDigest);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.AlgorithmParameters;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 对称加密算法基准测试。每次操作都重新初始化加密算法实例，AEAD 算法加密时使用新的随机数，解密时交替使用两份密文，
+ * 避免部分实现拒绝连续使用相同的秘钥和随机数。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SymmetricBenchmark {
+    @Param
+    CryptoAlgorithm.Symmetric algorithm;
+
+    @Param({
+        "64", "1024", "16384", "1048576"
+    })
+    int size;
+
+    byte[] plainData;
+
+    byte[][] cipherData;
+
+    SecretKey key;
+
+    byte[] nonce;
+
+    byte[][] decryptNonce;
+
+    AlgorithmParameters[] algorithmParameter;
+
+    int decryptIndex;
+
+    boolean aead;
+
+    Cipher cipher;
+
+    SecureRandom secureRandom;
+
+    @Setup
+    public void setup() {
+        plainData = RandomUtils.nextBytes(size);
+        key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        nonce = new byte[12];
+        aead = CryptoMx.isAead(algorithm.transformation);
+        cipher = CryptoMx.getCipher(algorithm);
+        secureRandom = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL);
+        cipherData = new byte[2][];
+        decryptNonce = new byte[2][];
+        algorithmParameter = new AlgorithmParameters[2];
+        for (int i = 0; i < 2; i++) {
+            initForEncrypt();
+            cipherData[i] = CryptoMx.encrypt(plainData, cipher);
+            decryptNonce[i] = nonce.clone();
+            algorithmParameter[i] = cipher.getParameters();
+        }
+    }
+
+    private void initForEncrypt() {
+        if (aead) {
+            CryptoMx.generateRandom(nonce, secureRandom);
+            CryptoMx.initCipherForEncrypt(cipher, key, CryptoMx.getAeadParameterSpec(algorithm.transformation, nonce, CryptoMx.DEFAULT_TAG_LENGTH));
+        } else {
+            CryptoMx.initCipherForEncrypt(cipher, key, secureRandom);
+        }
+    }
+
+    private void initForDecrypt() {
+        if (aead) {
+            CryptoMx.initCipherForDecrypt(cipher, key,
+                CryptoMx.getAeadParameterSpec(algorithm.transformation, decryptNonce[decryptIndex], CryptoMx.DEFAULT_TAG_LENGTH));
+        } else if (algorithmParameter[decryptIndex] != null) {
+            CryptoMx.initCipherForDecrypt(cipher, key, algorithmParameter[decryptIndex]);
+        } else {
+            CryptoMx.initCipherForDecrypt(cipher, key);
+        }
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        initForEncrypt();
+        return CryptoMx.encrypt(plainData, cipher);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] encryptParallel() {
+        initForEncrypt();
+        return CryptoMx.encrypt(plainData, cipher);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        initForDecrypt();
+        byte[] plainData = CryptoMx.decrypt(cipherData[decryptIndex], cipher);
+        decryptIndex ^= 1;
+        return plainData;
+    }
+}
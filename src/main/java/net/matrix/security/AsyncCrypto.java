@@ -0,0 +1,378 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import org.apache.commons.io.function.IOSupplier;
+import org.apache.commons.io.function.Uncheck;
+
+import net.matrix.java.util.concurrent.ExecutorServiceBuilder;
+
+/**
+ * 异步加密操作，在线程池中执行 {@link CryptoMx} 的流式摘要、消息认证码、签名和加解密操作，返回 {@link CompletableFuture}。
+ * 默认在运行环境支持时每个任务使用一个虚拟线程，等待 I/O 时不占用平台线程；否则使用按需创建的守护线程池。
+ * 算法实例从 {@link CryptoEnginePool} 租用，任务结束时归还，流式处理和读取文件使用的缓冲区从所有线程共享的有界缓冲区中借用。
+ * 虚拟线程不复用线程局部状态，任务中使用 {@link ThreadLocalSecureRandom} 或 {@link CryptoKeyring} 时每个任务都会重新创建随机数生成器或算法实例，
+ * 此类任务应通过 {@link Builder#setExecutor(ExecutorService)} 指定有界的平台线程池。
+ * 读取失败时以 {@link java.io.UncheckedIOException} 异常完成，传入的流不会被关闭。
+ */
+@ThreadSafe
+public final class AsyncCrypto
+    implements AutoCloseable {
+    /**
+     * 执行任务的线程池。
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 是否由本实例创建线程池。
+     */
+    private final boolean ownExecutor;
+
+    /**
+     * 是否使用虚拟线程。
+     */
+    private final boolean virtual;
+
+    /**
+     * 构造异步加密操作。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private AsyncCrypto(Builder builder) {
+        if (builder.executor == null) {
+            ExecutorService virtualExecutor = newVirtualThreadExecutor();
+            if (virtualExecutor == null) {
+                this.executor = new ExecutorServiceBuilder.Cached().setThreadNamePrefix("async-crypto").setDaemon(Boolean.TRUE).build();
+                this.virtual = false;
+            } else {
+                this.executor = virtualExecutor;
+                this.virtual = true;
+            }
+            this.ownExecutor = true;
+        } else {
+            this.executor = builder.executor;
+            this.virtual = false;
+            this.ownExecutor = false;
+        }
+    }
+
+    /**
+     * 创建每个任务使用一个虚拟线程的线程池。
+     *
+     * @return 线程池，运行环境不支持虚拟线程时为 null。
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 计算摘要。
+     *
+     * @param plainData
+     *     明文。
+     * @param pool
+     *     摘要算法实例池。
+     * @return 摘要。
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> digest(@Nonnull InputStream plainData, @Nonnull CryptoEnginePool<MessageDigest> pool) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<MessageDigest> lease = pool.lease()) {
+                return CryptoMx.digest(plainData, lease.get());
+            }
+        });
+    }
+
+    /**
+     * 计算文件摘要。
+     *
+     * @param plainData
+     *     明文文件。
+     * @param pool
+     *     摘要算法实例池。
+     * @return 摘要。
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> digest(@Nonnull Path plainData, @Nonnull CryptoEnginePool<MessageDigest> pool) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<MessageDigest> lease = pool.lease()) {
+                return CryptoMx.digest(plainData, lease.get());
+            }
+        });
+    }
+
+    /**
+     * 计算消息认证码。
+     *
+     * @param plainData
+     *     明文。
+     * @param pool
+     *     消息认证码算法实例池。
+     * @param key
+     *     秘钥。
+     * @return 消息认证码。
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> sign(@Nonnull InputStream plainData, @Nonnull CryptoEnginePool<Mac> pool, @Nonnull Key key) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Mac> lease = pool.lease()) {
+                Mac mac = lease.get();
+                CryptoMx.initMac(mac, key);
+                return CryptoMx.sign(plainData, mac);
+            }
+        });
+    }
+
+    /**
+     * 计算文件消息认证码。
+     *
+     * @param plainData
+     *     明文文件。
+     * @param pool
+     *     消息认证码算法实例池。
+     * @param key
+     *     秘钥。
+     * @return 消息认证码。
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> sign(@Nonnull Path plainData, @Nonnull CryptoEnginePool<Mac> pool, @Nonnull Key key) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Mac> lease = pool.lease()) {
+                Mac mac = lease.get();
+                CryptoMx.initMac(mac, key);
+                return CryptoMx.sign(plainData, mac);
+            }
+        });
+    }
+
+    /**
+     * 验证消息认证码。
+     *
+     * @param plainData
+     *     明文。
+     * @param signData
+     *     消息认证码。
+     * @param pool
+     *     消息认证码算法实例池。
+     * @param key
+     *     秘钥。
+     * @return 是否通过验证。
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> verify(@Nonnull InputStream plainData, @Nonnull byte[] signData, @Nonnull CryptoEnginePool<Mac> pool,
+        @Nonnull Key key) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Mac> lease = pool.lease()) {
+                Mac mac = lease.get();
+                CryptoMx.initMac(mac, key);
+                return CryptoMx.verify(plainData, signData, mac);
+            }
+        });
+    }
+
+    /**
+     * 签名。
+     *
+     * @param plainData
+     *     数据。
+     * @param pool
+     *     签名算法实例池。
+     * @param privateKey
+     *     私钥。
+     * @return 签名。
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> sign(@Nonnull InputStream plainData, @Nonnull CryptoEnginePool<Signature> pool, @Nonnull PrivateKey privateKey) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Signature> lease = pool.lease()) {
+                Signature signature = lease.get();
+                CryptoMx.initSignatureForSign(signature, privateKey);
+                return CryptoMx.sign(plainData, signature);
+            }
+        });
+    }
+
+    /**
+     * 验证签名。
+     *
+     * @param plainData
+     *     数据。
+     * @param signData
+     *     签名。
+     * @param pool
+     *     签名算法实例池。
+     * @param publicKey
+     *     公钥。
+     * @return 是否通过验证。
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> verify(@Nonnull InputStream plainData, @Nonnull byte[] signData, @Nonnull CryptoEnginePool<Signature> pool,
+        @Nonnull PublicKey publicKey) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Signature> lease = pool.lease()) {
+                Signature signature = lease.get();
+                CryptoMx.initSignatureForVerify(signature, publicKey);
+                return CryptoMx.verify(plainData, signData, signature);
+            }
+        });
+    }
+
+    /**
+     * 加密。
+     *
+     * @param plainData
+     *     明文。
+     * @param cipherData
+     *     密文。
+     * @param pool
+     *     加密算法实例池。
+     * @param initializer
+     *     初始化租用的加密算法实例，设置加密秘钥和参数。
+     * @return 加密完成。
+     */
+    @Nonnull
+    public CompletableFuture<Void> encrypt(@Nonnull InputStream plainData, @Nonnull OutputStream cipherData, @Nonnull CryptoEnginePool<Cipher> pool,
+        @Nonnull Consumer<Cipher> initializer) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Cipher> lease = pool.lease()) {
+                Cipher cipher = lease.get();
+                initializer.accept(cipher);
+                CryptoMx.encrypt(plainData, cipherData, cipher);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 解密。
+     *
+     * @param cipherData
+     *     密文。
+     * @param plainData
+     *     明文。
+     * @param pool
+     *     加密算法实例池。
+     * @param initializer
+     *     初始化租用的加密算法实例，设置解密秘钥和参数。
+     * @return 解密完成。
+     */
+    @Nonnull
+    public CompletableFuture<Void> decrypt(@Nonnull InputStream cipherData, @Nonnull OutputStream plainData, @Nonnull CryptoEnginePool<Cipher> pool,
+        @Nonnull Consumer<Cipher> initializer) {
+        return supply(() -> {
+            try (CryptoEnginePool.Lease<Cipher> lease = pool.lease()) {
+                Cipher cipher = lease.get();
+                initializer.accept(cipher);
+                CryptoMx.decrypt(cipherData, plainData, cipher);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 在线程池中执行任务。
+     *
+     * @param task
+     *     任务。
+     * @return 任务结果。
+     */
+    private <T> CompletableFuture<T> supply(IOSupplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> Uncheck.get(task), executor);
+    }
+
+    /**
+     * 是否使用虚拟线程执行任务。
+     *
+     * @return 是否使用虚拟线程。
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * 关闭异步加密操作，关闭由本实例创建的线程池，已提交的任务继续执行。
+     */
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 构造异步加密操作构建器。
+     *
+     * @return 异步加密操作构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 异步加密操作构建器。
+     */
+    public static final class Builder {
+        /**
+         * 执行任务的线程池。
+         */
+        private ExecutorService executor;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置执行任务的线程池，由调用者负责关闭。
+         * 默认在运行环境支持时每个任务使用一个虚拟线程，否则使用按需创建的守护线程池。
+         *
+         * @param executor
+         *     线程池。
+         * @return 异步加密操作构建器。
+         */
+        @Nonnull
+        public Builder setExecutor(@Nonnull ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 构建异步加密操作。
+         *
+         * @return 异步加密操作。
+         */
+        @Nonnull
+        public AsyncCrypto build() {
+            return new AsyncCrypto(this);
+        }
+    }
+}
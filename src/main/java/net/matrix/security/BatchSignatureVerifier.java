@@ -0,0 +1,285 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.InvalidKeyException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * 批量签名验证器，将一批签名分成多个区间，在线程池中并行验证，每个区间独占一个签名算法实例。
+ */
+@Immutable
+public final class BatchSignatureVerifier {
+    /**
+     * 每个并行度划分的区间数量，使各线程负载均衡。
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * 签名算法名称。
+     */
+    private final String signAlgorithm;
+
+    /**
+     * 验证签名的线程池。
+     */
+    private final Executor executor;
+
+    /**
+     * 并行度。
+     */
+    private final int parallelism;
+
+    /**
+     * 是否在发现第一个验证失败的签名后停止验证。
+     */
+    private final boolean shortCircuit;
+
+    /**
+     * 构造批量签名验证器。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private BatchSignatureVerifier(Builder builder) {
+        this.signAlgorithm = builder.signAlgorithm;
+        this.executor = builder.executor;
+        this.parallelism = builder.parallelism;
+        this.shortCircuit = builder.shortCircuit;
+    }
+
+    /**
+     * 使用同一个公钥验证一批签名。
+     *
+     * @param publicKey
+     *     公钥。
+     * @param plainData
+     *     明文。
+     * @param signData
+     *     签名，与明文一一对应。
+     * @return 验证失败的序号，短路时只保证包含至少一个验证失败的序号。
+     */
+    @Nonnull
+    public BitSet verify(@Nonnull PublicKey publicKey, @Nonnull List<byte[]> plainData, @Nonnull List<byte[]> signData) {
+        return verify(Collections.nCopies(plainData.size(), publicKey), plainData, signData);
+    }
+
+    /**
+     * 使用各自的公钥验证一批签名。
+     *
+     * @param publicKeys
+     *     公钥，与明文一一对应。
+     * @param plainData
+     *     明文。
+     * @param signData
+     *     签名，与明文一一对应。
+     * @return 验证失败的序号，短路时只保证包含至少一个验证失败的序号。
+     */
+    @Nonnull
+    public BitSet verify(@Nonnull List<PublicKey> publicKeys, @Nonnull List<byte[]> plainData, @Nonnull List<byte[]> signData) {
+        int size = plainData.size();
+        if (publicKeys.size() != size || signData.size() != size) {
+            throw new IllegalArgumentException();
+        }
+
+        AtomicBoolean failed = new AtomicBoolean();
+        int partitionCount = Math.min(size, parallelism * PARTITIONS_PER_THREAD);
+        if (partitionCount <= 1) {
+            return verifyRange(publicKeys, plainData, signData, 0, size, failed);
+        }
+        List<CompletableFuture<BitSet>> futures = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            int from = (int) ((long) size * i / partitionCount);
+            int to = (int) ((long) size * (i + 1) / partitionCount);
+            futures.add(CompletableFuture.supplyAsync(() -> verifyRange(publicKeys, plainData, signData, from, to, failed), executor));
+        }
+        BitSet failures = new BitSet(size);
+        for (CompletableFuture<BitSet> future : futures) {
+            try {
+                failures.or(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 验证一个区间内的签名，公钥与上一个相同时不重新初始化。
+     */
+    private BitSet verifyRange(List<PublicKey> publicKeys, List<byte[]> plainData, List<byte[]> signData, int from, int to, AtomicBoolean failed) {
+        BitSet failures = new BitSet();
+        try (CryptoEnginePool.Lease<Signature> lease = CryptoEnginePool.ofSignature(signAlgorithm).lease()) {
+            Signature signature = lease.get();
+            PublicKey currentKey = null;
+            for (int i = from; i < to; i++) {
+                if (shortCircuit && failed.get()) {
+                    break;
+                }
+                PublicKey publicKey = publicKeys.get(i);
+                if (publicKey != currentKey) {
+                    initVerify(signature, publicKey);
+                    currentKey = publicKey;
+                }
+                if (!verify(signature, plainData.get(i), signData.get(i))) {
+                    failures.set(i);
+                    failed.set(true);
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 初始化签名算法实例验证公钥。
+     */
+    private static void initVerify(Signature signature, PublicKey publicKey) {
+        try {
+            signature.initVerify(publicKey);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 验证签名，签名格式错误视为验证失败。
+     */
+    private static boolean verify(Signature signature, byte[] plainData, byte[] signData) {
+        try {
+            signature.update(plainData);
+            return signature.verify(signData);
+        } catch (SignatureException e) {
+            // 签名格式错误时签名算法实例已重置
+            return false;
+        }
+    }
+
+    /**
+     * 签名算法名称。
+     *
+     * @return 签名算法名称。
+     */
+    @Nonnull
+    public String getSignAlgorithm() {
+        return signAlgorithm;
+    }
+
+    /**
+     * 构造批量签名验证器构建器。
+     *
+     * @param signAlgorithm
+     *     签名算法名称。
+     * @return 批量签名验证器构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull String signAlgorithm) {
+        Builder builder = new Builder();
+        builder.signAlgorithm = signAlgorithm;
+        return builder;
+    }
+
+    /**
+     * 构造批量签名验证器构建器。
+     *
+     * @param algorithm
+     *     签名算法枚举值。
+     * @return 批量签名验证器构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Sign algorithm) {
+        return newBuilder(algorithm.signAlgorithm);
+    }
+
+    /**
+     * 批量签名验证器构建器。
+     */
+    public static final class Builder {
+        /**
+         * 签名算法名称。
+         */
+        private String signAlgorithm;
+
+        /**
+         * 验证签名的线程池。
+         */
+        private Executor executor = ForkJoinPool.commonPool();
+
+        /**
+         * 并行度。
+         */
+        private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+
+        /**
+         * 是否在发现第一个验证失败的签名后停止验证。
+         */
+        private boolean shortCircuit;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置验证签名的线程池和并行度，默认使用 {@link ForkJoinPool#commonPool()}。
+         *
+         * @param executor
+         *     线程池。
+         * @param parallelism
+         *     并行度，通常为线程池的线程数量，为 1 时在当前线程验证。
+         * @return 批量签名验证器构建器。
+         */
+        @Nonnull
+        public Builder setExecutor(@Nonnull Executor executor, int parallelism) {
+            this.executor = executor;
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * 设置是否在发现第一个验证失败的签名后停止验证，适用于只需判断整批是否有效的场景。
+         *
+         * @param shortCircuit
+         *     是否短路。
+         * @return 批量签名验证器构建器。
+         */
+        @Nonnull
+        public Builder setShortCircuit(boolean shortCircuit) {
+            this.shortCircuit = shortCircuit;
+            return this;
+        }
+
+        /**
+         * 构建批量签名验证器。
+         *
+         * @return 批量签名验证器。
+         */
+        @Nonnull
+        public BatchSignatureVerifier build() {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException();
+            }
+            CryptoMx.getSignature(signAlgorithm);
+            return new BatchSignatureVerifier(this);
+        }
+    }
+}
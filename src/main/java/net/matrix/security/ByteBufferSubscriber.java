@@ -0,0 +1,135 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 逐个处理数据块并在上游完成时计算结果的终端订阅者。
+ * 订阅时请求预取数量的数据块，处理完一半后补充请求，保持背压。
+ */
+abstract class ByteBufferSubscriber
+    implements Flow.Subscriber<ByteBuffer> {
+    /**
+     * 默认预取数量。
+     */
+    static final int DEFAULT_PREFETCH = 16;
+
+    /**
+     * 预取数量。
+     */
+    private final int prefetch;
+
+    /**
+     * 补充请求的阈值。
+     */
+    private final int limit;
+
+    /**
+     * 计算结果。
+     */
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+    /**
+     * 上游订阅。
+     */
+    private Flow.Subscription subscription;
+
+    /**
+     * 上次请求后处理的数据块数量。
+     */
+    private int consumed;
+
+    /**
+     * 构造终端订阅者。
+     *
+     * @param prefetch
+     *     预取数量。
+     */
+    ByteBufferSubscriber(int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException(Integer.toString(prefetch));
+        }
+        this.prefetch = prefetch;
+        this.limit = Math.max(1, prefetch / 2);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription newSubscription) {
+        if (subscription != null) {
+            newSubscription.cancel();
+            return;
+        }
+        subscription = newSubscription;
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                newSubscription.cancel();
+            }
+        });
+        newSubscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            update(item);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            result.completeExceptionally(e);
+            return;
+        }
+        consumed++;
+        if (consumed >= limit) {
+            subscription.request(consumed);
+            consumed = 0;
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            result.complete(finish());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 计算结果，上游完成时完成，上游失败时以失败原因异常完成，取消时取消上游订阅。
+     *
+     * @return 计算结果。
+     */
+    @Nonnull
+    public CompletableFuture<byte[]> getResult() {
+        return result;
+    }
+
+    /**
+     * 处理数据块。
+     *
+     * @param item
+     *     数据块。
+     */
+    protected abstract void update(ByteBuffer item);
+
+    /**
+     * 计算结果。
+     *
+     * @return 计算结果。
+     */
+    protected abstract byte[] finish();
+}
@@ -0,0 +1,598 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.util.Arrays;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 分块消息认证码，将数据按固定长度分块，每块附加消息认证码，读取时逐块验证，第一个被篡改的分块即可拒绝，无需读完全部数据。
+ * 数据格式为头部后接各块，头部为版本（1 字节）、分块长度（4 字节）、随机流标识（16 字节），
+ * 每块为数据后接消息认证码，最后一块数据可能短于分块长度，也可能为空。
+ * 每块的消息认证码按头部、块序号（8 字节）、最后一块标记（1 字节）和数据计算，可以防止分块被重排、截断或跨数据替换。
+ * 消息认证码使用常量时间比较，验证通过的分块才会被读出；每个流只分配一个分块和一个消息认证码的缓冲区。
+ * 头部未经认证，验证时头部中的分块长度必须与设置的分块长度一致，避免按伪造的分块长度分配缓冲区。
+ */
+@Immutable
+public final class ChunkedMac {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(ChunkedMac.class).useCurrentLocale();
+
+    /**
+     * 默认分块长度。
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 最大分块长度。
+     */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 头部长度。
+     */
+    public static final int HEADER_LENGTH = 21;
+
+    /**
+     * 格式版本。
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * 随机流标识长度。
+     */
+    private static final int STREAM_ID_LENGTH = 16;
+
+    /**
+     * 消息认证码算法名称。
+     */
+    private final String algorithm;
+
+    /**
+     * 秘钥。
+     */
+    private final SecretKey key;
+
+    /**
+     * 分块长度。
+     */
+    private final int chunkSize;
+
+    /**
+     * 消息认证码长度。
+     */
+    private final int macLength;
+
+    /**
+     * 随机数生成器算法实例。
+     */
+    private final SecureRandom secureRandom;
+
+    /**
+     * 构造分块消息认证码。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private ChunkedMac(Builder builder) {
+        this.algorithm = builder.algorithm;
+        this.key = builder.key;
+        this.chunkSize = builder.chunkSize;
+        this.macLength = CryptoMx.getMac(builder.algorithm).getMacLength();
+        this.secureRandom = builder.secureRandom;
+    }
+
+    /**
+     * 创建计算消息认证码的输出流，立即写入头部，关闭时写入最后一块。
+     *
+     * @param output
+     *     输出数据。
+     * @return 输出流，写入原始数据。
+     * @throws IOException
+     *     写入数据失败。
+     */
+    @Nonnull
+    public OutputStream newSigningStream(@Nonnull OutputStream output)
+        throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = VERSION;
+        writeInt(header, 1, chunkSize);
+        System.arraycopy(CryptoMx.generateRandom(STREAM_ID_LENGTH, secureRandom), 0, header, 5, STREAM_ID_LENGTH);
+        output.write(header);
+        return new SigningStream(this, header, output);
+    }
+
+    /**
+     * 创建验证消息认证码的输入流，立即读取头部，逐块验证。
+     * 头部中的分块长度与设置的分块长度不一致时抛出 {@link IllegalArgumentException} 异常，分块验证失败时读取抛出 {@link IllegalArgumentException} 异常。
+     *
+     * @param input
+     *     输入数据。
+     * @return 输入流，读取原始数据。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    @Nonnull
+    public InputStream newVerifyingStream(@Nonnull InputStream input)
+        throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        if (IOUtils.read(input, header) < HEADER_LENGTH) {
+            throw new IllegalArgumentException(RBMF.get("数据被截断"));
+        }
+        if (header[0] != VERSION) {
+            throw new IllegalArgumentException(RBMF.format("不支持的版本 {0}", header[0]));
+        }
+        int headerChunkSize = readInt(header, 1);
+        if (headerChunkSize != chunkSize) {
+            throw new IllegalArgumentException(RBMF.format("无效的分块长度 {0}", headerChunkSize));
+        }
+        return new VerifyingStream(this, header, input);
+    }
+
+    /**
+     * 带消息认证码的数据长度。
+     *
+     * @param length
+     *     原始数据长度。
+     * @return 带消息认证码的数据长度。
+     */
+    public long getSignedLength(long length) {
+        long chunkCount = Math.max(1, (length + chunkSize - 1) / chunkSize);
+        return HEADER_LENGTH + length + chunkCount * macLength;
+    }
+
+    /**
+     * 消息认证码算法名称。
+     *
+     * @return 算法名称。
+     */
+    @Nonnull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 分块长度。
+     *
+     * @return 分块长度。
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 计算一块的消息认证码。
+     *
+     * @param mac
+     *     已初始化的消息认证码算法实例。
+     * @param header
+     *     头部。
+     * @param index
+     *     块序号。
+     * @param last
+     *     是否最后一块。
+     * @param data
+     *     数据。
+     * @param length
+     *     数据长度。
+     * @param tag
+     *     输出的消息认证码。
+     */
+    private static void computeTag(Mac mac, byte[] header, long index, boolean last, byte[] data, int length, byte[] tag) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.MAC, mac.getAlgorithm());
+        try {
+            mac.update(header);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                mac.update((byte) (index >>> shift));
+            }
+            mac.update((byte) (last ? 1 : 0));
+            mac.update(data, 0, length);
+            mac.doFinal(tag, 0);
+            CryptoMonitor.success(monitor, length);
+        } catch (ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 按大端字节序写入整数。
+     */
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 按大端字节序读取整数。
+     */
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+
+    /**
+     * 构造分块消息认证码构建器。
+     *
+     * @param algorithm
+     *     消息认证码算法名称。
+     * @return 分块消息认证码构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull String algorithm) {
+        Builder builder = new Builder();
+        builder.algorithm = algorithm;
+        return builder;
+    }
+
+    /**
+     * 构造分块消息认证码构建器。
+     *
+     * @param algorithm
+     *     消息认证码算法枚举值。
+     * @return 分块消息认证码构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Mac algorithm) {
+        return newBuilder(algorithm.algorithm);
+    }
+
+    /**
+     * 计算消息认证码的输出流。
+     */
+    @NotThreadSafe
+    private static final class SigningStream
+        extends OutputStream {
+        private final byte[] header;
+
+        private final OutputStream output;
+
+        private final CryptoEnginePool<Mac> macPool;
+
+        private final Mac mac;
+
+        private final byte[] buffer;
+
+        private final byte[] tag;
+
+        private int length;
+
+        private long index;
+
+        private boolean closed;
+
+        SigningStream(ChunkedMac chunkedMac, byte[] header, OutputStream output) {
+            this.header = header;
+            this.output = output;
+            this.macPool = CryptoEnginePool.ofMac(chunkedMac.algorithm);
+            this.mac = macPool.borrow();
+            CryptoMx.initMac(mac, chunkedMac.key);
+            this.buffer = new byte[chunkedMac.chunkSize];
+            this.tag = new byte[mac.getMacLength()];
+        }
+
+        @Override
+        public void write(int b)
+            throws IOException {
+            ensureOpen();
+            if (length == buffer.length) {
+                writeChunk(false);
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+            throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                // 缓冲区满时要等到还有数据才能确定不是最后一块
+                if (length == buffer.length) {
+                    writeChunk(false);
+                }
+                int copyLength = Math.min(len, buffer.length - length);
+                System.arraycopy(b, off, buffer, length, copyLength);
+                length += copyLength;
+                off += copyLength;
+                len -= copyLength;
+            }
+        }
+
+        @Override
+        public void flush()
+            throws IOException {
+            output.flush();
+        }
+
+        @Override
+        public void close()
+            throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeChunk(true);
+                output.close();
+            } finally {
+                macPool.release(mac);
+            }
+        }
+
+        private void writeChunk(boolean last)
+            throws IOException {
+            computeTag(mac, header, index, last, buffer, length, tag);
+            output.write(buffer, 0, length);
+            output.write(tag);
+            index++;
+            length = 0;
+        }
+
+        private void ensureOpen()
+            throws IOException {
+            if (closed) {
+                throw new IOException(RBMF.get("流已关闭"));
+            }
+        }
+    }
+
+    /**
+     * 验证消息认证码的输入流。
+     */
+    @NotThreadSafe
+    private static final class VerifyingStream
+        extends InputStream {
+        private final byte[] header;
+
+        private final InputStream input;
+
+        private final CryptoEnginePool<Mac> macPool;
+
+        private final Mac mac;
+
+        /**
+         * 一块数据和消息认证码。
+         */
+        private final byte[] buffer;
+
+        private final byte[] tag;
+
+        private final int tagLength;
+
+        private int position;
+
+        private int length;
+
+        private long index;
+
+        /**
+         * 为判断是否最后一块多读取的一个字节，-1 表示没有。
+         */
+        private int lookahead = -1;
+
+        private boolean finished;
+
+        private boolean closed;
+
+        VerifyingStream(ChunkedMac chunkedMac, byte[] header, InputStream input) {
+            this.header = header;
+            this.input = input;
+            this.macPool = CryptoEnginePool.ofMac(chunkedMac.algorithm);
+            this.mac = macPool.borrow();
+            CryptoMx.initMac(mac, chunkedMac.key);
+            this.tagLength = mac.getMacLength();
+            this.buffer = new byte[chunkedMac.chunkSize + tagLength];
+            this.tag = new byte[tagLength];
+        }
+
+        @Override
+        public int read()
+            throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int readLength = Math.min(len, length - position);
+            System.arraycopy(buffer, position, b, off, readLength);
+            position += readLength;
+            return readLength;
+        }
+
+        @Override
+        public int available() {
+            return length - position;
+        }
+
+        @Override
+        public void close()
+            throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            macPool.release(mac);
+            input.close();
+        }
+
+        /**
+         * 当前块已读完时验证下一块。
+         *
+         * @return 是否还有数据。
+         */
+        private boolean fill()
+            throws IOException {
+            if (closed) {
+                throw new IOException(RBMF.get("流已关闭"));
+            }
+            while (position == length) {
+                if (finished) {
+                    return false;
+                }
+                readChunk();
+            }
+            return true;
+        }
+
+        private void readChunk()
+            throws IOException {
+            int offset = 0;
+            if (lookahead >= 0) {
+                buffer[offset++] = (byte) lookahead;
+                lookahead = -1;
+            }
+            int readLength = offset + IOUtils.read(input, buffer, offset, buffer.length - offset);
+            boolean last = readLength < buffer.length;
+            if (!last) {
+                lookahead = input.read();
+                last = lookahead < 0;
+            }
+            if (readLength < tagLength) {
+                throw new IllegalArgumentException(RBMF.get("数据被截断"));
+            }
+            int dataLength = readLength - tagLength;
+            computeTag(mac, header, index, last, buffer, dataLength, tag);
+            if (!Arrays.constantTimeAreEqual(tagLength, tag, 0, buffer, dataLength)) {
+                throw new IllegalArgumentException(RBMF.format("第 {0} 块消息认证码验证失败", index));
+            }
+            position = 0;
+            length = dataLength;
+            index++;
+            finished = last;
+        }
+    }
+
+    /**
+     * 分块消息认证码构建器。
+     */
+    public static final class Builder {
+        /**
+         * 消息认证码算法名称。
+         */
+        private String algorithm;
+
+        /**
+         * 秘钥。
+         */
+        private SecretKey key;
+
+        /**
+         * 分块长度。
+         */
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        /**
+         * 随机数生成器算法实例。
+         */
+        private SecureRandom secureRandom;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置秘钥。
+         *
+         * @param keyData
+         *     秘钥。
+         * @return 分块消息认证码构建器。
+         */
+        @Nonnull
+        public Builder setKey(@Nonnull byte[] keyData) {
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm);
+            return this;
+        }
+
+        /**
+         * 设置秘钥。
+         *
+         * @param key
+         *     秘钥。
+         * @return 分块消息认证码构建器。
+         */
+        @Nonnull
+        public Builder setKey(@Nonnull SecretKey key) {
+            this.key = key;
+            return this;
+        }
+
+        /**
+         * 设置分块长度，写入头部，验证时头部中的分块长度必须与此长度相同，计算和验证双方需要设置相同的分块长度。
+         *
+         * @param chunkSize
+         *     分块长度。
+         * @return 分块消息认证码构建器。
+         */
+        @Nonnull
+        public Builder setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * 设置生成流标识的随机数生成器算法实例，默认使用 {@link ThreadLocalSecureRandom}。
+         *
+         * @param secureRandom
+         *     随机数生成器算法实例。
+         * @return 分块消息认证码构建器。
+         */
+        @Nonnull
+        public Builder setSecureRandom(@Nonnull SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+            return this;
+        }
+
+        /**
+         * 构建分块消息认证码。
+         *
+         * @return 分块消息认证码。
+         */
+        @Nonnull
+        public ChunkedMac build() {
+            if (key == null) {
+                throw new IllegalArgumentException(RBMF.get("未设置秘钥"));
+            }
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IllegalArgumentException(RBMF.format("无效的分块长度 {0}", chunkSize));
+            }
+            if (secureRandom == null) {
+                secureRandom = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL);
+            }
+            return new ChunkedMac(this);
+        }
+    }
+}
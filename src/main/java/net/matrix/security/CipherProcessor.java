@@ -0,0 +1,294 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 加解密处理阶段，使用已初始化的加密算法实例逐个转换上游的数据块，上游完成时输出最后的数据块。
+ * 每个输入数据块最多产生一个输出数据块，下游的请求数量直接转发给上游；输入数据块没有产生输出时再向上游请求一个，保持背压。
+ * 输出数据块按 {@link Cipher#getOutputSize(int)} 分配，输入为直接缓冲区时输出也使用直接缓冲区，不经过中间字节数组。
+ * 只支持一个下游订阅者，加密算法实例由本实例独占使用。
+ */
+@ThreadSafe
+public final class CipherProcessor
+    implements Flow.Processor<ByteBuffer, ByteBuffer> {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(CipherProcessor.class).useCurrentLocale();
+
+    /**
+     * 空数据块。
+     */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * 加密算法实例。
+     */
+    private final Cipher cipher;
+
+    /**
+     * 状态锁。
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 下游未满足的请求数量。
+     */
+    private final AtomicLong demand = new AtomicLong();
+
+    /**
+     * 上游订阅，在锁内设置，{@link #onNext(ByteBuffer)} 不加锁读取。
+     */
+    private volatile Flow.Subscription upstream;
+
+    /**
+     * 下游订阅者，在锁内设置，{@link #onNext(ByteBuffer)} 不加锁读取。
+     */
+    private volatile Flow.Subscriber<? super ByteBuffer> downstream;
+
+    /**
+     * 上游订阅前下游的请求数量。
+     */
+    private long pendingRequest;
+
+    /**
+     * 上游完成时输出的最后数据块。
+     */
+    private ByteBuffer finalOutput;
+
+    /**
+     * 下游订阅前上游的失败原因。
+     */
+    private Throwable pendingError;
+
+    /**
+     * 是否已结束，已向下游发出完成或失败信号，或者下游已取消。
+     */
+    private volatile boolean done;
+
+    /**
+     * 构造加解密处理阶段。
+     *
+     * @param cipher
+     *     已初始化的加密算法实例。
+     */
+    public CipherProcessor(@Nonnull Cipher cipher) {
+        this.cipher = cipher;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Throwable error;
+        synchronized (lock) {
+            if (downstream != null) {
+                subscriber.onSubscribe(new CancelledSubscription());
+                subscriber.onError(new IllegalStateException(RBMF.get("只支持一个下游订阅者")));
+                return;
+            }
+            downstream = subscriber;
+            error = pendingError;
+            if (error != null) {
+                done = true;
+            }
+        }
+        subscriber.onSubscribe(new Subscription());
+        if (error != null) {
+            subscriber.onError(error);
+            return;
+        }
+        tryComplete();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        long request;
+        synchronized (lock) {
+            if (upstream != null || done) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            request = pendingRequest;
+            pendingRequest = 0;
+        }
+        if (request > 0) {
+            subscription.request(request);
+        }
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        if (done) {
+            return;
+        }
+        ByteBuffer output;
+        try {
+            output = allocate(cipher.getOutputSize(item.remaining()), item.isDirect());
+            cipher.update(item, output);
+        } catch (ShortBufferException e) {
+            fail(new IllegalArgumentException(e));
+            return;
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        output.flip();
+        if (output.hasRemaining()) {
+            demand.decrementAndGet();
+            downstream.onNext(output);
+        } else {
+            upstream.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Flow.Subscriber<? super ByteBuffer> subscriber;
+        synchronized (lock) {
+            if (done) {
+                return;
+            }
+            subscriber = downstream;
+            if (subscriber == null) {
+                pendingError = throwable;
+                return;
+            }
+            done = true;
+        }
+        subscriber.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        ByteBuffer output;
+        try {
+            output = allocate(cipher.getOutputSize(0), false);
+            cipher.doFinal(EMPTY.duplicate(), output);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            fail(new IllegalArgumentException(e));
+            return;
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        output.flip();
+        synchronized (lock) {
+            finalOutput = output;
+        }
+        tryComplete();
+    }
+
+    /**
+     * 上游已完成、下游已订阅且有请求时，输出最后的数据块并发出完成信号。
+     */
+    private void tryComplete() {
+        Flow.Subscriber<? super ByteBuffer> subscriber;
+        ByteBuffer output;
+        synchronized (lock) {
+            if (done || finalOutput == null || downstream == null) {
+                return;
+            }
+            if (finalOutput.hasRemaining() && demand.get() <= 0) {
+                return;
+            }
+            done = true;
+            subscriber = downstream;
+            output = finalOutput;
+        }
+        if (output.hasRemaining()) {
+            demand.decrementAndGet();
+            subscriber.onNext(output);
+        }
+        subscriber.onComplete();
+    }
+
+    /**
+     * 取消上游订阅并向下游发出失败信号。
+     *
+     * @param throwable
+     *     失败原因。
+     */
+    private void fail(Throwable throwable) {
+        Flow.Subscription subscription;
+        synchronized (lock) {
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        onError(throwable);
+    }
+
+    private static ByteBuffer allocate(int size, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * 提供给下游的订阅。
+     */
+    private final class Subscription
+        implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException(Long.toString(n)));
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            Flow.Subscription subscription;
+            synchronized (lock) {
+                subscription = upstream;
+                if (subscription == null) {
+                    pendingRequest = pendingRequest + n < 0 ? Long.MAX_VALUE : pendingRequest + n;
+                }
+            }
+            if (subscription != null) {
+                subscription.request(n);
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription subscription;
+            synchronized (lock) {
+                done = true;
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * 拒绝重复订阅时提供的订阅。
+     */
+    private static final class CancelledSubscription
+        implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            // 已拒绝订阅
+        }
+
+        @Override
+        public void cancel() {
+            // 已拒绝订阅
+        }
+    }
+}
@@ -0,0 +1,704 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.io.IOUtils;
+
+import net.matrix.data.convert.BinaryStringConverter;
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 本地内容寻址存储，按摘要保存数据，相同内容只保存一次。
+ * 数据按 FastCDC 内容定义分块切分，每个分块按分块摘要保存为一个文件，重复或少量修改的大数据只保存变化的分块。
+ * 每个数据的索引按数据摘要保存为一个文件，记录数据长度和各分块摘要，所有分块写入后才写入索引，读取时按分块摘要校验内容，读取到结尾时校验数据长度和数据摘要。
+ * 目录结构为 chunks、blobs 两个子目录，按摘要十六进制的前两个字符分目录；写入时先写入 tmp 子目录中的临时文件并同步到磁盘，再移动到目标位置，多个实例可以同时写入同一目录。
+ * 分块已存在时校验长度和摘要，内容不符时重新写入。
+ */
+@ThreadSafe
+public final class ContentAddressedStore {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(ContentAddressedStore.class).useCurrentLocale();
+
+    /**
+     * 默认最小分块长度。
+     */
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 2 * 1024;
+
+    /**
+     * 默认平均分块长度。
+     */
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * 默认最大分块长度。
+     */
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 索引格式版本。
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * 根目录。
+     */
+    private final Path root;
+
+    /**
+     * 摘要算法。
+     */
+    private final CryptoAlgorithm.Digest algorithm;
+
+    /**
+     * 内容定义分块。
+     */
+    private final FastCdcChunker chunker;
+
+    /**
+     * 写入的分块数量。
+     */
+    private final LongAdder chunkCount = new LongAdder();
+
+    /**
+     * 写入的分块字节数。
+     */
+    private final LongAdder chunkBytes = new LongAdder();
+
+    /**
+     * 已存在而跳过的分块数量。
+     */
+    private final LongAdder duplicateChunkCount = new LongAdder();
+
+    /**
+     * 已存在而跳过的分块字节数。
+     */
+    private final LongAdder duplicateChunkBytes = new LongAdder();
+
+    /**
+     * 构造内容寻址存储。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private ContentAddressedStore(Builder builder) {
+        this.root = builder.root;
+        this.algorithm = builder.algorithm;
+        this.chunker = new FastCdcChunker(builder.minChunkSize, builder.averageChunkSize, builder.maxChunkSize);
+    }
+
+    /**
+     * 根目录。
+     *
+     * @return 根目录。
+     */
+    @Nonnull
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 摘要算法。
+     *
+     * @return 摘要算法。
+     */
+    @Nonnull
+    public CryptoAlgorithm.Digest getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 保存数据。
+     *
+     * @param data
+     *     数据，读取到结尾，不会被关闭。
+     * @return 数据摘要的十六进制字符串，作为数据标识。
+     * @throws IOException
+     *     读取数据或写入文件失败。
+     */
+    @Nonnull
+    public String put(@Nonnull InputStream data)
+        throws IOException {
+        MessageDigest blobDigest = CryptoMx.getMessageDigest(algorithm);
+        MessageDigest chunkDigest = CryptoMx.getMessageDigest(algorithm);
+        List<byte[]> chunkIds = new ArrayList<>();
+        long length = 0;
+        byte[] buffer = new byte[chunker.getMaxSize()];
+        int bufferLength = 0;
+        boolean eof = false;
+        while (true) {
+            if (!eof) {
+                int readLength = IOUtils.read(data, buffer, bufferLength, buffer.length - bufferLength);
+                bufferLength += readLength;
+                eof = bufferLength < buffer.length;
+            }
+            if (bufferLength == 0) {
+                break;
+            }
+            int chunkLength = chunker.cut(buffer, 0, bufferLength);
+            blobDigest.update(buffer, 0, chunkLength);
+            chunkDigest.update(buffer, 0, chunkLength);
+            byte[] chunkId = chunkDigest.digest();
+            writeChunk(chunkId, buffer, chunkLength, chunkDigest);
+            chunkIds.add(chunkId);
+            length += chunkLength;
+            System.arraycopy(buffer, chunkLength, buffer, 0, bufferLength - chunkLength);
+            bufferLength -= chunkLength;
+        }
+        String blobId = BinaryStringConverter.HEX.toString(blobDigest.digest());
+        Path blobPath = path("blobs", blobId);
+        if (Files.notExists(blobPath)) {
+            writeIndex(blobPath, length, chunkIds);
+        }
+        return blobId;
+    }
+
+    /**
+     * 保存文件。
+     *
+     * @param file
+     *     文件。
+     * @return 数据摘要的十六进制字符串，作为数据标识。
+     * @throws IOException
+     *     读取文件或写入文件失败。
+     */
+    @Nonnull
+    public String put(@Nonnull Path file)
+        throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return put(input);
+        }
+    }
+
+    /**
+     * 判断数据是否存在。
+     *
+     * @param blobId
+     *     数据标识。
+     * @return 是否存在。
+     */
+    public boolean contains(@Nonnull String blobId) {
+        return Files.exists(path("blobs", blobId));
+    }
+
+    /**
+     * 读取数据长度。
+     *
+     * @param blobId
+     *     数据标识。
+     * @return 数据长度。
+     * @throws IOException
+     *     数据不存在或者读取索引失败。
+     */
+    public long getLength(@Nonnull String blobId)
+        throws IOException {
+        try (DataInputStream input = openIndex(blobId)) {
+            return input.readLong();
+        }
+    }
+
+    /**
+     * 读取数据，按分块依次读取并校验分块摘要，读取到结尾时校验数据长度和数据摘要。
+     *
+     * @param blobId
+     *     数据标识。
+     * @return 数据，由调用者关闭。
+     * @throws IOException
+     *     数据不存在或者读取索引失败。读取分块失败、分块内容与摘要不符或者数据与数据标识不符时，返回的数据读取时抛出异常。
+     */
+    @Nonnull
+    public InputStream get(@Nonnull String blobId)
+        throws IOException {
+        long length;
+        List<byte[]> chunkIds;
+        try (DataInputStream input = openIndex(blobId)) {
+            length = input.readLong();
+            int count = input.readInt();
+            int digestLength = CryptoMx.getMessageDigest(algorithm).getDigestLength();
+            // 分块数量必须与索引文件长度一致，避免按损坏的数量分配内存
+            long indexLength = Files.size(path("blobs", blobId));
+            if (length < 0 || count < 0 || (long) count * digestLength != indexLength - getIndexHeaderLength()) {
+                throw new IOException(RBMF.format("无效的数据索引 {0}", blobId));
+            }
+            chunkIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] chunkId = new byte[digestLength];
+                input.readFully(chunkId);
+                chunkIds.add(chunkId);
+            }
+        }
+        return new BlobInputStream(blobId, length, chunkIds);
+    }
+
+    /**
+     * 当前统计。
+     *
+     * @return 当前统计。
+     */
+    @Nonnull
+    public Stats stats() {
+        return new Stats(this);
+    }
+
+    /**
+     * 写入分块，分块已存在且长度和摘要一致时跳过，不一致时替换。
+     */
+    private void writeChunk(byte[] chunkId, byte[] data, int length, MessageDigest digest)
+        throws IOException {
+        Path chunkPath = path("chunks", BinaryStringConverter.HEX.toString(chunkId));
+        boolean exists = Files.exists(chunkPath);
+        if (exists && isValidChunk(chunkPath, chunkId, length, digest)) {
+            duplicateChunkCount.increment();
+            duplicateChunkBytes.add(length);
+            return;
+        }
+        Path tempPath = createTempFile();
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            if (exists) {
+                Files.move(tempPath, chunkPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                move(tempPath, chunkPath);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        chunkCount.increment();
+        chunkBytes.add(length);
+    }
+
+    /**
+     * 校验已存在分块的长度和摘要。
+     */
+    private static boolean isValidChunk(Path chunkPath, byte[] chunkId, int length, MessageDigest digest) {
+        try {
+            if (Files.size(chunkPath) != length) {
+                return false;
+            }
+            return MessageDigest.isEqual(chunkId, digest.digest(Files.readAllBytes(chunkPath)));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 写入索引。
+     */
+    private void writeIndex(Path blobPath, long length, List<byte[]> chunkIds)
+        throws IOException {
+        Path tempPath = createTempFile();
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            byte[] name = algorithm.algorithm.getBytes(StandardCharsets.US_ASCII);
+            output.writeByte(VERSION);
+            output.writeByte(name.length);
+            output.write(name);
+            output.writeLong(length);
+            output.writeInt(chunkIds.size());
+            for (byte[] chunkId : chunkIds) {
+                output.write(chunkId);
+            }
+            output.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        move(tempPath, blobPath);
+    }
+
+    /**
+     * 打开索引并校验版本和算法，读取位置在数据长度之前。
+     */
+    private DataInputStream openIndex(String blobId)
+        throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path("blobs", blobId))));
+        try {
+            int version = input.readUnsignedByte();
+            byte[] name = new byte[input.readUnsignedByte()];
+            input.readFully(name);
+            if (version != VERSION || !algorithm.algorithm.equals(new String(name, StandardCharsets.US_ASCII))) {
+                throw new IOException(RBMF.format("无效的数据索引 {0}", blobId));
+            }
+            return input;
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 索引中分块摘要之前的长度，包括版本、算法名称、数据长度和分块数量。
+     */
+    private int getIndexHeaderLength() {
+        return 2 + algorithm.algorithm.getBytes(StandardCharsets.US_ASCII).length + Long.BYTES + Integer.BYTES;
+    }
+
+    private Path createTempFile()
+        throws IOException {
+        Path tempDir = root.resolve("tmp");
+        Files.createDirectories(tempDir);
+        return Files.createTempFile(tempDir, null, null);
+    }
+
+    /**
+     * 移动临时文件到目标位置，目标已存在时内容相同，删除临时文件。
+     */
+    private static void move(Path source, Path target)
+        throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    /**
+     * 按摘要十六进制字符串计算文件路径。
+     */
+    private Path path(String type, String id) {
+        try {
+            BinaryStringConverter.HEX.toBinary(id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(RBMF.format("无效的数据标识 {0}", id), e);
+        }
+        if (id.length() < 3) {
+            throw new IllegalArgumentException(RBMF.format("无效的数据标识 {0}", id));
+        }
+        return root.resolve(type).resolve(id.substring(0, 2)).resolve(id.substring(2));
+    }
+
+    /**
+     * 构造内容寻址存储构建器。
+     *
+     * @param root
+     *     根目录。
+     * @return 内容寻址存储构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull Path root) {
+        Builder builder = new Builder();
+        builder.root = root;
+        return builder;
+    }
+
+    /**
+     * 按分块依次读取数据。
+     */
+    private final class BlobInputStream
+        extends InputStream {
+        /**
+         * 数据标识。
+         */
+        private final String blobId;
+
+        /**
+         * 索引记录的数据长度。
+         */
+        private final long length;
+
+        /**
+         * 分块摘要。
+         */
+        private final List<byte[]> chunkIds;
+
+        /**
+         * 校验分块的摘要算法实例。
+         */
+        private final MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+
+        /**
+         * 校验数据的摘要算法实例。
+         */
+        private final MessageDigest blobDigest = CryptoMx.getMessageDigest(algorithm);
+
+        /**
+         * 已读取的分块总长度。
+         */
+        private long readLength;
+
+        /**
+         * 是否已校验数据长度和数据摘要。
+         */
+        private boolean verified;
+
+        /**
+         * 下一个分块序号。
+         */
+        private int nextChunk;
+
+        /**
+         * 当前分块内容。
+         */
+        private byte[] chunk = new byte[0];
+
+        /**
+         * 当前分块读取位置。
+         */
+        private int position;
+
+        BlobInputStream(String blobId, long length, List<byte[]> chunkIds) {
+            this.blobId = blobId;
+            this.length = length;
+            this.chunkIds = chunkIds;
+        }
+
+        @Override
+        public int read()
+            throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int readLength = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, readLength);
+            position += readLength;
+            return readLength;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        /**
+         * 当前分块读完时读取下一个分块。
+         *
+         * @return 是否还有数据。
+         */
+        private boolean fill()
+            throws IOException {
+            while (position == chunk.length) {
+                if (nextChunk == chunkIds.size()) {
+                    verify();
+                    return false;
+                }
+                byte[] chunkId = chunkIds.get(nextChunk++);
+                String id = BinaryStringConverter.HEX.toString(chunkId);
+                try {
+                    chunk = Files.readAllBytes(path("chunks", id));
+                } catch (NoSuchFileException e) {
+                    throw new IOException(RBMF.format("数据分块 {0} 不存在", id), e);
+                }
+                position = 0;
+                if (!MessageDigest.isEqual(chunkId, digest.digest(chunk))) {
+                    throw new IOException(RBMF.format("数据分块 {0} 已损坏", id));
+                }
+                blobDigest.update(chunk);
+                readLength += chunk.length;
+            }
+            return true;
+        }
+
+        /**
+         * 读取到结尾时校验数据长度和数据摘要。
+         */
+        private void verify()
+            throws IOException {
+            if (verified) {
+                return;
+            }
+            if (readLength != length || !MessageDigest.isEqual(BinaryStringConverter.HEX.toBinary(blobId), blobDigest.digest())) {
+                throw new IOException(RBMF.format("数据 {0} 已损坏", blobId));
+            }
+            verified = true;
+        }
+    }
+
+    /**
+     * 内容寻址存储统计信息，从实例构造开始统计。
+     */
+    @Immutable
+    public static final class Stats {
+        /**
+         * 写入的分块数量。
+         */
+        private final long chunkCount;
+
+        /**
+         * 写入的分块字节数。
+         */
+        private final long chunkBytes;
+
+        /**
+         * 已存在而跳过的分块数量。
+         */
+        private final long duplicateChunkCount;
+
+        /**
+         * 已存在而跳过的分块字节数。
+         */
+        private final long duplicateChunkBytes;
+
+        /**
+         * 读取内容寻址存储的当前统计。
+         */
+        Stats(ContentAddressedStore store) {
+            this.chunkCount = store.chunkCount.sum();
+            this.chunkBytes = store.chunkBytes.sum();
+            this.duplicateChunkCount = store.duplicateChunkCount.sum();
+            this.duplicateChunkBytes = store.duplicateChunkBytes.sum();
+        }
+
+        /**
+         * 写入的分块数量。
+         *
+         * @return 分块数量。
+         */
+        public long getChunkCount() {
+            return chunkCount;
+        }
+
+        /**
+         * 写入的分块字节数。
+         *
+         * @return 字节数。
+         */
+        public long getChunkBytes() {
+            return chunkBytes;
+        }
+
+        /**
+         * 已存在而跳过的分块数量。
+         *
+         * @return 分块数量。
+         */
+        public long getDuplicateChunkCount() {
+            return duplicateChunkCount;
+        }
+
+        /**
+         * 已存在而跳过的分块字节数。
+         *
+         * @return 字节数。
+         */
+        public long getDuplicateChunkBytes() {
+            return duplicateChunkBytes;
+        }
+    }
+
+    /**
+     * 内容寻址存储构建器。
+     */
+    public static final class Builder {
+        /**
+         * 根目录。
+         */
+        private Path root;
+
+        /**
+         * 摘要算法。
+         */
+        private CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.SHA_256;
+
+        /**
+         * 最小分块长度。
+         */
+        private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+        /**
+         * 平均分块长度。
+         */
+        private int averageChunkSize = DEFAULT_AVERAGE_CHUNK_SIZE;
+
+        /**
+         * 最大分块长度。
+         */
+        private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置摘要算法，默认为 SHA-256，同一目录必须使用相同的摘要算法。
+         *
+         * @param algorithm
+         *     摘要算法。
+         * @return 内容寻址存储构建器。
+         */
+        @Nonnull
+        public Builder setAlgorithm(@Nonnull CryptoAlgorithm.Digest algorithm) {
+            this.algorithm = algorithm;
+            return this;
+        }
+
+        /**
+         * 设置分块长度，平均分块长度必须是 2 的幂，同一目录改变分块长度后相同内容不再能共享分块。
+         *
+         * @param minChunkSize
+         *     最小分块长度。
+         * @param averageChunkSize
+         *     平均分块长度。
+         * @param maxChunkSize
+         *     最大分块长度。
+         * @return 内容寻址存储构建器。
+         */
+        @Nonnull
+        public Builder setChunkSize(int minChunkSize, int averageChunkSize, int maxChunkSize) {
+            this.minChunkSize = minChunkSize;
+            this.averageChunkSize = averageChunkSize;
+            this.maxChunkSize = maxChunkSize;
+            return this;
+        }
+
+        /**
+         * 构建内容寻址存储。
+         *
+         * @return 内容寻址存储。
+         */
+        @Nonnull
+        public ContentAddressedStore build() {
+            return new ContentAddressedStore(this);
+        }
+    }
+}
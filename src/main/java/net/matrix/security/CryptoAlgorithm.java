@@ -23,7 +23,9 @@ public class CryptoAlgorithm {
 
         DEFAULT(CryptoConstant.DEFAULT),
 
-        NONCE_AND_IV(CryptoConstant.NONCE_AND_IV);
+        NONCE_AND_IV(CryptoConstant.NONCE_AND_IV),
+
+        THREAD_LOCAL(CryptoConstant.THREAD_LOCAL);
 
         private static final Map<String, Random> CODE_MAP = EnumMx.buildValueMap(Random.class, v -> v.algorithm);
 
@@ -138,6 +140,10 @@ public class CryptoAlgorithm {
 
         AES_CBC_PKCS5PADDING(CryptoConstant.AES, CryptoConstant.AES_CBC_PKCS5PADDING),
 
+        AES_GCM_NOPADDING(CryptoConstant.AES, CryptoConstant.AES_GCM_NOPADDING),
+
+        AES_CCM_NOPADDING(CryptoConstant.AES, CryptoConstant.AES_CCM_NOPADDING),
+
         /**
          * 密钥长度 16 字节。
          */
@@ -151,7 +157,16 @@ public class CryptoAlgorithm {
 
         SM4_CBC_ZEROBYTEPADDING(CryptoConstant.SM4, CryptoConstant.SM4_CBC_ZEROBYTEPADDING),
 
-        SM4_CBC_PKCS5PADDING(CryptoConstant.SM4, CryptoConstant.SM4_CBC_PKCS5PADDING);
+        SM4_CBC_PKCS5PADDING(CryptoConstant.SM4, CryptoConstant.SM4_CBC_PKCS5PADDING),
+
+        SM4_GCM_NOPADDING(CryptoConstant.SM4, CryptoConstant.SM4_GCM_NOPADDING),
+
+        SM4_CCM_NOPADDING(CryptoConstant.SM4, CryptoConstant.SM4_CCM_NOPADDING),
+
+        /**
+         * 密钥长度 32 字节。
+         */
+        CHACHA20_POLY1305(CryptoConstant.CHACHA20, CryptoConstant.CHACHA20_POLY1305);
 
         private static final Map<String, Symmetric> CODE_MAP = EnumMx.buildValueMap(Symmetric.class, v -> v.transformation);
 
@@ -333,4 +348,46 @@ public class CryptoAlgorithm {
             return CODE_MAP.get(code);
         }
     }
+
+    /**
+     * 口令哈希算法，名称为 PHC 字符串格式中的算法标识。
+     */
+    public enum PasswordHash {
+        /**
+         * PBKDF2 和 HMAC-SHA-256。
+         */
+        PBKDF2_SHA_256(CryptoConstant.PBKDF2_SHA_256),
+
+        /**
+         * scrypt。
+         */
+        SCRYPT(CryptoConstant.SCRYPT),
+
+        /**
+         * Argon2id。
+         */
+        ARGON2ID(CryptoConstant.ARGON2ID);
+
+        private static final Map<String, PasswordHash> CODE_MAP = EnumMx.buildValueMap(PasswordHash.class, v -> v.algorithm);
+
+        /**
+         * 算法名称。
+         */
+        public final String algorithm;
+
+        PasswordHash(String algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * 算法名称转换为枚举值。
+         *
+         * @param code
+         *     算法名称。
+         * @return 枚举值。
+         */
+        public static PasswordHash forCode(String code) {
+            return CODE_MAP.get(code);
+        }
+    }
 }
@@ -0,0 +1,460 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * 流式处理缓冲区池，每个线程保留少量缓冲区供流式摘要、加密、消息认证码、签名复用，避免每次调用分配新缓冲区。
+ * 借出的缓冲区由借用者独占使用，归还时清除内容，同一线程嵌套借用时分配新缓冲区。
+ * 缓冲区长度根据流类型选择，开启自动调整时，处理数据量远大于缓冲区的线程逐步增大缓冲区，直到最大长度，处理数据量远小于缓冲区时逐步减小。
+ * 只保留不超过最大保留长度的缓冲区，每个线程保留的内存不超过最大保留长度的两倍，更大的缓冲区每次分配。
+ * 虚拟线程通常只执行一个任务，线程保留的缓冲区无法复用，因此虚拟线程从所有线程共享的少量缓冲区中借用，不自动调整缓冲区长度。
+ */
+@ThreadSafe
+public final class CryptoBufferPool {
+    /**
+     * 默认缓冲区长度。
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * 默认最大缓冲区长度。
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 文件流使用的最小缓冲区长度。
+     */
+    public static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 默认最大保留长度。
+     */
+    public static final int DEFAULT_MAX_RETAINED_SIZE = 64 * 1024;
+
+    /**
+     * 每个线程保留的缓冲区数量，满足加密时同时使用输入和输出缓冲区。
+     */
+    private static final int SLOT_COUNT = 2;
+
+    /**
+     * 处理数据量达到缓冲区长度的倍数时增大缓冲区，缓冲区长度达到处理数据量的倍数时减小缓冲区。
+     */
+    private static final int GROW_FACTOR = 8;
+
+    /**
+     * 虚拟线程共享的缓冲区数量。
+     */
+    private static final int SHARED_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 判断线程是否虚拟线程的方法，运行环境不支持虚拟线程时为 null。
+     */
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    /**
+     * 默认实例。
+     */
+    private static volatile CryptoBufferPool defaultInstance = newBuilder().build();
+
+    /**
+     * 缓冲区长度。
+     */
+    private final int bufferSize;
+
+    /**
+     * 最大缓冲区长度。
+     */
+    private final int maxBufferSize;
+
+    /**
+     * 最大保留长度。
+     */
+    private final int maxRetainedSize;
+
+    /**
+     * 是否自动调整缓冲区长度。
+     */
+    private final boolean autoTuning;
+
+    /**
+     * 自动调整时的最大缓冲区长度，不超过最大保留长度，使调整后的缓冲区归还时能够保留。
+     */
+    private final int maxTunedSize;
+
+    /**
+     * 各线程保留的缓冲区。
+     */
+    private final ThreadLocal<Slots> slots;
+
+    /**
+     * 虚拟线程共享的空闲缓冲区。
+     */
+    private final Queue<byte[]> sharedBuffers = new ArrayBlockingQueue<>(SHARED_COUNT);
+
+    /**
+     * 构造流式处理缓冲区池。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private CryptoBufferPool(Builder builder) {
+        this.bufferSize = builder.bufferSize;
+        this.maxBufferSize = builder.maxBufferSize;
+        this.maxRetainedSize = builder.maxRetainedSize;
+        this.autoTuning = builder.autoTuning;
+        this.maxTunedSize = Math.max(bufferSize, Math.min(maxBufferSize, maxRetainedSize));
+        this.slots = ThreadLocal.withInitial(() -> new Slots(bufferSize));
+    }
+
+    /**
+     * 获取默认实例。
+     *
+     * @return 默认实例。
+     */
+    @Nonnull
+    public static CryptoBufferPool getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 设置默认实例，用于调整缓冲区长度。
+     *
+     * @param pool
+     *     默认实例。
+     */
+    public static void setDefault(@Nonnull CryptoBufferPool pool) {
+        defaultInstance = pool;
+    }
+
+    /**
+     * 缓冲区长度。
+     *
+     * @return 缓冲区长度。
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 最大缓冲区长度。
+     *
+     * @return 最大缓冲区长度。
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * 最大保留长度。
+     *
+     * @return 最大保留长度。
+     */
+    public int getMaxRetainedSize() {
+        return maxRetainedSize;
+    }
+
+    /**
+     * 是否自动调整缓冲区长度。
+     *
+     * @return 是否自动调整。
+     */
+    public boolean isAutoTuning() {
+        return autoTuning;
+    }
+
+    /**
+     * 计算读取输入流使用的缓冲区长度。
+     * 文件流至少使用 {@link #FILE_BUFFER_SIZE}，字节数组流不超过剩余数据长度，其它流使用当前线程的缓冲区长度。
+     *
+     * @param input
+     *     输入流。
+     * @return 缓冲区长度。
+     */
+    public int getBufferSize(@Nonnull InputStream input) {
+        int size = isVirtualThread() ? bufferSize : slots.get().preferredSize;
+        if (input instanceof FileInputStream) {
+            size = Math.max(size, Math.min(FILE_BUFFER_SIZE, maxBufferSize));
+        } else if (input instanceof ByteArrayInputStream byteArrayInput) {
+            size = Math.min(size, Math.max(byteArrayInput.available(), 1));
+        }
+        return size;
+    }
+
+    /**
+     * 借出读取输入流使用的缓冲区。
+     *
+     * @param input
+     *     输入流。
+     * @return 缓冲区，长度可能大于 {@link #getBufferSize(InputStream)}。
+     */
+    @Nonnull
+    public byte[] borrow(@Nonnull InputStream input) {
+        return borrow(getBufferSize(input));
+    }
+
+    /**
+     * 借出缓冲区。
+     *
+     * @param minSize
+     *     最小长度。
+     * @return 缓冲区，长度可能大于最小长度。
+     */
+    @Nonnull
+    public byte[] borrow(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (isVirtualThread()) {
+            byte[] buffer = sharedBuffers.poll();
+            if (buffer != null && buffer.length >= minSize) {
+                return buffer;
+            }
+            if (buffer != null) {
+                sharedBuffers.offer(buffer);
+            }
+            return new byte[minSize];
+        }
+        byte[][] buffers = slots.get().buffers;
+        int index = -1;
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null && buffers[i].length >= minSize && (index < 0 || buffers[i].length < buffers[index].length)) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return new byte[minSize];
+        }
+        byte[] buffer = buffers[index];
+        buffers[index] = null;
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区。
+     *
+     * @param buffer
+     *     缓冲区。
+     */
+    public void release(@Nonnull byte[] buffer) {
+        Arrays.fill(buffer, (byte) 0);
+        if (buffer.length > maxRetainedSize) {
+            return;
+        }
+        if (isVirtualThread()) {
+            sharedBuffers.offer(buffer);
+            return;
+        }
+        byte[][] buffers = slots.get().buffers;
+        int index = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] == null) {
+                index = i;
+                break;
+            }
+            if (buffers[i].length < buffers[index].length) {
+                index = i;
+            }
+        }
+        if (buffers[index] == null || buffers[index].length < buffer.length) {
+            buffers[index] = buffer;
+        }
+    }
+
+    /**
+     * 归还读取输入流使用的缓冲区，并根据处理数据量增大或减小当前线程的缓冲区长度，不小于初始缓冲区长度，不超过最大缓冲区长度和最大保留长度。
+     *
+     * @param buffer
+     *     缓冲区。
+     * @param length
+     *     使用缓冲区处理的数据量。
+     */
+    public void release(@Nonnull byte[] buffer, long length) {
+        if (autoTuning && !isVirtualThread()) {
+            Slots threadSlots = slots.get();
+            if (length >= (long) buffer.length * GROW_FACTOR && buffer.length >= threadSlots.preferredSize) {
+                threadSlots.preferredSize = Math.min(maxTunedSize, Math.max(threadSlots.preferredSize, buffer.length) * 2);
+            } else if (length * GROW_FACTOR <= threadSlots.preferredSize && threadSlots.preferredSize > bufferSize) {
+                threadSlots.preferredSize = Math.max(bufferSize, threadSlots.preferredSize / 2);
+            }
+        }
+        release(buffer);
+    }
+
+    /**
+     * 判断当前线程是否虚拟线程。
+     *
+     * @return 是否虚拟线程。
+     */
+    static boolean isVirtualThread() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * 查找判断线程是否虚拟线程的方法。
+     *
+     * @return 判断线程是否虚拟线程的方法，运行环境不支持虚拟线程时为 null。
+     */
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 获取构建器。
+     *
+     * @return 构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 线程保留的缓冲区。
+     */
+    @NotThreadSafe
+    private static final class Slots {
+        /**
+         * 空闲缓冲区，借出时置空。
+         */
+        private final byte[][] buffers = new byte[SLOT_COUNT][];
+
+        /**
+         * 当前线程的缓冲区长度。
+         */
+        private int preferredSize;
+
+        /**
+         * 构造线程保留的缓冲区。
+         *
+         * @param preferredSize
+         *     缓冲区长度。
+         */
+        Slots(int preferredSize) {
+            this.preferredSize = preferredSize;
+        }
+    }
+
+    /**
+     * 流式处理缓冲区池构建器。
+     */
+    @NotThreadSafe
+    public static final class Builder {
+        /**
+         * 缓冲区长度。
+         */
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+        /**
+         * 最大缓冲区长度。
+         */
+        private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+
+        /**
+         * 最大保留长度。
+         */
+        private int maxRetainedSize = DEFAULT_MAX_RETAINED_SIZE;
+
+        /**
+         * 是否自动调整缓冲区长度。
+         */
+        private boolean autoTuning = true;
+
+        /**
+         * 构造构建器。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置缓冲区长度。
+         *
+         * @param bufferSize
+         *     缓冲区长度。
+         * @return 此对象。
+         */
+        @Nonnull
+        public Builder setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * 设置最大缓冲区长度，自动调整时缓冲区不超过此长度和最大保留长度。
+         *
+         * @param maxBufferSize
+         *     最大缓冲区长度。
+         * @return 此对象。
+         */
+        @Nonnull
+        public Builder setMaxBufferSize(int maxBufferSize) {
+            this.maxBufferSize = maxBufferSize;
+            return this;
+        }
+
+        /**
+         * 设置最大保留长度，超过此长度的缓冲区归还时不保留。
+         *
+         * @param maxRetainedSize
+         *     最大保留长度。
+         * @return 此对象。
+         */
+        @Nonnull
+        public Builder setMaxRetainedSize(int maxRetainedSize) {
+            this.maxRetainedSize = maxRetainedSize;
+            return this;
+        }
+
+        /**
+         * 设置是否自动调整缓冲区长度。
+         *
+         * @param autoTuning
+         *     是否自动调整。
+         * @return 此对象。
+         */
+        @Nonnull
+        public Builder setAutoTuning(boolean autoTuning) {
+            this.autoTuning = autoTuning;
+            return this;
+        }
+
+        /**
+         * 构建流式处理缓冲区池。
+         *
+         * @return 流式处理缓冲区池。
+         */
+        @Nonnull
+        public CryptoBufferPool build() {
+            if (bufferSize <= 0 || maxBufferSize < bufferSize || maxRetainedSize < 0) {
+                throw new IllegalArgumentException(bufferSize + "/" + maxBufferSize + "/" + maxRetainedSize);
+            }
+            return new CryptoBufferPool(this);
+        }
+    }
+}
@@ -18,6 +18,8 @@ public final class CryptoConstant {
 
     public static final String NONCE_AND_IV = "NonceAndIV";
 
+    public static final String THREAD_LOCAL = "ThreadLocal";
+
     // 摘要算法
     public static final String MD5 = "MD5";
 
@@ -85,6 +87,10 @@ public final class CryptoConstant {
 
     public static final String AES_CBC_PKCS5PADDING = "AES/CBC/Pkcs5Padding";
 
+    public static final String AES_GCM_NOPADDING = "AES/GCM/NoPadding";
+
+    public static final String AES_CCM_NOPADDING = "AES/CCM/NoPadding";
+
     /**
      * 密钥长度 16 字节。
      */
@@ -102,6 +108,17 @@ public final class CryptoConstant {
 
     public static final String SM4_CBC_PKCS5PADDING = "SM4/CBC/Pkcs5Padding";
 
+    public static final String SM4_GCM_NOPADDING = "SM4/GCM/NoPadding";
+
+    public static final String SM4_CCM_NOPADDING = "SM4/CCM/NoPadding";
+
+    /**
+     * 密钥长度 32 字节。
+     */
+    public static final String CHACHA20 = "ChaCha20";
+
+    public static final String CHACHA20_POLY1305 = "ChaCha20-Poly1305";
+
     // 消息认证码算法
     public static final String HMAC_MD5 = "HmacMD5";
 
@@ -147,6 +164,13 @@ public final class CryptoConstant {
 
     public static final String SM3_SM2 = "SM3withSM2";
 
+    // 口令哈希算法
+    public static final String PBKDF2_SHA_256 = "pbkdf2-sha256";
+
+    public static final String SCRYPT = "scrypt";
+
+    public static final String ARGON2ID = "argon2id";
+
     /**
      * 阻止实例化。
      */
@@ -0,0 +1,605 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 加密算法实例池，复用摘要、消息认证码、加密、签名算法实例，避免每次获取实例时查找算法实现并创建新实例。
+ * 借出的实例由借用者独占使用，归还时重置状态。
+ * 消息认证码、加密、签名算法实例借出后必须重新初始化秘钥，共享池在归还时使用不公开的随机秘钥重新初始化这些实例，清除上一个借用者的秘钥，
+ * 未初始化就使用的借用者不会使用其他借用者的秘钥加密、签名或计算消息认证码；无法重新初始化的实例直接丢弃。
+ *
+ * @param <E>
+ *     算法实例类型。
+ */
+@ThreadSafe
+public final class CryptoEnginePool<E> {
+    /**
+     * 默认最大空闲实例数量。
+     */
+    public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 摘要算法实例池。
+     */
+    private static final Map<String, CryptoEnginePool<MessageDigest>> MESSAGE_DIGEST_POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * 消息认证码算法实例池。
+     */
+    private static final Map<String, CryptoEnginePool<Mac>> MAC_POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * 加密算法实例池。
+     */
+    private static final Map<String, CryptoEnginePool<Cipher>> CIPHER_POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * 签名算法实例池。
+     */
+    private static final Map<String, CryptoEnginePool<Signature>> SIGNATURE_POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(CryptoEnginePool.class).useCurrentLocale();
+
+    /**
+     * 清除消息认证码算法实例秘钥使用的随机秘钥，按算法名称缓存，不对外提供。
+     */
+    private static final Map<String, Key> SCRUB_MAC_KEYS = new ConcurrentHashMap<>();
+
+    /**
+     * 清除加密和签名算法实例秘钥使用的随机秘钥或公钥，按秘钥算法名称缓存，同一秘钥算法的加密和签名算法共用，不对外提供。
+     * 秘钥对在后台生成，避免首次归还时等待。
+     */
+    private static final Map<String, CompletableFuture<Key>> SCRUB_KEYS = new ConcurrentHashMap<>();
+
+    /**
+     * 算法名称。
+     */
+    private final String algorithm;
+
+    /**
+     * 创建算法实例。
+     */
+    private final Supplier<E> factory;
+
+    /**
+     * 重置算法实例状态。
+     */
+    private final Consumer<E> resetter;
+
+    /**
+     * 空闲实例。
+     */
+    private final Queue<E> idleEngines = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 空闲实例数量。
+     */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * 最大空闲实例数量。
+     */
+    private volatile int maxIdle;
+
+    /**
+     * 借出时命中空闲实例的次数。
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * 借出时创建新实例的次数。
+     */
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * 归还时因空闲实例已满而丢弃的次数。
+     */
+    private final LongAdder discardCount = new LongAdder();
+
+    /**
+     * 构造算法实例池。
+     *
+     * @param algorithm
+     *     算法名称。
+     * @param factory
+     *     创建算法实例。
+     * @param resetter
+     *     重置算法实例状态。
+     * @param maxIdle
+     *     最大空闲实例数量。
+     */
+    public CryptoEnginePool(@Nonnull String algorithm, @Nonnull Supplier<E> factory, @Nonnull Consumer<E> resetter, int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.algorithm = algorithm;
+        this.factory = factory;
+        this.resetter = resetter;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * 获取共享的摘要算法实例池。
+     *
+     * @param algorithm
+     *     算法名称。
+     * @return 摘要算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<MessageDigest> ofMessageDigest(@Nonnull String algorithm) {
+        return MESSAGE_DIGEST_POOLS.computeIfAbsent(algorithm,
+            key -> new CryptoEnginePool<>(algorithm, () -> CryptoMx.getMessageDigest(algorithm), MessageDigest::reset, DEFAULT_MAX_IDLE));
+    }
+
+    /**
+     * 获取共享的摘要算法实例池。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 摘要算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<MessageDigest> ofMessageDigest(@Nonnull CryptoAlgorithm.Digest algorithm) {
+        return ofMessageDigest(algorithm.algorithm);
+    }
+
+    /**
+     * 获取共享的消息认证码算法实例池。
+     *
+     * @param algorithm
+     *     算法名称。
+     * @return 消息认证码算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Mac> ofMac(@Nonnull String algorithm) {
+        return MAC_POOLS.computeIfAbsent(algorithm, key -> new CryptoEnginePool<>(algorithm, () -> CryptoMx.getMac(algorithm), CryptoEnginePool::scrubMac, DEFAULT_MAX_IDLE));
+    }
+
+    /**
+     * 获取共享的消息认证码算法实例池。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 消息认证码算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Mac> ofMac(@Nonnull CryptoAlgorithm.Mac algorithm) {
+        return ofMac(algorithm.algorithm);
+    }
+
+    /**
+     * 获取共享的加密算法实例池。
+     *
+     * @param transformation
+     *     算法变种名称。
+     * @return 加密算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Cipher> ofCipher(@Nonnull String transformation) {
+        return CIPHER_POOLS.computeIfAbsent(transformation, key -> {
+            CompletableFuture<Key> scrubKey = scrubKey(cipherKeyAlgorithm(transformation));
+            return new CryptoEnginePool<>(transformation, () -> CryptoMx.getCipher(transformation), cipher -> scrubCipher(cipher, scrubKey), DEFAULT_MAX_IDLE);
+        });
+    }
+
+    /**
+     * 获取共享的加密算法实例池。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 加密算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Cipher> ofCipher(@Nonnull CryptoAlgorithm.Symmetric algorithm) {
+        return ofCipher(algorithm.transformation);
+    }
+
+    /**
+     * 获取共享的加密算法实例池。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 加密算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Cipher> ofCipher(@Nonnull CryptoAlgorithm.Asymmetric algorithm) {
+        return ofCipher(algorithm.transformation);
+    }
+
+    /**
+     * 获取共享的签名算法实例池。
+     *
+     * @param signAlgorithm
+     *     签名算法名称。
+     * @return 签名算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Signature> ofSignature(@Nonnull String signAlgorithm) {
+        return SIGNATURE_POOLS.computeIfAbsent(signAlgorithm, key -> {
+            CompletableFuture<Key> scrubKey = scrubKey(signKeyAlgorithm(signAlgorithm));
+            return new CryptoEnginePool<>(signAlgorithm, () -> CryptoMx.getSignature(signAlgorithm), signature -> scrubSignature(signature, scrubKey),
+                DEFAULT_MAX_IDLE);
+        });
+    }
+
+    /**
+     * 获取共享的签名算法实例池。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 签名算法实例池。
+     */
+    @Nonnull
+    public static CryptoEnginePool<Signature> ofSignature(@Nonnull CryptoAlgorithm.Sign algorithm) {
+        return ofSignature(algorithm.signAlgorithm);
+    }
+
+    /**
+     * 使用随机秘钥重新初始化消息认证码算法实例，清除借用者的秘钥。
+     *
+     * @param mac
+     *     消息认证码算法实例。
+     */
+    private static void scrubMac(Mac mac) {
+        Key key = SCRUB_MAC_KEYS.computeIfAbsent(mac.getAlgorithm(),
+            algorithm -> new SecretKeySpec(CryptoMx.generateRandom(32, CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL)), algorithm));
+        CryptoMx.initMac(mac, key);
+    }
+
+    /**
+     * 使用随机秘钥重新初始化加密算法实例，清除借用者的秘钥。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param scrubKey
+     *     随机秘钥。
+     * @throws IllegalStateException
+     *     随机秘钥尚未生成完成。
+     * @throws java.util.concurrent.CompletionException
+     *     无法生成随机秘钥。
+     */
+    private static void scrubCipher(Cipher cipher, CompletableFuture<Key> scrubKey) {
+        CryptoMx.initCipherForEncrypt(cipher, getScrubKey(scrubKey), CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL));
+    }
+
+    /**
+     * 使用随机公钥重新初始化签名算法实例为验证签名，清除借用者的私钥，未重新初始化就签名时抛出异常。
+     *
+     * @param signature
+     *     签名算法实例。
+     * @param scrubKey
+     *     随机公钥。
+     * @throws IllegalStateException
+     *     随机公钥尚未生成完成。
+     * @throws java.util.concurrent.CompletionException
+     *     无法生成随机公钥。
+     */
+    private static void scrubSignature(Signature signature, CompletableFuture<Key> scrubKey) {
+        CryptoMx.initSignatureForVerify(signature, (PublicKey) getScrubKey(scrubKey));
+    }
+
+    /**
+     * 获取已生成的随机秘钥，不等待生成完成。
+     *
+     * @param scrubKey
+     *     随机秘钥。
+     * @return 随机秘钥。
+     * @throws IllegalStateException
+     *     随机秘钥尚未生成完成。
+     */
+    private static Key getScrubKey(CompletableFuture<Key> scrubKey) {
+        Key key = scrubKey.getNow(null);
+        if (key == null) {
+            throw new IllegalStateException(RBMF.get("随机秘钥尚未生成完成"));
+        }
+        return key;
+    }
+
+    /**
+     * 获取清除算法实例秘钥使用的随机秘钥，对称秘钥立即生成，非对称秘钥对在后台生成，无法生成时结果为异常。
+     *
+     * @param keyAlgorithm
+     *     秘钥算法名称。
+     * @return 对称加密秘钥或者非对称加密公钥。
+     */
+    static CompletableFuture<Key> scrubKey(String keyAlgorithm) {
+        return SCRUB_KEYS.computeIfAbsent(keyAlgorithm, algorithm -> {
+            try {
+                return CompletableFuture.completedFuture(CryptoMx.generateSecretKey(CryptoMx.getKeyGenerator(algorithm)));
+            } catch (IllegalArgumentException e) {
+                // 不是对称加密算法
+            }
+            return CompletableFuture.supplyAsync(
+                () -> CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(algorithm).build()).getPublic());
+        });
+    }
+
+    /**
+     * 获取加密算法的秘钥算法名称，不是已知的算法时使用变种名称中的算法名称部分。
+     *
+     * @param transformation
+     *     算法变种名称。
+     * @return 秘钥算法名称。
+     */
+    private static String cipherKeyAlgorithm(String transformation) {
+        for (CryptoAlgorithm.Symmetric algorithm : CryptoAlgorithm.Symmetric.values()) {
+            if (algorithm.transformation.equals(transformation)) {
+                return algorithm.algorithm;
+            }
+        }
+        for (CryptoAlgorithm.Asymmetric algorithm : CryptoAlgorithm.Asymmetric.values()) {
+            if (algorithm.transformation.equals(transformation)) {
+                return algorithm.algorithm;
+            }
+        }
+        int index = transformation.indexOf('/');
+        if (index < 0) {
+            return transformation;
+        }
+        return transformation.substring(0, index);
+    }
+
+    /**
+     * 获取签名算法的秘钥算法名称，不是已知的算法时使用签名算法名称中 with 之后的部分。
+     *
+     * @param signAlgorithm
+     *     签名算法名称。
+     * @return 秘钥算法名称。
+     */
+    private static String signKeyAlgorithm(String signAlgorithm) {
+        for (CryptoAlgorithm.Sign algorithm : CryptoAlgorithm.Sign.values()) {
+            if (algorithm.signAlgorithm.equals(signAlgorithm)) {
+                return algorithm.algorithm;
+            }
+        }
+        String keyAlgorithm = signAlgorithm;
+        int index = keyAlgorithm.toUpperCase(Locale.ROOT).indexOf("WITH");
+        if (index >= 0) {
+            keyAlgorithm = keyAlgorithm.substring(index + 4);
+        }
+        index = keyAlgorithm.indexOf('/');
+        if (index >= 0) {
+            keyAlgorithm = keyAlgorithm.substring(0, index);
+        }
+        index = keyAlgorithm.toUpperCase(Locale.ROOT).indexOf("AND");
+        if (index >= 0) {
+            keyAlgorithm = keyAlgorithm.substring(0, index);
+        }
+        if ("ECDSA".equalsIgnoreCase(keyAlgorithm)) {
+            return "EC";
+        }
+        return keyAlgorithm;
+    }
+
+    /**
+     * 算法名称。
+     *
+     * @return 算法名称。
+     */
+    @Nonnull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 最大空闲实例数量。
+     *
+     * @return 最大空闲实例数量。
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * 设置最大空闲实例数量，已有的超出部分空闲实例借出后不再放回。
+     *
+     * @param maxIdle
+     *     最大空闲实例数量。
+     */
+    public void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * 借出算法实例，没有空闲实例时创建新实例。
+     *
+     * @return 算法实例。
+     */
+    @Nonnull
+    public E borrow() {
+        E engine = idleEngines.poll();
+        if (engine == null) {
+            missCount.increment();
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        hitCount.increment();
+        return engine;
+    }
+
+    /**
+     * 归还算法实例，重置其状态后放入空闲实例，空闲实例已满或者重置失败时丢弃。
+     *
+     * @param engine
+     *     算法实例。
+     */
+    public void release(@Nonnull E engine) {
+        try {
+            resetter.accept(engine);
+        } catch (RuntimeException e) {
+            discardCount.increment();
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            discardCount.increment();
+            return;
+        }
+        idleEngines.offer(engine);
+    }
+
+    /**
+     * 租用算法实例，配合 try-with-resources 语句在结束时自动归还。
+     *
+     * @return 租约。
+     */
+    @Nonnull
+    public Lease<E> lease() {
+        return new Lease<>(this, borrow());
+    }
+
+    /**
+     * 空闲实例数量。
+     *
+     * @return 空闲实例数量。
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * 借出时命中空闲实例的次数。
+     *
+     * @return 命中次数。
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 借出时创建新实例的次数。
+     *
+     * @return 未命中次数。
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 归还时因空闲实例已满而丢弃的次数。
+     *
+     * @return 丢弃次数。
+     */
+    public long getDiscardCount() {
+        return discardCount.sum();
+    }
+
+    /**
+     * 借出时命中空闲实例的比例，没有借出过时为 0。
+     *
+     * @return 命中率。
+     */
+    public double getHitRate() {
+        long hit = hitCount.sum();
+        long total = hit + missCount.sum();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hit / total;
+    }
+
+    /**
+     * 丢弃所有空闲实例。
+     */
+    public void clear() {
+        while (idleEngines.poll() != null) {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CryptoEnginePool[" + algorithm + ", idle=" + getIdleCount() + ", hit=" + getHitCount() + ", miss=" + getMissCount() + ", discard="
+            + getDiscardCount() + ']';
+    }
+
+    /**
+     * 算法实例租约，关闭时归还算法实例。
+     *
+     * @param <E>
+     *     算法实例类型。
+     */
+    @NotThreadSafe
+    public static final class Lease<E>
+        implements AutoCloseable {
+        /**
+         * 算法实例池。
+         */
+        private final CryptoEnginePool<E> pool;
+
+        /**
+         * 算法实例。
+         */
+        private E engine;
+
+        /**
+         * 构造租约。
+         *
+         * @param pool
+         *     算法实例池。
+         * @param engine
+         *     算法实例。
+         */
+        Lease(CryptoEnginePool<E> pool, E engine) {
+            this.pool = pool;
+            this.engine = engine;
+        }
+
+        /**
+         * 获取算法实例。
+         *
+         * @return 算法实例。
+         */
+        @Nonnull
+        public E get() {
+            if (engine == null) {
+                throw new IllegalStateException();
+            }
+            return engine;
+        }
+
+        /**
+         * 归还算法实例。
+         */
+        @Override
+        public void close() {
+            if (engine != null) {
+                E returned = engine;
+                engine = null;
+                pool.release(returned);
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Duration;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.SecretKey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.primitives.Ints;
+
+/**
+ * 秘钥实例缓存，避免重复解码相同的秘钥，按秘钥类型、算法名称和秘钥内容的 SHA-256 摘要查找，缓存键不保留秘钥内容，摘要使用常量时间比较。
+ * 各构建器使用字节数组设置秘钥时通过默认实例获取秘钥实例。
+ */
+@ThreadSafe
+public final class CryptoKeyCache {
+    /**
+     * 默认最大缓存数量。
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 1024;
+
+    /**
+     * 默认访问后过期时间。
+     */
+    public static final Duration DEFAULT_EXPIRE_AFTER_ACCESS = Duration.ofHours(1);
+
+    /**
+     * 默认实例。
+     */
+    private static volatile CryptoKeyCache defaultInstance = newBuilder().build();
+
+    /**
+     * 秘钥实例缓存。
+     */
+    private final Cache<CacheKey, Key> cache;
+
+    /**
+     * 构造秘钥实例缓存。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private CryptoKeyCache(Builder builder) {
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(builder.maximumSize).recordStats();
+        if (builder.expireAfterAccess != null) {
+            cacheBuilder.expireAfterAccess(builder.expireAfterAccess);
+        }
+        if (builder.expireAfterWrite != null) {
+            cacheBuilder.expireAfterWrite(builder.expireAfterWrite);
+        }
+        this.cache = cacheBuilder.build();
+    }
+
+    /**
+     * 获取默认实例。
+     *
+     * @return 默认实例。
+     */
+    @Nonnull
+    public static CryptoKeyCache getDefault() {
+        return defaultInstance;
+    }
+
+    /**
+     * 设置默认实例，用于调整缓存数量和过期时间。
+     *
+     * @param cache
+     *     默认实例。
+     */
+    public static void setDefault(@Nonnull CryptoKeyCache cache) {
+        defaultInstance = cache;
+    }
+
+    /**
+     * 获取对称加密算法秘钥实例。
+     *
+     * @param keyData
+     *     秘钥。
+     * @param algorithm
+     *     算法名称。
+     * @return 秘钥实例。
+     */
+    @Nonnull
+    public SecretKey getSecretKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
+        CacheKey cacheKey = CacheKey.of(KeyType.SECRET, algorithm, keyData);
+        SecretKey key = (SecretKey) cache.getIfPresent(cacheKey);
+        if (key == null) {
+            key = CryptoMx.getSecretKey(keyData, algorithm);
+            cache.put(cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * 获取非对称加密算法私钥实例。
+     *
+     * @param keyData
+     *     私钥。
+     * @param algorithm
+     *     算法名称。
+     * @return 私钥实例。
+     */
+    @Nonnull
+    public PrivateKey getPrivateKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
+        CacheKey cacheKey = CacheKey.of(KeyType.PRIVATE, algorithm, keyData);
+        PrivateKey key = (PrivateKey) cache.getIfPresent(cacheKey);
+        if (key == null) {
+            key = CryptoMx.getPrivateKey(keyData, algorithm);
+            cache.put(cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * 获取非对称加密算法公钥实例。
+     *
+     * @param keyData
+     *     公钥。
+     * @param algorithm
+     *     算法名称。
+     * @return 公钥实例。
+     */
+    @Nonnull
+    public PublicKey getPublicKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
+        CacheKey cacheKey = CacheKey.of(KeyType.PUBLIC, algorithm, keyData);
+        PublicKey key = (PublicKey) cache.getIfPresent(cacheKey);
+        if (key == null) {
+            key = CryptoMx.getPublicKey(keyData, algorithm);
+            cache.put(cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * 缓存数量。
+     *
+     * @return 缓存数量。
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * 缓存统计，包括命中率、解码次数、淘汰次数。
+     *
+     * @return 缓存统计。
+     */
+    @Nonnull
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 清空缓存。
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 构造秘钥实例缓存构建器。
+     *
+     * @return 秘钥实例缓存构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 秘钥类型。
+     */
+    private enum KeyType {
+        SECRET,
+
+        PRIVATE,
+
+        PUBLIC;
+    }
+
+    /**
+     * 缓存键，只保存秘钥类型、算法名称和秘钥内容的摘要。
+     */
+    @Immutable
+    private static final class CacheKey {
+        private final byte[] digest;
+
+        private final int hash;
+
+        private CacheKey(byte[] digest) {
+            this.digest = digest;
+            this.hash = Ints.fromByteArray(digest);
+        }
+
+        /**
+         * 计算秘钥类型、算法名称和秘钥内容的摘要作为缓存键。
+         */
+        static CacheKey of(KeyType type, String algorithm, byte[] keyData) {
+            try (CryptoEnginePool.Lease<MessageDigest> lease = CryptoEnginePool.ofMessageDigest(CryptoAlgorithm.Digest.SHA_256).lease()) {
+                MessageDigest messageDigest = lease.get();
+                messageDigest.update((byte) type.ordinal());
+                messageDigest.update(algorithm.getBytes(StandardCharsets.UTF_8));
+                messageDigest.update((byte) 0);
+                return new CacheKey(messageDigest.digest(keyData));
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return MessageDigest.isEqual(digest, other.digest);
+        }
+    }
+
+    /**
+     * 秘钥实例缓存构建器。
+     */
+    public static final class Builder {
+        /**
+         * 最大缓存数量。
+         */
+        private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+        /**
+         * 访问后过期时间。
+         */
+        private Duration expireAfterAccess = DEFAULT_EXPIRE_AFTER_ACCESS;
+
+        /**
+         * 写入后过期时间。
+         */
+        private Duration expireAfterWrite;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置最大缓存数量。
+         *
+         * @param maximumSize
+         *     最大缓存数量。
+         * @return 秘钥实例缓存构建器。
+         */
+        @Nonnull
+        public Builder setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * 设置访问后过期时间。
+         *
+         * @param expireAfterAccess
+         *     访问后过期时间。
+         * @return 秘钥实例缓存构建器。
+         */
+        @Nonnull
+        public Builder setExpireAfterAccess(@Nonnull Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        /**
+         * 设置写入后过期时间，用于限制秘钥在内存中保留的最长时间。
+         *
+         * @param expireAfterWrite
+         *     写入后过期时间。
+         * @return 秘钥实例缓存构建器。
+         */
+        @Nonnull
+        public Builder setExpireAfterWrite(@Nonnull Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * 构建秘钥实例缓存。
+         *
+         * @return 秘钥实例缓存。
+         */
+        @Nonnull
+        public CryptoKeyCache build() {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException();
+            }
+            return new CryptoKeyCache(this);
+        }
+    }
+}
@@ -0,0 +1,586 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 秘钥环，按秘钥标识保存多个版本的秘钥，每个秘钥版本使用不同的秘钥标识，新数据使用主秘钥，旧数据按记录的秘钥标识解密或验证。
+ * 每个线程为每个秘钥保留已查找算法实现的加密算法实例和已初始化秘钥的消息认证码、签名算法实例，避免每次操作查找算法实现和初始化秘钥。
+ * 认证加密每次使用不同的初始向量，仍然需要重新初始化加密算法实例，但不再查找算法实现。
+ * 添加秘钥和切换主秘钥不影响正在进行的操作，新秘钥在每个线程第一次使用时初始化；移除的秘钥在各线程中保留的算法实例随线程回收。
+ * 虚拟线程不会复用，应该在平台线程中使用才能保留算法实例。
+ */
+@ThreadSafe
+public final class CryptoKeyring {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(CryptoKeyring.class).useCurrentLocale();
+
+    /**
+     * 按秘钥标识保存的秘钥。
+     */
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 主秘钥标识。
+     */
+    private volatile String primaryKeyId;
+
+    /**
+     * 切换主秘钥和移除秘钥使用的锁，保证主秘钥始终存在，读取不加锁。
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 添加对称加密秘钥，只支持认证加密算法。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param algorithm
+     *     认证加密算法。
+     * @param key
+     *     秘钥。
+     * @throws IllegalArgumentException
+     *     秘钥标识已存在，或者不是认证加密算法。
+     */
+    public void addSymmetricKey(@Nonnull String keyId, @Nonnull CryptoAlgorithm.Symmetric algorithm, @Nonnull SecretKey key) {
+        if (!CryptoMx.isAead(algorithm.transformation)) {
+            throw new IllegalArgumentException(RBMF.format("秘钥环只支持认证加密算法 {0}", algorithm.transformation));
+        }
+        add(keyId, new SymmetricEntry(algorithm.transformation, key));
+    }
+
+    /**
+     * 添加消息认证码秘钥。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param algorithm
+     *     消息认证码算法。
+     * @param key
+     *     秘钥。
+     * @throws IllegalArgumentException
+     *     秘钥标识已存在。
+     */
+    public void addMacKey(@Nonnull String keyId, @Nonnull CryptoAlgorithm.Mac algorithm, @Nonnull SecretKey key) {
+        add(keyId, new MacEntry(algorithm.algorithm, key));
+    }
+
+    /**
+     * 添加签名秘钥对，只有公钥时只能验证签名。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param algorithm
+     *     签名算法。
+     * @param privateKey
+     *     私钥。
+     * @param publicKey
+     *     公钥。
+     * @throws IllegalArgumentException
+     *     秘钥标识已存在，或者私钥和公钥都为 null。
+     */
+    public void addSignKey(@Nonnull String keyId, @Nonnull CryptoAlgorithm.Sign algorithm, @Nullable PrivateKey privateKey, @Nullable PublicKey publicKey) {
+        if (privateKey == null && publicKey == null) {
+            throw new IllegalArgumentException(RBMF.format("秘钥 {0} 缺少私钥和公钥", keyId));
+        }
+        add(keyId, new SignEntry(algorithm.signAlgorithm, privateKey, publicKey));
+    }
+
+    private void add(String keyId, Entry entry) {
+        if (entries.putIfAbsent(keyId, entry) != null) {
+            throw new IllegalArgumentException(RBMF.format("秘钥 {0} 已存在", keyId));
+        }
+    }
+
+    /**
+     * 切换主秘钥，之后的新数据使用新的主秘钥，使用旧秘钥的数据仍然可以解密或验证。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在。
+     */
+    public void setPrimaryKeyId(@Nonnull String keyId) {
+        synchronized (lock) {
+            if (!entries.containsKey(keyId)) {
+                throw new IllegalArgumentException(RBMF.format("秘钥 {0} 不存在", keyId));
+            }
+            primaryKeyId = keyId;
+        }
+    }
+
+    /**
+     * 主秘钥标识。
+     *
+     * @return 主秘钥标识，没有设置时为 null。
+     */
+    @Nullable
+    public String getPrimaryKeyId() {
+        return primaryKeyId;
+    }
+
+    /**
+     * 移除不再使用的秘钥，使用该秘钥的数据不能再解密或验证。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @throws IllegalArgumentException
+     *     秘钥是主秘钥。
+     */
+    public void removeKey(@Nonnull String keyId) {
+        synchronized (lock) {
+            if (keyId.equals(primaryKeyId)) {
+                throw new IllegalArgumentException(RBMF.format("不能移除主秘钥 {0}", keyId));
+            }
+            entries.remove(keyId);
+        }
+    }
+
+    /**
+     * 判断秘钥标识是否存在。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @return 是否存在。
+     */
+    public boolean containsKey(@Nonnull String keyId) {
+        return entries.containsKey(keyId);
+    }
+
+    /**
+     * 所有秘钥标识。
+     *
+     * @return 秘钥标识。
+     */
+    @Nonnull
+    public Set<String> getKeyIds() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * 秘钥对应的算法名称。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @return 对称加密算法变种名称、消息认证码算法名称或签名算法名称。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在。
+     */
+    @Nonnull
+    public String getAlgorithm(@Nonnull String keyId) {
+        return get(keyId).algorithm;
+    }
+
+    private Entry get(String keyId) {
+        Entry entry = entries.get(keyId);
+        if (entry == null) {
+            throw new IllegalArgumentException(RBMF.format("秘钥 {0} 不存在", keyId));
+        }
+        return entry;
+    }
+
+    /**
+     * 加密。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param nonce
+     *     初始向量，同一秘钥加密时不能重复使用。
+     * @param plainData
+     *     明文。
+     * @return 密文。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在或者不是对称加密秘钥。
+     */
+    @Nonnull
+    public byte[] encrypt(@Nonnull String keyId, @Nonnull byte[] nonce, @Nonnull byte[] plainData) {
+        return encrypt(keyId, nonce, null, plainData);
+    }
+
+    /**
+     * 加密。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param nonce
+     *     初始向量，同一秘钥加密时不能重复使用。
+     * @param aad
+     *     附加认证数据。
+     * @param plainData
+     *     明文。
+     * @return 密文。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在或者不是对称加密秘钥。
+     */
+    @Nonnull
+    public byte[] encrypt(@Nonnull String keyId, @Nonnull byte[] nonce, @Nullable byte[] aad, @Nonnull byte[] plainData) {
+        return symmetric(keyId).encrypt(nonce, aad, plainData);
+    }
+
+    /**
+     * 加密，将密文写入指定数组，不分配新的数组。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param nonce
+     *     初始向量，同一秘钥加密时不能重复使用。
+     * @param aad
+     *     附加认证数据。
+     * @param plainData
+     *     明文。
+     * @param cipherData
+     *     密文，剩余长度不小于明文长度加认证标签长度。
+     * @param cipherOffset
+     *     密文偏移。
+     * @return 密文长度。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在或者不是对称加密秘钥。
+     */
+    int encrypt(String keyId, byte[] nonce, byte[] aad, byte[] plainData, byte[] cipherData, int cipherOffset) {
+        return symmetric(keyId).encrypt(nonce, aad, plainData, cipherData, cipherOffset);
+    }
+
+    /**
+     * 解密。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param nonce
+     *     初始向量。
+     * @param cipherData
+     *     密文。
+     * @return 明文。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在、不是对称加密秘钥或者密文认证失败。
+     */
+    @Nonnull
+    public byte[] decrypt(@Nonnull String keyId, @Nonnull byte[] nonce, @Nonnull byte[] cipherData) {
+        return decrypt(keyId, nonce, null, cipherData);
+    }
+
+    /**
+     * 解密。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param nonce
+     *     初始向量。
+     * @param aad
+     *     附加认证数据。
+     * @param cipherData
+     *     密文。
+     * @return 明文。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在、不是对称加密秘钥或者密文认证失败。
+     */
+    @Nonnull
+    public byte[] decrypt(@Nonnull String keyId, @Nonnull byte[] nonce, @Nullable byte[] aad, @Nonnull byte[] cipherData) {
+        return symmetric(keyId).decrypt(nonce, aad, cipherData);
+    }
+
+    /**
+     * 解密，将明文写入指定数组，不分配新的数组。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param nonce
+     *     初始向量。
+     * @param aad
+     *     附加认证数据。
+     * @param cipherData
+     *     密文。
+     * @param cipherOffset
+     *     密文偏移。
+     * @param cipherLength
+     *     密文长度。
+     * @param plainData
+     *     明文，长度不小于密文长度减认证标签长度。
+     * @return 明文长度。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在、不是对称加密秘钥或者密文认证失败。
+     */
+    int decrypt(String keyId, byte[] nonce, byte[] aad, byte[] cipherData, int cipherOffset, int cipherLength, byte[] plainData) {
+        return symmetric(keyId).decrypt(nonce, aad, cipherData, cipherOffset, cipherLength, plainData);
+    }
+
+    private SymmetricEntry symmetric(String keyId) {
+        Entry entry = get(keyId);
+        if (!(entry instanceof SymmetricEntry)) {
+            throw new IllegalArgumentException(RBMF.format("秘钥 {0} 不是对称加密秘钥", keyId));
+        }
+        return (SymmetricEntry) entry;
+    }
+
+    /**
+     * 使用消息认证码秘钥计算消息认证码，或者使用签名私钥签名。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param plainData
+     *     数据。
+     * @return 消息认证码或签名。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在或者不能签名。
+     */
+    @Nonnull
+    public byte[] sign(@Nonnull String keyId, @Nonnull byte[] plainData) {
+        Entry entry = get(keyId);
+        if (entry instanceof MacEntry) {
+            return ((MacEntry) entry).sign(plainData);
+        }
+        if (entry instanceof SignEntry && ((SignEntry) entry).signers != null) {
+            return ((SignEntry) entry).sign(plainData);
+        }
+        throw new IllegalArgumentException(RBMF.format("秘钥 {0} 不能签名", keyId));
+    }
+
+    /**
+     * 使用消息认证码秘钥验证消息认证码，或者使用签名公钥验证签名。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @param plainData
+     *     数据。
+     * @param signData
+     *     消息认证码或签名。
+     * @return 是否通过验证。
+     * @throws IllegalArgumentException
+     *     秘钥标识不存在或者不能验证签名。
+     */
+    public boolean verify(@Nonnull String keyId, @Nonnull byte[] plainData, @Nonnull byte[] signData) {
+        Entry entry = get(keyId);
+        if (entry instanceof MacEntry) {
+            return ((MacEntry) entry).verify(plainData, signData);
+        }
+        if (entry instanceof SignEntry && ((SignEntry) entry).verifiers != null) {
+            return ((SignEntry) entry).verify(plainData, signData);
+        }
+        throw new IllegalArgumentException(RBMF.format("秘钥 {0} 不能验证签名", keyId));
+    }
+
+    /**
+     * 一个秘钥版本。
+     */
+    private abstract static class Entry {
+        /**
+         * 算法名称。
+         */
+        final String algorithm;
+
+        Entry(String algorithm) {
+            this.algorithm = algorithm;
+        }
+    }
+
+    /**
+     * 认证加密秘钥，每个线程分别保留加密和解密使用的算法实例。
+     */
+    private static final class SymmetricEntry
+        extends Entry {
+        /**
+         * 秘钥。
+         */
+        private final SecretKey key;
+
+        /**
+         * 各线程的加密算法实例。
+         */
+        private final ThreadLocal<Cipher> encryptors;
+
+        /**
+         * 各线程的解密算法实例。
+         */
+        private final ThreadLocal<Cipher> decryptors;
+
+        SymmetricEntry(String transformation, SecretKey key) {
+            super(transformation);
+            this.key = key;
+            this.encryptors = ThreadLocal.withInitial(() -> CryptoMx.getCipher(transformation));
+            this.decryptors = ThreadLocal.withInitial(() -> CryptoMx.getCipher(transformation));
+        }
+
+        byte[] encrypt(byte[] nonce, byte[] aad, byte[] plainData) {
+            Cipher cipher = encryptors.get();
+            try {
+                initForEncrypt(cipher, nonce, aad);
+                return CryptoMx.encrypt(plainData, cipher);
+            } catch (RuntimeException e) {
+                encryptors.remove();
+                throw e;
+            }
+        }
+
+        int encrypt(byte[] nonce, byte[] aad, byte[] plainData, byte[] cipherData, int cipherOffset) {
+            Cipher cipher = encryptors.get();
+            try {
+                initForEncrypt(cipher, nonce, aad);
+                return CryptoMx.encrypt(plainData, 0, plainData.length, cipherData, cipherOffset, cipher);
+            } catch (RuntimeException e) {
+                encryptors.remove();
+                throw e;
+            }
+        }
+
+        byte[] decrypt(byte[] nonce, byte[] aad, byte[] cipherData) {
+            Cipher cipher = decryptor(nonce);
+            try {
+                if (aad != null) {
+                    CryptoMx.updateAad(aad, cipher);
+                }
+                return CryptoMx.decrypt(cipherData, cipher);
+            } catch (RuntimeException e) {
+                discardDecryptor(e);
+                throw e;
+            }
+        }
+
+        int decrypt(byte[] nonce, byte[] aad, byte[] cipherData, int cipherOffset, int cipherLength, byte[] plainData) {
+            Cipher cipher = decryptor(nonce);
+            try {
+                if (aad != null) {
+                    CryptoMx.updateAad(aad, cipher);
+                }
+                return CryptoMx.decrypt(cipherData, cipherOffset, cipherLength, plainData, 0, cipher);
+            } catch (RuntimeException e) {
+                discardDecryptor(e);
+                throw e;
+            }
+        }
+
+        /**
+         * 认证失败后算法实例已重置，可以继续使用；其它失败时算法实例状态未知，丢弃当前线程的算法实例。
+         */
+        private void discardDecryptor(RuntimeException e) {
+            if (!(e.getCause() instanceof AEADBadTagException)) {
+                decryptors.remove();
+            }
+        }
+
+        private void initForEncrypt(Cipher cipher, byte[] nonce, byte[] aad) {
+            CryptoMx.initCipherForEncrypt(cipher, key, CryptoMx.getAeadParameterSpec(algorithm, nonce, CryptoMx.DEFAULT_TAG_LENGTH));
+            if (aad != null) {
+                CryptoMx.updateAad(aad, cipher);
+            }
+        }
+
+        private Cipher decryptor(byte[] nonce) {
+            Cipher cipher = decryptors.get();
+            try {
+                initForDecrypt(cipher, nonce);
+            } catch (IllegalArgumentException e) {
+                // ChaCha20-Poly1305 不允许使用与上次相同的秘钥和初始向量重新初始化，重复解密同一密文时换用新的实例
+                cipher = CryptoMx.getCipher(algorithm);
+                decryptors.set(cipher);
+                initForDecrypt(cipher, nonce);
+            }
+            return cipher;
+        }
+
+        private void initForDecrypt(Cipher cipher, byte[] nonce) {
+            CryptoMx.initCipherForDecrypt(cipher, key, CryptoMx.getAeadParameterSpec(algorithm, nonce, CryptoMx.DEFAULT_TAG_LENGTH));
+        }
+    }
+
+    /**
+     * 消息认证码秘钥，每个线程保留已初始化秘钥的算法实例。
+     */
+    private static final class MacEntry
+        extends Entry {
+        /**
+         * 各线程的消息认证码算法实例。
+         */
+        private final ThreadLocal<Mac> macs;
+
+        MacEntry(String algorithm, SecretKey key) {
+            super(algorithm);
+            this.macs = ThreadLocal.withInitial(() -> CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build());
+        }
+
+        byte[] sign(byte[] plainData) {
+            try {
+                return CryptoMx.sign(plainData, macs.get());
+            } catch (RuntimeException e) {
+                macs.remove();
+                throw e;
+            }
+        }
+
+        boolean verify(byte[] plainData, byte[] signData) {
+            try {
+                return CryptoMx.verify(plainData, signData, macs.get());
+            } catch (RuntimeException e) {
+                macs.remove();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 签名秘钥对，每个线程分别保留已初始化私钥和公钥的算法实例。
+     */
+    private static final class SignEntry
+        extends Entry {
+        /**
+         * 各线程的签名算法实例，没有私钥时为 null。
+         */
+        final ThreadLocal<Signature> signers;
+
+        /**
+         * 各线程的验证签名算法实例，没有公钥时为 null。
+         */
+        final ThreadLocal<Signature> verifiers;
+
+        SignEntry(String signAlgorithm, PrivateKey privateKey, PublicKey publicKey) {
+            super(signAlgorithm);
+            if (privateKey == null) {
+                this.signers = null;
+            } else {
+                this.signers = ThreadLocal.withInitial(() -> CryptoMx.SignatureBuilder.newBuilder(signAlgorithm).setPrivateKey(privateKey).buildForSign());
+            }
+            if (publicKey == null) {
+                this.verifiers = null;
+            } else {
+                this.verifiers = ThreadLocal.withInitial(() -> CryptoMx.SignatureBuilder.newBuilder(signAlgorithm).setPublicKey(publicKey).buildForVerify());
+            }
+        }
+
+        byte[] sign(byte[] plainData) {
+            try {
+                return CryptoMx.sign(plainData, signers.get());
+            } catch (RuntimeException e) {
+                signers.remove();
+                throw e;
+            }
+        }
+
+        boolean verify(byte[] plainData, byte[] signData) {
+            try {
+                return CryptoMx.verify(plainData, signData, verifiers.get());
+            } catch (RuntimeException e) {
+                verifiers.remove();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import javax.annotation.Nonnull;
+
+/**
+ * 加密操作监听器，通过 {@link CryptoMx#setListener(CryptoListener)} 注册后接收摘要、加解密、消息认证码和签名操作的通知，用于收集指标或跟踪。
+ * 未注册监听器时不产生额外开销。实现必须线程安全，并且在调用线程上同步执行，应尽量轻量。监听器抛出的异常会被记录并忽略。
+ */
+public interface CryptoListener {
+    /**
+     * 加密操作。
+     */
+    enum Operation {
+        /**
+         * 计算摘要。
+         */
+        DIGEST,
+        /**
+         * 加密。
+         */
+        ENCRYPT,
+        /**
+         * 解密。
+         */
+        DECRYPT,
+        /**
+         * 计算或验证消息认证码。
+         */
+        MAC,
+        /**
+         * 签名。
+         */
+        SIGN,
+        /**
+         * 验签。
+         */
+        VERIFY;
+    }
+
+    /**
+     * 操作开始，在调用线程上执行，可用于开始跟踪。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法名称，与 {@link CryptoAlgorithm} 枚举值的算法名称或算法变种名称对应。
+     */
+    default void onStart(@Nonnull Operation operation, @Nonnull String algorithm) {
+    }
+
+    /**
+     * 操作成功。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法名称，与 {@link CryptoAlgorithm} 枚举值的算法名称或算法变种名称对应。
+     * @param bytes
+     *     处理的输入字节数。
+     * @param nanos
+     *     耗时纳秒数。
+     */
+    void onSuccess(@Nonnull Operation operation, @Nonnull String algorithm, long bytes, long nanos);
+
+    /**
+     * 操作失败。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法名称，与 {@link CryptoAlgorithm} 枚举值的算法名称或算法变种名称对应。
+     * @param nanos
+     *     耗时纳秒数。
+     * @param cause
+     *     失败原因。
+     */
+    void onFailure(@Nonnull Operation operation, @Nonnull String algorithm, long nanos, @Nonnull Throwable cause);
+}
@@ -0,0 +1,426 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * 加密操作指标，按操作和算法统计次数、失败次数、处理字节数和耗时分布。
+ * 耗时按 2 的幂分桶，第 i 个桶记录耗时不超过 2<sup>i</sup>-1 纳秒且超过上一个桶上限的操作，百分位数返回所在桶的上限。
+ * 使用 {@link CryptoMx#setListener(CryptoListener)} 注册后开始统计。
+ */
+@ThreadSafe
+public final class CryptoMetrics
+    implements CryptoListener {
+    /**
+     * 耗时分桶数量。
+     */
+    static final int BUCKET_COUNT = 64;
+
+    /**
+     * 各操作按算法名称统计的指标。
+     */
+    private final Map<Operation, ConcurrentMap<String, Meter>> meters;
+
+    /**
+     * 构造加密操作指标。
+     */
+    public CryptoMetrics() {
+        this.meters = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            meters.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void onSuccess(@Nonnull Operation operation, @Nonnull String algorithm, long bytes, long nanos) {
+        meter(operation, algorithm).recordSuccess(bytes, nanos);
+    }
+
+    @Override
+    public void onFailure(@Nonnull Operation operation, @Nonnull String algorithm, long nanos, @Nonnull Throwable cause) {
+        meter(operation, algorithm).recordFailure(nanos);
+    }
+
+    private Meter meter(Operation operation, String algorithm) {
+        ConcurrentMap<String, Meter> operationMeters = meters.get(operation);
+        Meter meter = operationMeters.get(algorithm);
+        if (meter == null) {
+            meter = operationMeters.computeIfAbsent(algorithm, key -> new Meter());
+        }
+        return meter;
+    }
+
+    /**
+     * 读取指定操作和算法的当前统计。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法名称。
+     * @return 当前统计，没有记录时为 null。
+     */
+    @Nullable
+    public Stats getStats(@Nonnull Operation operation, @Nonnull String algorithm) {
+        Meter meter = meters.get(operation).get(algorithm);
+        if (meter == null) {
+            return null;
+        }
+        return new Stats(operation, algorithm, meter);
+    }
+
+    /**
+     * 读取指定摘要算法的当前统计。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 当前统计，没有记录时为 null。
+     */
+    @Nullable
+    public Stats getStats(@Nonnull CryptoAlgorithm.Digest algorithm) {
+        return getStats(Operation.DIGEST, algorithm.algorithm);
+    }
+
+    /**
+     * 读取指定对称加密算法的当前统计。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法枚举值。
+     * @return 当前统计，没有记录时为 null。
+     */
+    @Nullable
+    public Stats getStats(@Nonnull Operation operation, @Nonnull CryptoAlgorithm.Symmetric algorithm) {
+        return getStats(operation, algorithm.transformation);
+    }
+
+    /**
+     * 读取指定消息认证码算法的当前统计。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 当前统计，没有记录时为 null。
+     */
+    @Nullable
+    public Stats getStats(@Nonnull CryptoAlgorithm.Mac algorithm) {
+        return getStats(Operation.MAC, algorithm.algorithm);
+    }
+
+    /**
+     * 读取指定非对称加密算法的当前统计。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法枚举值。
+     * @return 当前统计，没有记录时为 null。
+     */
+    @Nullable
+    public Stats getStats(@Nonnull Operation operation, @Nonnull CryptoAlgorithm.Asymmetric algorithm) {
+        return getStats(operation, algorithm.transformation);
+    }
+
+    /**
+     * 读取指定签名算法的当前统计。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法枚举值。
+     * @return 当前统计，没有记录时为 null。
+     */
+    @Nullable
+    public Stats getStats(@Nonnull Operation operation, @Nonnull CryptoAlgorithm.Sign algorithm) {
+        return getStats(operation, algorithm.signAlgorithm);
+    }
+
+    /**
+     * 读取所有有记录的操作和算法的当前统计。
+     *
+     * @return 当前统计。
+     */
+    @Nonnull
+    public List<Stats> getAllStats() {
+        List<Stats> result = new ArrayList<>();
+        for (Map.Entry<Operation, ConcurrentMap<String, Meter>> operationEntry : meters.entrySet()) {
+            for (Map.Entry<String, Meter> entry : operationEntry.getValue().entrySet()) {
+                result.add(new Stats(operationEntry.getKey(), entry.getKey(), entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 清除所有统计。
+     */
+    public void reset() {
+        for (ConcurrentMap<String, Meter> operationMeters : meters.values()) {
+            operationMeters.clear();
+        }
+    }
+
+    /**
+     * 耗时所在的桶。
+     *
+     * @param nanos
+     *     耗时纳秒数。
+     * @return 桶序号。
+     */
+    static int bucketOf(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKET_COUNT - Long.numberOfLeadingZeros(nanos), BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 一个操作和算法的累计指标。
+     */
+    @ThreadSafe
+    private static final class Meter {
+        /**
+         * 成功次数。
+         */
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * 失败次数。
+         */
+        private final LongAdder failureCount = new LongAdder();
+
+        /**
+         * 处理字节数。
+         */
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * 总耗时，单位纳秒。
+         */
+        private final LongAdder totalTime = new LongAdder();
+
+        /**
+         * 最大耗时，单位纳秒。
+         */
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+        /**
+         * 耗时分布。
+         */
+        private final LongAdder[] histogram = new LongAdder[BUCKET_COUNT];
+
+        Meter() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        void recordSuccess(long byteCount, long nanos) {
+            count.increment();
+            bytes.add(byteCount);
+            recordTime(nanos);
+        }
+
+        void recordFailure(long nanos) {
+            failureCount.increment();
+            recordTime(nanos);
+        }
+
+        private void recordTime(long nanos) {
+            totalTime.add(nanos);
+            maxTime.accumulate(nanos);
+            histogram[bucketOf(nanos)].increment();
+        }
+    }
+
+    /**
+     * 一个操作和算法的统计快照。
+     */
+    @Immutable
+    public static final class Stats {
+        /**
+         * 操作。
+         */
+        private final Operation operation;
+
+        /**
+         * 算法名称。
+         */
+        private final String algorithm;
+
+        /**
+         * 成功次数。
+         */
+        private final long count;
+
+        /**
+         * 失败次数。
+         */
+        private final long failureCount;
+
+        /**
+         * 处理字节数。
+         */
+        private final long bytes;
+
+        /**
+         * 总耗时，单位纳秒。
+         */
+        private final long totalTime;
+
+        /**
+         * 最大耗时，单位纳秒。
+         */
+        private final long maxTime;
+
+        /**
+         * 耗时分布。
+         */
+        private final long[] histogram;
+
+        /**
+         * 读取累计指标的当前统计。
+         */
+        Stats(Operation operation, String algorithm, Meter meter) {
+            this.operation = operation;
+            this.algorithm = algorithm;
+            this.count = meter.count.sum();
+            this.failureCount = meter.failureCount.sum();
+            this.bytes = meter.bytes.sum();
+            this.totalTime = meter.totalTime.sum();
+            this.maxTime = meter.maxTime.get();
+            this.histogram = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                histogram[i] = meter.histogram[i].sum();
+            }
+        }
+
+        /**
+         * 操作。
+         *
+         * @return 操作。
+         */
+        @Nonnull
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * 算法名称。
+         *
+         * @return 算法名称。
+         */
+        @Nonnull
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * 成功次数。
+         *
+         * @return 成功次数。
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 失败次数。
+         *
+         * @return 失败次数。
+         */
+        public long getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * 成功操作处理的输入字节数。
+         *
+         * @return 字节数。
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * 成功和失败操作的总耗时。
+         *
+         * @return 总耗时。
+         */
+        @Nonnull
+        public Duration getTotalTime() {
+            return Duration.ofNanos(totalTime);
+        }
+
+        /**
+         * 成功和失败操作的平均耗时。
+         *
+         * @return 平均耗时。
+         */
+        @Nonnull
+        public Duration getMeanTime() {
+            long total = count + failureCount;
+            return total == 0 ? Duration.ZERO : Duration.ofNanos(totalTime / total);
+        }
+
+        /**
+         * 最大耗时。
+         *
+         * @return 最大耗时。
+         */
+        @Nonnull
+        public Duration getMaxTime() {
+            return Duration.ofNanos(maxTime);
+        }
+
+        /**
+         * 耗时百分位数的近似值，返回所在桶的上限，不超过最大耗时。
+         *
+         * @param quantile
+         *     分位，取值 0 到 1。
+         * @return 耗时百分位数。
+         */
+        @Nonnull
+        public Duration getPercentile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException(Double.toString(quantile));
+            }
+            long total = count + failureCount;
+            if (total == 0) {
+                return Duration.ZERO;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long accumulated = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                accumulated += histogram[i];
+                if (accumulated >= rank) {
+                    long upperBound = i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Duration.ofNanos(Math.min(upperBound, maxTime));
+                }
+            }
+            return Duration.ofNanos(maxTime);
+        }
+
+        /**
+         * 耗时分布，第 i 个元素为耗时不超过 2<sup>i</sup>-1 纳秒且超过上一个桶上限的操作次数。
+         *
+         * @return 耗时分布。
+         */
+        @Nonnull
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 一次加密操作的监控记录，未注册监听器时 {@link #start(CryptoListener.Operation, String)} 返回 null，其它方法不做任何处理。
+ */
+final class CryptoMonitor {
+    /**
+     * 日志记录器。
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CryptoMonitor.class);
+
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(CryptoMonitor.class).useCurrentLocale();
+
+    /**
+     * 当前注册的监听器。
+     */
+    private static volatile CryptoListener listener;
+
+    /**
+     * 开始时的监听器。
+     */
+    private final CryptoListener target;
+
+    /**
+     * 操作。
+     */
+    private final CryptoListener.Operation operation;
+
+    /**
+     * 算法名称。
+     */
+    private final String algorithm;
+
+    /**
+     * 开始时间纳秒数。
+     */
+    private final long startTime;
+
+    private CryptoMonitor(CryptoListener target, CryptoListener.Operation operation, String algorithm) {
+        this.target = target;
+        this.operation = operation;
+        this.algorithm = algorithm;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * 获取当前注册的监听器。
+     *
+     * @return 监听器。
+     */
+    @Nullable
+    static CryptoListener getListener() {
+        return listener;
+    }
+
+    /**
+     * 注册监听器。
+     *
+     * @param newListener
+     *     监听器，为 null 时取消注册。
+     */
+    static void setListener(@Nullable CryptoListener newListener) {
+        listener = newListener;
+    }
+
+    /**
+     * 开始监控一次操作。
+     *
+     * @param operation
+     *     操作。
+     * @param algorithm
+     *     算法名称。
+     * @return 监控记录，未注册监听器时为 null。
+     */
+    @Nullable
+    static CryptoMonitor start(@Nonnull CryptoListener.Operation operation, @Nonnull String algorithm) {
+        CryptoListener current = listener;
+        if (current == null) {
+            return null;
+        }
+        try {
+            current.onStart(operation, algorithm);
+        } catch (RuntimeException e) {
+            LOG.warn(RBMF.get("加密操作监听器执行失败"), e);
+        }
+        return new CryptoMonitor(current, operation, algorithm);
+    }
+
+    /**
+     * 记录操作成功。
+     *
+     * @param monitor
+     *     监控记录。
+     * @param bytes
+     *     处理的输入字节数。
+     */
+    static void success(@Nullable CryptoMonitor monitor, long bytes) {
+        if (monitor == null) {
+            return;
+        }
+        try {
+            monitor.target.onSuccess(monitor.operation, monitor.algorithm, bytes, System.nanoTime() - monitor.startTime);
+        } catch (RuntimeException e) {
+            LOG.warn(RBMF.get("加密操作监听器执行失败"), e);
+        }
+    }
+
+    /**
+     * 记录操作失败。
+     *
+     * @param monitor
+     *     监控记录。
+     * @param cause
+     *     失败原因。
+     */
+    static void failure(@Nullable CryptoMonitor monitor, @Nonnull Throwable cause) {
+        if (monitor == null) {
+            return;
+        }
+        try {
+            monitor.target.onFailure(monitor.operation, monitor.algorithm, System.nanoTime() - monitor.startTime, cause);
+        } catch (RuntimeException e) {
+            LOG.warn(RBMF.get("加密操作监听器执行失败"), e);
+        }
+    }
+}
@@ -7,6 +7,10 @@ package net.matrix.security;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.AlgorithmParameterGenerator;
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
@@ -23,12 +27,19 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -38,6 +49,8 @@ import javax.crypto.Mac;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.io.IOUtils;
@@ -46,18 +59,63 @@ import org.bouncycastle.util.Arrays;
 
 /**
  * 加密算法工具。
+ * JDK 内置实现支持的常用算法优先使用 JDK 实现，其它算法使用 BouncyCastle 实现，BouncyCastle 在首次使用时加载。
  */
 @ThreadSafe
 public final class CryptoMx {
     /**
-     * 随机数生成器。
+     * 认证加密算法默认认证标签位数。
      */
-    private static final SecureRandom SYSTEM_SECURE_RANDOM = new SecureRandom();
+    public static final int DEFAULT_TAG_LENGTH = 128;
 
     /**
-     * 加密算法实现。
+     * 指定使用内存映射读取文件时，使用内存映射的最小文件长度，较小的文件使用直接缓冲区读取，避免产生大量映射。
      */
-    private static final Provider PROVIDER = new BouncyCastleProvider();
+    private static final long MAPPED_THRESHOLD = 4L * 1024 * 1024;
+
+    /**
+     * 读取文件时每次映射的最大长度，映射在垃圾回收时才释放，较小的窗口减少未释放映射占用的地址空间。
+     */
+    private static final long MAPPED_WINDOW_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * 读取文件使用的直接缓冲区长度。
+     */
+    private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 读取较小文件使用的空闲直接缓冲区，所有线程共享且数量有限，虚拟线程也可以复用。
+     */
+    private static final Queue<ByteBuffer> DIRECT_BUFFERS = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * 优先使用 JDK 内置实现的摘要算法。
+     */
+    private static final Set<String> JDK_MESSAGE_DIGEST_ALGORITHMS = Set.of(CryptoConstant.MD5, CryptoConstant.SHA1, CryptoConstant.SHA_256,
+        CryptoConstant.SHA_512, CryptoConstant.SHA3_256, CryptoConstant.SHA3_512);
+
+    /**
+     * 优先使用 JDK 内置实现的加密算法。
+     */
+    private static final Set<String> JDK_CIPHER_TRANSFORMATIONS = Set.of(CryptoConstant.AES_ECB_NOPADDING, CryptoConstant.AES_ECB_PKCS5PADDING,
+        CryptoConstant.AES_CBC_NOPADDING, CryptoConstant.AES_CBC_PKCS5PADDING, CryptoConstant.AES_GCM_NOPADDING, CryptoConstant.CHACHA20_POLY1305);
+
+    /**
+     * 优先使用 JDK 内置实现的消息认证码算法。
+     */
+    private static final Set<String> JDK_MAC_ALGORITHMS = Set.of(CryptoConstant.HMAC_MD5, CryptoConstant.HMAC_SHA1, CryptoConstant.HMAC_SHA_256,
+        CryptoConstant.HMAC_SHA_512, CryptoConstant.HMAC_SHA3_256, CryptoConstant.HMAC_SHA3_512);
+
+    /**
+     * 优先使用 JDK 内置实现的秘钥工厂算法。
+     */
+    private static final Set<String> JDK_KEY_FACTORY_ALGORITHMS = Set.of(CryptoConstant.RSA);
+
+    /**
+     * 优先使用 JDK 内置实现的签名算法。
+     */
+    private static final Set<String> JDK_SIGNATURE_ALGORITHMS = Set.of(CryptoConstant.MD5_RSA, CryptoConstant.SHA1_RSA, CryptoConstant.SHA_256_RSA,
+        CryptoConstant.SHA_512_RSA, CryptoConstant.SHA3_256_RSA, CryptoConstant.SHA3_512_RSA);
 
     /**
      * 阻止实例化。
@@ -65,6 +123,57 @@ public final class CryptoMx {
     private CryptoMx() {
     }
 
+    /**
+     * 随机数生成器，首次使用时初始化。
+     */
+    private static final class SystemSecureRandomHolder {
+        /**
+         * 随机数生成器。
+         */
+        private static final SecureRandom INSTANCE = new SecureRandom();
+    }
+
+    /**
+     * BouncyCastle 加密算法实现，首次使用 JDK 不支持的算法时初始化。
+     */
+    private static final class ProviderHolder {
+        /**
+         * 加密算法实现。
+         */
+        private static final Provider INSTANCE = new BouncyCastleProvider();
+    }
+
+    /**
+     * 获取 BouncyCastle 加密算法实现。
+     *
+     * @return 加密算法实现。
+     */
+    @Nonnull
+    static Provider getBouncyCastleProvider() {
+        return ProviderHolder.INSTANCE;
+    }
+
+    // 监听器
+    /**
+     * 获取当前注册的加密操作监听器。
+     *
+     * @return 监听器，未注册时为 null。
+     */
+    @Nullable
+    public static CryptoListener getListener() {
+        return CryptoMonitor.getListener();
+    }
+
+    /**
+     * 注册加密操作监听器，替换之前注册的监听器。
+     *
+     * @param listener
+     *     监听器，为 null 时取消注册。
+     */
+    public static void setListener(@Nullable CryptoListener listener) {
+        CryptoMonitor.setListener(listener);
+    }
+
     // 随机数生成器算法
     /**
      * 获取随机数生成器算法实例。
@@ -75,11 +184,15 @@ public final class CryptoMx {
      */
     @Nonnull
     public static SecureRandom getSecureRandom(@Nonnull String algorithm) {
-        if (CryptoAlgorithm.Random.forCode(algorithm) == CryptoAlgorithm.Random.SYSTEM) {
-            return SYSTEM_SECURE_RANDOM;
+        CryptoAlgorithm.Random random = CryptoAlgorithm.Random.forCode(algorithm);
+        if (random == CryptoAlgorithm.Random.SYSTEM) {
+            return SystemSecureRandomHolder.INSTANCE;
+        }
+        if (random == CryptoAlgorithm.Random.THREAD_LOCAL) {
+            return ThreadLocalSecureRandom.getDefault();
         }
         try {
-            return SecureRandom.getInstance(algorithm, PROVIDER);
+            return SecureRandom.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -109,6 +222,52 @@ public final class CryptoMx {
         secureRandom.nextBytes(randomData);
     }
 
+    /**
+     * 生成随机数填充数组的一部分，使用 {@link ThreadLocalSecureRandom} 时不分配临时数组。
+     *
+     * @param randomData
+     *     随机数。
+     * @param offset
+     *     起始位置。
+     * @param length
+     *     随机数长度。
+     * @param secureRandom
+     *     随机数生成器算法实例。
+     */
+    public static void generateRandom(@Nonnull byte[] randomData, int offset, int length, @Nonnull SecureRandom secureRandom) {
+        if (secureRandom instanceof ThreadLocalSecureRandom) {
+            ((ThreadLocalSecureRandom) secureRandom).nextBytes(randomData, offset, length);
+        } else if (offset == 0 && length == randomData.length) {
+            secureRandom.nextBytes(randomData);
+        } else {
+            byte[] buffer = generateRandom(length, secureRandom);
+            System.arraycopy(buffer, 0, randomData, offset, length);
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    /**
+     * 生成随机数填充缓冲区的剩余部分，使用 {@link ThreadLocalSecureRandom} 时不分配临时数组。
+     *
+     * @param randomData
+     *     随机数。
+     * @param secureRandom
+     *     随机数生成器算法实例。
+     */
+    public static void generateRandom(@Nonnull ByteBuffer randomData, @Nonnull SecureRandom secureRandom) {
+        if (secureRandom instanceof ThreadLocalSecureRandom) {
+            ((ThreadLocalSecureRandom) secureRandom).nextBytes(randomData);
+        } else if (randomData.hasArray()) {
+            int length = randomData.remaining();
+            generateRandom(randomData.array(), randomData.arrayOffset() + randomData.position(), length, secureRandom);
+            randomData.position(randomData.position() + length);
+        } else {
+            byte[] buffer = generateRandom(randomData.remaining(), secureRandom);
+            randomData.put(buffer);
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
     /**
      * 生成随机数。
      *
@@ -135,8 +294,15 @@ public final class CryptoMx {
      */
     @Nonnull
     public static MessageDigest getMessageDigest(@Nonnull String algorithm) {
+        if (JDK_MESSAGE_DIGEST_ALGORITHMS.contains(algorithm)) {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // JDK 不支持时使用 BouncyCastle 实现
+            }
+        }
         try {
-            return MessageDigest.getInstance(algorithm, PROVIDER);
+            return MessageDigest.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -177,8 +343,16 @@ public final class CryptoMx {
      */
     @Nonnull
     public static byte[] digest(@Nonnull byte[] plainData, @Nonnull MessageDigest digest) {
-        updateDigest(plainData, digest);
-        return digest.digest();
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DIGEST, digest.getAlgorithm());
+        try {
+            updateDigest(plainData, digest);
+            byte[] digestData = digest.digest();
+            CryptoMonitor.success(monitor, plainData.length);
+            return digestData;
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
     }
 
     /**
@@ -194,9 +368,17 @@ public final class CryptoMx {
      */
     @Nonnull
     public static byte[] digest(@Nonnull byte[] plainData, @Nonnull byte[] saltData, @Nonnull MessageDigest digest) {
-        updateDigest(saltData, digest);
-        updateDigest(plainData, digest);
-        return digest.digest();
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DIGEST, digest.getAlgorithm());
+        try {
+            updateDigest(saltData, digest);
+            updateDigest(plainData, digest);
+            byte[] digestData = digest.digest();
+            CryptoMonitor.success(monitor, saltData.length + plainData.length);
+            return digestData;
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
     }
 
     /**
@@ -211,11 +393,35 @@ public final class CryptoMx {
      */
     public static void updateDigest(@Nonnull InputStream plainData, @Nonnull MessageDigest digest)
         throws IOException {
-        byte[] input = new byte[8 * 1024];
-        int readLength = -1;
-        while ((readLength = IOUtils.read(plainData, input)) > 0) {
-            digest.update(input, 0, readLength);
+        updateDigestCounted(plainData, digest);
+    }
+
+    /**
+     * 更新摘要。
+     *
+     * @param plainData
+     *     明文。
+     * @param digest
+     *     摘要算法实例。
+     * @return 读取的字节数。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    private static long updateDigestCounted(InputStream plainData, MessageDigest digest)
+        throws IOException {
+        CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+        byte[] input = bufferPool.borrow(plainData);
+        long totalLength = 0;
+        try {
+            int readLength = -1;
+            while ((readLength = IOUtils.read(plainData, input)) > 0) {
+                digest.update(input, 0, readLength);
+                totalLength += readLength;
+            }
+        } finally {
+            bufferPool.release(input, totalLength);
         }
+        return totalLength;
     }
 
     /**
@@ -232,8 +438,16 @@ public final class CryptoMx {
     @Nonnull
     public static byte[] digest(@Nonnull InputStream plainData, @Nonnull MessageDigest digest)
         throws IOException {
-        updateDigest(plainData, digest);
-        return digest.digest();
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DIGEST, digest.getAlgorithm());
+        try {
+            long length = updateDigestCounted(plainData, digest);
+            byte[] digestData = digest.digest();
+            CryptoMonitor.success(monitor, length);
+            return digestData;
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
     }
 
     /**
@@ -252,9 +466,187 @@ public final class CryptoMx {
     @Nonnull
     public static byte[] digest(@Nonnull InputStream plainData, @Nonnull byte[] saltData, @Nonnull MessageDigest digest)
         throws IOException {
-        updateDigest(saltData, digest);
-        updateDigest(plainData, digest);
-        return digest.digest();
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DIGEST, digest.getAlgorithm());
+        try {
+            updateDigest(saltData, digest);
+            long length = updateDigestCounted(plainData, digest);
+            byte[] digestData = digest.digest();
+            CryptoMonitor.success(monitor, saltData.length + length);
+            return digestData;
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 更新摘要。
+     *
+     * @param plainData
+     *     明文，从当前位置读取到结尾。
+     * @param digest
+     *     摘要算法实例。
+     */
+    public static void updateDigest(@Nonnull ByteBuffer plainData, @Nonnull MessageDigest digest) {
+        digest.update(plainData);
+    }
+
+    /**
+     * 更新摘要，使用直接缓冲区读取，避免复制到堆内存。
+     *
+     * @param plainData
+     *     明文，从当前位置读取到结尾。
+     * @param digest
+     *     摘要算法实例。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    public static void updateDigest(@Nonnull FileChannel plainData, @Nonnull MessageDigest digest)
+        throws IOException {
+        updateDigest(plainData, digest, false);
+    }
+
+    /**
+     * 更新摘要，使用直接缓冲区读取，避免复制到堆内存。
+     * 指定使用内存映射时，较大的文件按窗口映射到内存，映射在垃圾回收时才释放，适合少量大文件，不适合大量文件。
+     *
+     * @param plainData
+     *     明文，从当前位置读取到结尾。
+     * @param digest
+     *     摘要算法实例。
+     * @param mapped
+     *     是否使用内存映射读取较大的文件。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    public static void updateDigest(@Nonnull FileChannel plainData, @Nonnull MessageDigest digest, boolean mapped)
+        throws IOException {
+        readFile(plainData, digest::update, mapped);
+    }
+
+    /**
+     * 计算摘要。
+     *
+     * @param plainData
+     *     明文，从当前位置读取到结尾。
+     * @param digest
+     *     摘要算法实例。
+     * @return 摘要。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    @Nonnull
+    public static byte[] digest(@Nonnull FileChannel plainData, @Nonnull MessageDigest digest)
+        throws IOException {
+        return digest(plainData, digest, false);
+    }
+
+    /**
+     * 计算摘要。
+     *
+     * @param plainData
+     *     明文，从当前位置读取到结尾。
+     * @param digest
+     *     摘要算法实例。
+     * @param mapped
+     *     是否使用内存映射读取较大的文件。
+     * @return 摘要。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    @Nonnull
+    public static byte[] digest(@Nonnull FileChannel plainData, @Nonnull MessageDigest digest, boolean mapped)
+        throws IOException {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DIGEST, digest.getAlgorithm());
+        try {
+            long position = plainData.position();
+            updateDigest(plainData, digest, mapped);
+            byte[] digestData = digest.digest();
+            CryptoMonitor.success(monitor, plainData.position() - position);
+            return digestData;
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 计算摘要。
+     *
+     * @param plainData
+     *     明文文件。
+     * @param digest
+     *     摘要算法实例。
+     * @return 摘要。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    @Nonnull
+    public static byte[] digest(@Nonnull Path plainData, @Nonnull MessageDigest digest)
+        throws IOException {
+        return digest(plainData, digest, false);
+    }
+
+    /**
+     * 计算摘要。
+     *
+     * @param plainData
+     *     明文文件。
+     * @param digest
+     *     摘要算法实例。
+     * @param mapped
+     *     是否使用内存映射读取较大的文件。
+     * @return 摘要。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    @Nonnull
+    public static byte[] digest(@Nonnull Path plainData, @Nonnull MessageDigest digest, boolean mapped)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(plainData, StandardOpenOption.READ)) {
+            return digest(channel, digest, mapped);
+        }
+    }
+
+    /**
+     * 从文件通道当前位置读取到结尾，使用直接缓冲区，指定使用内存映射时较大的文件按窗口映射到内存。
+     *
+     * @param channel
+     *     文件通道。
+     * @param consumer
+     *     处理读取的数据。
+     * @param mapped
+     *     是否使用内存映射读取较大的文件。
+     * @throws IOException
+     *     读取文件失败。
+     */
+    private static void readFile(FileChannel channel, Consumer<ByteBuffer> consumer, boolean mapped)
+        throws IOException {
+        long position = channel.position();
+        long size = channel.size();
+        if (mapped && size - position >= MAPPED_THRESHOLD) {
+            while (position < size) {
+                long windowSize = Math.min(MAPPED_WINDOW_SIZE, size - position);
+                consumer.accept(channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize));
+                position += windowSize;
+            }
+            channel.position(position);
+        } else {
+            ByteBuffer buffer = DIRECT_BUFFERS.poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+            }
+            try {
+                buffer.clear();
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    consumer.accept(buffer);
+                    buffer.clear();
+                }
+            } finally {
+                DIRECT_BUFFERS.offer(buffer);
+            }
+        }
     }
 
     // 加密算法
@@ -268,7 +660,7 @@ public final class CryptoMx {
     @Nonnull
     public static AlgorithmParameterGenerator getAlgorithmParameterGenerator(@Nonnull String algorithm) {
         try {
-            return AlgorithmParameterGenerator.getInstance(algorithm, PROVIDER);
+            return AlgorithmParameterGenerator.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -323,7 +715,7 @@ public final class CryptoMx {
     @Nonnull
     public static AlgorithmParameters getAlgorithmParameter(@Nonnull String algorithm) {
         try {
-            return AlgorithmParameters.getInstance(algorithm, PROVIDER);
+            return AlgorithmParameters.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -371,8 +763,15 @@ public final class CryptoMx {
      */
     @Nonnull
     public static Cipher getCipher(@Nonnull String transformation) {
+        if (JDK_CIPHER_TRANSFORMATIONS.contains(transformation)) {
+            try {
+                return Cipher.getInstance(transformation);
+            } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+                // JDK 不支持时使用 BouncyCastle 实现
+            }
+        }
         try {
-            return Cipher.getInstance(transformation, PROVIDER);
+            return Cipher.getInstance(transformation, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
             throw new IllegalArgumentException(e);
         }
@@ -524,6 +923,128 @@ public final class CryptoMx {
         }
     }
 
+    /**
+     * 初始化加密算法实例加密秘钥。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param key
+     *     秘钥。
+     * @param algorithmParameterSpec
+     *     加密算法参数。
+     */
+    public static void initCipherForEncrypt(@Nonnull Cipher cipher, @Nonnull Key key, @Nonnull AlgorithmParameterSpec algorithmParameterSpec) {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, algorithmParameterSpec);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 初始化加密算法实例加密秘钥。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param key
+     *     秘钥。
+     * @param algorithmParameterSpec
+     *     加密算法参数。
+     * @param secureRandom
+     *     随机数生成器算法实例。
+     */
+    public static void initCipherForEncrypt(@Nonnull Cipher cipher, @Nonnull Key key, @Nonnull AlgorithmParameterSpec algorithmParameterSpec,
+        @Nonnull SecureRandom secureRandom) {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, algorithmParameterSpec, secureRandom);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 初始化加密算法实例解密秘钥。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param key
+     *     秘钥。
+     * @param algorithmParameterSpec
+     *     加密算法参数。
+     */
+    public static void initCipherForDecrypt(@Nonnull Cipher cipher, @Nonnull Key key, @Nonnull AlgorithmParameterSpec algorithmParameterSpec) {
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, algorithmParameterSpec);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 初始化加密算法实例解密秘钥。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param key
+     *     秘钥。
+     * @param algorithmParameterSpec
+     *     加密算法参数。
+     * @param secureRandom
+     *     随机数生成器算法实例。
+     */
+    public static void initCipherForDecrypt(@Nonnull Cipher cipher, @Nonnull Key key, @Nonnull AlgorithmParameterSpec algorithmParameterSpec,
+        @Nonnull SecureRandom secureRandom) {
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, algorithmParameterSpec, secureRandom);
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 判断是否认证加密算法，认证加密算法在密文后附加认证标签，解密时验证密文和附加认证数据未被篡改。
+     *
+     * @param transformation
+     *     算法变种名称。
+     * @return 是否认证加密算法。
+     */
+    public static boolean isAead(@Nonnull String transformation) {
+        String upperTransformation = transformation.toUpperCase(Locale.ROOT);
+        return upperTransformation.contains("/GCM/") || upperTransformation.contains("/CCM/")
+            || upperTransformation.equals(CryptoConstant.CHACHA20_POLY1305.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * 获取认证加密算法参数。
+     *
+     * @param transformation
+     *     算法变种名称。
+     * @param nonce
+     *     初始向量。
+     * @param tagLength
+     *     认证标签位数，ChaCha20-Poly1305 固定为 128。
+     * @return 加密算法参数。
+     */
+    @Nonnull
+    public static AlgorithmParameterSpec getAeadParameterSpec(@Nonnull String transformation, @Nonnull byte[] nonce, int tagLength) {
+        if (CryptoConstant.CHACHA20_POLY1305.equalsIgnoreCase(transformation)) {
+            return new IvParameterSpec(nonce);
+        }
+        return new GCMParameterSpec(tagLength, nonce);
+    }
+
+    /**
+     * 更新附加认证数据，必须在加密或解密数据之前调用。
+     *
+     * @param aad
+     *     附加认证数据。
+     * @param cipher
+     *     加密算法实例。
+     */
+    public static void updateAad(@Nonnull byte[] aad, @Nonnull Cipher cipher) {
+        cipher.updateAAD(aad);
+    }
+
     /**
      * 加密。
      *
@@ -535,10 +1056,17 @@ public final class CryptoMx {
      */
     @Nonnull
     public static byte[] encrypt(@Nonnull byte[] plainData, @Nonnull Cipher cipher) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.ENCRYPT, cipher.getAlgorithm());
         try {
-            return cipher.doFinal(plainData);
+            byte[] outputData = cipher.doFinal(plainData);
+            CryptoMonitor.success(monitor, plainData.length);
+            return outputData;
         } catch (IllegalBlockSizeException | BadPaddingException e) {
+            CryptoMonitor.failure(monitor, e);
             throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
         }
     }
 
@@ -556,74 +1084,309 @@ public final class CryptoMx {
      */
     public static void encrypt(@Nonnull InputStream plainData, @Nonnull OutputStream cipherData, @Nonnull Cipher cipher)
         throws IOException {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.ENCRYPT, cipher.getAlgorithm());
         try {
-            byte[] input = new byte[8 * 1024];
-            byte[] output = new byte[8 * 1024];
-            int readLength = -1;
-            while ((readLength = IOUtils.read(plainData, input)) > 0) {
-                int outputLength = cipher.update(input, 0, readLength, output);
+            CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+            byte[] input = null;
+            byte[] output = null;
+            long totalLength = 0;
+            try {
+                input = bufferPool.borrow(plainData);
+                output = bufferPool.borrow(cipher.getOutputSize(input.length));
+                int readLength = -1;
+                while ((readLength = IOUtils.read(plainData, input)) > 0) {
+                    int outputLength = cipher.update(input, 0, readLength, output);
+                    if (outputLength > 0) {
+                        cipherData.write(output, 0, outputLength);
+                    }
+                    totalLength += readLength;
+                }
+                int finalLength = cipher.getOutputSize(0);
+                if (finalLength > output.length) {
+                    bufferPool.release(output);
+                    output = null;
+                    output = bufferPool.borrow(finalLength);
+                }
+                int outputLength = cipher.doFinal(output, 0);
                 if (outputLength > 0) {
                     cipherData.write(output, 0, outputLength);
                 }
+            } finally {
+                if (output != null) {
+                    bufferPool.release(output);
+                }
+                if (input != null) {
+                    bufferPool.release(input, totalLength);
+                }
             }
-            int outputLength = cipher.doFinal(output, 0);
-            if (outputLength > 0) {
-                cipherData.write(output, 0, outputLength);
+            CryptoMonitor.success(monitor, totalLength);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 解密。
+     *
+     * @param cipherData
+     *     密文。
+     * @param cipher
+     *     加密算法实例。
+     * @return 明文。
+     */
+    @Nonnull
+    public static byte[] decrypt(@Nonnull byte[] cipherData, @Nonnull Cipher cipher) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DECRYPT, cipher.getAlgorithm());
+        try {
+            byte[] outputData = cipher.doFinal(cipherData);
+            CryptoMonitor.success(monitor, cipherData.length);
+            return outputData;
+        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 解密。
+     *
+     * @param cipherData
+     *     密文。
+     * @param plainData
+     *     明文。
+     * @param cipher
+     *     加密算法实例。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    public static void decrypt(@Nonnull InputStream cipherData, @Nonnull OutputStream plainData, @Nonnull Cipher cipher)
+        throws IOException {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DECRYPT, cipher.getAlgorithm());
+        try {
+            CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+            byte[] input = null;
+            byte[] output = null;
+            long totalLength = 0;
+            try {
+                input = bufferPool.borrow(cipherData);
+                output = bufferPool.borrow(cipher.getOutputSize(input.length));
+                int readLength = -1;
+                while ((readLength = IOUtils.read(cipherData, input)) > 0) {
+                    int outputLength = cipher.update(input, 0, readLength, output);
+                    if (outputLength > 0) {
+                        plainData.write(output, 0, outputLength);
+                    }
+                    totalLength += readLength;
+                }
+                int finalLength = cipher.getOutputSize(0);
+                if (finalLength > output.length) {
+                    bufferPool.release(output);
+                    output = null;
+                    output = bufferPool.borrow(finalLength);
+                }
+                int outputLength = cipher.doFinal(output, 0);
+                if (outputLength > 0) {
+                    plainData.write(output, 0, outputLength);
+                }
+            } finally {
+                if (output != null) {
+                    bufferPool.release(output);
+                }
+                if (input != null) {
+                    bufferPool.release(input, totalLength);
+                }
             }
+            CryptoMonitor.success(monitor, totalLength);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 计算加密或解密指定长度的数据所需的输出缓冲区长度，包括加密算法实例中已缓存的数据。
+     *
+     * @param inputLength
+     *     输入数据长度。
+     * @param cipher
+     *     加密算法实例。
+     * @return 输出缓冲区长度。
+     */
+    public static int getOutputSize(int inputLength, @Nonnull Cipher cipher) {
+        return cipher.getOutputSize(inputLength);
+    }
+
+    /**
+     * 加密，将密文写入指定数组，不分配新的数组。
+     *
+     * @param plainData
+     *     明文。
+     * @param plainOffset
+     *     明文偏移。
+     * @param plainLength
+     *     明文长度。
+     * @param cipherData
+     *     密文，长度不小于 {@link #getOutputSize(int, Cipher)}。
+     * @param cipherOffset
+     *     密文偏移。
+     * @param cipher
+     *     加密算法实例。
+     * @return 密文长度。
+     */
+    public static int encrypt(@Nonnull byte[] plainData, int plainOffset, int plainLength, @Nonnull byte[] cipherData, int cipherOffset,
+        @Nonnull Cipher cipher) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.ENCRYPT, cipher.getAlgorithm());
+        try {
+            int outputLength = cipher.doFinal(plainData, plainOffset, plainLength, cipherData, cipherOffset);
+            CryptoMonitor.success(monitor, plainLength);
+            return outputLength;
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 加密，从明文缓冲区当前位置读取到界限，将密文写入密文缓冲区当前位置，不分配新的缓冲区。
+     *
+     * @param plainData
+     *     明文。
+     * @param cipherData
+     *     密文，剩余空间不小于 {@link #getOutputSize(int, Cipher)}。
+     * @param cipher
+     *     加密算法实例。
+     * @return 密文长度。
+     */
+    public static int encrypt(@Nonnull ByteBuffer plainData, @Nonnull ByteBuffer cipherData, @Nonnull Cipher cipher) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.ENCRYPT, cipher.getAlgorithm());
+        try {
+            int inputLength = plainData.remaining();
+            int outputLength = cipher.doFinal(plainData, cipherData);
+            CryptoMonitor.success(monitor, inputLength);
+            return outputLength;
         } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
             throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
         }
     }
 
     /**
-     * 解密。
+     * 加密，从明文缓冲区当前位置读取到界限。
+     *
+     * @param plainData
+     *     明文。
+     * @param cipher
+     *     加密算法实例。
+     * @return 可以读取的密文缓冲区，明文缓冲区是直接缓冲区时也分配直接缓冲区。
+     */
+    @Nonnull
+    public static ByteBuffer encrypt(@Nonnull ByteBuffer plainData, @Nonnull Cipher cipher) {
+        ByteBuffer cipherData = allocateOutput(plainData, cipher);
+        encrypt(plainData, cipherData, cipher);
+        return cipherData.flip();
+    }
+
+    /**
+     * 解密，将明文写入指定数组，不分配新的数组。
      *
      * @param cipherData
      *     密文。
+     * @param cipherOffset
+     *     密文偏移。
+     * @param cipherLength
+     *     密文长度。
+     * @param plainData
+     *     明文，长度不小于 {@link #getOutputSize(int, Cipher)}。
+     * @param plainOffset
+     *     明文偏移。
      * @param cipher
      *     加密算法实例。
-     * @return 明文。
+     * @return 明文长度。
      */
-    @Nonnull
-    public static byte[] decrypt(@Nonnull byte[] cipherData, @Nonnull Cipher cipher) {
+    public static int decrypt(@Nonnull byte[] cipherData, int cipherOffset, int cipherLength, @Nonnull byte[] plainData, int plainOffset,
+        @Nonnull Cipher cipher) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DECRYPT, cipher.getAlgorithm());
         try {
-            return cipher.doFinal(cipherData);
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
+            int outputLength = cipher.doFinal(cipherData, cipherOffset, cipherLength, plainData, plainOffset);
+            CryptoMonitor.success(monitor, cipherLength);
+            return outputLength;
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
             throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
         }
     }
 
     /**
-     * 解密。
+     * 解密，从密文缓冲区当前位置读取到界限，将明文写入明文缓冲区当前位置，不分配新的缓冲区。
      *
      * @param cipherData
      *     密文。
      * @param plainData
-     *     明文。
+     *     明文，剩余空间不小于 {@link #getOutputSize(int, Cipher)}。
      * @param cipher
      *     加密算法实例。
-     * @throws IOException
-     *     读取密文失败。
+     * @return 明文长度。
      */
-    public static void decrypt(@Nonnull InputStream cipherData, @Nonnull OutputStream plainData, @Nonnull Cipher cipher)
-        throws IOException {
+    public static int decrypt(@Nonnull ByteBuffer cipherData, @Nonnull ByteBuffer plainData, @Nonnull Cipher cipher) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.DECRYPT, cipher.getAlgorithm());
         try {
-            byte[] input = new byte[8 * 1024];
-            byte[] output = new byte[8 * 1024];
-            int readLength = -1;
-            while ((readLength = IOUtils.read(cipherData, input)) > 0) {
-                int outputLength = cipher.update(input, 0, readLength, output);
-                if (outputLength > 0) {
-                    plainData.write(output, 0, outputLength);
-                }
-            }
-            int outputLength = cipher.doFinal(output, 0);
-            if (outputLength > 0) {
-                plainData.write(output, 0, outputLength);
-            }
+            int inputLength = cipherData.remaining();
+            int outputLength = cipher.doFinal(cipherData, plainData);
+            CryptoMonitor.success(monitor, inputLength);
+            return outputLength;
         } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            CryptoMonitor.failure(monitor, e);
             throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 解密，从密文缓冲区当前位置读取到界限。
+     *
+     * @param cipherData
+     *     密文。
+     * @param cipher
+     *     加密算法实例。
+     * @return 可以读取的明文缓冲区，密文缓冲区是直接缓冲区时也分配直接缓冲区。
+     */
+    @Nonnull
+    public static ByteBuffer decrypt(@Nonnull ByteBuffer cipherData, @Nonnull Cipher cipher) {
+        ByteBuffer plainData = allocateOutput(cipherData, cipher);
+        decrypt(cipherData, plainData, cipher);
+        return plainData.flip();
+    }
+
+    /**
+     * 按输入缓冲区的类型和剩余长度分配输出缓冲区。
+     */
+    private static ByteBuffer allocateOutput(ByteBuffer input, Cipher cipher) {
+        int outputSize = cipher.getOutputSize(input.remaining());
+        if (input.isDirect()) {
+            return ByteBuffer.allocateDirect(outputSize);
         }
+        return ByteBuffer.allocate(outputSize);
     }
 
     // 对称加密算法
@@ -861,7 +1624,7 @@ public final class CryptoMx {
     @Nonnull
     public static KeyGenerator getKeyGenerator(@Nonnull String algorithm) {
         try {
-            return KeyGenerator.getInstance(algorithm, PROVIDER);
+            return KeyGenerator.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -1120,6 +1883,21 @@ public final class CryptoMx {
          */
         private SecureRandom secureRandom;
 
+        /**
+         * 认证加密算法初始向量。
+         */
+        private byte[] nonce;
+
+        /**
+         * 认证加密算法认证标签位数。
+         */
+        private int tagLength = DEFAULT_TAG_LENGTH;
+
+        /**
+         * 认证加密算法附加认证数据。
+         */
+        private byte[] aad;
+
         /**
          * 阻止实例化。
          */
@@ -1165,7 +1943,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public SymmetricCipherBuilder setKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
-            this.key = getSecretKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm);
             return this;
         }
 
@@ -1180,7 +1958,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public SymmetricCipherBuilder setKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Symmetric algorithm) {
-            this.key = getSecretKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm.algorithm);
             return this;
         }
 
@@ -1249,6 +2027,45 @@ public final class CryptoMx {
             return this;
         }
 
+        /**
+         * 设置认证加密算法初始向量，同一秘钥加密时不能重复使用。
+         *
+         * @param nonce
+         *     初始向量。
+         * @return 对称加密算法实例构建器。
+         */
+        @Nonnull
+        public SymmetricCipherBuilder setNonce(@Nonnull byte[] nonce) {
+            this.nonce = nonce.clone();
+            return this;
+        }
+
+        /**
+         * 设置认证加密算法认证标签位数，默认为 128。
+         *
+         * @param tagLength
+         *     认证标签位数。
+         * @return 对称加密算法实例构建器。
+         */
+        @Nonnull
+        public SymmetricCipherBuilder setTagLength(int tagLength) {
+            this.tagLength = tagLength;
+            return this;
+        }
+
+        /**
+         * 设置认证加密算法附加认证数据，附加认证数据不加密，但与密文一起认证。
+         *
+         * @param aad
+         *     附加认证数据。
+         * @return 对称加密算法实例构建器。
+         */
+        @Nonnull
+        public SymmetricCipherBuilder setAad(@Nonnull byte[] aad) {
+            this.aad = aad.clone();
+            return this;
+        }
+
         /**
          * 构建对称加密算法实例。
          *
@@ -1256,7 +2073,14 @@ public final class CryptoMx {
          */
         @Nonnull
         public Cipher buildForEncrypt() {
-            if (algorithmParameter == null) {
+            if (nonce != null) {
+                AlgorithmParameterSpec algorithmParameterSpec = getAeadParameterSpec(cipher.getAlgorithm(), nonce, tagLength);
+                if (secureRandom == null) {
+                    initCipherForEncrypt(cipher, key, algorithmParameterSpec);
+                } else {
+                    initCipherForEncrypt(cipher, key, algorithmParameterSpec, secureRandom);
+                }
+            } else if (algorithmParameter == null) {
                 if (secureRandom == null) {
                     initCipherForEncrypt(cipher, key);
                 } else {
@@ -1269,6 +2093,9 @@ public final class CryptoMx {
                     initCipherForEncrypt(cipher, key, algorithmParameter, secureRandom);
                 }
             }
+            if (aad != null) {
+                updateAad(aad, cipher);
+            }
             return cipher;
         }
 
@@ -1279,7 +2106,14 @@ public final class CryptoMx {
          */
         @Nonnull
         public Cipher buildForDecrypt() {
-            if (algorithmParameter == null) {
+            if (nonce != null) {
+                AlgorithmParameterSpec algorithmParameterSpec = getAeadParameterSpec(cipher.getAlgorithm(), nonce, tagLength);
+                if (secureRandom == null) {
+                    initCipherForDecrypt(cipher, key, algorithmParameterSpec);
+                } else {
+                    initCipherForDecrypt(cipher, key, algorithmParameterSpec, secureRandom);
+                }
+            } else if (algorithmParameter == null) {
                 if (secureRandom == null) {
                     initCipherForDecrypt(cipher, key);
                 } else {
@@ -1292,6 +2126,9 @@ public final class CryptoMx {
                     initCipherForDecrypt(cipher, key, algorithmParameter, secureRandom);
                 }
             }
+            if (aad != null) {
+                updateAad(aad, cipher);
+            }
             return cipher;
         }
     }
@@ -1459,8 +2296,15 @@ public final class CryptoMx {
      */
     @Nonnull
     public static Mac getMac(@Nonnull String algorithm) {
+        if (JDK_MAC_ALGORITHMS.contains(algorithm)) {
+            try {
+                return Mac.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // JDK 不支持时使用 BouncyCastle 实现
+            }
+        }
         try {
-            return Mac.getInstance(algorithm, PROVIDER);
+            return Mac.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -1553,7 +2397,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public MacBuilder setKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
-            this.key = getSecretKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm);
             return this;
         }
 
@@ -1568,7 +2412,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public MacBuilder setKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Mac algorithm) {
-            this.key = getSecretKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm.algorithm);
             return this;
         }
 
@@ -1608,8 +2452,16 @@ public final class CryptoMx {
      */
     @Nonnull
     public static byte[] sign(@Nonnull byte[] plainData, @Nonnull Mac mac) {
-        mac.update(plainData);
-        return mac.doFinal();
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.MAC, mac.getAlgorithm());
+        try {
+            mac.update(plainData);
+            byte[] signData = mac.doFinal();
+            CryptoMonitor.success(monitor, plainData.length);
+            return signData;
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
     }
 
     /**
@@ -1626,12 +2478,27 @@ public final class CryptoMx {
     @Nonnull
     public static byte[] sign(@Nonnull InputStream plainData, @Nonnull Mac mac)
         throws IOException {
-        byte[] input = new byte[8 * 1024];
-        int readLength = -1;
-        while ((readLength = IOUtils.read(plainData, input)) > 0) {
-            mac.update(input, 0, readLength);
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.MAC, mac.getAlgorithm());
+        try {
+            CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+            byte[] input = bufferPool.borrow(plainData);
+            long totalLength = 0;
+            try {
+                int readLength = -1;
+                while ((readLength = IOUtils.read(plainData, input)) > 0) {
+                    mac.update(input, 0, readLength);
+                    totalLength += readLength;
+                }
+            } finally {
+                bufferPool.release(input, totalLength);
+            }
+            byte[] signData = mac.doFinal();
+            CryptoMonitor.success(monitor, totalLength);
+            return signData;
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
         }
-        return mac.doFinal();
     }
 
     /**
@@ -1669,6 +2536,129 @@ public final class CryptoMx {
         return Arrays.constantTimeAreEqual(actualSignData, signData);
     }
 
+    /**
+     * 生成消息认证码，使用直接缓冲区读取，避免复制到堆内存。
+     *
+     * @param plainData
+     *     数据，从当前位置读取到结尾。
+     * @param mac
+     *     消息认证码算法实例。
+     * @return 消息认证码。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    @Nonnull
+    public static byte[] sign(@Nonnull FileChannel plainData, @Nonnull Mac mac)
+        throws IOException {
+        return sign(plainData, mac, false);
+    }
+
+    /**
+     * 生成消息认证码，使用直接缓冲区读取，避免复制到堆内存。
+     * 指定使用内存映射时，较大的文件按窗口映射到内存，映射在垃圾回收时才释放，适合少量大文件，不适合大量文件。
+     *
+     * @param plainData
+     *     数据，从当前位置读取到结尾。
+     * @param mac
+     *     消息认证码算法实例。
+     * @param mapped
+     *     是否使用内存映射读取较大的文件。
+     * @return 消息认证码。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    @Nonnull
+    public static byte[] sign(@Nonnull FileChannel plainData, @Nonnull Mac mac, boolean mapped)
+        throws IOException {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.MAC, mac.getAlgorithm());
+        try {
+            long position = plainData.position();
+            readFile(plainData, mac::update, mapped);
+            byte[] signData = mac.doFinal();
+            CryptoMonitor.success(monitor, plainData.position() - position);
+            return signData;
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 生成消息认证码。
+     *
+     * @param plainData
+     *     数据文件。
+     * @param mac
+     *     消息认证码算法实例。
+     * @return 消息认证码。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    @Nonnull
+    public static byte[] sign(@Nonnull Path plainData, @Nonnull Mac mac)
+        throws IOException {
+        return sign(plainData, mac, false);
+    }
+
+    /**
+     * 生成消息认证码。
+     *
+     * @param plainData
+     *     数据文件。
+     * @param mac
+     *     消息认证码算法实例。
+     * @param mapped
+     *     是否使用内存映射读取较大的文件。
+     * @return 消息认证码。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    @Nonnull
+    public static byte[] sign(@Nonnull Path plainData, @Nonnull Mac mac, boolean mapped)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(plainData, StandardOpenOption.READ)) {
+            return sign(channel, mac, mapped);
+        }
+    }
+
+    /**
+     * 验证消息认证码。
+     *
+     * @param plainData
+     *     数据，从当前位置读取到结尾。
+     * @param signData
+     *     消息认证码。
+     * @param mac
+     *     消息认证码算法实例。
+     * @return 是否通过验证。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    public static boolean verify(@Nonnull FileChannel plainData, @Nonnull byte[] signData, @Nonnull Mac mac)
+        throws IOException {
+        byte[] actualSignData = sign(plainData, mac);
+        return Arrays.constantTimeAreEqual(actualSignData, signData);
+    }
+
+    /**
+     * 验证消息认证码。
+     *
+     * @param plainData
+     *     数据文件。
+     * @param signData
+     *     消息认证码。
+     * @param mac
+     *     消息认证码算法实例。
+     * @return 是否通过验证。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    public static boolean verify(@Nonnull Path plainData, @Nonnull byte[] signData, @Nonnull Mac mac)
+        throws IOException {
+        byte[] actualSignData = sign(plainData, mac);
+        return Arrays.constantTimeAreEqual(actualSignData, signData);
+    }
+
     // 非对称加密算法
     /**
      * 获取非对称加密算法秘钥对生成器实例。
@@ -1680,7 +2670,7 @@ public final class CryptoMx {
     @Nonnull
     public static KeyPairGenerator getKeyPairGenerator(@Nonnull String algorithm) {
         try {
-            return KeyPairGenerator.getInstance(algorithm, PROVIDER);
+            return KeyPairGenerator.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -1872,8 +2862,15 @@ public final class CryptoMx {
      */
     @Nonnull
     public static KeyFactory getKeyFactory(@Nonnull String algorithm) {
+        if (JDK_KEY_FACTORY_ALGORITHMS.contains(algorithm)) {
+            try {
+                return KeyFactory.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // JDK 不支持时使用 BouncyCastle 实现
+            }
+        }
         try {
-            return KeyFactory.getInstance(algorithm, PROVIDER);
+            return KeyFactory.getInstance(algorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -2047,7 +3044,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public AsymmetricCipherBuilder setPrivateKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
-            this.key = getPrivateKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPrivateKey(keyData, algorithm);
             return this;
         }
 
@@ -2062,7 +3059,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public AsymmetricCipherBuilder setPrivateKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Asymmetric algorithm) {
-            this.key = getPrivateKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPrivateKey(keyData, algorithm.algorithm);
             return this;
         }
 
@@ -2090,7 +3087,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public AsymmetricCipherBuilder setPublicKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
-            this.key = getPublicKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPublicKey(keyData, algorithm);
             return this;
         }
 
@@ -2105,7 +3102,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public AsymmetricCipherBuilder setPublicKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Asymmetric algorithm) {
-            this.key = getPublicKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPublicKey(keyData, algorithm.algorithm);
             return this;
         }
 
@@ -2393,8 +3390,15 @@ public final class CryptoMx {
      */
     @Nonnull
     public static Signature getSignature(@Nonnull String signAlgorithm) {
+        if (JDK_SIGNATURE_ALGORITHMS.contains(signAlgorithm)) {
+            try {
+                return Signature.getInstance(signAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                // JDK 不支持时使用 BouncyCastle 实现
+            }
+        }
         try {
-            return Signature.getInstance(signAlgorithm, PROVIDER);
+            return Signature.getInstance(signAlgorithm, ProviderHolder.INSTANCE);
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalArgumentException(e);
         }
@@ -2412,6 +3416,38 @@ public final class CryptoMx {
         return getSignature(algorithm.signAlgorithm);
     }
 
+    /**
+     * 初始化签名算法实例签名私钥。
+     *
+     * @param signature
+     *     签名算法实例。
+     * @param privateKey
+     *     私钥。
+     */
+    public static void initSignatureForSign(@Nonnull Signature signature, @Nonnull PrivateKey privateKey) {
+        try {
+            signature.initSign(privateKey);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 初始化签名算法实例验签公钥。
+     *
+     * @param signature
+     *     签名算法实例。
+     * @param publicKey
+     *     公钥。
+     */
+    public static void initSignatureForVerify(@Nonnull Signature signature, @Nonnull PublicKey publicKey) {
+        try {
+            signature.initVerify(publicKey);
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
     /**
      * 签名算法实例构建器。
      */
@@ -2476,7 +3512,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public SignatureBuilder setPrivateKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
-            this.key = getPrivateKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPrivateKey(keyData, algorithm);
             return this;
         }
 
@@ -2491,7 +3527,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public SignatureBuilder setPrivateKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Sign algorithm) {
-            this.key = getPrivateKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPrivateKey(keyData, algorithm.algorithm);
             return this;
         }
 
@@ -2519,7 +3555,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public SignatureBuilder setPublicKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
-            this.key = getPublicKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPublicKey(keyData, algorithm);
             return this;
         }
 
@@ -2534,7 +3570,7 @@ public final class CryptoMx {
          */
         @Nonnull
         public SignatureBuilder setPublicKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Sign algorithm) {
-            this.key = getPublicKey(keyData, algorithm);
+            this.key = CryptoKeyCache.getDefault().getPublicKey(keyData, algorithm.algorithm);
             return this;
         }
 
@@ -2644,11 +3680,18 @@ public final class CryptoMx {
      */
     @Nonnull
     public static byte[] sign(@Nonnull byte[] plainData, @Nonnull Signature signature) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.SIGN, signature.getAlgorithm());
         try {
             signature.update(plainData);
-            return signature.sign();
+            byte[] signData = signature.sign();
+            CryptoMonitor.success(monitor, plainData.length);
+            return signData;
         } catch (SignatureException e) {
+            CryptoMonitor.failure(monitor, e);
             throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
         }
     }
 
@@ -2664,11 +3707,107 @@ public final class CryptoMx {
      * @return 是否通过验证。
      */
     public static boolean verify(@Nonnull byte[] plainData, @Nonnull byte[] signData, @Nonnull Signature signature) {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.VERIFY, signature.getAlgorithm());
         try {
             signature.update(plainData);
-            return signature.verify(signData);
+            boolean result = signature.verify(signData);
+            CryptoMonitor.success(monitor, plainData.length);
+            return result;
+        } catch (SignatureException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 签名。
+     *
+     * @param plainData
+     *     数据。
+     * @param signature
+     *     签名算法实例。
+     * @return 签名。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    @Nonnull
+    public static byte[] sign(@Nonnull InputStream plainData, @Nonnull Signature signature)
+        throws IOException {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.SIGN, signature.getAlgorithm());
+        try {
+            long length = updateSignature(plainData, signature);
+            byte[] signData = signature.sign();
+            CryptoMonitor.success(monitor, length);
+            return signData;
+        } catch (SignatureException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw new IllegalArgumentException(e);
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 验证签名。
+     *
+     * @param plainData
+     *     数据。
+     * @param signData
+     *     签名。
+     * @param signature
+     *     签名算法实例。
+     * @return 是否通过验证。
+     * @throws IOException
+     *     读取数据失败。
+     */
+    public static boolean verify(@Nonnull InputStream plainData, @Nonnull byte[] signData, @Nonnull Signature signature)
+        throws IOException {
+        CryptoMonitor monitor = CryptoMonitor.start(CryptoListener.Operation.VERIFY, signature.getAlgorithm());
+        try {
+            long length = updateSignature(plainData, signature);
+            boolean result = signature.verify(signData);
+            CryptoMonitor.success(monitor, length);
+            return result;
         } catch (SignatureException e) {
+            CryptoMonitor.failure(monitor, e);
             throw new IllegalArgumentException(e);
+        } catch (IOException | RuntimeException e) {
+            CryptoMonitor.failure(monitor, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 更新签名数据。
+     *
+     * @param plainData
+     *     数据。
+     * @param signature
+     *     签名算法实例。
+     * @return 读取的字节数。
+     * @throws IOException
+     *     读取数据失败。
+     * @throws SignatureException
+     *     签名算法实例未初始化。
+     */
+    private static long updateSignature(InputStream plainData, Signature signature)
+        throws IOException, SignatureException {
+        CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+        byte[] input = bufferPool.borrow(plainData);
+        long totalLength = 0;
+        try {
+            int readLength = -1;
+            while ((readLength = IOUtils.read(plainData, input)) > 0) {
+                signature.update(input, 0, readLength);
+                totalLength += readLength;
+            }
+        } finally {
+            bufferPool.release(input, totalLength);
         }
+        return totalLength;
     }
 }
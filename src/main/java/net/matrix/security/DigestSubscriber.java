@@ -0,0 +1,57 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * 计算摘要的终端订阅者，直接使用数据块更新摘要，上游完成时通过 {@link #getResult()} 得到摘要。
+ * 摘要算法实例由本实例独占使用。
+ */
+@NotThreadSafe
+public final class DigestSubscriber
+    extends ByteBufferSubscriber {
+    /**
+     * 摘要算法实例。
+     */
+    private final MessageDigest digest;
+
+    /**
+     * 构造计算摘要的终端订阅者，使用默认预取数量。
+     *
+     * @param digest
+     *     摘要算法实例。
+     */
+    public DigestSubscriber(@Nonnull MessageDigest digest) {
+        this(digest, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * 构造计算摘要的终端订阅者。
+     *
+     * @param digest
+     *     摘要算法实例。
+     * @param prefetch
+     *     预取数量。
+     */
+    public DigestSubscriber(@Nonnull MessageDigest digest, int prefetch) {
+        super(prefetch);
+        this.digest = digest;
+    }
+
+    @Override
+    protected void update(ByteBuffer item) {
+        digest.update(item);
+    }
+
+    @Override
+    protected byte[] finish() {
+        return digest.digest();
+    }
+}
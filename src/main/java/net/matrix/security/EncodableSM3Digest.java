@@ -0,0 +1,277 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import org.bouncycastle.crypto.CryptoServiceProperties;
+import org.bouncycastle.crypto.CryptoServicePurpose;
+import org.bouncycastle.crypto.constraints.DefaultServiceProperties;
+import org.bouncycastle.crypto.digests.EncodableDigest;
+import org.bouncycastle.crypto.digests.GeneralDigest;
+import org.bouncycastle.util.Memoable;
+import org.bouncycastle.util.Pack;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 可以导出和恢复内部状态的 SM3 摘要算法，计算结果与 {@link org.bouncycastle.crypto.digests.SM3Digest} 相同。
+ * BouncyCastle 的 SM3 实现没有提供状态编码，状态格式与 {@link org.bouncycastle.crypto.digests.SHA256Digest} 相同。
+ */
+final class EncodableSM3Digest
+    extends GeneralDigest
+    implements EncodableDigest {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(EncodableSM3Digest.class).useCurrentLocale();
+
+    /**
+     * 摘要长度。
+     */
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * 轮常量，已按轮数循环左移。
+     */
+    private static final int[] T = new int[64];
+
+    static {
+        for (int i = 0; i < 16; i++) {
+            T[i] = Integer.rotateLeft(0x79CC4519, i);
+        }
+        for (int i = 16; i < 64; i++) {
+            T[i] = Integer.rotateLeft(0x7A879D8A, i);
+        }
+    }
+
+    /**
+     * 中间状态。
+     */
+    private final int[] v = new int[8];
+
+    /**
+     * 当前分组的字。
+     */
+    private final int[] inwords = new int[16];
+
+    /**
+     * 当前分组已填充的字数。
+     */
+    private int xOff;
+
+    /**
+     * 消息扩展使用的字。
+     */
+    private final int[] w = new int[68];
+
+    /**
+     * 构造 SM3 摘要算法。
+     */
+    EncodableSM3Digest() {
+        super(CryptoServicePurpose.ANY);
+        reset();
+    }
+
+    /**
+     * 复制 SM3 摘要算法。
+     *
+     * @param other
+     *     被复制的实例。
+     */
+    EncodableSM3Digest(EncodableSM3Digest other) {
+        super(other);
+        copyIn(other);
+    }
+
+    /**
+     * 从编码状态恢复 SM3 摘要算法。
+     *
+     * @param encodedState
+     *     {@link #getEncodedState()} 导出的状态。
+     * @throws IllegalArgumentException
+     *     状态无效。
+     */
+    EncodableSM3Digest(byte[] encodedState) {
+        super(checkEncodedState(encodedState));
+        for (int i = 0; i < 8; i++) {
+            v[i] = Pack.bigEndianToInt(encodedState, 16 + i * 4);
+        }
+        xOff = Pack.bigEndianToInt(encodedState, 48);
+        for (int i = 0; i < xOff; i++) {
+            inwords[i] = Pack.bigEndianToInt(encodedState, 52 + i * 4);
+        }
+    }
+
+    /**
+     * 检查编码状态的长度和当前分组已填充的字数，避免恢复不可信的状态时越界。
+     *
+     * @param encodedState
+     *     {@link #getEncodedState()} 导出的状态。
+     * @return 编码状态。
+     * @throws IllegalArgumentException
+     *     状态无效。
+     */
+    private static byte[] checkEncodedState(byte[] encodedState) {
+        if (encodedState.length < 53) {
+            throw new IllegalArgumentException(RBMF.format("无效的状态长度 {0}", encodedState.length));
+        }
+        int xOff = Pack.bigEndianToInt(encodedState, 48);
+        if (xOff < 0 || xOff >= 16 || encodedState.length != 53 + 4 * xOff) {
+            throw new IllegalArgumentException(RBMF.format("无效的状态长度 {0}", encodedState.length));
+        }
+        return encodedState;
+    }
+
+    private void copyIn(EncodableSM3Digest other) {
+        System.arraycopy(other.v, 0, v, 0, v.length);
+        System.arraycopy(other.inwords, 0, inwords, 0, inwords.length);
+        xOff = other.xOff;
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "SM3";
+    }
+
+    @Override
+    public int getDigestSize() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    public byte[] getEncodedState() {
+        byte[] state = new byte[52 + xOff * 4 + 1];
+        super.populateState(state);
+        for (int i = 0; i < 8; i++) {
+            Pack.intToBigEndian(v[i], state, 16 + i * 4);
+        }
+        Pack.intToBigEndian(xOff, state, 48);
+        for (int i = 0; i < xOff; i++) {
+            Pack.intToBigEndian(inwords[i], state, 52 + i * 4);
+        }
+        state[state.length - 1] = (byte) purpose.ordinal();
+        return state;
+    }
+
+    @Override
+    public Memoable copy() {
+        return new EncodableSM3Digest(this);
+    }
+
+    @Override
+    public void reset(Memoable other) {
+        EncodableSM3Digest digest = (EncodableSM3Digest) other;
+        super.copyIn(digest);
+        copyIn(digest);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        v[0] = 0x7380166F;
+        v[1] = 0x4914B2B9;
+        v[2] = 0x172442D7;
+        v[3] = 0xDA8A0600;
+        v[4] = 0xA96F30BC;
+        v[5] = 0x163138AA;
+        v[6] = 0xE38DEE4D;
+        v[7] = 0xB0FB0E4E;
+        xOff = 0;
+    }
+
+    @Override
+    public int doFinal(byte[] out, int outOff) {
+        finish();
+        Pack.intToBigEndian(v, out, outOff);
+        reset();
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void processWord(byte[] in, int inOff) {
+        inwords[xOff++] = Pack.bigEndianToInt(in, inOff);
+        if (xOff >= 16) {
+            processBlock();
+        }
+    }
+
+    @Override
+    protected void processLength(long bitLength) {
+        if (xOff > 14) {
+            inwords[xOff] = 0;
+            xOff++;
+            processBlock();
+        }
+        while (xOff < 14) {
+            inwords[xOff] = 0;
+            xOff++;
+        }
+        inwords[xOff++] = (int) (bitLength >>> 32);
+        inwords[xOff++] = (int) bitLength;
+    }
+
+    @Override
+    protected void processBlock() {
+        System.arraycopy(inwords, 0, w, 0, 16);
+        for (int j = 16; j < 68; j++) {
+            int wj3 = w[j - 3];
+            int wj13 = w[j - 13];
+            w[j] = p1(w[j - 16] ^ w[j - 9] ^ Integer.rotateLeft(wj3, 15)) ^ Integer.rotateLeft(wj13, 7) ^ w[j - 6];
+        }
+
+        int a = v[0];
+        int b = v[1];
+        int c = v[2];
+        int d = v[3];
+        int e = v[4];
+        int f = v[5];
+        int g = v[6];
+        int h = v[7];
+        for (int j = 0; j < 64; j++) {
+            int a12 = Integer.rotateLeft(a, 12);
+            int ss1 = Integer.rotateLeft(a12 + e + T[j], 7);
+            int ss2 = ss1 ^ a12;
+            int tt1;
+            int tt2;
+            if (j < 16) {
+                tt1 = (a ^ b ^ c) + d + ss2 + (w[j] ^ w[j + 4]);
+                tt2 = (e ^ f ^ g) + h + ss1 + w[j];
+            } else {
+                tt1 = ((a & b) | (a & c) | (b & c)) + d + ss2 + (w[j] ^ w[j + 4]);
+                tt2 = ((e & f) | (~e & g)) + h + ss1 + w[j];
+            }
+            d = c;
+            c = Integer.rotateLeft(b, 9);
+            b = a;
+            a = tt1;
+            h = g;
+            g = Integer.rotateLeft(f, 19);
+            f = e;
+            e = p0(tt2);
+        }
+        v[0] ^= a;
+        v[1] ^= b;
+        v[2] ^= c;
+        v[3] ^= d;
+        v[4] ^= e;
+        v[5] ^= f;
+        v[6] ^= g;
+        v[7] ^= h;
+
+        xOff = 0;
+    }
+
+    private static int p0(int x) {
+        return x ^ Integer.rotateLeft(x, 9) ^ Integer.rotateLeft(x, 17);
+    }
+
+    private static int p1(int x) {
+        return x ^ Integer.rotateLeft(x, 15) ^ Integer.rotateLeft(x, 23);
+    }
+
+    @Override
+    protected CryptoServiceProperties cryptoServiceProperties() {
+        return new DefaultServiceProperties(getAlgorithmName(), 128, null, purpose);
+    }
+}
@@ -0,0 +1,657 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 数字信封加密，每次加密生成随机的数据秘钥，使用 {@link StreamingAead} 分段加密数据，只使用非对称加密算法加密数据秘钥。
+ * 密文格式为：版本（1 字节）、加密的数据秘钥长度（2 字节）、加密的数据秘钥、分段认证加密密文，头部作为分段认证加密的附加认证数据。
+ * 加密的数据秘钥的 SHA-256 摘要作为秘钥编号，解密时可缓存秘钥编号对应的数据秘钥，避免重复解密相同的数据秘钥。
+ */
+@Immutable
+public final class EnvelopeCipher {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(EnvelopeCipher.class).useCurrentLocale();
+
+    /**
+     * 默认数据加密算法。
+     */
+    public static final CryptoAlgorithm.Symmetric DEFAULT_DATA_ALGORITHM = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+
+    /**
+     * 版本。
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * 加密的数据秘钥最大长度。
+     */
+    private static final int MAX_WRAPPED_KEY_LENGTH = 0xFFFF;
+
+    /**
+     * 非对称加密算法名称。
+     */
+    private final String transformation;
+
+    /**
+     * 加密数据秘钥的公钥。
+     */
+    private final PublicKey publicKey;
+
+    /**
+     * 解密数据秘钥的私钥。
+     */
+    private final PrivateKey privateKey;
+
+    /**
+     * 数据加密算法。
+     */
+    private final CryptoAlgorithm.Symmetric dataAlgorithm;
+
+    /**
+     * 数据秘钥长度，单位字节。
+     */
+    private final int dataKeyLength;
+
+    /**
+     * 分段长度。
+     */
+    private final int segmentSize;
+
+    /**
+     * 随机数生成器算法实例。
+     */
+    private final SecureRandom secureRandom;
+
+    /**
+     * 数据秘钥缓存，按秘钥编号查找。
+     */
+    private final Cache<ByteBuffer, SecretKey> dataKeyCache;
+
+    /**
+     * 构造数字信封加密。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private EnvelopeCipher(Builder builder) {
+        this.transformation = builder.transformation;
+        this.publicKey = builder.publicKey;
+        this.privateKey = builder.privateKey;
+        this.dataAlgorithm = builder.dataAlgorithm;
+        this.dataKeyLength = builder.dataKeyLength;
+        this.segmentSize = builder.segmentSize;
+        this.secureRandom = builder.secureRandom;
+        if (builder.dataKeyCacheSize > 0) {
+            this.dataKeyCache = CacheBuilder.newBuilder().maximumSize(builder.dataKeyCacheSize).expireAfterAccess(builder.dataKeyCacheExpireAfterAccess)
+                .build();
+        } else {
+            this.dataKeyCache = null;
+        }
+    }
+
+    /**
+     * 创建加密输出流，立即生成数据秘钥并写入头部。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 加密输出流，写入明文。
+     * @throws IOException
+     *     写入密文失败。
+     */
+    @Nonnull
+    public OutputStream newEncryptingStream(@Nonnull OutputStream cipherData)
+        throws IOException {
+        if (publicKey == null) {
+            throw new IllegalStateException(RBMF.get("未设置公钥"));
+        }
+
+        byte[] keyData = CryptoMx.generateRandom(dataKeyLength, secureRandom);
+        byte[] header;
+        SecretKey dataKey;
+        try {
+            dataKey = CryptoMx.getSecretKey(keyData, dataAlgorithm);
+            header = newHeader(wrapKey(keyData));
+        } finally {
+            Arrays.fill(keyData, (byte) 0);
+        }
+        cipherData.write(header);
+        return newStreamingAead(dataKey, header).newEncryptingStream(cipherData);
+    }
+
+    /**
+     * 创建解密输入流，立即读取头部并解密数据秘钥。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 解密输入流，读取明文。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    @Nonnull
+    public InputStream newDecryptingStream(@Nonnull InputStream cipherData)
+        throws IOException {
+        if (privateKey == null) {
+            throw new IllegalStateException(RBMF.get("未设置私钥"));
+        }
+
+        byte[] header = readHeader(cipherData);
+        byte[] wrappedKey = Arrays.copyOfRange(header, 3, header.length);
+        SecretKey dataKey;
+        if (dataKeyCache == null) {
+            dataKey = unwrapKey(wrappedKey);
+        } else {
+            ByteBuffer keyId = ByteBuffer.wrap(getKeyId(wrappedKey));
+            dataKey = dataKeyCache.getIfPresent(keyId);
+            if (dataKey == null) {
+                dataKey = unwrapKey(wrappedKey);
+                dataKeyCache.put(keyId, dataKey);
+            }
+        }
+        return newStreamingAead(dataKey, header).newDecryptingStream(cipherData);
+    }
+
+    /**
+     * 加密。
+     *
+     * @param plainData
+     *     明文。
+     * @param cipherData
+     *     密文。
+     * @throws IOException
+     *     读取明文或写入密文失败。
+     */
+    public void encrypt(@Nonnull InputStream plainData, @Nonnull OutputStream cipherData)
+        throws IOException {
+        try (OutputStream output = newEncryptingStream(CloseShieldOutputStream.wrap(cipherData))) {
+            IOUtils.copyLarge(plainData, output, new byte[segmentSize]);
+        }
+    }
+
+    /**
+     * 解密，验证失败时抛出 {@link IllegalArgumentException}，此时已写入的明文不可信。
+     *
+     * @param cipherData
+     *     密文。
+     * @param plainData
+     *     明文。
+     * @throws IOException
+     *     读取密文或写入明文失败。
+     */
+    public void decrypt(@Nonnull InputStream cipherData, @Nonnull OutputStream plainData)
+        throws IOException {
+        try (InputStream input = newDecryptingStream(CloseShieldInputStream.wrap(cipherData))) {
+            IOUtils.copyLarge(input, plainData, new byte[segmentSize]);
+        }
+    }
+
+    /**
+     * 加密。
+     *
+     * @param plainData
+     *     明文。
+     * @return 密文。
+     */
+    @Nonnull
+    public byte[] encrypt(@Nonnull byte[] plainData) {
+        ByteArrayOutputStream cipherData = new ByteArrayOutputStream();
+        try {
+            encrypt(new ByteArrayInputStream(plainData), cipherData);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return cipherData.toByteArray();
+    }
+
+    /**
+     * 解密，验证失败时抛出 {@link IllegalArgumentException}。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 明文。
+     */
+    @Nonnull
+    public byte[] decrypt(@Nonnull byte[] cipherData) {
+        ByteArrayOutputStream plainData = new ByteArrayOutputStream();
+        try {
+            decrypt(new ByteArrayInputStream(cipherData), plainData);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return plainData.toByteArray();
+    }
+
+    /**
+     * 读取密文头部，计算秘钥编号。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 秘钥编号，即加密的数据秘钥的 SHA-256 摘要。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    @Nonnull
+    public static byte[] readKeyId(@Nonnull InputStream cipherData)
+        throws IOException {
+        byte[] header = readHeader(cipherData);
+        return getKeyId(Arrays.copyOfRange(header, 3, header.length));
+    }
+
+    /**
+     * 数据秘钥缓存数量。
+     *
+     * @return 数据秘钥缓存数量，未启用缓存时为 0。
+     */
+    public long getDataKeyCacheSize() {
+        if (dataKeyCache == null) {
+            return 0;
+        }
+        return dataKeyCache.size();
+    }
+
+    /**
+     * 非对称加密算法名称。
+     *
+     * @return 非对称加密算法名称。
+     */
+    @Nonnull
+    public String getTransformation() {
+        return transformation;
+    }
+
+    /**
+     * 数据加密算法。
+     *
+     * @return 数据加密算法。
+     */
+    @Nonnull
+    public CryptoAlgorithm.Symmetric getDataAlgorithm() {
+        return dataAlgorithm;
+    }
+
+    /**
+     * 使用数据秘钥构造分段认证加密，头部作为附加认证数据。
+     */
+    private StreamingAead newStreamingAead(SecretKey dataKey, byte[] header) {
+        return StreamingAead.newBuilder(dataAlgorithm).setKey(dataKey).setSegmentSize(segmentSize).setAad(header).setSecureRandom(secureRandom).build();
+    }
+
+    /**
+     * 加密数据秘钥。
+     */
+    private byte[] wrapKey(byte[] keyData) {
+        try (CryptoEnginePool.Lease<Cipher> lease = CryptoEnginePool.ofCipher(transformation).lease()) {
+            Cipher cipher = lease.get();
+            CryptoMx.initCipherForEncrypt(cipher, publicKey, secureRandom);
+            return CryptoMx.encrypt(keyData, cipher);
+        }
+    }
+
+    /**
+     * 解密数据秘钥。
+     * 解密失败或数据秘钥长度错误时不抛出异常，改用随机秘钥继续解密，失败只表现为认证失败，避免成为填充验证的预言机。
+     */
+    private SecretKey unwrapKey(byte[] wrappedKey) {
+        byte[] keyData = CryptoMx.generateRandom(dataKeyLength, secureRandom);
+        byte[] unwrappedKeyData = null;
+        try (CryptoEnginePool.Lease<Cipher> lease = CryptoEnginePool.ofCipher(transformation).lease()) {
+            Cipher cipher = lease.get();
+            CryptoMx.initCipherForDecrypt(cipher, privateKey);
+            try {
+                unwrappedKeyData = CryptoMx.decrypt(wrappedKey, cipher);
+            } catch (RuntimeException e) {
+                // 与认证失败一致
+            }
+        }
+        try {
+            if (unwrappedKeyData != null && unwrappedKeyData.length == dataKeyLength) {
+                System.arraycopy(unwrappedKeyData, 0, keyData, 0, dataKeyLength);
+            }
+            return CryptoMx.getSecretKey(keyData, dataAlgorithm);
+        } finally {
+            Arrays.fill(keyData, (byte) 0);
+            if (unwrappedKeyData != null) {
+                Arrays.fill(unwrappedKeyData, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * 构造头部。
+     */
+    private static byte[] newHeader(byte[] wrappedKey) {
+        if (wrappedKey.length > MAX_WRAPPED_KEY_LENGTH) {
+            throw new IllegalArgumentException(RBMF.format("无效的数据秘钥长度 {0}", wrappedKey.length));
+        }
+        byte[] header = new byte[3 + wrappedKey.length];
+        header[0] = VERSION;
+        header[1] = (byte) (wrappedKey.length >>> 8);
+        header[2] = (byte) wrappedKey.length;
+        System.arraycopy(wrappedKey, 0, header, 3, wrappedKey.length);
+        return header;
+    }
+
+    /**
+     * 读取头部。
+     */
+    private static byte[] readHeader(InputStream cipherData)
+        throws IOException {
+        byte[] prefix = new byte[3];
+        if (IOUtils.read(cipherData, prefix) < prefix.length) {
+            throw new EOFException();
+        }
+        if (prefix[0] != VERSION) {
+            throw new IllegalArgumentException(RBMF.format("不支持的版本 {0}", prefix[0]));
+        }
+        int wrappedKeyLength = (prefix[1] & 0xFF) << 8 | prefix[2] & 0xFF;
+        byte[] header = Arrays.copyOf(prefix, prefix.length + wrappedKeyLength);
+        if (IOUtils.read(cipherData, header, prefix.length, wrappedKeyLength) < wrappedKeyLength) {
+            throw new EOFException();
+        }
+        return header;
+    }
+
+    /**
+     * 计算秘钥编号。
+     */
+    private static byte[] getKeyId(byte[] wrappedKey) {
+        try (CryptoEnginePool.Lease<MessageDigest> lease = CryptoEnginePool.ofMessageDigest(CryptoAlgorithm.Digest.SHA_256).lease()) {
+            return CryptoMx.digest(wrappedKey, lease.get());
+        }
+    }
+
+    /**
+     * 构造数字信封加密构建器。
+     *
+     * @param transformation
+     *     非对称加密算法名称。
+     * @return 数字信封加密构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull String transformation) {
+        Builder builder = new Builder();
+        builder.transformation = transformation;
+        return builder;
+    }
+
+    /**
+     * 构造数字信封加密构建器。
+     *
+     * @param algorithm
+     *     非对称加密算法枚举值。
+     * @return 数字信封加密构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Asymmetric algorithm) {
+        return newBuilder(algorithm.transformation);
+    }
+
+    /**
+     * 数字信封加密构建器。
+     */
+    public static final class Builder {
+        /**
+         * 非对称加密算法名称。
+         */
+        private String transformation;
+
+        /**
+         * 加密数据秘钥的公钥。
+         */
+        private PublicKey publicKey;
+
+        /**
+         * 解密数据秘钥的私钥。
+         */
+        private PrivateKey privateKey;
+
+        /**
+         * 数据加密算法。
+         */
+        private CryptoAlgorithm.Symmetric dataAlgorithm = DEFAULT_DATA_ALGORITHM;
+
+        /**
+         * 数据秘钥长度，单位字节。
+         */
+        private int dataKeyLength;
+
+        /**
+         * 分段长度。
+         */
+        private int segmentSize = StreamingAead.DEFAULT_SEGMENT_SIZE;
+
+        /**
+         * 随机数生成器算法实例。
+         */
+        private SecureRandom secureRandom;
+
+        /**
+         * 数据秘钥最大缓存数量。
+         */
+        private long dataKeyCacheSize;
+
+        /**
+         * 数据秘钥缓存访问后过期时间。
+         */
+        private Duration dataKeyCacheExpireAfterAccess;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置加密数据秘钥的公钥。
+         *
+         * @param keyData
+         *     公钥。
+         * @param algorithm
+         *     算法名称。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setPublicKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
+            this.publicKey = CryptoKeyCache.getDefault().getPublicKey(keyData, algorithm);
+            return this;
+        }
+
+        /**
+         * 设置加密数据秘钥的公钥。
+         *
+         * @param keyData
+         *     公钥。
+         * @param algorithm
+         *     算法枚举值。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setPublicKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Asymmetric algorithm) {
+            return setPublicKey(keyData, algorithm.algorithm);
+        }
+
+        /**
+         * 设置加密数据秘钥的公钥。
+         *
+         * @param publicKey
+         *     公钥实例。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setPublicKey(@Nonnull PublicKey publicKey) {
+            this.publicKey = publicKey;
+            return this;
+        }
+
+        /**
+         * 设置解密数据秘钥的私钥。
+         *
+         * @param keyData
+         *     私钥。
+         * @param algorithm
+         *     算法名称。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setPrivateKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
+            this.privateKey = CryptoKeyCache.getDefault().getPrivateKey(keyData, algorithm);
+            return this;
+        }
+
+        /**
+         * 设置解密数据秘钥的私钥。
+         *
+         * @param keyData
+         *     私钥。
+         * @param algorithm
+         *     算法枚举值。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setPrivateKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Asymmetric algorithm) {
+            return setPrivateKey(keyData, algorithm.algorithm);
+        }
+
+        /**
+         * 设置解密数据秘钥的私钥。
+         *
+         * @param privateKey
+         *     私钥实例。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setPrivateKey(@Nonnull PrivateKey privateKey) {
+            this.privateKey = privateKey;
+            return this;
+        }
+
+        /**
+         * 设置数据加密算法，必须是认证加密算法，默认为 AES/GCM/NoPadding。
+         *
+         * @param dataAlgorithm
+         *     数据加密算法枚举值。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setDataAlgorithm(@Nonnull CryptoAlgorithm.Symmetric dataAlgorithm) {
+            this.dataAlgorithm = dataAlgorithm;
+            return this;
+        }
+
+        /**
+         * 设置数据秘钥长度，默认 SM4 为 16 字节，其它算法为 32 字节。
+         *
+         * @param dataKeyLength
+         *     数据秘钥长度，单位字节。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setDataKeyLength(int dataKeyLength) {
+            this.dataKeyLength = dataKeyLength;
+            return this;
+        }
+
+        /**
+         * 设置分段长度。
+         *
+         * @param segmentSize
+         *     分段长度。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * 设置生成数据秘钥的随机数生成器算法实例，默认使用 {@link ThreadLocalSecureRandom}。
+         *
+         * @param secureRandom
+         *     随机数生成器算法实例。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setSecureRandom(@Nonnull SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+            return this;
+        }
+
+        /**
+         * 启用数据秘钥缓存，反复解密相同秘钥编号的密文时不再使用私钥解密数据秘钥。
+         *
+         * @param maximumSize
+         *     最大缓存数量。
+         * @param expireAfterAccess
+         *     访问后过期时间。
+         * @return 数字信封加密构建器。
+         */
+        @Nonnull
+        public Builder setDataKeyCache(long maximumSize, @Nonnull Duration expireAfterAccess) {
+            this.dataKeyCacheSize = maximumSize;
+            this.dataKeyCacheExpireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        /**
+         * 构建数字信封加密。
+         *
+         * @return 数字信封加密。
+         */
+        @Nonnull
+        public EnvelopeCipher build() {
+            if (publicKey == null && privateKey == null) {
+                throw new IllegalArgumentException(RBMF.get("未设置公钥或私钥"));
+            }
+            if (!CryptoMx.isAead(dataAlgorithm.transformation)) {
+                throw new IllegalArgumentException(RBMF.format("{0} 不是认证加密算法", dataAlgorithm.transformation));
+            }
+            if (segmentSize <= 0 || segmentSize > StreamingAead.MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException();
+            }
+            if (dataKeyLength == 0) {
+                dataKeyLength = CryptoConstant.SM4.equals(dataAlgorithm.algorithm) ? 16 : 32;
+            } else if (dataKeyLength < 0) {
+                throw new IllegalArgumentException();
+            }
+            if (secureRandom == null) {
+                secureRandom = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL);
+            }
+            return new EnvelopeCipher(this);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.util.SplittableRandom;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * FastCDC 内容定义分块，使用 Gear 滚动哈希在内容特征处切分，插入或删除数据只影响附近的分块边界。
+ * 使用归一化分块，平均长度之前使用较严格的掩码，之后使用较宽松的掩码，使分块长度集中在平均长度附近。
+ * 掩码取哈希的高位，判断窗口覆盖最近 64 字节。
+ */
+@Immutable
+final class FastCdcChunker {
+    /**
+     * Gear 哈希表，使用固定种子生成，分块边界在不同版本之间保持稳定。
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x46617374434443L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * 最小分块长度。
+     */
+    private final int minSize;
+
+    /**
+     * 平均分块长度。
+     */
+    private final int averageSize;
+
+    /**
+     * 最大分块长度。
+     */
+    private final int maxSize;
+
+    /**
+     * 平均长度之前使用的掩码。
+     */
+    private final long strictMask;
+
+    /**
+     * 平均长度之后使用的掩码。
+     */
+    private final long looseMask;
+
+    /**
+     * 构造内容定义分块。
+     *
+     * @param minSize
+     *     最小分块长度。
+     * @param averageSize
+     *     平均分块长度，必须是 2 的幂。
+     * @param maxSize
+     *     最大分块长度。
+     */
+    FastCdcChunker(int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || averageSize <= minSize || maxSize <= averageSize || Integer.bitCount(averageSize) != 1 || averageSize < 64) {
+            throw new IllegalArgumentException(minSize + "/" + averageSize + "/" + maxSize);
+        }
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.strictMask = -1L << (64 - bits - 2);
+        this.looseMask = -1L << (64 - bits + 2);
+    }
+
+    /**
+     * 最大分块长度。
+     *
+     * @return 最大分块长度。
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 计算第一个分块的长度。
+     *
+     * @param data
+     *     数据。
+     * @param offset
+     *     数据起始位置。
+     * @param length
+     *     数据长度，数据未结束时至少为最大分块长度。
+     * @return 分块长度。
+     */
+    int cut(byte[] data, int offset, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int end = Math.min(length, maxSize);
+        int normal = Math.min(end, averageSize);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & strictMask) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & looseMask) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 秘钥对预生成池，在后台线程池中预先生成指定算法和秘钥长度的秘钥对，调用者取用时无需等待生成。
+ * 可用数量降到低水位时开始补充，直到达到容量；池中没有可用秘钥对时在当前线程生成，并记录等待时间。
+ */
+@ThreadSafe
+public final class KeyPairPool
+    implements AutoCloseable {
+    /**
+     * 日志记录器。
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(KeyPairPool.class);
+
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(KeyPairPool.class).useCurrentLocale();
+
+    /**
+     * 默认容量。
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * 算法名称。
+     */
+    private final String algorithm;
+
+    /**
+     * 秘钥长度，为 0 时使用默认长度。
+     */
+    private final int keySize;
+
+    /**
+     * 随机数生成器算法实例。
+     */
+    private final SecureRandom secureRandom;
+
+    /**
+     * 低水位。
+     */
+    private final int lowWatermark;
+
+    /**
+     * 补充秘钥对的线程池。
+     */
+    private final Executor executor;
+
+    /**
+     * 可用秘钥对。
+     */
+    private final BlockingQueue<KeyPair> keyPairs;
+
+    /**
+     * 是否正在补充。
+     */
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    /**
+     * 是否已关闭。
+     */
+    private volatile boolean closed;
+
+    /**
+     * 创建时间。
+     */
+    private final long createTime = System.nanoTime();
+
+    /**
+     * 取用次数。
+     */
+    private final LongAdder takeCount = new LongAdder();
+
+    /**
+     * 等待次数。
+     */
+    private final LongAdder stallCount = new LongAdder();
+
+    /**
+     * 等待时间，单位纳秒。
+     */
+    private final LongAdder stallTime = new LongAdder();
+
+    /**
+     * 后台生成次数。
+     */
+    private final LongAdder generateCount = new LongAdder();
+
+    /**
+     * 构造秘钥对预生成池。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private KeyPairPool(Builder builder) {
+        this.algorithm = builder.algorithm;
+        this.keySize = builder.keySize;
+        this.secureRandom = builder.secureRandom;
+        this.lowWatermark = builder.lowWatermark < 0 ? builder.capacity / 2 : builder.lowWatermark;
+        this.executor = builder.executor;
+        this.keyPairs = new ArrayBlockingQueue<>(builder.capacity);
+    }
+
+    /**
+     * 取用一个秘钥对，池中没有可用秘钥对时在当前线程生成。
+     *
+     * @return 秘钥对实例。
+     */
+    @Nonnull
+    public KeyPair take() {
+        if (closed) {
+            throw new IllegalStateException(RBMF.get("秘钥对预生成池已关闭"));
+        }
+
+        takeCount.increment();
+        KeyPair keyPair = keyPairs.poll();
+        if (keyPair == null) {
+            long start = System.nanoTime();
+            keyPair = newKeyPairGenerator().generateKeyPair();
+            stallCount.increment();
+            stallTime.add(System.nanoTime() - start);
+        }
+        refillIfNeeded();
+        return keyPair;
+    }
+
+    /**
+     * 可用秘钥对数量。
+     *
+     * @return 可用秘钥对数量。
+     */
+    public int available() {
+        return keyPairs.size();
+    }
+
+    /**
+     * 统计信息。
+     *
+     * @return 统计信息。
+     */
+    @Nonnull
+    public Stats stats() {
+        return new Stats(this);
+    }
+
+    /**
+     * 关闭秘钥对预生成池，停止补充并丢弃可用秘钥对。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        keyPairs.clear();
+    }
+
+    /**
+     * 可用数量不高于低水位时提交补充任务，同时只有一个补充任务运行。
+     */
+    private void refillIfNeeded() {
+        if (closed || keyPairs.size() > lowWatermark || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::refill);
+        } catch (RejectedExecutionException e) {
+            refilling.set(false);
+            LOG.warn(RBMF.get("补充秘钥对失败"), e);
+        }
+    }
+
+    /**
+     * 补充秘钥对直到达到容量。
+     */
+    private void refill() {
+        try {
+            KeyPairGenerator keyPairGenerator = newKeyPairGenerator();
+            while (!closed && keyPairs.remainingCapacity() > 0) {
+                if (!keyPairs.offer(keyPairGenerator.generateKeyPair())) {
+                    break;
+                }
+                generateCount.increment();
+            }
+            if (closed) {
+                keyPairs.clear();
+            }
+        } catch (RuntimeException e) {
+            LOG.warn(RBMF.get("补充秘钥对失败"), e);
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    /**
+     * 构造秘钥对生成器实例，每次补充或等待时使用独立的实例。
+     */
+    private KeyPairGenerator newKeyPairGenerator() {
+        KeyPairGenerator keyPairGenerator = CryptoMx.getKeyPairGenerator(algorithm);
+        if (keySize != 0) {
+            if (secureRandom == null) {
+                CryptoMx.initKeyPairGenerator(keyPairGenerator, keySize);
+            } else {
+                CryptoMx.initKeyPairGenerator(keyPairGenerator, keySize, secureRandom);
+            }
+        }
+        return keyPairGenerator;
+    }
+
+    /**
+     * 算法名称。
+     *
+     * @return 算法名称。
+     */
+    @Nonnull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 秘钥长度。
+     *
+     * @return 秘钥长度，为 0 时使用默认长度。
+     */
+    public int getKeySize() {
+        return keySize;
+    }
+
+    /**
+     * 构造秘钥对预生成池构建器。
+     *
+     * @param algorithm
+     *     算法名称。
+     * @return 秘钥对预生成池构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull String algorithm) {
+        Builder builder = new Builder();
+        builder.algorithm = algorithm;
+        return builder;
+    }
+
+    /**
+     * 构造秘钥对预生成池构建器。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 秘钥对预生成池构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Asymmetric algorithm) {
+        return newBuilder(algorithm.algorithm);
+    }
+
+    /**
+     * 构造秘钥对预生成池构建器。
+     *
+     * @param algorithm
+     *     算法枚举值。
+     * @return 秘钥对预生成池构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Sign algorithm) {
+        return newBuilder(algorithm.algorithm);
+    }
+
+    /**
+     * 秘钥对预生成池统计信息。
+     */
+    @Immutable
+    public static final class Stats {
+        /**
+         * 可用秘钥对数量。
+         */
+        private final int available;
+
+        /**
+         * 取用次数。
+         */
+        private final long takeCount;
+
+        /**
+         * 等待次数。
+         */
+        private final long stallCount;
+
+        /**
+         * 等待时间，单位纳秒。
+         */
+        private final long stallTime;
+
+        /**
+         * 后台生成次数。
+         */
+        private final long generateCount;
+
+        /**
+         * 统计时长，单位纳秒。
+         */
+        private final long elapsedTime;
+
+        /**
+         * 读取秘钥对预生成池的当前统计。
+         */
+        Stats(KeyPairPool pool) {
+            this.available = pool.keyPairs.size();
+            this.takeCount = pool.takeCount.sum();
+            this.stallCount = pool.stallCount.sum();
+            this.stallTime = pool.stallTime.sum();
+            this.generateCount = pool.generateCount.sum();
+            this.elapsedTime = System.nanoTime() - pool.createTime;
+        }
+
+        /**
+         * 可用秘钥对数量。
+         *
+         * @return 可用秘钥对数量。
+         */
+        public int getAvailable() {
+            return available;
+        }
+
+        /**
+         * 取用次数。
+         *
+         * @return 取用次数。
+         */
+        public long getTakeCount() {
+            return takeCount;
+        }
+
+        /**
+         * 池中没有可用秘钥对而在当前线程生成的次数。
+         *
+         * @return 等待次数。
+         */
+        public long getStallCount() {
+            return stallCount;
+        }
+
+        /**
+         * 等待生成秘钥对的总时间。
+         *
+         * @return 等待时间。
+         */
+        @Nonnull
+        public Duration getStallTime() {
+            return Duration.ofNanos(stallTime);
+        }
+
+        /**
+         * 后台生成秘钥对的次数。
+         *
+         * @return 后台生成次数。
+         */
+        public long getGenerateCount() {
+            return generateCount;
+        }
+
+        /**
+         * 自创建以来平均每秒取用次数。
+         *
+         * @return 取用速率。
+         */
+        public double getDrainRate() {
+            if (elapsedTime <= 0) {
+                return 0;
+            }
+            return takeCount * 1e9 / elapsedTime;
+        }
+    }
+
+    /**
+     * 秘钥对预生成池构建器。
+     */
+    public static final class Builder {
+        /**
+         * 算法名称。
+         */
+        private String algorithm;
+
+        /**
+         * 秘钥长度。
+         */
+        private int keySize;
+
+        /**
+         * 随机数生成器算法实例。
+         */
+        private SecureRandom secureRandom;
+
+        /**
+         * 容量。
+         */
+        private int capacity = DEFAULT_CAPACITY;
+
+        /**
+         * 低水位，为负数时使用容量的一半。
+         */
+        private int lowWatermark = -1;
+
+        /**
+         * 补充秘钥对的线程池。
+         */
+        private Executor executor = ForkJoinPool.commonPool();
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置秘钥长度。
+         *
+         * @param keySize
+         *     秘钥长度。
+         * @return 秘钥对预生成池构建器。
+         */
+        @Nonnull
+        public Builder setKeySize(int keySize) {
+            this.keySize = keySize;
+            return this;
+        }
+
+        /**
+         * 设置随机数生成器算法实例，需要同时设置秘钥长度。
+         *
+         * @param secureRandom
+         *     随机数生成器算法实例。
+         * @return 秘钥对预生成池构建器。
+         */
+        @Nonnull
+        public Builder setSecureRandom(@Nonnull SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+            return this;
+        }
+
+        /**
+         * 设置容量。
+         *
+         * @param capacity
+         *     容量。
+         * @return 秘钥对预生成池构建器。
+         */
+        @Nonnull
+        public Builder setCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * 设置低水位，可用数量不高于低水位时开始补充，默认为容量的一半。
+         *
+         * @param lowWatermark
+         *     低水位。
+         * @return 秘钥对预生成池构建器。
+         */
+        @Nonnull
+        public Builder setLowWatermark(int lowWatermark) {
+            this.lowWatermark = lowWatermark;
+            return this;
+        }
+
+        /**
+         * 设置补充秘钥对的线程池，默认使用 {@link ForkJoinPool#commonPool()}。
+         *
+         * @param executor
+         *     线程池。
+         * @return 秘钥对预生成池构建器。
+         */
+        @Nonnull
+        public Builder setExecutor(@Nonnull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 构建秘钥对预生成池，并开始在后台填充。
+         *
+         * @return 秘钥对预生成池。
+         */
+        @Nonnull
+        public KeyPairPool build() {
+            if (capacity <= 0 || lowWatermark >= capacity) {
+                throw new IllegalArgumentException();
+            }
+            if (keySize == 0 && secureRandom != null) {
+                throw new IllegalArgumentException();
+            }
+            KeyPairPool pool = new KeyPairPool(this);
+            pool.newKeyPairGenerator();
+            pool.refillIfNeeded();
+            return pool;
+        }
+    }
+}
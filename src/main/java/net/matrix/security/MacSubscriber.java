@@ -0,0 +1,57 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.crypto.Mac;
+
+/**
+ * 计算消息认证码的终端订阅者，直接使用数据块更新消息认证码，上游完成时通过 {@link #getResult()} 得到消息认证码。
+ * 消息认证码算法实例由本实例独占使用。
+ */
+@NotThreadSafe
+public final class MacSubscriber
+    extends ByteBufferSubscriber {
+    /**
+     * 消息认证码算法实例。
+     */
+    private final Mac mac;
+
+    /**
+     * 构造计算消息认证码的终端订阅者，使用默认预取数量。
+     *
+     * @param mac
+     *     已初始化的消息认证码算法实例。
+     */
+    public MacSubscriber(@Nonnull Mac mac) {
+        this(mac, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * 构造计算消息认证码的终端订阅者。
+     *
+     * @param mac
+     *     已初始化的消息认证码算法实例。
+     * @param prefetch
+     *     预取数量。
+     */
+    public MacSubscriber(@Nonnull Mac mac, int prefetch) {
+        super(prefetch);
+        this.mac = mac;
+    }
+
+    @Override
+    protected void update(ByteBuffer item) {
+        mac.update(item);
+    }
+
+    @Override
+    protected byte[] finish() {
+        return mac.doFinal();
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * 默克尔树摘要，由按固定长度分块计算的分块摘要和根摘要组成。
+ * 分块摘要为 H(0x00 || 分块)，中间节点摘要为 H(0x01 || 左子节点 || 右子节点)，奇数个节点时最后一个节点直接提升到上一层。
+ */
+@Immutable
+public final class MerkleTree {
+    /**
+     * 分块摘要前缀。
+     */
+    static final byte LEAF_PREFIX = 0x00;
+
+    /**
+     * 中间节点摘要前缀。
+     */
+    static final byte NODE_PREFIX = 0x01;
+
+    /**
+     * 摘要算法名称。
+     */
+    private final String algorithm;
+
+    /**
+     * 分块长度。
+     */
+    private final int chunkSize;
+
+    /**
+     * 数据长度。
+     */
+    private final long length;
+
+    /**
+     * 分块摘要。
+     */
+    private final List<byte[]> chunkDigests;
+
+    /**
+     * 根摘要。
+     */
+    private final byte[] root;
+
+    /**
+     * 构造默克尔树摘要。
+     *
+     * @param algorithm
+     *     摘要算法名称。
+     * @param chunkSize
+     *     分块长度。
+     * @param length
+     *     数据长度。
+     * @param chunkDigests
+     *     分块摘要。
+     * @param root
+     *     根摘要。
+     */
+    private MerkleTree(String algorithm, int chunkSize, long length, List<byte[]> chunkDigests, byte[] root) {
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.length = length;
+        this.chunkDigests = chunkDigests;
+        this.root = root;
+    }
+
+    /**
+     * 使用已有的分块摘要构造默克尔树摘要，用于恢复保存的分块摘要。
+     *
+     * @param algorithm
+     *     摘要算法名称。
+     * @param chunkSize
+     *     分块长度。
+     * @param length
+     *     数据长度。
+     * @param chunkDigests
+     *     分块摘要。
+     * @return 默克尔树摘要。
+     */
+    @Nonnull
+    public static MerkleTree of(@Nonnull String algorithm, int chunkSize, long length, @Nonnull List<byte[]> chunkDigests) {
+        if (chunkSize <= 0 || length < 0 || chunkDigests.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        if (chunkDigests.size() != Math.max(1, (length + chunkSize - 1) / chunkSize)) {
+            throw new IllegalArgumentException();
+        }
+
+        List<byte[]> copiedDigests = new ArrayList<>(chunkDigests.size());
+        for (byte[] chunkDigest : chunkDigests) {
+            copiedDigests.add(chunkDigest.clone());
+        }
+        byte[] root = computeRoot(algorithm, copiedDigests);
+        return new MerkleTree(algorithm, chunkSize, length, Collections.unmodifiableList(copiedDigests), root);
+    }
+
+    /**
+     * 使用已有的分块摘要构造默克尔树摘要，用于恢复保存的分块摘要。
+     *
+     * @param algorithm
+     *     摘要算法枚举值。
+     * @param chunkSize
+     *     分块长度。
+     * @param length
+     *     数据长度。
+     * @param chunkDigests
+     *     分块摘要。
+     * @return 默克尔树摘要。
+     */
+    @Nonnull
+    public static MerkleTree of(@Nonnull CryptoAlgorithm.Digest algorithm, int chunkSize, long length, @Nonnull List<byte[]> chunkDigests) {
+        return of(algorithm.algorithm, chunkSize, length, chunkDigests);
+    }
+
+    /**
+     * 计算分块摘要。
+     *
+     * @param algorithm
+     *     摘要算法名称。
+     * @param chunkData
+     *     分块数据。
+     * @param offset
+     *     分块数据偏移。
+     * @param length
+     *     分块数据长度。
+     * @return 分块摘要。
+     */
+    @Nonnull
+    static byte[] digestChunk(String algorithm, byte[] chunkData, int offset, int length) {
+        try (CryptoEnginePool.Lease<MessageDigest> lease = CryptoEnginePool.ofMessageDigest(algorithm).lease()) {
+            MessageDigest digest = lease.get();
+            digest.update(LEAF_PREFIX);
+            digest.update(chunkData, offset, length);
+            return digest.digest();
+        }
+    }
+
+    /**
+     * 由分块摘要逐层计算根摘要。
+     *
+     * @param algorithm
+     *     摘要算法名称。
+     * @param chunkDigests
+     *     分块摘要。
+     * @return 根摘要。
+     */
+    private static byte[] computeRoot(String algorithm, List<byte[]> chunkDigests) {
+        try (CryptoEnginePool.Lease<MessageDigest> lease = CryptoEnginePool.ofMessageDigest(algorithm).lease()) {
+            MessageDigest digest = lease.get();
+            List<byte[]> level = chunkDigests;
+            while (level.size() > 1) {
+                List<byte[]> parentLevel = new ArrayList<>((level.size() + 1) / 2);
+                for (int i = 0; i < level.size(); i += 2) {
+                    if (i + 1 == level.size()) {
+                        parentLevel.add(level.get(i));
+                    } else {
+                        digest.update(NODE_PREFIX);
+                        digest.update(level.get(i));
+                        digest.update(level.get(i + 1));
+                        parentLevel.add(digest.digest());
+                    }
+                }
+                level = parentLevel;
+            }
+            return level.get(0).clone();
+        }
+    }
+
+    /**
+     * 摘要算法名称。
+     *
+     * @return 摘要算法名称。
+     */
+    @Nonnull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 分块长度。
+     *
+     * @return 分块长度。
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 数据长度。
+     *
+     * @return 数据长度。
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 根摘要。
+     *
+     * @return 根摘要。
+     */
+    @Nonnull
+    public byte[] getRoot() {
+        return root.clone();
+    }
+
+    /**
+     * 分块数量。
+     *
+     * @return 分块数量。
+     */
+    public int getChunkCount() {
+        return chunkDigests.size();
+    }
+
+    /**
+     * 分块摘要。
+     *
+     * @param index
+     *     分块序号。
+     * @return 分块摘要。
+     */
+    @Nonnull
+    public byte[] getChunkDigest(int index) {
+        return chunkDigests.get(index).clone();
+    }
+
+    /**
+     * 所有分块摘要。
+     *
+     * @return 分块摘要。
+     */
+    @Nonnull
+    public List<byte[]> getChunkDigests() {
+        List<byte[]> copiedDigests = new ArrayList<>(chunkDigests.size());
+        for (byte[] chunkDigest : chunkDigests) {
+            copiedDigests.add(chunkDigest.clone());
+        }
+        return copiedDigests;
+    }
+
+    /**
+     * 分块在数据中的偏移。
+     *
+     * @param index
+     *     分块序号。
+     * @return 分块偏移。
+     */
+    public long getChunkOffset(int index) {
+        return (long) index * chunkSize;
+    }
+
+    /**
+     * 分块长度，最后一个分块可能短于分块长度。
+     *
+     * @param index
+     *     分块序号。
+     * @return 分块长度。
+     */
+    public int getChunkLength(int index) {
+        return (int) Math.min(chunkSize, length - getChunkOffset(index));
+    }
+
+    /**
+     * 验证分块数据，无需重新计算整个数据的摘要。
+     *
+     * @param index
+     *     分块序号。
+     * @param chunkData
+     *     分块数据。
+     * @return 是否通过验证。
+     */
+    public boolean verifyChunk(int index, @Nonnull byte[] chunkData) {
+        if (chunkData.length != getChunkLength(index)) {
+            return false;
+        }
+        byte[] actualDigest = digestChunk(algorithm, chunkData, 0, chunkData.length);
+        return MessageDigest.isEqual(actualDigest, chunkDigests.get(index));
+    }
+
+    /**
+     * 比较两个默克尔树摘要，找出内容不同的分块。
+     *
+     * @param other
+     *     另一个默克尔树摘要，必须使用相同的摘要算法和分块长度。
+     * @return 内容不同的分块序号，包括只在其中一方存在的分块。
+     */
+    @Nonnull
+    public List<Integer> diff(@Nonnull MerkleTree other) {
+        if (!algorithm.equals(other.algorithm) || chunkSize != other.chunkSize) {
+            throw new IllegalArgumentException();
+        }
+
+        List<Integer> changedIndexes = new ArrayList<>();
+        if (MessageDigest.isEqual(root, other.root)) {
+            return changedIndexes;
+        }
+        int commonCount = Math.min(chunkDigests.size(), other.chunkDigests.size());
+        for (int i = 0; i < commonCount; i++) {
+            if (!MessageDigest.isEqual(chunkDigests.get(i), other.chunkDigests.get(i))) {
+                changedIndexes.add(i);
+            }
+        }
+        for (int i = commonCount; i < Math.max(chunkDigests.size(), other.chunkDigests.size()); i++) {
+            changedIndexes.add(i);
+        }
+        return changedIndexes;
+    }
+}
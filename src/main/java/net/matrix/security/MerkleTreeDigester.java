@@ -0,0 +1,347 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 默克尔树摘要计算器，将数据按固定长度分块，并行计算分块摘要后合并为根摘要。
+ */
+@Immutable
+public final class MerkleTreeDigester {
+    /**
+     * 默认分块长度。
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * 摘要算法名称。
+     */
+    private final String algorithm;
+
+    /**
+     * 分块长度。
+     */
+    private final int chunkSize;
+
+    /**
+     * 计算分块摘要的线程池。
+     */
+    private final Executor executor;
+
+    /**
+     * 读取数据流时同时计算摘要的最大分块数量。
+     */
+    private final int maxPendingChunks;
+
+    /**
+     * 构造默克尔树摘要计算器。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private MerkleTreeDigester(Builder builder) {
+        this.algorithm = builder.algorithm;
+        this.chunkSize = builder.chunkSize;
+        this.executor = builder.executor;
+        this.maxPendingChunks = builder.maxPendingChunks;
+    }
+
+    /**
+     * 计算数据流的默克尔树摘要，顺序读取数据流并行计算分块摘要。
+     *
+     * @param plainData
+     *     明文。
+     * @return 默克尔树摘要。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    @Nonnull
+    public MerkleTree digest(@Nonnull InputStream plainData)
+        throws IOException {
+        List<CompletableFuture<byte[]>> chunkDigestFutures = new ArrayList<>();
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(maxPendingChunks);
+        long length = 0;
+        int completedCount = 0;
+        while (true) {
+            if (chunkDigestFutures.size() - completedCount >= maxPendingChunks) {
+                join(chunkDigestFutures.get(completedCount));
+                completedCount++;
+            }
+            byte[] buffer = buffers.poll();
+            if (buffer == null) {
+                buffer = new byte[chunkSize];
+            }
+            int readLength = IOUtils.read(plainData, buffer);
+            if (readLength == 0 && !chunkDigestFutures.isEmpty()) {
+                break;
+            }
+            length += readLength;
+            byte[] chunkData = buffer;
+            chunkDigestFutures.add(CompletableFuture.supplyAsync(() -> {
+                byte[] chunkDigest = MerkleTree.digestChunk(algorithm, chunkData, 0, readLength);
+                buffers.offer(chunkData);
+                return chunkDigest;
+            }, executor));
+            if (readLength < chunkSize) {
+                break;
+            }
+        }
+        return MerkleTree.of(algorithm, chunkSize, length, joinAll(chunkDigestFutures));
+    }
+
+    /**
+     * 计算文件的默克尔树摘要，并行读取文件分块并计算分块摘要。
+     *
+     * @param file
+     *     文件。
+     * @return 默克尔树摘要。
+     * @throws IOException
+     *     读取文件失败。
+     */
+    @Nonnull
+    public MerkleTree digest(@Nonnull Path file)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return digest(channel);
+        }
+    }
+
+    /**
+     * 计算文件的默克尔树摘要，并行读取文件分块并计算分块摘要。
+     *
+     * @param channel
+     *     文件通道，不改变其当前位置。
+     * @return 默克尔树摘要。
+     * @throws IOException
+     *     读取文件失败。
+     */
+    @Nonnull
+    public MerkleTree digest(@Nonnull FileChannel channel)
+        throws IOException {
+        long length = channel.size();
+        long chunkCount = Math.max(1, (length + chunkSize - 1) / chunkSize);
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+
+        Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<byte[]>> chunkDigestFutures = new ArrayList<>((int) chunkCount);
+        for (long i = 0; i < chunkCount; i++) {
+            long position = i * chunkSize;
+            int chunkLength = (int) Math.min(chunkSize, length - position);
+            chunkDigestFutures.add(CompletableFuture.supplyAsync(() -> {
+                ByteBuffer buffer = buffers.poll();
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate(chunkSize);
+                }
+                try {
+                    readFully(channel, buffer, position, chunkLength);
+                    return MerkleTree.digestChunk(algorithm, buffer.array(), 0, chunkLength);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    buffers.offer(buffer);
+                }
+            }, executor));
+        }
+        return MerkleTree.of(algorithm, chunkSize, length, joinAll(chunkDigestFutures));
+    }
+
+    /**
+     * 从文件指定位置读取指定长度的数据。
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length)
+        throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * 等待分块摘要计算完成。
+     */
+    private static List<byte[]> joinAll(List<CompletableFuture<byte[]>> chunkDigestFutures)
+        throws IOException {
+        List<byte[]> chunkDigests = new ArrayList<>(chunkDigestFutures.size());
+        for (CompletableFuture<byte[]> chunkDigestFuture : chunkDigestFutures) {
+            chunkDigests.add(join(chunkDigestFuture));
+        }
+        return chunkDigests;
+    }
+
+    /**
+     * 等待分块摘要计算完成，还原计算过程中的异常。
+     */
+    private static byte[] join(CompletableFuture<byte[]> chunkDigestFuture)
+        throws IOException {
+        try {
+            return chunkDigestFuture.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 摘要算法名称。
+     *
+     * @return 摘要算法名称。
+     */
+    @Nonnull
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 分块长度。
+     *
+     * @return 分块长度。
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * 构造默克尔树摘要计算器构建器。
+     *
+     * @param algorithm
+     *     摘要算法名称。
+     * @return 默克尔树摘要计算器构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull String algorithm) {
+        Builder builder = new Builder();
+        builder.algorithm = algorithm;
+        return builder;
+    }
+
+    /**
+     * 构造默克尔树摘要计算器构建器。
+     *
+     * @param algorithm
+     *     摘要算法枚举值。
+     * @return 默克尔树摘要计算器构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Digest algorithm) {
+        return newBuilder(algorithm.algorithm);
+    }
+
+    /**
+     * 默克尔树摘要计算器构建器。
+     */
+    public static final class Builder {
+        /**
+         * 摘要算法名称。
+         */
+        private String algorithm;
+
+        /**
+         * 分块长度。
+         */
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+        /**
+         * 计算分块摘要的线程池。
+         */
+        private Executor executor = ForkJoinPool.commonPool();
+
+        /**
+         * 读取数据流时同时计算摘要的最大分块数量。
+         */
+        private int maxPendingChunks = ForkJoinPool.getCommonPoolParallelism() * 2;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置分块长度。
+         *
+         * @param chunkSize
+         *     分块长度。
+         * @return 默克尔树摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * 设置计算分块摘要的线程池，默认使用 {@link ForkJoinPool#commonPool()}。
+         *
+         * @param executor
+         *     线程池。
+         * @return 默克尔树摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder setExecutor(@Nonnull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 设置读取数据流时同时计算摘要的最大分块数量，限制缓冲区占用的内存。
+         *
+         * @param maxPendingChunks
+         *     最大分块数量。
+         * @return 默克尔树摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder setMaxPendingChunks(int maxPendingChunks) {
+            this.maxPendingChunks = maxPendingChunks;
+            return this;
+        }
+
+        /**
+         * 构建默克尔树摘要计算器。
+         *
+         * @return 默克尔树摘要计算器。
+         */
+        @Nonnull
+        public MerkleTreeDigester build() {
+            if (chunkSize <= 0 || maxPendingChunks <= 0) {
+                throw new IllegalArgumentException();
+            }
+            CryptoMx.getMessageDigest(algorithm);
+            return new MerkleTreeDigester(this);
+        }
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.crypto.Mac;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 多算法摘要计算器，只读取一次数据，同时计算多个摘要和消息认证码。
+ * 可以指定线程池，使各算法并行处理同一个分块，并在处理的同时读取下一个分块。
+ */
+@Immutable
+public final class MultiDigester {
+    /**
+     * 默认缓冲区长度。
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 摘要算法名称。
+     */
+    private final List<String> digestAlgorithms;
+
+    /**
+     * 消息认证码算法名称和秘钥。
+     */
+    private final Map<String, Key> macKeys;
+
+    /**
+     * 并行计算的线程池，为 null 时在当前线程顺序计算。
+     */
+    private final Executor executor;
+
+    /**
+     * 缓冲区长度。
+     */
+    private final int bufferSize;
+
+    /**
+     * 构造多算法摘要计算器。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private MultiDigester(Builder builder) {
+        this.digestAlgorithms = Collections.unmodifiableList(new ArrayList<>(builder.digestAlgorithms));
+        this.macKeys = Collections.unmodifiableMap(new LinkedHashMap<>(builder.macKeys));
+        this.executor = builder.executor;
+        this.bufferSize = builder.bufferSize;
+    }
+
+    /**
+     * 计算数据的摘要和消息认证码。
+     *
+     * @param plainData
+     *     明文。
+     * @return 算法名称到计算结果的映射，按添加算法的顺序排列。
+     */
+    @Nonnull
+    public Map<String, byte[]> digest(@Nonnull byte[] plainData) {
+        List<Engine> engines = borrowEngines();
+        try {
+            update(engines, plainData, plainData.length);
+            return doFinal(engines);
+        } finally {
+            releaseEngines(engines);
+        }
+    }
+
+    /**
+     * 计算数据流的摘要和消息认证码。
+     *
+     * @param plainData
+     *     明文。
+     * @return 算法名称到计算结果的映射，按添加算法的顺序排列。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    @Nonnull
+    public Map<String, byte[]> digest(@Nonnull InputStream plainData)
+        throws IOException {
+        List<Engine> engines = borrowEngines();
+        try {
+            if (executor == null || engines.size() == 1) {
+                updateSerial(engines, plainData);
+            } else {
+                updateParallel(engines, plainData);
+            }
+            return doFinal(engines);
+        } finally {
+            releaseEngines(engines);
+        }
+    }
+
+    /**
+     * 计算文件的摘要和消息认证码。
+     *
+     * @param plainData
+     *     文件。
+     * @return 算法名称到计算结果的映射，按添加算法的顺序排列。
+     * @throws IOException
+     *     读取文件失败。
+     */
+    @Nonnull
+    public Map<String, byte[]> digest(@Nonnull Path plainData)
+        throws IOException {
+        try (InputStream input = Files.newInputStream(plainData)) {
+            return digest(input);
+        }
+    }
+
+    /**
+     * 在当前线程顺序计算。
+     */
+    private void updateSerial(List<Engine> engines, InputStream plainData)
+        throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        int length;
+        while ((length = IOUtils.read(plainData, buffer)) > 0) {
+            update(engines, buffer, length);
+        }
+    }
+
+    /**
+     * 使用两个缓冲区交替读取，各算法并行处理上一个分块时读取下一个分块。
+     */
+    private void updateParallel(List<Engine> engines, InputStream plainData)
+        throws IOException {
+        byte[][] buffers = {
+            new byte[bufferSize], new byte[bufferSize]
+        };
+        CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+        try {
+            for (int i = 0;; i++) {
+                byte[] buffer = buffers[i & 1];
+                int length = IOUtils.read(plainData, buffer);
+                join(pending);
+                if (length == 0) {
+                    break;
+                }
+                CompletableFuture<?>[] futures = new CompletableFuture<?>[engines.size()];
+                for (int j = 0; j < futures.length; j++) {
+                    Engine engine = engines.get(j);
+                    futures[j] = CompletableFuture.runAsync(() -> engine.update(buffer, 0, length), executor);
+                }
+                pending = CompletableFuture.allOf(futures);
+            }
+        } finally {
+            // 出错时等待正在计算的分块，避免归还仍在使用的算法实例
+            pending.exceptionally(e -> null).join();
+        }
+    }
+
+    /**
+     * 等待分块计算完成，还原计算过程中的异常。
+     */
+    private static void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 使用数据更新所有算法实例。
+     */
+    private static void update(List<Engine> engines, byte[] data, int length) {
+        for (Engine engine : engines) {
+            engine.update(data, 0, length);
+        }
+    }
+
+    /**
+     * 完成所有算法的计算。
+     */
+    private static Map<String, byte[]> doFinal(List<Engine> engines) {
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (Engine engine : engines) {
+            results.put(engine.getAlgorithm(), engine.doFinal());
+        }
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * 从算法实例池借出所有算法实例。
+     */
+    private List<Engine> borrowEngines() {
+        List<Engine> engines = new ArrayList<>(digestAlgorithms.size() + macKeys.size());
+        try {
+            for (String algorithm : digestAlgorithms) {
+                engines.add(new DigestEngine(CryptoEnginePool.ofMessageDigest(algorithm)));
+            }
+            for (Map.Entry<String, Key> entry : macKeys.entrySet()) {
+                engines.add(new MacEngine(CryptoEnginePool.ofMac(entry.getKey()), entry.getValue()));
+            }
+        } catch (RuntimeException e) {
+            releaseEngines(engines);
+            throw e;
+        }
+        return engines;
+    }
+
+    /**
+     * 归还所有算法实例。
+     */
+    private static void releaseEngines(List<Engine> engines) {
+        for (Engine engine : engines) {
+            engine.release();
+        }
+    }
+
+    /**
+     * 摘要算法名称。
+     *
+     * @return 摘要算法名称。
+     */
+    @Nonnull
+    public List<String> getDigestAlgorithms() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * 消息认证码算法名称。
+     *
+     * @return 消息认证码算法名称。
+     */
+    @Nonnull
+    public List<String> getMacAlgorithms() {
+        return new ArrayList<>(macKeys.keySet());
+    }
+
+    /**
+     * 构造多算法摘要计算器构建器。
+     *
+     * @return 多算法摘要计算器构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * 参与计算的算法实例。
+     */
+    private interface Engine {
+        String getAlgorithm();
+
+        void update(byte[] data, int offset, int length);
+
+        byte[] doFinal();
+
+        void release();
+    }
+
+    /**
+     * 摘要算法实例。
+     */
+    private static final class DigestEngine
+        implements Engine {
+        private final CryptoEnginePool<MessageDigest> pool;
+
+        private final MessageDigest digest;
+
+        DigestEngine(CryptoEnginePool<MessageDigest> pool) {
+            this.pool = pool;
+            this.digest = pool.borrow();
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return pool.getAlgorithm();
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            digest.update(data, offset, length);
+        }
+
+        @Override
+        public byte[] doFinal() {
+            return digest.digest();
+        }
+
+        @Override
+        public void release() {
+            pool.release(digest);
+        }
+    }
+
+    /**
+     * 消息认证码算法实例。
+     */
+    private static final class MacEngine
+        implements Engine {
+        private final CryptoEnginePool<Mac> pool;
+
+        private final Mac mac;
+
+        MacEngine(CryptoEnginePool<Mac> pool, Key key) {
+            this.pool = pool;
+            this.mac = pool.borrow();
+            try {
+                CryptoMx.initMac(mac, key);
+            } catch (RuntimeException e) {
+                pool.release(mac);
+                throw e;
+            }
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return pool.getAlgorithm();
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            mac.update(data, offset, length);
+        }
+
+        @Override
+        public byte[] doFinal() {
+            return mac.doFinal();
+        }
+
+        @Override
+        public void release() {
+            pool.release(mac);
+        }
+    }
+
+    /**
+     * 多算法摘要计算器构建器。
+     */
+    public static final class Builder {
+        /**
+         * 摘要算法名称。
+         */
+        private final Set<String> digestAlgorithms = new LinkedHashSet<>();
+
+        /**
+         * 消息认证码算法名称和秘钥。
+         */
+        private final Map<String, Key> macKeys = new LinkedHashMap<>();
+
+        /**
+         * 并行计算的线程池。
+         */
+        private Executor executor;
+
+        /**
+         * 缓冲区长度。
+         */
+        private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 添加摘要算法。
+         *
+         * @param algorithm
+         *     算法名称。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder addDigest(@Nonnull String algorithm) {
+            digestAlgorithms.add(algorithm);
+            return this;
+        }
+
+        /**
+         * 添加摘要算法。
+         *
+         * @param algorithm
+         *     算法枚举值。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder addDigest(@Nonnull CryptoAlgorithm.Digest algorithm) {
+            return addDigest(algorithm.algorithm);
+        }
+
+        /**
+         * 添加消息认证码算法。
+         *
+         * @param algorithm
+         *     算法名称。
+         * @param key
+         *     秘钥。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder addMac(@Nonnull String algorithm, @Nonnull Key key) {
+            macKeys.put(algorithm, key);
+            return this;
+        }
+
+        /**
+         * 添加消息认证码算法。
+         *
+         * @param algorithm
+         *     算法枚举值。
+         * @param key
+         *     秘钥。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder addMac(@Nonnull CryptoAlgorithm.Mac algorithm, @Nonnull Key key) {
+            return addMac(algorithm.algorithm, key);
+        }
+
+        /**
+         * 添加消息认证码算法。
+         *
+         * @param algorithm
+         *     算法枚举值。
+         * @param keyData
+         *     秘钥。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder addMac(@Nonnull CryptoAlgorithm.Mac algorithm, @Nonnull byte[] keyData) {
+            return addMac(algorithm.algorithm, CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm.algorithm));
+        }
+
+        /**
+         * 设置并行计算的线程池，不设置时在当前线程顺序计算。
+         *
+         * @param executor
+         *     线程池。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder setExecutor(@Nonnull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 设置缓冲区长度。
+         *
+         * @param bufferSize
+         *     缓冲区长度。
+         * @return 多算法摘要计算器构建器。
+         */
+        @Nonnull
+        public Builder setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * 构建多算法摘要计算器。
+         *
+         * @return 多算法摘要计算器。
+         */
+        @Nonnull
+        public MultiDigester build() {
+            if (bufferSize <= 0 || digestAlgorithms.isEmpty() && macKeys.isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            for (String algorithm : digestAlgorithms) {
+                if (macKeys.containsKey(algorithm)) {
+                    throw new IllegalArgumentException(algorithm);
+                }
+                CryptoMx.getMessageDigest(algorithm);
+            }
+            for (Map.Entry<String, Key> entry : macKeys.entrySet()) {
+                CryptoMx.initMac(CryptoMx.getMac(entry.getKey()), entry.getValue());
+            }
+            return new MultiDigester(this);
+        }
+    }
+}
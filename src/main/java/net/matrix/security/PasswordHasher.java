@@ -0,0 +1,766 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.bouncycastle.crypto.PBEParametersGenerator;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
+import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.params.Argon2Parameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import net.matrix.java.util.concurrent.ExecutorServiceBuilder;
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 口令哈希，支持 PBKDF2、scrypt、Argon2id，输出 PHC 字符串格式，如 {@code $argon2id$v=19$m=19456,t=2,p=1$<盐>$<哈希>}。
+ * 计算在有界线程池中进行，线程池和队列已满时拒绝任务，避免大量登录请求占用所有请求线程。
+ * 验证时可检查哈希参数是否与当前配置一致，不一致时使用当前配置重新计算哈希。
+ */
+@ThreadSafe
+public final class PasswordHasher
+    implements AutoCloseable {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(PasswordHasher.class).useCurrentLocale();
+
+    /**
+     * 默认盐长度。
+     */
+    public static final int DEFAULT_SALT_LENGTH = 16;
+
+    /**
+     * 默认哈希长度。
+     */
+    public static final int DEFAULT_HASH_LENGTH = 32;
+
+    /**
+     * PBKDF2 默认迭代次数。
+     */
+    public static final int DEFAULT_PBKDF2_ITERATIONS = 600000;
+
+    /**
+     * scrypt 默认 CPU/内存成本参数 N。
+     */
+    public static final int DEFAULT_SCRYPT_COST = 1 << 15;
+
+    /**
+     * scrypt 默认块大小参数 r。
+     */
+    public static final int DEFAULT_SCRYPT_BLOCK_SIZE = 8;
+
+    /**
+     * Argon2 默认内存，单位 KiB。
+     */
+    public static final int DEFAULT_ARGON2_MEMORY = 19456;
+
+    /**
+     * Argon2 默认迭代次数。
+     */
+    public static final int DEFAULT_ARGON2_ITERATIONS = 2;
+
+    /**
+     * PHC 字符串使用的无填充 Base64 编码器。
+     */
+    private static final Base64.Encoder B64_ENCODER = Base64.getEncoder().withoutPadding();
+
+    /**
+     * PHC 字符串使用的 Base64 解码器。
+     */
+    private static final Base64.Decoder B64_DECODER = Base64.getDecoder();
+
+    /**
+     * 当前配置的哈希参数，盐和哈希为空。
+     */
+    private final EncodedHash parameters;
+
+    /**
+     * 盐长度。
+     */
+    private final int saltLength;
+
+    /**
+     * 随机数生成器算法实例。
+     */
+    private final SecureRandom secureRandom;
+
+    /**
+     * 计算哈希的线程池。
+     */
+    private final ExecutorService executor;
+
+    /**
+     * 是否由本实例创建线程池。
+     */
+    private final boolean ownExecutor;
+
+    /**
+     * 构造口令哈希。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private PasswordHasher(Builder builder) {
+        this.parameters = new EncodedHash(builder.algorithm, builder.iterations, builder.memoryCost, builder.blockSize, builder.parallelism, null,
+            new byte[builder.hashLength]);
+        this.saltLength = builder.saltLength;
+        this.secureRandom = builder.secureRandom;
+        if (builder.executor == null) {
+            int poolSize = Runtime.getRuntime().availableProcessors();
+            this.executor = new ExecutorServiceBuilder.Fixed().setPoolSize(poolSize).setQueueSize(poolSize * builder.queueFactor)
+                .setThreadNamePrefix("password-hasher").setDaemon(Boolean.TRUE).build();
+            this.ownExecutor = true;
+        } else {
+            this.executor = builder.executor;
+            this.ownExecutor = false;
+        }
+    }
+
+    /**
+     * 计算口令哈希。
+     *
+     * @param password
+     *     口令。
+     * @return PHC 字符串。
+     */
+    @Nonnull
+    public String hash(@Nonnull char[] password) {
+        return join(hashAsync(password));
+    }
+
+    /**
+     * 在线程池中计算口令哈希。
+     *
+     * @param password
+     *     口令，计算完成前调用者不能清除。
+     * @return PHC 字符串。
+     */
+    @Nonnull
+    public CompletableFuture<String> hashAsync(@Nonnull char[] password) {
+        return CompletableFuture.supplyAsync(() -> hashNow(password), executor);
+    }
+
+    /**
+     * 验证口令。
+     *
+     * @param password
+     *     口令。
+     * @param encoded
+     *     PHC 字符串。
+     * @return 是否验证通过。
+     */
+    public boolean verify(@Nonnull char[] password, @Nonnull String encoded) {
+        return join(verifyAsync(password, encoded, null));
+    }
+
+    /**
+     * 验证口令，验证通过且哈希参数与当前配置不一致时，使用当前配置重新计算哈希并回调。
+     *
+     * @param password
+     *     口令。
+     * @param encoded
+     *     PHC 字符串。
+     * @param rehash
+     *     接收重新计算的 PHC 字符串。
+     * @return 是否验证通过。
+     */
+    public boolean verify(@Nonnull char[] password, @Nonnull String encoded, @Nonnull Consumer<String> rehash) {
+        return join(verifyAsync(password, encoded, rehash));
+    }
+
+    /**
+     * 在线程池中验证口令，验证通过且哈希参数与当前配置不一致时，使用当前配置重新计算哈希并回调。
+     *
+     * @param password
+     *     口令，验证完成前调用者不能清除。
+     * @param encoded
+     *     PHC 字符串。
+     * @param rehash
+     *     接收重新计算的 PHC 字符串，可以为 null。
+     * @return 是否验证通过。
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> verifyAsync(@Nonnull char[] password, @Nonnull String encoded, Consumer<String> rehash) {
+        EncodedHash expected = EncodedHash.parse(encoded);
+        return CompletableFuture.supplyAsync(() -> {
+            byte[] actual = derive(expected, password, expected.salt);
+            boolean valid = MessageDigest.isEqual(actual, expected.hash);
+            if (valid && rehash != null && !parameters.sameParameters(expected)) {
+                rehash.accept(hashNow(password));
+            }
+            return valid;
+        }, executor);
+    }
+
+    /**
+     * 检查哈希参数是否与当前配置不一致。
+     *
+     * @param encoded
+     *     PHC 字符串。
+     * @return 是否需要重新计算哈希。
+     */
+    public boolean needsRehash(@Nonnull String encoded) {
+        return !parameters.sameParameters(EncodedHash.parse(encoded));
+    }
+
+    /**
+     * 关闭口令哈希，关闭由本实例创建的线程池。
+     */
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 口令哈希算法。
+     *
+     * @return 口令哈希算法。
+     */
+    @Nonnull
+    public CryptoAlgorithm.PasswordHash getAlgorithm() {
+        return parameters.algorithm;
+    }
+
+    /**
+     * 在当前线程计算口令哈希。
+     */
+    private String hashNow(char[] password) {
+        byte[] salt = CryptoMx.generateRandom(saltLength, secureRandom);
+        return parameters.withHash(salt, derive(parameters, password, salt)).format();
+    }
+
+    /**
+     * 等待计算完成，展开计算中抛出的异常。
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 按哈希参数计算口令哈希。
+     */
+    private static byte[] derive(EncodedHash parameters, char[] password, byte[] salt) {
+        byte[] passwordData = PBEParametersGenerator.PKCS5PasswordToUTF8Bytes(password);
+        try {
+            switch (parameters.algorithm) {
+                case PBKDF2_SHA_256: {
+                    PKCS5S2ParametersGenerator generator = new PKCS5S2ParametersGenerator(new SHA256Digest());
+                    generator.init(passwordData, salt, parameters.iterations);
+                    return ((KeyParameter) generator.generateDerivedParameters(parameters.hash.length * 8)).getKey();
+                }
+                case SCRYPT:
+                    return SCrypt.generate(passwordData, salt, parameters.memoryCost, parameters.blockSize, parameters.parallelism, parameters.hash.length);
+                case ARGON2ID: {
+                    Argon2BytesGenerator generator = new Argon2BytesGenerator();
+                    generator.init(new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id).withVersion(Argon2Parameters.ARGON2_VERSION_13)
+                        .withIterations(parameters.iterations).withMemoryAsKB(parameters.memoryCost).withParallelism(parameters.parallelism).withSalt(salt)
+                        .build());
+                    byte[] hash = new byte[parameters.hash.length];
+                    generator.generateBytes(passwordData, hash);
+                    return hash;
+                }
+                default:
+                    throw new IllegalArgumentException(parameters.algorithm.algorithm);
+            }
+        } finally {
+            Arrays.fill(passwordData, (byte) 0);
+        }
+    }
+
+    /**
+     * 构造口令哈希构建器。
+     *
+     * @param algorithm
+     *     口令哈希算法枚举值。
+     * @return 口令哈希构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.PasswordHash algorithm) {
+        Builder builder = new Builder();
+        builder.algorithm = algorithm;
+        return builder;
+    }
+
+    /**
+     * 在当前机器上校准哈希参数，使单次计算时间接近目标时间。
+     * PBKDF2 调整迭代次数，scrypt 调整 N 为 2 的幂，Argon2 保持内存不变调整迭代次数。
+     *
+     * @param algorithm
+     *     口令哈希算法枚举值。
+     * @param targetTime
+     *     目标时间。
+     * @return 设置了校准参数的口令哈希构建器。
+     */
+    @Nonnull
+    public static Builder calibrate(@Nonnull CryptoAlgorithm.PasswordHash algorithm, @Nonnull Duration targetTime) {
+        Builder builder = newBuilder(algorithm);
+        switch (algorithm) {
+            case PBKDF2_SHA_256:
+                builder.iterations = 10000;
+                break;
+            case SCRYPT:
+                builder.memoryCost = 1 << 10;
+                break;
+            case ARGON2ID:
+                builder.iterations = 1;
+                break;
+            default:
+                throw new IllegalArgumentException(algorithm.algorithm);
+        }
+        builder.resolveDefaults();
+
+        char[] password = "calibrate".toCharArray();
+        byte[] salt = new byte[builder.saltLength];
+        long elapsed = 0;
+        // 逐步增大成本，直到单次计算时间可测量
+        while (true) {
+            EncodedHash parameters = new EncodedHash(algorithm, builder.iterations, builder.memoryCost, builder.blockSize, builder.parallelism, null,
+                new byte[builder.hashLength]);
+            derive(parameters, password, salt);
+            long start = System.nanoTime();
+            derive(parameters, password, salt);
+            elapsed = System.nanoTime() - start;
+            if (elapsed * 4 >= targetTime.toNanos() || builder.iterations >= Integer.MAX_VALUE / 2 || builder.memoryCost >= 1 << 24) {
+                break;
+            }
+            if (algorithm == CryptoAlgorithm.PasswordHash.SCRYPT) {
+                builder.memoryCost *= 2;
+            } else {
+                builder.iterations *= 2;
+            }
+        }
+
+        double factor = (double) targetTime.toNanos() / Math.max(elapsed, 1);
+        if (algorithm == CryptoAlgorithm.PasswordHash.SCRYPT) {
+            long cost = (long) (builder.memoryCost * factor);
+            builder.memoryCost = Math.max(2, Integer.highestOneBit((int) Math.min(cost, 1 << 24)));
+        } else {
+            builder.iterations = (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(builder.iterations * factor)));
+        }
+        return builder;
+    }
+
+    /**
+     * PHC 字符串格式的口令哈希。
+     */
+    @Immutable
+    private static final class EncodedHash {
+        private final CryptoAlgorithm.PasswordHash algorithm;
+
+        /**
+         * PBKDF2 和 Argon2 的迭代次数。
+         */
+        private final int iterations;
+
+        /**
+         * scrypt 的 N，Argon2 的内存（KiB）。
+         */
+        private final int memoryCost;
+
+        /**
+         * scrypt 的 r。
+         */
+        private final int blockSize;
+
+        /**
+         * scrypt 和 Argon2 的并行度。
+         */
+        private final int parallelism;
+
+        private final byte[] salt;
+
+        private final byte[] hash;
+
+        EncodedHash(CryptoAlgorithm.PasswordHash algorithm, int iterations, int memoryCost, int blockSize, int parallelism, byte[] salt, byte[] hash) {
+            this.algorithm = algorithm;
+            this.iterations = iterations;
+            this.memoryCost = memoryCost;
+            this.blockSize = blockSize;
+            this.parallelism = parallelism;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        /**
+         * 使用相同参数，替换盐和哈希。
+         */
+        EncodedHash withHash(byte[] newSalt, byte[] newHash) {
+            return new EncodedHash(algorithm, iterations, memoryCost, blockSize, parallelism, newSalt, newHash);
+        }
+
+        /**
+         * 算法、成本参数和哈希长度是否相同。
+         */
+        boolean sameParameters(EncodedHash other) {
+            return algorithm == other.algorithm && iterations == other.iterations && memoryCost == other.memoryCost && blockSize == other.blockSize
+                && parallelism == other.parallelism && hash.length == other.hash.length;
+        }
+
+        /**
+         * 格式化为 PHC 字符串。
+         */
+        String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('$').append(algorithm.algorithm).append('$');
+            switch (algorithm) {
+                case PBKDF2_SHA_256:
+                    sb.append("i=").append(iterations);
+                    break;
+                case SCRYPT:
+                    sb.append("ln=").append(Integer.numberOfTrailingZeros(memoryCost)).append(",r=").append(blockSize).append(",p=").append(parallelism);
+                    break;
+                case ARGON2ID:
+                    sb.append("v=").append(Argon2Parameters.ARGON2_VERSION_13).append("$m=").append(memoryCost).append(",t=").append(iterations)
+                        .append(",p=").append(parallelism);
+                    break;
+                default:
+                    throw new IllegalArgumentException(algorithm.algorithm);
+            }
+            sb.append('$').append(B64_ENCODER.encodeToString(salt));
+            sb.append('$').append(B64_ENCODER.encodeToString(hash));
+            return sb.toString();
+        }
+
+        /**
+         * 解析 PHC 字符串。
+         */
+        static EncodedHash parse(String encoded) {
+            String[] fields = encoded.split("\\$", -1);
+            if (fields.length < 5 || !fields[0].isEmpty()) {
+                throw new IllegalArgumentException(RBMF.get("无效的口令哈希"));
+            }
+            CryptoAlgorithm.PasswordHash algorithm = CryptoAlgorithm.PasswordHash.forCode(fields[1]);
+            if (algorithm == null) {
+                throw new IllegalArgumentException(RBMF.format("不支持的口令哈希算法 {0}", fields[1]));
+            }
+            int expectedLength = algorithm == CryptoAlgorithm.PasswordHash.ARGON2ID ? 6 : 5;
+            if (fields.length != expectedLength) {
+                throw new IllegalArgumentException(RBMF.get("无效的口令哈希"));
+            }
+            if (algorithm == CryptoAlgorithm.PasswordHash.ARGON2ID && !fields[2].equals("v=" + Argon2Parameters.ARGON2_VERSION_13)) {
+                throw new IllegalArgumentException(RBMF.format("不支持的口令哈希算法 {0}", fields[1] + '$' + fields[2]));
+            }
+
+            int iterations = 0;
+            int memoryCost = 0;
+            int blockSize = 0;
+            int parallelism = 0;
+            try {
+                for (String parameter : fields[expectedLength - 3].split(",")) {
+                    int index = parameter.indexOf('=');
+                    if (index < 0) {
+                        throw new IllegalArgumentException(RBMF.get("无效的口令哈希"));
+                    }
+                    String name = parameter.substring(0, index);
+                    int value = Integer.parseInt(parameter.substring(index + 1));
+                    switch (name) {
+                        case "i":
+                        case "t":
+                            iterations = value;
+                            break;
+                        case "ln":
+                            if (value < 1 || value > 30) {
+                                throw new IllegalArgumentException(RBMF.get("无效的口令哈希"));
+                            }
+                            memoryCost = 1 << value;
+                            break;
+                        case "m":
+                            memoryCost = value;
+                            break;
+                        case "r":
+                            blockSize = value;
+                            break;
+                        case "p":
+                            parallelism = value;
+                            break;
+                        default:
+                            throw new IllegalArgumentException(RBMF.get("无效的口令哈希"));
+                    }
+                }
+                byte[] salt = B64_DECODER.decode(fields[expectedLength - 2]);
+                byte[] hash = B64_DECODER.decode(fields[expectedLength - 1]);
+                EncodedHash result = new EncodedHash(algorithm, iterations, memoryCost, blockSize, parallelism, salt, hash);
+                result.validate();
+                return result;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(RBMF.get("无效的口令哈希"), e);
+            }
+        }
+
+        /**
+         * 检查参数范围。
+         */
+        void validate() {
+            boolean valid;
+            switch (algorithm) {
+                case PBKDF2_SHA_256:
+                    valid = iterations > 0;
+                    break;
+                case SCRYPT:
+                    valid = memoryCost > 1 && Integer.bitCount(memoryCost) == 1 && blockSize > 0 && parallelism > 0;
+                    break;
+                case ARGON2ID:
+                    valid = iterations > 0 && parallelism > 0 && memoryCost >= 8 * parallelism;
+                    break;
+                default:
+                    valid = false;
+                    break;
+            }
+            if (!valid || hash.length == 0 || salt != null && salt.length == 0) {
+                throw new IllegalArgumentException(RBMF.get("无效的口令哈希"));
+            }
+        }
+    }
+
+    /**
+     * 口令哈希构建器。
+     */
+    public static final class Builder {
+        /**
+         * 口令哈希算法。
+         */
+        private CryptoAlgorithm.PasswordHash algorithm;
+
+        /**
+         * PBKDF2 和 Argon2 的迭代次数。
+         */
+        private int iterations;
+
+        /**
+         * scrypt 的 N，Argon2 的内存（KiB）。
+         */
+        private int memoryCost;
+
+        /**
+         * scrypt 的 r。
+         */
+        private int blockSize;
+
+        /**
+         * scrypt 和 Argon2 的并行度。
+         */
+        private int parallelism;
+
+        /**
+         * 盐长度。
+         */
+        private int saltLength = DEFAULT_SALT_LENGTH;
+
+        /**
+         * 哈希长度。
+         */
+        private int hashLength = DEFAULT_HASH_LENGTH;
+
+        /**
+         * 随机数生成器算法实例。
+         */
+        private SecureRandom secureRandom;
+
+        /**
+         * 计算哈希的线程池。
+         */
+        private ExecutorService executor;
+
+        /**
+         * 默认线程池中每个线程的等待队列长度。
+         */
+        private int queueFactor = 64;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置迭代次数，用于 PBKDF2 和 Argon2。
+         *
+         * @param iterations
+         *     迭代次数。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setIterations(int iterations) {
+            this.iterations = iterations;
+            return this;
+        }
+
+        /**
+         * 设置内存成本，scrypt 为 N（2 的幂），Argon2 为内存（KiB）。
+         *
+         * @param memoryCost
+         *     内存成本。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setMemoryCost(int memoryCost) {
+            this.memoryCost = memoryCost;
+            return this;
+        }
+
+        /**
+         * 设置块大小，用于 scrypt 的 r。
+         *
+         * @param blockSize
+         *     块大小。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setBlockSize(int blockSize) {
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * 设置并行度，用于 scrypt 和 Argon2。
+         *
+         * @param parallelism
+         *     并行度。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * 设置盐长度。
+         *
+         * @param saltLength
+         *     盐长度。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setSaltLength(int saltLength) {
+            this.saltLength = saltLength;
+            return this;
+        }
+
+        /**
+         * 设置哈希长度。
+         *
+         * @param hashLength
+         *     哈希长度。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setHashLength(int hashLength) {
+            this.hashLength = hashLength;
+            return this;
+        }
+
+        /**
+         * 设置生成盐的随机数生成器算法实例，默认使用 {@link ThreadLocalSecureRandom}。
+         *
+         * @param secureRandom
+         *     随机数生成器算法实例。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setSecureRandom(@Nonnull SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+            return this;
+        }
+
+        /**
+         * 设置计算哈希的线程池，由调用者负责关闭。
+         * 默认创建线程数为处理器数量、队列长度有限的线程池，队列已满时拒绝任务。
+         *
+         * @param executor
+         *     线程池。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setExecutor(@Nonnull ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * 设置默认线程池中每个线程的等待队列长度。
+         *
+         * @param queueFactor
+         *     每个线程的等待队列长度。
+         * @return 口令哈希构建器。
+         */
+        @Nonnull
+        public Builder setQueueFactor(int queueFactor) {
+            this.queueFactor = queueFactor;
+            return this;
+        }
+
+        /**
+         * 构建口令哈希。
+         *
+         * @return 口令哈希。
+         */
+        @Nonnull
+        public PasswordHasher build() {
+            resolveDefaults();
+            if (saltLength <= 0 || queueFactor <= 0) {
+                throw new IllegalArgumentException();
+            }
+            new EncodedHash(algorithm, iterations, memoryCost, blockSize, parallelism, null, new byte[hashLength]).validate();
+            if (secureRandom == null) {
+                secureRandom = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL);
+            }
+            return new PasswordHasher(this);
+        }
+
+        /**
+         * 未设置的成本参数使用算法的默认值，与算法无关的参数清零。
+         */
+        private void resolveDefaults() {
+            switch (algorithm) {
+                case PBKDF2_SHA_256:
+                    iterations = iterations == 0 ? DEFAULT_PBKDF2_ITERATIONS : iterations;
+                    memoryCost = 0;
+                    blockSize = 0;
+                    parallelism = 0;
+                    break;
+                case SCRYPT:
+                    iterations = 0;
+                    memoryCost = memoryCost == 0 ? DEFAULT_SCRYPT_COST : memoryCost;
+                    blockSize = blockSize == 0 ? DEFAULT_SCRYPT_BLOCK_SIZE : blockSize;
+                    parallelism = parallelism == 0 ? 1 : parallelism;
+                    break;
+                case ARGON2ID:
+                    iterations = iterations == 0 ? DEFAULT_ARGON2_ITERATIONS : iterations;
+                    memoryCost = memoryCost == 0 ? DEFAULT_ARGON2_MEMORY : memoryCost;
+                    blockSize = 0;
+                    parallelism = parallelism == 0 ? 1 : parallelism;
+                    break;
+                default:
+                    throw new IllegalArgumentException(algorithm.algorithm);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.crypto.ExtendedDigest;
+import org.bouncycastle.crypto.digests.EncodableDigest;
+import org.bouncycastle.crypto.digests.MD5Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.util.Memoable;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 可恢复的摘要计算，可以随时导出已处理数据的摘要中间状态作为检查点，之后从检查点恢复并只处理追加的数据。
+ * 用于只追加的文件，文件增长后不需要从头重新计算摘要。
+ * 支持 MD5、SHA-1、SHA-256、SHA-512 和 SM3 摘要算法，计算结果与 {@link CryptoMx#digest(byte[], java.security.MessageDigest)} 相同。
+ * 检查点依次包含格式版本、算法名称、已处理字节数和摘要内部状态，长度不超过 250 字节。
+ */
+@NotThreadSafe
+public final class ResumableDigest {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(ResumableDigest.class).useCurrentLocale();
+
+    /**
+     * 检查点格式版本。
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * 摘要算法。
+     */
+    private final CryptoAlgorithm.Digest algorithm;
+
+    /**
+     * 摘要算法实例。
+     */
+    private final ExtendedDigest digest;
+
+    /**
+     * 已处理字节数。
+     */
+    private long length;
+
+    private ResumableDigest(CryptoAlgorithm.Digest algorithm, ExtendedDigest digest, long length) {
+        this.algorithm = algorithm;
+        this.digest = digest;
+        this.length = length;
+    }
+
+    /**
+     * 判断摘要算法是否支持导出中间状态。
+     *
+     * @param algorithm
+     *     摘要算法。
+     * @return 是否支持。
+     */
+    public static boolean isSupported(@Nonnull CryptoAlgorithm.Digest algorithm) {
+        return switch (algorithm) {
+        case MD5, SHA1, SHA_256, SHA_512, SM3 -> true;
+        default -> false;
+        };
+    }
+
+    /**
+     * 开始计算摘要。
+     *
+     * @param algorithm
+     *     摘要算法。
+     * @return 可恢复的摘要计算。
+     * @throws IllegalArgumentException
+     *     摘要算法不支持导出中间状态。
+     */
+    @Nonnull
+    public static ResumableDigest newInstance(@Nonnull CryptoAlgorithm.Digest algorithm) {
+        return new ResumableDigest(algorithm, newDigest(algorithm, null), 0);
+    }
+
+    /**
+     * 从检查点恢复摘要计算。
+     *
+     * @param checkpoint
+     *     {@link #checkpoint()} 导出的检查点。
+     * @return 可恢复的摘要计算。
+     * @throws IllegalArgumentException
+     *     检查点无效。
+     */
+    @Nonnull
+    public static ResumableDigest restore(@Nonnull byte[] checkpoint) {
+        CryptoAlgorithm.Digest algorithm;
+        long length;
+        byte[] state;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException(RBMF.get("无效的摘要检查点"));
+            }
+            byte[] name = new byte[buffer.get()];
+            buffer.get(name);
+            algorithm = CryptoAlgorithm.Digest.forCode(new String(name, StandardCharsets.US_ASCII));
+            length = buffer.getLong();
+            state = new byte[buffer.remaining()];
+            buffer.get(state);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException(RBMF.get("无效的摘要检查点"), e);
+        }
+        if (algorithm == null || !isSupported(algorithm) || length < 0 || state.length == 0) {
+            throw new IllegalArgumentException(RBMF.get("无效的摘要检查点"));
+        }
+        try {
+            return new ResumableDigest(algorithm, newDigest(algorithm, state), length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(RBMF.get("无效的摘要检查点"), e);
+        }
+    }
+
+    private static ExtendedDigest newDigest(CryptoAlgorithm.Digest algorithm, byte[] state) {
+        return switch (algorithm) {
+        case MD5 -> state == null ? new MD5Digest() : new MD5Digest(state);
+        case SHA1 -> state == null ? new SHA1Digest() : new SHA1Digest(state);
+        case SHA_256 -> state == null ? new SHA256Digest() : new SHA256Digest(state);
+        case SHA_512 -> state == null ? new SHA512Digest() : new SHA512Digest(state);
+        case SM3 -> state == null ? new EncodableSM3Digest() : new EncodableSM3Digest(state);
+        default -> throw new IllegalArgumentException(RBMF.format("不支持导出中间状态的摘要算法 {0}", algorithm.algorithm));
+        };
+    }
+
+    /**
+     * 摘要算法。
+     *
+     * @return 摘要算法。
+     */
+    @Nonnull
+    public CryptoAlgorithm.Digest getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 已处理字节数，恢复的摘要计算包括检查点之前处理的字节数。
+     *
+     * @return 已处理字节数。
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * 更新摘要。
+     *
+     * @param plainData
+     *     明文。
+     */
+    public void update(@Nonnull byte[] plainData) {
+        update(plainData, 0, plainData.length);
+    }
+
+    /**
+     * 更新摘要。
+     *
+     * @param plainData
+     *     明文。
+     * @param offset
+     *     明文起始位置。
+     * @param len
+     *     明文长度。
+     */
+    public void update(@Nonnull byte[] plainData, int offset, int len) {
+        digest.update(plainData, offset, len);
+        length += len;
+    }
+
+    /**
+     * 更新摘要。
+     *
+     * @param plainData
+     *     明文，从当前位置读取到结尾。
+     */
+    public void update(@Nonnull ByteBuffer plainData) {
+        if (plainData.hasArray()) {
+            int position = plainData.position();
+            int remaining = plainData.remaining();
+            update(plainData.array(), plainData.arrayOffset() + position, remaining);
+            plainData.position(position + remaining);
+        } else {
+            CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+            byte[] input = bufferPool.borrow(Math.min(bufferPool.getBufferSize(), plainData.remaining()));
+            try {
+                while (plainData.hasRemaining()) {
+                    int readLength = Math.min(input.length, plainData.remaining());
+                    plainData.get(input, 0, readLength);
+                    update(input, 0, readLength);
+                }
+            } finally {
+                bufferPool.release(input);
+            }
+        }
+    }
+
+    /**
+     * 更新摘要。
+     *
+     * @param plainData
+     *     明文，读取到结尾。
+     * @return 读取的字节数。
+     * @throws IOException
+     *     读取明文失败。
+     */
+    public long update(@Nonnull InputStream plainData)
+        throws IOException {
+        CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+        byte[] input = bufferPool.borrow(plainData);
+        long totalLength = 0;
+        try {
+            int readLength;
+            while ((readLength = IOUtils.read(plainData, input)) > 0) {
+                update(input, 0, readLength);
+                totalLength += readLength;
+            }
+        } finally {
+            bufferPool.release(input, totalLength);
+        }
+        return totalLength;
+    }
+
+    /**
+     * 更新只追加的文件的摘要，跳过已处理的字节数，只读取之后追加的数据。
+     *
+     * @param plainData
+     *     明文文件，开头的内容与已处理的数据相同。
+     * @return 读取的字节数。
+     * @throws IOException
+     *     读取明文失败。
+     * @throws IllegalArgumentException
+     *     文件长度小于已处理字节数。
+     */
+    public long update(@Nonnull Path plainData)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(plainData, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < length) {
+                throw new IllegalArgumentException(RBMF.format("文件长度 {0} 小于已处理字节数 {1}", size, length));
+            }
+            channel.position(length);
+            CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+            byte[] input = bufferPool.borrow(Math.min(CryptoBufferPool.FILE_BUFFER_SIZE, bufferPool.getMaxBufferSize()));
+            ByteBuffer buffer = ByteBuffer.wrap(input);
+            long totalLength = 0;
+            try {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    totalLength += buffer.remaining();
+                    update(buffer);
+                    buffer.clear();
+                }
+            } finally {
+                bufferPool.release(input, totalLength);
+            }
+            return totalLength;
+        }
+    }
+
+    /**
+     * 导出检查点，之后可以继续更新摘要。
+     *
+     * @return 检查点。
+     */
+    @Nonnull
+    public byte[] checkpoint() {
+        byte[] name = algorithm.algorithm.getBytes(StandardCharsets.US_ASCII);
+        byte[] state = ((EncodableDigest) digest).getEncodedState();
+        ByteBuffer buffer = ByteBuffer.allocate(2 + name.length + Long.BYTES + state.length);
+        buffer.put(VERSION);
+        buffer.put((byte) name.length);
+        buffer.put(name);
+        buffer.putLong(length);
+        buffer.put(state);
+        return buffer.array();
+    }
+
+    /**
+     * 计算已处理数据的摘要，之后可以继续更新摘要。
+     *
+     * @return 摘要。
+     */
+    @Nonnull
+    public byte[] digest() {
+        ExtendedDigest copy = (ExtendedDigest) ((Memoable) digest).copy();
+        byte[] digestData = new byte[copy.getDigestSize()];
+        copy.doFinal(digestData, 0);
+        return digestData;
+    }
+}
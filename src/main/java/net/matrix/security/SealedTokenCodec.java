@@ -0,0 +1,273 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 密封令牌编解码，使用秘钥环中的认证加密秘钥加密并认证载荷，编码为 URL 安全的无填充 Base64 字符串，适合作为会话令牌。
+ * 令牌格式为版本、秘钥标识长度、秘钥标识、初始向量、密文和认证标签，版本和秘钥标识作为附加认证数据。
+ * 密封时使用主秘钥，打开时使用令牌中记录的秘钥标识，切换主秘钥后旧令牌仍然可以打开，移除秘钥后使用该秘钥的令牌失效。
+ * 密文直接写入预先计算长度的数组，只进行一次 Base64 编码或解码，秘钥环在每个线程中保留算法实例。
+ */
+@ThreadSafe
+public final class SealedTokenCodec {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(SealedTokenCodec.class).useCurrentLocale();
+
+    /**
+     * 令牌格式版本。
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * 初始向量长度。
+     */
+    public static final int NONCE_LENGTH = 12;
+
+    /**
+     * 认证标签长度。
+     */
+    public static final int TAG_LENGTH = CryptoMx.DEFAULT_TAG_LENGTH / 8;
+
+    /**
+     * 默认令牌最大长度，超过此长度的令牌不解码。
+     */
+    public static final int DEFAULT_MAX_TOKEN_LENGTH = 64 * 1024;
+
+    /**
+     * 令牌使用的 Base64 编码器。
+     */
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * 令牌使用的 Base64 解码器。
+     */
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * 秘钥环。
+     */
+    private final CryptoKeyring keyring;
+
+    /**
+     * 令牌最大长度。
+     */
+    private final int maxTokenLength;
+
+    /**
+     * 随机数生成器算法实例。
+     */
+    private final SecureRandom secureRandom;
+
+    /**
+     * 按秘钥标识缓存的令牌头，同时作为附加认证数据。
+     */
+    private final ConcurrentMap<String, byte[]> headers = new ConcurrentHashMap<>();
+
+    /**
+     * 构造密封令牌编解码。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private SealedTokenCodec(Builder builder) {
+        this.keyring = builder.keyring;
+        this.maxTokenLength = builder.maxTokenLength;
+        this.secureRandom = builder.secureRandom;
+    }
+
+    /**
+     * 密封载荷。
+     *
+     * @param payload
+     *     载荷。
+     * @return 令牌。
+     * @throws IllegalArgumentException
+     *     秘钥环没有主秘钥，主秘钥不是对称加密秘钥，或者令牌超过最大长度。
+     */
+    @Nonnull
+    public String seal(@Nonnull byte[] payload) {
+        String keyId = keyring.getPrimaryKeyId();
+        if (keyId == null) {
+            throw new IllegalArgumentException(RBMF.get("秘钥环没有主秘钥"));
+        }
+        byte[] header = getHeader(keyId);
+        int tokenLength = header.length + NONCE_LENGTH + payload.length + TAG_LENGTH;
+        // 无填充 Base64 编码后的长度
+        long encodedLength = ((long) tokenLength * 4 + 2) / 3;
+        if (encodedLength > maxTokenLength) {
+            throw new IllegalArgumentException(RBMF.format("令牌长度 {0} 超过最大长度 {1}", encodedLength, maxTokenLength));
+        }
+        byte[] nonce = CryptoMx.generateRandom(NONCE_LENGTH, secureRandom);
+        byte[] token = new byte[tokenLength];
+        System.arraycopy(header, 0, token, 0, header.length);
+        System.arraycopy(nonce, 0, token, header.length, NONCE_LENGTH);
+        keyring.encrypt(keyId, nonce, header, payload, token, header.length + NONCE_LENGTH);
+        return ENCODER.encodeToString(token);
+    }
+
+    /**
+     * 打开令牌。
+     *
+     * @param token
+     *     令牌。
+     * @return 载荷。
+     * @throws IllegalArgumentException
+     *     令牌格式错误、秘钥标识不存在或者认证失败。
+     */
+    @Nonnull
+    public byte[] open(@Nonnull String token) {
+        if (token.length() > maxTokenLength) {
+            throw new IllegalArgumentException(RBMF.get("无效的令牌"));
+        }
+        byte[] data;
+        try {
+            data = DECODER.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(RBMF.get("无效的令牌"), e);
+        }
+        if (data.length < 2 || data[0] != VERSION) {
+            throw new IllegalArgumentException(RBMF.get("无效的令牌"));
+        }
+        int headerLength = 2 + (data[1] & 0xFF);
+        int cipherOffset = headerLength + NONCE_LENGTH;
+        if (data.length < cipherOffset + TAG_LENGTH) {
+            throw new IllegalArgumentException(RBMF.get("无效的令牌"));
+        }
+        String keyId = new String(data, 2, headerLength - 2, StandardCharsets.UTF_8);
+        if (!keyring.containsKey(keyId)) {
+            throw new IllegalArgumentException(RBMF.get("无效的令牌"));
+        }
+        // 秘钥标识不是有效的 UTF-8 编码时，解码后的字符串与原始字节不一致
+        byte[] header = getHeader(keyId);
+        if (!Arrays.equals(header, 0, header.length, data, 0, headerLength)) {
+            throw new IllegalArgumentException(RBMF.get("无效的令牌"));
+        }
+        byte[] nonce = Arrays.copyOfRange(data, headerLength, cipherOffset);
+        byte[] payload = new byte[data.length - cipherOffset - TAG_LENGTH];
+        keyring.decrypt(keyId, nonce, header, data, cipherOffset, data.length - cipherOffset, payload);
+        return payload;
+    }
+
+    /**
+     * 获取令牌头。
+     *
+     * @param keyId
+     *     秘钥标识。
+     * @return 令牌头。
+     */
+    private byte[] getHeader(String keyId) {
+        byte[] header = headers.get(keyId);
+        if (header == null) {
+            byte[] keyIdData = keyId.getBytes(StandardCharsets.UTF_8);
+            if (keyIdData.length > 0xFF) {
+                throw new IllegalArgumentException(RBMF.format("秘钥标识 {0} 过长", keyId));
+            }
+            header = new byte[2 + keyIdData.length];
+            header[0] = VERSION;
+            header[1] = (byte) keyIdData.length;
+            System.arraycopy(keyIdData, 0, header, 2, keyIdData.length);
+            headers.putIfAbsent(keyId, header);
+        }
+        return header;
+    }
+
+    /**
+     * 获取构建器。
+     *
+     * @param keyring
+     *     秘钥环，主秘钥和打开令牌使用的秘钥必须是对称加密秘钥。
+     * @return 构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoKeyring keyring) {
+        return new Builder(keyring);
+    }
+
+    /**
+     * 密封令牌编解码构建器。
+     */
+    public static final class Builder {
+        /**
+         * 秘钥环。
+         */
+        private final CryptoKeyring keyring;
+
+        /**
+         * 令牌最大长度。
+         */
+        private int maxTokenLength = DEFAULT_MAX_TOKEN_LENGTH;
+
+        /**
+         * 随机数生成器算法实例。
+         */
+        private SecureRandom secureRandom;
+
+        /**
+         * 构造构建器。
+         *
+         * @param keyring
+         *     秘钥环。
+         */
+        private Builder(CryptoKeyring keyring) {
+            this.keyring = keyring;
+        }
+
+        /**
+         * 设置令牌最大长度。
+         *
+         * @param maxTokenLength
+         *     令牌最大长度。
+         * @return 此对象。
+         */
+        @Nonnull
+        public Builder setMaxTokenLength(int maxTokenLength) {
+            this.maxTokenLength = maxTokenLength;
+            return this;
+        }
+
+        /**
+         * 设置随机数生成器算法实例，用于生成初始向量。
+         *
+         * @param secureRandom
+         *     随机数生成器算法实例。
+         * @return 此对象。
+         */
+        @Nonnull
+        public Builder setSecureRandom(@Nonnull SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+            return this;
+        }
+
+        /**
+         * 构建密封令牌编解码。
+         *
+         * @return 密封令牌编解码。
+         */
+        @Nonnull
+        public SealedTokenCodec build() {
+            if (maxTokenLength <= 0) {
+                throw new IllegalArgumentException(String.valueOf(maxTokenLength));
+            }
+            if (secureRandom == null) {
+                secureRandom = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL);
+            }
+            return new SealedTokenCodec(this);
+        }
+    }
+}
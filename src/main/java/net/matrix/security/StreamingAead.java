@@ -0,0 +1,1239 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+
+import net.matrix.text.ResourceBundleMessageFormatter;
+
+/**
+ * 分段认证加密，将数据按固定长度分段，每段独立认证，解密时可以逐段验证，无需缓存全部数据。
+ * 密文格式为头部后接各段密文，头部为版本（1 字节）、分段长度（4 字节）、盐（16 字节）、初始向量前缀（7 字节），
+ * 每段密文为明文加密结果后接 16 字节认证标签，最后一段明文可能短于分段长度。
+ * 各段使用由秘钥和盐经 HKDF-SHA256 派生的分段秘钥加密，每个流使用不同的分段秘钥，同一秘钥加密大量流时初始向量前缀重复也不会导致初始向量重用。
+ * 每段的初始向量为初始向量前缀、段序号（4 字节）、最后一段标记（1 字节），附加认证数据为头部后接调用者指定的附加认证数据，
+ * 可以防止分段被重排、截断或跨数据替换。
+ * 各段可以并行加密和解密，也可以随机访问任意一段，读取任意范围的明文只需解密所在的段。
+ */
+@Immutable
+public final class StreamingAead {
+    /**
+     * 区域相关资源。
+     */
+    private static final ResourceBundleMessageFormatter RBMF = new ResourceBundleMessageFormatter(StreamingAead.class).useCurrentLocale();
+
+    /**
+     * 默认分段长度。
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * 最大分段长度。
+     */
+    public static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 头部长度。
+     */
+    public static final int HEADER_LENGTH = 28;
+
+    /**
+     * 认证标签长度。
+     */
+    public static final int TAG_LENGTH = 16;
+
+    /**
+     * 格式版本。
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * 盐长度。
+     */
+    static final int SALT_LENGTH = 16;
+
+    /**
+     * 盐在头部中的偏移。
+     */
+    private static final int SALT_OFFSET = 5;
+
+    /**
+     * 初始向量前缀长度。
+     */
+    static final int NONCE_PREFIX_LENGTH = 7;
+
+    /**
+     * 初始向量前缀在头部中的偏移。
+     */
+    private static final int NONCE_PREFIX_OFFSET = SALT_OFFSET + SALT_LENGTH;
+
+    /**
+     * 初始向量长度。
+     */
+    static final int NONCE_LENGTH = NONCE_PREFIX_LENGTH + 5;
+
+    /**
+     * 最大分段数量。
+     */
+    static final long MAX_SEGMENT_COUNT = 1L << 32;
+
+    /**
+     * 并行处理时同时处理的最大段数量，限制缓冲区占用的内存。
+     */
+    private static final int MAX_PENDING_SEGMENTS = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 算法变种名称。
+     */
+    private final String transformation;
+
+    /**
+     * 秘钥。
+     */
+    private final SecretKey key;
+
+    /**
+     * 分段长度。
+     */
+    private final int segmentSize;
+
+    /**
+     * 附加认证数据。
+     */
+    private final byte[] aad;
+
+    /**
+     * 随机数生成器算法实例。
+     */
+    private final SecureRandom secureRandom;
+
+    /**
+     * 构造分段认证加密。
+     *
+     * @param builder
+     *     构建器。
+     */
+    private StreamingAead(Builder builder) {
+        this.transformation = builder.transformation;
+        this.key = builder.key;
+        this.segmentSize = builder.segmentSize;
+        this.aad = builder.aad;
+        this.secureRandom = builder.secureRandom;
+    }
+
+    /**
+     * 创建加密输出流，立即写入头部，关闭时写入最后一段。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 加密输出流，写入明文。
+     * @throws IOException
+     *     写入密文失败。
+     */
+    @Nonnull
+    public OutputStream newEncryptingStream(@Nonnull OutputStream cipherData)
+        throws IOException {
+        byte[] header = newHeader();
+        cipherData.write(header);
+        return new EncryptingStream(this, header, deriveSegmentKey(header), cipherData);
+    }
+
+    /**
+     * 创建解密输入流，立即读取头部，逐段验证并解密。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 解密输入流，读取明文。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    @Nonnull
+    public InputStream newDecryptingStream(@Nonnull InputStream cipherData)
+        throws IOException {
+        byte[] header = readHeader(cipherData);
+        parseSegmentSize(header);
+        return new DecryptingStream(this, header, deriveSegmentKey(header), cipherData);
+    }
+
+    /**
+     * 加密。
+     *
+     * @param plainData
+     *     明文。
+     * @param cipherData
+     *     密文。
+     * @throws IOException
+     *     读取明文或写入密文失败。
+     */
+    public void encrypt(@Nonnull InputStream plainData, @Nonnull OutputStream cipherData)
+        throws IOException {
+        try (OutputStream output = newEncryptingStream(CloseShieldOutputStream.wrap(cipherData))) {
+            IOUtils.copyLarge(plainData, output, new byte[segmentSize]);
+        }
+    }
+
+    /**
+     * 解密，验证失败时抛出 {@link IllegalArgumentException}，此时已写入的明文不可信。
+     *
+     * @param cipherData
+     *     密文。
+     * @param plainData
+     *     明文。
+     * @throws IOException
+     *     读取密文或写入明文失败。
+     */
+    public void decrypt(@Nonnull InputStream cipherData, @Nonnull OutputStream plainData)
+        throws IOException {
+        try (InputStream input = newDecryptingStream(CloseShieldInputStream.wrap(cipherData))) {
+            IOUtils.copyLarge(input, plainData, new byte[segmentSize]);
+        }
+    }
+
+    /**
+     * 使用线程池并行加密，各段独立加密后按顺序写入密文。
+     *
+     * @param plainData
+     *     明文。
+     * @param cipherData
+     *     密文。
+     * @param executor
+     *     线程池。
+     * @throws IOException
+     *     读取明文或写入密文失败。
+     */
+    public void encrypt(@Nonnull InputStream plainData, @Nonnull OutputStream cipherData, @Nonnull Executor executor)
+        throws IOException {
+        byte[] header = newHeader();
+        cipherData.write(header);
+        processParallel(plainData, cipherData, header, deriveSegmentKey(header), segmentSize, segmentSize + TAG_LENGTH, true, executor);
+    }
+
+    /**
+     * 使用线程池并行解密，各段独立验证并解密后按顺序写入明文，验证失败时抛出 {@link IllegalArgumentException}，此时已写入的明文不可信。
+     *
+     * @param cipherData
+     *     密文。
+     * @param plainData
+     *     明文。
+     * @param executor
+     *     线程池。
+     * @throws IOException
+     *     读取密文或写入明文失败。
+     */
+    public void decrypt(@Nonnull InputStream cipherData, @Nonnull OutputStream plainData, @Nonnull Executor executor)
+        throws IOException {
+        byte[] header = readHeader(cipherData);
+        int cipherSegmentSize = parseSegmentSize(header);
+        processParallel(cipherData, plainData, header, deriveSegmentKey(header), cipherSegmentSize + TAG_LENGTH, cipherSegmentSize, false, executor);
+    }
+
+    /**
+     * 计算密文的分段数量。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 分段数量。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    public long getSegmentCount(@Nonnull SeekableByteChannel cipherData)
+        throws IOException {
+        byte[] header = readHeader(cipherData);
+        return getSegmentCount(cipherData.size(), parseSegmentSize(header) + TAG_LENGTH);
+    }
+
+    /**
+     * 随机访问密文中的一段，只验证并解密这一段，不改变其它段。
+     * 会改变通道的当前位置，不能与其它使用该通道的操作并发执行。
+     *
+     * @param cipherData
+     *     密文。
+     * @param index
+     *     段序号。
+     * @return 这一段的明文。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    @Nonnull
+    public byte[] decryptSegment(@Nonnull SeekableByteChannel cipherData, long index)
+        throws IOException {
+        byte[] header = readHeader(cipherData);
+        int cipherSegmentSize = parseSegmentSize(header) + TAG_LENGTH;
+        long cipherLength = cipherData.size();
+        long segmentCount = getSegmentCount(cipherLength, cipherSegmentSize);
+        if (index < 0 || index >= segmentCount) {
+            throw new IllegalArgumentException(RBMF.format("段序号 {0} 超出范围", index));
+        }
+
+        ByteBuffer cipherBuffer = ByteBuffer.allocate(cipherSegmentSize);
+        byte[] plainBuffer = new byte[cipherSegmentSize];
+        try (CryptoEnginePool.Lease<Cipher> lease = CryptoEnginePool.ofCipher(transformation).lease()) {
+            int plainLength = readSegment(cipherData, cipherLength, header, deriveSegmentKey(header), segmentCount, index, cipherBuffer, plainBuffer,
+                lease.get());
+            return Arrays.copyOf(plainBuffer, plainLength);
+        }
+    }
+
+    /**
+     * 创建随机访问解密通道，读取时只验证并解密所需的段，通道长度为明文长度。
+     *
+     * @param cipherData
+     *     密文，创建后不能再改变长度。
+     * @return 只读的解密通道。
+     * @throws IOException
+     *     读取密文失败。
+     */
+    @Nonnull
+    public SeekableByteChannel newDecryptingChannel(@Nonnull SeekableByteChannel cipherData)
+        throws IOException {
+        byte[] header = readHeader(cipherData);
+        parseSegmentSize(header);
+        return new DecryptingChannel(this, header, deriveSegmentKey(header), cipherData);
+    }
+
+    /**
+     * 创建加密通道，立即写入头部，关闭时写入最后一段。
+     *
+     * @param cipherData
+     *     密文。
+     * @return 加密通道，写入明文。
+     * @throws IOException
+     *     写入密文失败。
+     */
+    @Nonnull
+    public WritableByteChannel newEncryptingChannel(@Nonnull WritableByteChannel cipherData)
+        throws IOException {
+        return Channels.newChannel(newEncryptingStream(Channels.newOutputStream(cipherData)));
+    }
+
+    /**
+     * 从通道中读取并解密一段。
+     */
+    private int readSegment(SeekableByteChannel cipherData, long cipherLength, byte[] header, SecretKey segmentKey, long segmentCount, long index,
+        ByteBuffer cipherBuffer, byte[] plainBuffer, Cipher cipher)
+        throws IOException {
+        long position = HEADER_LENGTH + index * cipherBuffer.capacity();
+        cipherBuffer.clear().limit((int) Math.min(cipherBuffer.capacity(), cipherLength - position));
+        cipherData.position(position);
+        readFully(cipherData, cipherBuffer);
+        return decryptSegment(cipher, segmentKey, header, index, index == segmentCount - 1, cipherBuffer.array(), 0, cipherBuffer.limit(), plainBuffer,
+            0);
+    }
+
+    /**
+     * 顺序读取各段，提交到线程池处理，按顺序写入结果，限制同时处理的段数量。
+     */
+    private void processParallel(InputStream input, OutputStream output, byte[] header, SecretKey segmentKey, int inputSegmentSize,
+        int outputSegmentSize, boolean encrypt, Executor executor)
+        throws IOException {
+        CryptoEnginePool<Cipher> cipherPool = CryptoEnginePool.ofCipher(transformation);
+        Queue<byte[]> inputBuffers = new ConcurrentLinkedQueue<>();
+        Queue<byte[]> outputBuffers = new ConcurrentLinkedQueue<>();
+        Queue<CompletableFuture<Segment>> pendingSegments = new ArrayDeque<>();
+        try {
+            byte[] current = new byte[inputSegmentSize];
+            int currentLength = IOUtils.read(input, current);
+            for (long index = 0;; index++) {
+                // 读取到下一段才能确定当前段是否最后一段
+                byte[] next = null;
+                int nextLength = 0;
+                boolean last = currentLength < inputSegmentSize;
+                if (!last) {
+                    next = pollBuffer(inputBuffers, inputSegmentSize);
+                    nextLength = IOUtils.read(input, next);
+                    last = nextLength == 0;
+                }
+
+                byte[] segmentData = current;
+                int segmentLength = currentLength;
+                long segmentIndex = index;
+                boolean segmentLast = last;
+                pendingSegments.add(CompletableFuture.supplyAsync(() -> {
+                    byte[] outputBuffer = pollBuffer(outputBuffers, outputSegmentSize);
+                    try (CryptoEnginePool.Lease<Cipher> lease = cipherPool.lease()) {
+                        int outputLength;
+                        if (encrypt) {
+                            outputLength = encryptSegment(lease.get(), segmentKey, header, segmentIndex, segmentLast, segmentData, 0, segmentLength,
+                                outputBuffer, 0);
+                        } else {
+                            outputLength = decryptSegment(lease.get(), segmentKey, header, segmentIndex, segmentLast, segmentData, 0, segmentLength,
+                                outputBuffer, 0);
+                        }
+                        return new Segment(outputBuffer, outputLength);
+                    } finally {
+                        inputBuffers.offer(segmentData);
+                    }
+                }, executor));
+                if (pendingSegments.size() >= MAX_PENDING_SEGMENTS) {
+                    writeSegment(output, pendingSegments.poll(), outputBuffers);
+                }
+                if (last) {
+                    break;
+                }
+                current = next;
+                currentLength = nextLength;
+            }
+            while (!pendingSegments.isEmpty()) {
+                writeSegment(output, pendingSegments.poll(), outputBuffers);
+            }
+        } finally {
+            // 出错时等待正在处理的段，避免归还仍在使用的算法实例
+            for (CompletableFuture<Segment> pendingSegment : pendingSegments) {
+                pendingSegment.exceptionally(e -> null).join();
+            }
+        }
+    }
+
+    /**
+     * 等待一段处理完成并写入结果。
+     */
+    private static void writeSegment(OutputStream output, CompletableFuture<Segment> pendingSegment, Queue<byte[]> outputBuffers)
+        throws IOException {
+        Segment segment;
+        try {
+            segment = pendingSegment.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        output.write(segment.data, 0, segment.length);
+        outputBuffers.offer(segment.data);
+    }
+
+    /**
+     * 取出空闲缓冲区，没有时分配新的缓冲区。
+     */
+    private static byte[] pollBuffer(Queue<byte[]> buffers, int size) {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[size];
+        }
+        return buffer;
+    }
+
+    /**
+     * 读取头部。
+     */
+    private static byte[] readHeader(InputStream cipherData)
+        throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        if (IOUtils.read(cipherData, header) < HEADER_LENGTH) {
+            throw new EOFException();
+        }
+        return header;
+    }
+
+    /**
+     * 读取头部。
+     */
+    private static byte[] readHeader(SeekableByteChannel cipherData)
+        throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        cipherData.position(0);
+        readFully(cipherData, header);
+        return header.array();
+    }
+
+    /**
+     * 填满缓冲区。
+     */
+    private static void readFully(SeekableByteChannel channel, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * 由密文长度计算分段数量。
+     */
+    private static long getSegmentCount(long cipherLength, int cipherSegmentSize) {
+        long bodyLength = cipherLength - HEADER_LENGTH;
+        if (bodyLength < TAG_LENGTH) {
+            throw new IllegalArgumentException(RBMF.format("无效的密文长度 {0}", cipherLength));
+        }
+        return (bodyLength + cipherSegmentSize - 1) / cipherSegmentSize;
+    }
+
+    /**
+     * 计算密文长度。
+     *
+     * @param plainLength
+     *     明文长度。
+     * @return 密文长度。
+     */
+    public long getCipherLength(long plainLength) {
+        long segmentCount = Math.max(1, (plainLength + segmentSize - 1) / segmentSize);
+        return HEADER_LENGTH + plainLength + segmentCount * TAG_LENGTH;
+    }
+
+    /**
+     * 算法变种名称。
+     *
+     * @return 算法变种名称。
+     */
+    @Nonnull
+    public String getTransformation() {
+        return transformation;
+    }
+
+    /**
+     * 分段长度。
+     *
+     * @return 分段长度。
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * 生成头部。
+     *
+     * @return 头部。
+     */
+    byte[] newHeader() {
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = VERSION;
+        writeInt(header, 1, segmentSize);
+        byte[] random = CryptoMx.generateRandom(SALT_LENGTH + NONCE_PREFIX_LENGTH, secureRandom);
+        System.arraycopy(random, 0, header, SALT_OFFSET, SALT_LENGTH + NONCE_PREFIX_LENGTH);
+        return header;
+    }
+
+    /**
+     * 由秘钥和头部中的盐派生分段秘钥，派生信息为版本和分段长度。
+     *
+     * @param header
+     *     头部。
+     * @return 分段秘钥。
+     */
+    SecretKey deriveSegmentKey(byte[] header) {
+        byte[] keyData = key.getEncoded();
+        byte[] salt = Arrays.copyOfRange(header, SALT_OFFSET, SALT_OFFSET + SALT_LENGTH);
+        byte[] info = Arrays.copyOf(header, SALT_OFFSET);
+        byte[] segmentKeyData = new byte[keyData.length];
+        try {
+            HKDFBytesGenerator generator = new HKDFBytesGenerator(new SHA256Digest());
+            generator.init(new HKDFParameters(keyData, salt, info));
+            generator.generateBytes(segmentKeyData, 0, segmentKeyData.length);
+            return CryptoMx.getSecretKey(segmentKeyData, key.getAlgorithm());
+        } finally {
+            Arrays.fill(keyData, (byte) 0);
+            Arrays.fill(segmentKeyData, (byte) 0);
+        }
+    }
+
+    /**
+     * 解析头部中的分段长度。
+     *
+     * @param header
+     *     头部。
+     * @return 分段长度。
+     */
+    static int parseSegmentSize(byte[] header) {
+        if (header[0] != VERSION) {
+            throw new IllegalArgumentException(RBMF.format("不支持的版本 {0}", header[0]));
+        }
+        int segmentSize = readInt(header, 1);
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException(RBMF.format("无效的分段长度 {0}", segmentSize));
+        }
+        return segmentSize;
+    }
+
+    /**
+     * 加密一段。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param segmentKey
+     *     分段秘钥。
+     * @param header
+     *     头部。
+     * @param index
+     *     段序号。
+     * @param last
+     *     是否最后一段。
+     * @param plainData
+     *     明文。
+     * @param plainOffset
+     *     明文偏移。
+     * @param plainLength
+     *     明文长度。
+     * @param cipherData
+     *     密文。
+     * @param cipherOffset
+     *     密文偏移。
+     * @return 密文长度。
+     */
+    int encryptSegment(Cipher cipher, SecretKey segmentKey, byte[] header, long index, boolean last, byte[] plainData, int plainOffset, int plainLength,
+        byte[] cipherData, int cipherOffset) {
+        CryptoMx.initCipherForEncrypt(cipher, segmentKey, CryptoMx.getAeadParameterSpec(transformation, getNonce(header, index, last), TAG_LENGTH * 8));
+        updateAad(cipher, header);
+        return CryptoMx.encrypt(plainData, plainOffset, plainLength, cipherData, cipherOffset, cipher);
+    }
+
+    /**
+     * 验证并解密一段。
+     *
+     * @param cipher
+     *     加密算法实例。
+     * @param segmentKey
+     *     分段秘钥。
+     * @param header
+     *     头部。
+     * @param index
+     *     段序号。
+     * @param last
+     *     是否最后一段。
+     * @param cipherData
+     *     密文。
+     * @param cipherOffset
+     *     密文偏移。
+     * @param cipherLength
+     *     密文长度。
+     * @param plainData
+     *     明文。
+     * @param plainOffset
+     *     明文偏移。
+     * @return 明文长度。
+     */
+    int decryptSegment(Cipher cipher, SecretKey segmentKey, byte[] header, long index, boolean last, byte[] cipherData, int cipherOffset,
+        int cipherLength, byte[] plainData, int plainOffset) {
+        CryptoMx.initCipherForDecrypt(cipher, segmentKey, CryptoMx.getAeadParameterSpec(transformation, getNonce(header, index, last), TAG_LENGTH * 8));
+        updateAad(cipher, header);
+        return CryptoMx.decrypt(cipherData, cipherOffset, cipherLength, plainData, plainOffset, cipher);
+    }
+
+    /**
+     * 更新附加认证数据。
+     */
+    private void updateAad(Cipher cipher, byte[] header) {
+        CryptoMx.updateAad(header, cipher);
+        if (aad.length > 0) {
+            CryptoMx.updateAad(aad, cipher);
+        }
+    }
+
+    /**
+     * 生成段的初始向量。
+     */
+    private static byte[] getNonce(byte[] header, long index, boolean last) {
+        if (index < 0 || index >= MAX_SEGMENT_COUNT) {
+            throw new IllegalArgumentException(RBMF.format("段序号 {0} 超出范围", index));
+        }
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(header, NONCE_PREFIX_OFFSET, nonce, 0, NONCE_PREFIX_LENGTH);
+        writeInt(nonce, NONCE_PREFIX_LENGTH, (int) index);
+        nonce[NONCE_LENGTH - 1] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    /**
+     * 按大端字节序写入整数。
+     */
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * 按大端字节序读取整数。
+     */
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+
+    /**
+     * 构造分段认证加密构建器。
+     *
+     * @param transformation
+     *     认证加密算法变种名称。
+     * @return 分段认证加密构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull String transformation) {
+        Builder builder = new Builder();
+        builder.transformation = transformation;
+        return builder;
+    }
+
+    /**
+     * 构造分段认证加密构建器。
+     *
+     * @param algorithm
+     *     认证加密算法枚举值。
+     * @return 分段认证加密构建器。
+     */
+    @Nonnull
+    public static Builder newBuilder(@Nonnull CryptoAlgorithm.Symmetric algorithm) {
+        return newBuilder(algorithm.transformation);
+    }
+
+    /**
+     * 加密输出流。
+     */
+    @NotThreadSafe
+    private static final class EncryptingStream
+        extends OutputStream {
+        private final StreamingAead aead;
+
+        private final byte[] header;
+
+        private final SecretKey segmentKey;
+
+        private final OutputStream cipherData;
+
+        private final CryptoEnginePool<Cipher> cipherPool;
+
+        private final Cipher cipher;
+
+        private final byte[] plainBuffer;
+
+        private final byte[] cipherBuffer;
+
+        private int plainLength;
+
+        private long index;
+
+        private boolean closed;
+
+        EncryptingStream(StreamingAead aead, byte[] header, SecretKey segmentKey, OutputStream cipherData) {
+            this.aead = aead;
+            this.header = header;
+            this.segmentKey = segmentKey;
+            this.cipherData = cipherData;
+            this.cipherPool = CryptoEnginePool.ofCipher(aead.transformation);
+            this.cipher = cipherPool.borrow();
+            this.plainBuffer = new byte[aead.segmentSize];
+            this.cipherBuffer = new byte[aead.segmentSize + TAG_LENGTH];
+        }
+
+        @Override
+        public void write(int b)
+            throws IOException {
+            ensureOpen();
+            if (plainLength == plainBuffer.length) {
+                writeSegment(false);
+            }
+            plainBuffer[plainLength++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+            throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                // 缓冲区满时要等到还有数据才能确定不是最后一段
+                if (plainLength == plainBuffer.length) {
+                    writeSegment(false);
+                }
+                int length = Math.min(len, plainBuffer.length - plainLength);
+                System.arraycopy(b, off, plainBuffer, plainLength, length);
+                plainLength += length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void flush()
+            throws IOException {
+            cipherData.flush();
+        }
+
+        @Override
+        public void close()
+            throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                writeSegment(true);
+                cipherData.close();
+            } finally {
+                Arrays.fill(plainBuffer, (byte) 0);
+                cipherPool.release(cipher);
+            }
+        }
+
+        private void writeSegment(boolean last)
+            throws IOException {
+            int cipherLength = aead.encryptSegment(cipher, segmentKey, header, index, last, plainBuffer, 0, plainLength, cipherBuffer, 0);
+            cipherData.write(cipherBuffer, 0, cipherLength);
+            index++;
+            plainLength = 0;
+        }
+
+        private void ensureOpen()
+            throws IOException {
+            if (closed) {
+                throw new IOException(RBMF.get("流已关闭"));
+            }
+        }
+    }
+
+    /**
+     * 解密输入流。
+     */
+    @NotThreadSafe
+    private static final class DecryptingStream
+        extends InputStream {
+        private final StreamingAead aead;
+
+        private final byte[] header;
+
+        private final SecretKey segmentKey;
+
+        private final InputStream cipherData;
+
+        private final CryptoEnginePool<Cipher> cipherPool;
+
+        private final Cipher cipher;
+
+        private final byte[] cipherBuffer;
+
+        private final byte[] plainBuffer;
+
+        private int plainPosition;
+
+        private int plainLength;
+
+        private long index;
+
+        /**
+         * 为判断是否最后一段多读取的一个字节，-1 表示没有。
+         */
+        private int lookahead = -1;
+
+        private boolean finished;
+
+        private boolean closed;
+
+        DecryptingStream(StreamingAead aead, byte[] header, SecretKey segmentKey, InputStream cipherData) {
+            int segmentSize = parseSegmentSize(header);
+            this.aead = aead;
+            this.header = header;
+            this.segmentKey = segmentKey;
+            this.cipherData = cipherData;
+            this.cipherPool = CryptoEnginePool.ofCipher(aead.transformation);
+            this.cipher = cipherPool.borrow();
+            this.cipherBuffer = new byte[segmentSize + TAG_LENGTH];
+            this.plainBuffer = new byte[segmentSize];
+        }
+
+        @Override
+        public int read()
+            throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return plainBuffer[plainPosition++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+            throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int length = Math.min(len, plainLength - plainPosition);
+            System.arraycopy(plainBuffer, plainPosition, b, off, length);
+            plainPosition += length;
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return plainLength - plainPosition;
+        }
+
+        @Override
+        public void close()
+            throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Arrays.fill(plainBuffer, (byte) 0);
+            cipherPool.release(cipher);
+            cipherData.close();
+        }
+
+        /**
+         * 当前段已读完时解密下一段。
+         *
+         * @return 是否还有明文。
+         */
+        private boolean fill()
+            throws IOException {
+            if (closed) {
+                throw new IOException(RBMF.get("流已关闭"));
+            }
+            while (plainPosition == plainLength) {
+                if (finished) {
+                    return false;
+                }
+                readSegment();
+            }
+            return true;
+        }
+
+        private void readSegment()
+            throws IOException {
+            int offset = 0;
+            if (lookahead >= 0) {
+                cipherBuffer[offset++] = (byte) lookahead;
+                lookahead = -1;
+            }
+            int cipherLength = offset + IOUtils.read(cipherData, cipherBuffer, offset, cipherBuffer.length - offset);
+            boolean last = cipherLength < cipherBuffer.length;
+            if (!last) {
+                lookahead = cipherData.read();
+                last = lookahead < 0;
+            }
+            plainLength = aead.decryptSegment(cipher, segmentKey, header, index, last, cipherBuffer, 0, cipherLength, plainBuffer, 0);
+            plainPosition = 0;
+            index++;
+            finished = last;
+        }
+    }
+
+    /**
+     * 随机访问解密通道，缓存最近解密的一段。
+     */
+    @NotThreadSafe
+    private static final class DecryptingChannel
+        implements SeekableByteChannel {
+        private final StreamingAead aead;
+
+        private final byte[] header;
+
+        private final SecretKey segmentKey;
+
+        private final SeekableByteChannel cipherData;
+
+        private final long cipherLength;
+
+        private final int segmentSize;
+
+        private final long segmentCount;
+
+        private final long plainSize;
+
+        private final CryptoEnginePool<Cipher> cipherPool;
+
+        private final Cipher cipher;
+
+        private final ByteBuffer cipherBuffer;
+
+        private final byte[] plainBuffer;
+
+        private int plainLength;
+
+        /**
+         * 缓存的段序号，-1 表示没有。
+         */
+        private long cachedIndex = -1;
+
+        private long position;
+
+        private boolean closed;
+
+        DecryptingChannel(StreamingAead aead, byte[] header, SecretKey segmentKey, SeekableByteChannel cipherData)
+            throws IOException {
+            this.aead = aead;
+            this.header = header;
+            this.segmentKey = segmentKey;
+            this.cipherData = cipherData;
+            this.cipherLength = cipherData.size();
+            this.segmentSize = parseSegmentSize(header);
+            this.segmentCount = getSegmentCount(cipherLength, segmentSize + TAG_LENGTH);
+            long lastCipherLength = cipherLength - HEADER_LENGTH - (segmentCount - 1) * (segmentSize + TAG_LENGTH);
+            if (lastCipherLength < TAG_LENGTH) {
+                throw new IllegalArgumentException(RBMF.format("无效的密文长度 {0}", cipherLength));
+            }
+            this.plainSize = (segmentCount - 1) * segmentSize + lastCipherLength - TAG_LENGTH;
+            this.cipherPool = CryptoEnginePool.ofCipher(aead.transformation);
+            this.cipher = cipherPool.borrow();
+            this.cipherBuffer = ByteBuffer.allocate(segmentSize + TAG_LENGTH);
+            this.plainBuffer = new byte[segmentSize + TAG_LENGTH];
+        }
+
+        @Override
+        public int read(ByteBuffer dst)
+            throws IOException {
+            ensureOpen();
+            if (position >= plainSize) {
+                return -1;
+            }
+            int total = 0;
+            while (dst.hasRemaining() && position < plainSize) {
+                long index = position / segmentSize;
+                if (index != cachedIndex) {
+                    cachedIndex = -1;
+                    plainLength = aead.readSegment(cipherData, cipherLength, header, segmentKey, segmentCount, index, cipherBuffer, plainBuffer, cipher);
+                    cachedIndex = index;
+                }
+                int offset = (int) (position - index * segmentSize);
+                int length = Math.min(dst.remaining(), plainLength - offset);
+                dst.put(plainBuffer, offset, length);
+                position += length;
+                total += length;
+            }
+            return total;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position()
+            throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition)
+            throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size()
+            throws IOException {
+            ensureOpen();
+            return plainSize;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close()
+            throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Arrays.fill(plainBuffer, (byte) 0);
+            cipherPool.release(cipher);
+            cipherData.close();
+        }
+
+        private void ensureOpen()
+            throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+
+    /**
+     * 处理完成的一段。
+     */
+    private static final class Segment {
+        private final byte[] data;
+
+        private final int length;
+
+        Segment(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 分段认证加密构建器。
+     */
+    public static final class Builder {
+        /**
+         * 算法变种名称。
+         */
+        private String transformation;
+
+        /**
+         * 秘钥。
+         */
+        private SecretKey key;
+
+        /**
+         * 分段长度。
+         */
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+        /**
+         * 附加认证数据。
+         */
+        private byte[] aad = new byte[0];
+
+        /**
+         * 随机数生成器算法实例。
+         */
+        private SecureRandom secureRandom;
+
+        /**
+         * 阻止实例化。
+         */
+        private Builder() {
+        }
+
+        /**
+         * 设置秘钥。
+         *
+         * @param keyData
+         *     秘钥。
+         * @param algorithm
+         *     算法名称。
+         * @return 分段认证加密构建器。
+         */
+        @Nonnull
+        public Builder setKey(@Nonnull byte[] keyData, @Nonnull String algorithm) {
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm);
+            return this;
+        }
+
+        /**
+         * 设置秘钥。
+         *
+         * @param keyData
+         *     秘钥。
+         * @param algorithm
+         *     算法枚举值。
+         * @return 分段认证加密构建器。
+         */
+        @Nonnull
+        public Builder setKey(@Nonnull byte[] keyData, @Nonnull CryptoAlgorithm.Symmetric algorithm) {
+            this.key = CryptoKeyCache.getDefault().getSecretKey(keyData, algorithm.algorithm);
+            return this;
+        }
+
+        /**
+         * 设置秘钥。
+         *
+         * @param key
+         *     秘钥。
+         * @return 分段认证加密构建器。
+         */
+        @Nonnull
+        public Builder setKey(@Nonnull SecretKey key) {
+            this.key = key;
+            return this;
+        }
+
+        /**
+         * 设置分段长度，只用于加密，解密时使用头部中的分段长度。
+         *
+         * @param segmentSize
+         *     分段长度。
+         * @return 分段认证加密构建器。
+         */
+        @Nonnull
+        public Builder setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * 设置附加认证数据，附加认证数据不写入密文，解密时必须提供相同的附加认证数据。
+         *
+         * @param aad
+         *     附加认证数据。
+         * @return 分段认证加密构建器。
+         */
+        @Nonnull
+        public Builder setAad(@Nonnull byte[] aad) {
+            this.aad = aad.clone();
+            return this;
+        }
+
+        /**
+         * 设置生成初始向量前缀的随机数生成器算法实例，默认使用 {@link ThreadLocalSecureRandom}。
+         *
+         * @param secureRandom
+         *     随机数生成器算法实例。
+         * @return 分段认证加密构建器。
+         */
+        @Nonnull
+        public Builder setSecureRandom(@Nonnull SecureRandom secureRandom) {
+            this.secureRandom = secureRandom;
+            return this;
+        }
+
+        /**
+         * 构建分段认证加密。
+         *
+         * @return 分段认证加密。
+         */
+        @Nonnull
+        public StreamingAead build() {
+            if (!CryptoMx.isAead(transformation)) {
+                throw new IllegalArgumentException(RBMF.format("{0} 不是认证加密算法", transformation));
+            }
+            if (key == null || segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException();
+            }
+            if (secureRandom == null) {
+                secureRandom = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.THREAD_LOCAL);
+            }
+            return new StreamingAead(this);
+        }
+    }
+}
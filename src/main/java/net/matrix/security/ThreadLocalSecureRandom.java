@@ -0,0 +1,309 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.prng.SP800SecureRandom;
+import org.bouncycastle.crypto.prng.SP800SecureRandomBuilder;
+import org.bouncycastle.util.Pack;
+
+/**
+ * 线程本地随机数生成器，每个线程使用独立的 SP 800-90A Hash DRBG，由系统随机数生成器提供熵并定期重新播种，避免多线程争用同一个实例。
+ * 少量随机数从预取的缓冲区中读取，读取后清除缓冲区中已使用的部分。
+ */
+@ThreadSafe
+public final class ThreadLocalSecureRandom
+    extends SecureRandom {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 预取缓冲区长度。
+     */
+    public static final int BUFFER_SIZE = 512;
+
+    /**
+     * 重新播种前最多生成的字节数。
+     */
+    public static final long RESEED_BYTES = 1L << 24;
+
+    /**
+     * 重新播种的时间间隔，单位纳秒。
+     */
+    public static final long RESEED_INTERVAL = 10L * 60 * 1000 * 1000 * 1000;
+
+    /**
+     * DRBG 每次请求最多生成的字节数，SP 800-90A Hash DRBG 每次请求最多 262144 位。
+     */
+    private static final int MAX_REQUEST_LENGTH = 32 * 1024;
+
+    /**
+     * DRBG 的 nonce 长度。
+     */
+    private static final int NONCE_LENGTH = 16;
+
+    /**
+     * 默认实例。
+     */
+    private static final ThreadLocalSecureRandom DEFAULT_INSTANCE = new ThreadLocalSecureRandom();
+
+    /**
+     * 各线程的随机数生成状态。
+     */
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    /**
+     * 构造线程本地随机数生成器。
+     */
+    private ThreadLocalSecureRandom() {
+        super(new Spi(), null);
+    }
+
+    /**
+     * 获取默认实例。
+     *
+     * @return 默认实例。
+     */
+    @Nonnull
+    public static ThreadLocalSecureRandom getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return CryptoConstant.THREAD_LOCAL;
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        STATE.get().nextBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 生成随机数填充数组的一部分。
+     *
+     * @param bytes
+     *     数组。
+     * @param offset
+     *     起始位置。
+     * @param length
+     *     长度。
+     */
+    public void nextBytes(@Nonnull byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        STATE.get().nextBytes(bytes, offset, length);
+    }
+
+    /**
+     * 生成随机数填充缓冲区的剩余部分。
+     *
+     * @param buffer
+     *     缓冲区。
+     */
+    public void nextBytes(@Nonnull ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int length = buffer.remaining();
+            STATE.get().nextBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.position() + length);
+        } else {
+            STATE.get().nextBytes(buffer);
+        }
+    }
+
+    /**
+     * 使用附加输入重新播种当前线程的 DRBG。
+     */
+    @Override
+    public void setSeed(byte[] seed) {
+        STATE.get().reseed(seed);
+    }
+
+    /**
+     * 不支持使用 long 播种，{@link java.util.Random} 的构造方法会调用。
+     */
+    @Override
+    public void setSeed(long seed) {
+    }
+
+    @Override
+    public byte[] generateSeed(int numBytes) {
+        return CryptoMx.getSecureRandom(CryptoAlgorithm.Random.SYSTEM).generateSeed(numBytes);
+    }
+
+    /**
+     * 保持序列化后仍为默认实例。
+     */
+    private Object readResolve() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * 单个线程的随机数生成状态。
+     */
+    @NotThreadSafe
+    private static final class State {
+        /**
+         * DRBG 实例。
+         */
+        private final SP800SecureRandom drbg;
+
+        /**
+         * 预取缓冲区。
+         */
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        /**
+         * 预取缓冲区中下一个可用字节的位置。
+         */
+        private int position = BUFFER_SIZE;
+
+        /**
+         * 上次播种后生成的字节数。
+         */
+        private long generatedBytes;
+
+        /**
+         * 上次播种的时间。
+         */
+        private long seedTime;
+
+        /**
+         * 构造当前线程的 DRBG，使用线程编号和时间作为个性化字符串。
+         */
+        State() {
+            SecureRandom entropySource = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.SYSTEM);
+            byte[] personalization = new byte[16];
+            Pack.longToBigEndian(Thread.currentThread().getId(), personalization, 0);
+            Pack.longToBigEndian(System.nanoTime(), personalization, 8);
+            this.drbg = new SP800SecureRandomBuilder(entropySource, false).setPersonalizationString(personalization).buildHash(new SHA512Digest(),
+                entropySource.generateSeed(NONCE_LENGTH), false);
+            this.seedTime = System.nanoTime();
+        }
+
+        /**
+         * 生成随机数填充数组，整个数组的大量请求直接由 DRBG 生成，其余从预取缓冲区读取。
+         */
+        void nextBytes(byte[] bytes, int offset, int length) {
+            if (offset == 0 && length == bytes.length && length > BUFFER_SIZE) {
+                generate(bytes);
+                return;
+            }
+            while (length > 0) {
+                int count = Math.min(length, available());
+                System.arraycopy(buffer, position, bytes, offset, count);
+                consume(count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /**
+         * 生成随机数填充缓冲区的剩余部分。
+         */
+        void nextBytes(ByteBuffer bytes) {
+            while (bytes.hasRemaining()) {
+                int count = Math.min(bytes.remaining(), available());
+                bytes.put(buffer, position, count);
+                consume(count);
+            }
+        }
+
+        /**
+         * 使用附加输入重新播种。
+         */
+        void reseed(byte[] additionalInput) {
+            drbg.reseed(additionalInput);
+            generatedBytes = 0;
+            seedTime = System.nanoTime();
+            // 丢弃播种前预取的随机数
+            Arrays.fill(buffer, (byte) 0);
+            position = BUFFER_SIZE;
+        }
+
+        /**
+         * 预取缓冲区中可用的字节数，没有可用字节时重新预取。
+         */
+        private int available() {
+            if (position == BUFFER_SIZE) {
+                generate(buffer);
+                position = 0;
+            }
+            return BUFFER_SIZE - position;
+        }
+
+        /**
+         * 清除预取缓冲区中已使用的部分。
+         */
+        private void consume(int count) {
+            Arrays.fill(buffer, position, position + count, (byte) 0);
+            position += count;
+        }
+
+        /**
+         * 由 DRBG 生成随机数，超过单次请求上限时分段生成，每段之前达到重新播种条件时先重新播种。
+         */
+        private void generate(byte[] bytes) {
+            if (bytes.length <= MAX_REQUEST_LENGTH) {
+                generateRequest(bytes);
+                return;
+            }
+            byte[] chunk = new byte[MAX_REQUEST_LENGTH];
+            try {
+                for (int offset = 0; offset < bytes.length; offset += chunk.length) {
+                    generateRequest(chunk);
+                    System.arraycopy(chunk, 0, bytes, offset, Math.min(chunk.length, bytes.length - offset));
+                }
+            } finally {
+                Arrays.fill(chunk, (byte) 0);
+            }
+        }
+
+        /**
+         * 由 DRBG 生成一次请求的随机数，达到重新播种条件时先重新播种。
+         */
+        private void generateRequest(byte[] bytes) {
+            if (generatedBytes >= RESEED_BYTES || System.nanoTime() - seedTime >= RESEED_INTERVAL) {
+                drbg.reseed((byte[]) null);
+                generatedBytes = 0;
+                seedTime = System.nanoTime();
+            }
+            drbg.nextBytes(bytes);
+            generatedBytes += bytes.length;
+        }
+    }
+
+    /**
+     * 委托当前线程随机数生成状态的实现，供父类中未覆盖的方法使用。
+     */
+    private static final class Spi
+        extends SecureRandomSpi {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            STATE.get().reseed(seed);
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            STATE.get().nextBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int numBytes) {
+            return CryptoMx.getSecureRandom(CryptoAlgorithm.Random.SYSTEM).generateSeed(numBytes);
+        }
+    }
+}
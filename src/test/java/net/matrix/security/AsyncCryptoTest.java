@@ -0,0 +1,133 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncCryptoTest {
+    @Test
+    void testDigest() {
+        CryptoEnginePool<MessageDigest> pool = CryptoEnginePool.ofMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+        try (AsyncCrypto asyncCrypto = AsyncCrypto.newBuilder().build()) {
+            List<byte[]> plainData = new ArrayList<>();
+            List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                plainData.add(RandomUtils.nextBytes(10000 + i));
+                futures.add(asyncCrypto.digest(new ByteArrayInputStream(plainData.get(i)), pool));
+            }
+
+            MessageDigest digest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+            for (int i = 0; i < 100; i++) {
+                assertThat(futures.get(i).join()).isEqualTo(CryptoMx.digest(plainData.get(i), digest));
+            }
+        }
+    }
+
+    @Test
+    void testDigest_file(@TempDir Path tempDir)
+        throws IOException {
+        CryptoEnginePool<MessageDigest> pool = CryptoEnginePool.ofMessageDigest(CryptoAlgorithm.Digest.SM3);
+        Path file = tempDir.resolve("plain.bin");
+        byte[] plainData = RandomUtils.nextBytes(100000);
+        Files.write(file, plainData);
+        try (AsyncCrypto asyncCrypto = AsyncCrypto.newBuilder().build()) {
+            byte[] digestData = asyncCrypto.digest(file, pool).join();
+
+            assertThat(digestData).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SM3)));
+        }
+    }
+
+    @Test
+    void testSign_mac() {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build());
+        CryptoEnginePool<Mac> pool = CryptoEnginePool.ofMac(algorithm);
+        byte[] plainData = RandomUtils.nextBytes(20000);
+        try (AsyncCrypto asyncCrypto = AsyncCrypto.newBuilder().build()) {
+            byte[] signData = asyncCrypto.sign(new ByteArrayInputStream(plainData), pool, key).join();
+
+            assertThat(asyncCrypto.verify(new ByteArrayInputStream(plainData), signData, pool, key).join()).isTrue();
+            assertThat(asyncCrypto.verify(new ByteArrayInputStream(new byte[10]), signData, pool, key).join()).isFalse();
+        }
+    }
+
+    @Test
+    void testSign_signature() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        byte[] plainData = RandomUtils.nextBytes(20000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (AsyncCrypto asyncCrypto = AsyncCrypto.newBuilder().setExecutor(executor).build()) {
+            byte[] signData = asyncCrypto.sign(new ByteArrayInputStream(plainData), CryptoEnginePool.ofSignature(algorithm), keyPair.getPrivate()).join();
+
+            assertThat(asyncCrypto.verify(new ByteArrayInputStream(plainData), signData, CryptoEnginePool.ofSignature(algorithm), keyPair.getPublic()).join())
+                .isTrue();
+            assertThat(asyncCrypto.isVirtual()).isFalse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testEncrypt() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+        CryptoEnginePool<Cipher> pool = CryptoEnginePool.ofCipher(algorithm);
+        byte[] plainData = RandomUtils.nextBytes(50000);
+        try (AsyncCrypto asyncCrypto = AsyncCrypto.newBuilder().build()) {
+            ByteArrayOutputStream cipherData = new ByteArrayOutputStream();
+            asyncCrypto.encrypt(new ByteArrayInputStream(plainData), cipherData, pool,
+                cipher -> CryptoMx.initCipherForEncrypt(cipher, key, CryptoMx.getAeadParameterSpec(algorithm.transformation, nonce, 128))).join();
+            ByteArrayOutputStream decryptedData = new ByteArrayOutputStream();
+            asyncCrypto.decrypt(new ByteArrayInputStream(cipherData.toByteArray()), decryptedData, pool,
+                cipher -> CryptoMx.initCipherForDecrypt(cipher, key, CryptoMx.getAeadParameterSpec(algorithm.transformation, nonce, 128))).join();
+
+            assertThat(decryptedData.toByteArray()).isEqualTo(plainData);
+        }
+    }
+
+    @Test
+    void testDigest_ioFailure() {
+        CryptoEnginePool<MessageDigest> pool = CryptoEnginePool.ofMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+        InputStream failingInput = new InputStream() {
+            @Override
+            public int read()
+                throws IOException {
+                throw new IOException("读取失败");
+            }
+        };
+        try (AsyncCrypto asyncCrypto = AsyncCrypto.newBuilder().build()) {
+            CompletableFuture<byte[]> future = asyncCrypto.digest(failingInput, pool);
+
+            assertThatThrownBy(future::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(UncheckedIOException.class);
+        }
+    }
+}
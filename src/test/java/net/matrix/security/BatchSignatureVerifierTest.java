@@ -0,0 +1,157 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchSignatureVerifierTest {
+    private static final int BATCH_SIZE = 200;
+
+    KeyPair rsaKeyPair = CryptoMx
+        .generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING).build());
+
+    KeyPair sm2KeyPair = CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.SM2_NONE_NOPADDING).build());
+
+    @Test
+    void testVerify() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = sign(algorithm, rsaKeyPair, plainData);
+        BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).build();
+
+        assertThat(verifier.verify(rsaKeyPair.getPublic(), plainData, signData).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testVerify_failures() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SM3_SM2;
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = sign(algorithm, sm2KeyPair, plainData);
+        plainData.get(3)[0]++;
+        signData.set(77, RandomUtils.nextBytes(10));
+        plainData.get(BATCH_SIZE - 1)[1]++;
+        BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).build();
+
+        BitSet failures = verifier.verify(sm2KeyPair.getPublic(), plainData, signData);
+        assertThat(failures.stream()).containsExactly(3, 77, BATCH_SIZE - 1);
+        assertThat(failures).isEqualTo(verifySerial(algorithm, sm2KeyPair.getPublic(), plainData, signData));
+    }
+
+    @Test
+    void testVerify_publicKeys() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SM3_SM2;
+        KeyPair otherKeyPair = CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.SM2_NONE_NOPADDING).build());
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = new ArrayList<>();
+        List<PublicKey> publicKeys = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            KeyPair keyPair = i % 3 == 0 ? otherKeyPair : sm2KeyPair;
+            signData.add(sign(algorithm, keyPair, plainData.get(i)));
+            publicKeys.add(keyPair.getPublic());
+        }
+        publicKeys.set(10, otherKeyPair.getPublic());
+        BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).build();
+
+        assertThat(verifier.verify(publicKeys, plainData, signData).stream()).containsExactly(10);
+    }
+
+    @Test
+    void testVerify_executor() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SM3_SM2;
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = sign(algorithm, sm2KeyPair, plainData);
+        plainData.get(50)[0]++;
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).setExecutor(executor, 3).build();
+
+            assertThat(verifier.verify(sm2KeyPair.getPublic(), plainData, signData).stream()).containsExactly(50);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testVerify_serial() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = sign(algorithm, rsaKeyPair, plainData);
+        plainData.get(0)[0]++;
+        BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).setExecutor(Runnable::run, 1).build();
+
+        assertThat(verifier.verify(rsaKeyPair.getPublic(), plainData, signData).stream()).containsExactly(0);
+    }
+
+    @Test
+    void testVerify_shortCircuit() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = sign(algorithm, rsaKeyPair, plainData);
+        plainData.get(0)[0]++;
+        plainData.get(1)[0]++;
+        BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).setExecutor(Runnable::run, 1).setShortCircuit(true).build();
+
+        assertThat(verifier.verify(rsaKeyPair.getPublic(), plainData, signData).stream()).containsExactly(0);
+    }
+
+    @Test
+    void testVerify_sizeMismatch() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        List<byte[]> plainData = newPlainData();
+        List<byte[]> signData = new ArrayList<>();
+        BatchSignatureVerifier verifier = BatchSignatureVerifier.newBuilder(algorithm).build();
+
+        assertThatThrownBy(() -> verifier.verify(rsaKeyPair.getPublic(), plainData, signData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<byte[]> newPlainData() {
+        List<byte[]> plainData = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            plainData.add(RandomUtils.nextBytes(100));
+        }
+        return plainData;
+    }
+
+    private static List<byte[]> sign(CryptoAlgorithm.Sign algorithm, KeyPair keyPair, List<byte[]> plainData) {
+        List<byte[]> signData = new ArrayList<>();
+        for (byte[] data : plainData) {
+            signData.add(sign(algorithm, keyPair, data));
+        }
+        return signData;
+    }
+
+    private static byte[] sign(CryptoAlgorithm.Sign algorithm, KeyPair keyPair, byte[] plainData) {
+        Signature signature = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPrivateKey(keyPair.getPrivate()).buildForSign();
+        return CryptoMx.sign(plainData, signature);
+    }
+
+    private static BitSet verifySerial(CryptoAlgorithm.Sign algorithm, PublicKey publicKey, List<byte[]> plainData, List<byte[]> signData) {
+        BitSet failures = new BitSet();
+        for (int i = 0; i < plainData.size(); i++) {
+            Signature signature = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPublicKey(publicKey.getEncoded(), algorithm).buildForVerify();
+            try {
+                if (!CryptoMx.verify(plainData.get(i), signData.get(i), signature)) {
+                    failures.set(i);
+                }
+            } catch (IllegalArgumentException e) {
+                failures.set(i);
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChunkedMacTest {
+    private static final CryptoAlgorithm.Mac ALGORITHM = CryptoAlgorithm.Mac.HMAC_SHA_256;
+
+    private static ChunkedMac newChunkedMac(int chunkSize) {
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(ALGORITHM).build());
+        return ChunkedMac.newBuilder(ALGORITHM).setKey(key).setChunkSize(chunkSize).build();
+    }
+
+    private static byte[] sign(ChunkedMac chunkedMac, byte[] data)
+        throws IOException {
+        ByteArrayOutputStream signedData = new ByteArrayOutputStream();
+        try (OutputStream output = chunkedMac.newSigningStream(signedData)) {
+            output.write(data);
+        }
+        return signedData.toByteArray();
+    }
+
+    private static byte[] verify(ChunkedMac chunkedMac, byte[] signedData)
+        throws IOException {
+        try (InputStream input = chunkedMac.newVerifyingStream(new ByteArrayInputStream(signedData))) {
+            return IOUtils.toByteArray(input);
+        }
+    }
+
+    @Test
+    void testSign()
+        throws IOException {
+        ChunkedMac chunkedMac = newChunkedMac(1000);
+
+        for (int length : new int[] {
+            0, 1, 999, 1000, 1001, 5000
+        }) {
+            byte[] data = RandomUtils.nextBytes(length);
+            byte[] signedData = sign(chunkedMac, data);
+            assertThat(signedData).hasSize((int) chunkedMac.getSignedLength(length));
+            assertThat(verify(chunkedMac, signedData)).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void testVerify_tampered()
+        throws IOException {
+        ChunkedMac chunkedMac = newChunkedMac(1000);
+        byte[] data = RandomUtils.nextBytes(5000);
+        byte[] signedData = sign(chunkedMac, data);
+        // 篡改第 3 块
+        signedData[ChunkedMac.HEADER_LENGTH + 2 * (1000 + 32) + 10]++;
+
+        try (InputStream input = chunkedMac.newVerifyingStream(new ByteArrayInputStream(signedData))) {
+            // 前 2 块正常读出，第 3 块被拒绝
+            byte[] buffer = new byte[2000];
+            assertThat(IOUtils.read(input, buffer)).isEqualTo(2000);
+            assertThat(buffer).isEqualTo(Arrays.copyOf(data, 2000));
+            assertThatThrownBy(() -> input.read()).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testVerify_truncated()
+        throws IOException {
+        ChunkedMac chunkedMac = newChunkedMac(1000);
+        byte[] signedData = sign(chunkedMac, RandomUtils.nextBytes(3000));
+
+        // 按块边界截断
+        byte[] truncatedData = Arrays.copyOf(signedData, ChunkedMac.HEADER_LENGTH + 2 * (1000 + 32));
+        assertThatThrownBy(() -> verify(chunkedMac, truncatedData)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> verify(chunkedMac, Arrays.copyOf(signedData, 10))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testVerify_otherKey()
+        throws IOException {
+        byte[] signedData = sign(newChunkedMac(1000), RandomUtils.nextBytes(100));
+
+        assertThatThrownBy(() -> verify(newChunkedMac(1000), signedData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testVerify_otherChunkSize()
+        throws IOException {
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(ALGORITHM).build());
+        ChunkedMac chunkedMac = ChunkedMac.newBuilder(ALGORITHM).setKey(key).setChunkSize(1000).build();
+        ChunkedMac otherChunkedMac = ChunkedMac.newBuilder(ALGORITHM).setKey(key).setChunkSize(2000).build();
+        byte[] signedData = sign(chunkedMac, RandomUtils.nextBytes(100));
+
+        assertThatThrownBy(() -> verify(otherChunkedMac, signedData)).isInstanceOf(IllegalArgumentException.class);
+        // 伪造的分块长度在分配缓冲区之前被拒绝
+        signedData[1] = 0x7F;
+        assertThatThrownBy(() -> verify(chunkedMac, signedData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testBuild_invalid() {
+        ChunkedMac.Builder builder = ChunkedMac.newBuilder(ALGORITHM).setKey(new byte[32]).setChunkSize(0);
+        ChunkedMac.Builder noKeyBuilder = ChunkedMac.newBuilder(ALGORITHM);
+
+        assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("0");
+        assertThatThrownBy(noKeyBuilder::build).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("未设置秘钥");
+    }
+}
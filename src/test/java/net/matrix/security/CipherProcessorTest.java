@@ -0,0 +1,142 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CipherProcessorTest {
+    CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+
+    SecretKey key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+
+    byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+
+    @Test
+    void testEncrypt() {
+        byte[] plainData = RandomUtils.nextBytes(100000);
+        Cipher encryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForEncrypt();
+        Cipher decryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForDecrypt();
+
+        Cipher expectedEncryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForEncrypt();
+
+        byte[] cipherData = process(new CipherProcessor(encryptor), plainData, 1000, false).join();
+        assertThat(cipherData).isEqualTo(CryptoMx.encrypt(plainData, expectedEncryptor));
+        assertThat(process(new CipherProcessor(decryptor), cipherData, 777, true).join()).isEqualTo(plainData);
+    }
+
+    @Test
+    void testEncrypt_chain()
+        throws Exception {
+        CryptoAlgorithm.Symmetric cbcAlgorithm = CryptoAlgorithm.Symmetric.SM4_CBC_PKCS5PADDING;
+        SecretKey cbcKey = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(cbcAlgorithm).build());
+        Cipher encryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(cbcAlgorithm).setKey(cbcKey).buildForEncrypt();
+        Cipher decryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(cbcAlgorithm).setKey(cbcKey).setAlgorithmParameter(encryptor.getParameters())
+            .buildForDecrypt();
+        byte[] plainData = RandomUtils.nextBytes(10007);
+
+        CipherProcessor encryptProcessor = new CipherProcessor(encryptor);
+        CipherProcessor decryptProcessor = new CipherProcessor(decryptor);
+        encryptProcessor.subscribe(decryptProcessor);
+        DigestSubscriber digestSubscriber = new DigestSubscriber(CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256), 2);
+        decryptProcessor.subscribe(digestSubscriber);
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(encryptProcessor);
+            for (int offset = 0; offset < plainData.length; offset += 100) {
+                publisher.submit(ByteBuffer.wrap(plainData, offset, Math.min(100, plainData.length - offset)));
+            }
+        }
+
+        assertThat(digestSubscriber.getResult().get(10, TimeUnit.SECONDS))
+            .isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256)));
+    }
+
+    @Test
+    void testDecrypt_tampered() {
+        byte[] plainData = RandomUtils.nextBytes(1000);
+        Cipher encryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForEncrypt();
+        byte[] cipherData = CryptoMx.encrypt(plainData, encryptor);
+        cipherData[0]++;
+        Cipher decryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForDecrypt();
+
+        CompletableFuture<byte[]> result = process(new CipherProcessor(decryptor), cipherData, 100, false);
+        assertThatThrownBy(result::join).hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testSubscribe_twice() {
+        Cipher encryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForEncrypt();
+        CipherProcessor processor = new CipherProcessor(encryptor);
+        processor.subscribe(new CollectingSubscriber());
+        CollectingSubscriber second = new CollectingSubscriber();
+
+        processor.subscribe(second);
+        assertThatThrownBy(second.result::join).cause().isInstanceOf(IllegalStateException.class).hasMessage("只支持一个下游订阅者");
+    }
+
+    /**
+     * 通过处理阶段处理数据，下游每次只请求一个数据块。
+     */
+    private static CompletableFuture<byte[]> process(CipherProcessor processor, byte[] input, int chunkSize, boolean direct) {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        processor.subscribe(subscriber);
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (int offset = 0; offset < input.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, input.length - offset);
+                ByteBuffer item = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+                item.put(input, offset, length).flip();
+                publisher.submit(item);
+            }
+        }
+        return subscriber.result.orTimeout(10, TimeUnit.SECONDS);
+    }
+
+    static class CollectingSubscriber
+        implements Flow.Subscriber<ByteBuffer> {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription newSubscription) {
+            subscription = newSubscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            byte[] data = new byte[item.remaining()];
+            item.get(data);
+            output.writeBytes(data);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(output.toByteArray());
+        }
+    }
+}
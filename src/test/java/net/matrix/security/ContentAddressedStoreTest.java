@@ -0,0 +1,152 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static net.matrix.data.convert.BinaryStringConverter.HEX;
+
+class ContentAddressedStoreTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPut()
+        throws IOException {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).build();
+        byte[] data = RandomUtils.nextBytes(300000);
+
+        String blobId = store.put(new ByteArrayInputStream(data));
+        assertThat(blobId).isEqualTo(HEX.toString(CryptoMx.digest(data, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256))));
+        assertThat(store.contains(blobId)).isTrue();
+        assertThat(store.getLength(blobId)).isEqualTo(300000);
+        try (InputStream input = store.get(blobId)) {
+            assertThat(IOUtils.toByteArray(input)).isEqualTo(data);
+        }
+        assertThat(store.stats().getChunkBytes()).isEqualTo(300000);
+        assertThat(store.stats().getDuplicateChunkCount()).isZero();
+
+        // 相同内容不再写入分块
+        assertThat(store.put(new ByteArrayInputStream(data))).isEqualTo(blobId);
+        assertThat(store.stats().getDuplicateChunkBytes()).isEqualTo(300000);
+        try (Stream<Path> files = Files.list(tempDir.resolve("tmp"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void testPut_modified()
+        throws IOException {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).build();
+        byte[] data = RandomUtils.nextBytes(1000000);
+        byte[] modified = ArrayUtils.insert(500000, data, RandomUtils.nextBytes(100));
+
+        store.put(new ByteArrayInputStream(data));
+        long chunkBytes = store.stats().getChunkBytes();
+        String blobId = store.put(new ByteArrayInputStream(modified));
+
+        // 只写入插入位置附近的分块
+        assertThat(store.stats().getChunkBytes() - chunkBytes).isLessThan(200000);
+        assertThat(store.stats().getDuplicateChunkBytes()).isGreaterThan(800000);
+        try (InputStream input = store.get(blobId)) {
+            assertThat(IOUtils.toByteArray(input)).isEqualTo(modified);
+        }
+    }
+
+    @Test
+    void testPut_empty()
+        throws IOException {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).setAlgorithm(CryptoAlgorithm.Digest.SM3).build();
+
+        String blobId = store.put(new ByteArrayInputStream(new byte[0]));
+        assertThat(store.getLength(blobId)).isZero();
+        try (InputStream input = store.get(blobId)) {
+            assertThat(input.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void testGet_corrupted()
+        throws IOException {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).setChunkSize(256, 1024, 4096).build();
+        Path file = tempDir.resolve("data");
+        Files.write(file, RandomUtils.nextBytes(10000));
+        String blobId = store.put(file);
+
+        try (Stream<Path> chunks = Files.walk(tempDir.resolve("chunks"))) {
+            Path chunk = chunks.filter(Files::isRegularFile).findFirst().get();
+            Files.write(chunk, new byte[10]);
+        }
+        try (InputStream input = store.get(blobId)) {
+            assertThatThrownBy(() -> IOUtils.toByteArray(input)).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void testPut_repair()
+        throws IOException {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).setChunkSize(256, 1024, 4096).build();
+        byte[] data = RandomUtils.nextBytes(10000);
+        String blobId = store.put(new ByteArrayInputStream(data));
+        long chunkCount = store.stats().getChunkCount();
+
+        try (Stream<Path> chunks = Files.walk(tempDir.resolve("chunks"))) {
+            Path chunk = chunks.filter(Files::isRegularFile).findFirst().get();
+            Files.write(chunk, new byte[10]);
+        }
+        // 重新保存时替换损坏的分块
+        assertThat(store.put(new ByteArrayInputStream(data))).isEqualTo(blobId);
+        assertThat(store.stats().getChunkCount()).isEqualTo(chunkCount + 1);
+        try (InputStream input = store.get(blobId)) {
+            assertThat(IOUtils.toByteArray(input)).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void testGet_blobMismatch()
+        throws IOException {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).build();
+        String blobId = store.put(new ByteArrayInputStream(RandomUtils.nextBytes(1000)));
+        String otherBlobId = store.put(new ByteArrayInputStream(RandomUtils.nextBytes(1000)));
+        Path index = tempDir.resolve("blobs").resolve(blobId.substring(0, 2)).resolve(blobId.substring(2));
+        Path otherIndex = tempDir.resolve("blobs").resolve(otherBlobId.substring(0, 2)).resolve(otherBlobId.substring(2));
+
+        // 分块完好但不属于该数据
+        Files.copy(otherIndex, index, StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream input = store.get(blobId)) {
+            assertThatThrownBy(() -> IOUtils.toByteArray(input)).isInstanceOf(IOException.class);
+        }
+
+        // 分块数量与索引长度不符
+        byte[] indexData = Files.readAllBytes(otherIndex);
+        indexData[indexData.length - 36] = 0x7F;
+        Files.write(index, indexData);
+        assertThatThrownBy(() -> store.get(blobId)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testGet_invalid() {
+        ContentAddressedStore store = ContentAddressedStore.newBuilder(tempDir).build();
+
+        assertThat(store.contains("00112233")).isFalse();
+        assertThatThrownBy(() -> store.get("00112233")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> store.get("../x")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CryptoBufferPoolTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBorrow() {
+        CryptoBufferPool pool = CryptoBufferPool.newBuilder().build();
+
+        byte[] buffer = pool.borrow(1000);
+        assertThat(buffer).hasSize(1000);
+        buffer[0] = 1;
+        pool.release(buffer);
+
+        byte[] buffer2 = pool.borrow(100);
+        assertThat(buffer2).isSameAs(buffer);
+        assertThat(buffer2[0]).isZero();
+        // 嵌套借用
+        byte[] buffer3 = pool.borrow(100);
+        assertThat(buffer3).isNotSameAs(buffer2);
+        pool.release(buffer3);
+        pool.release(buffer2);
+        assertThat(pool.borrow(2000)).isNotSameAs(buffer);
+    }
+
+    @Test
+    void testGetBufferSize()
+        throws IOException {
+        CryptoBufferPool pool = CryptoBufferPool.newBuilder().build();
+        Path file = tempDir.resolve("data");
+        Files.write(file, new byte[10]);
+
+        assertThat(pool.getBufferSize(new ByteArrayInputStream(new byte[100]))).isEqualTo(100);
+        assertThat(pool.getBufferSize(InputStream.nullInputStream())).isEqualTo(CryptoBufferPool.DEFAULT_BUFFER_SIZE);
+        try (InputStream input = new FileInputStream(file.toFile())) {
+            assertThat(pool.getBufferSize(input)).isEqualTo(CryptoBufferPool.FILE_BUFFER_SIZE);
+        }
+    }
+
+    @Test
+    void testAutoTuning() {
+        CryptoBufferPool pool = CryptoBufferPool.newBuilder().setBufferSize(1024).setMaxBufferSize(4096).build();
+        InputStream input = InputStream.nullInputStream();
+
+        pool.release(pool.borrow(input), 100);
+        assertThat(pool.getBufferSize(input)).isEqualTo(1024);
+        for (int i = 0; i < 5; i++) {
+            pool.release(pool.borrow(input), 1024 * 1024);
+        }
+        assertThat(pool.getBufferSize(input)).isEqualTo(4096);
+        // 处理数据量较小时逐步减小，不小于初始长度
+        for (int i = 0; i < 5; i++) {
+            pool.release(pool.borrow(input), 100);
+        }
+        assertThat(pool.getBufferSize(input)).isEqualTo(1024);
+
+        CryptoBufferPool fixedPool = CryptoBufferPool.newBuilder().setBufferSize(1024).setAutoTuning(false).build();
+        fixedPool.release(fixedPool.borrow(input), 1024 * 1024);
+        assertThat(fixedPool.getBufferSize(input)).isEqualTo(1024);
+    }
+
+    @Test
+    void testAutoTuning_maxRetainedSize() {
+        CryptoBufferPool pool = CryptoBufferPool.newBuilder().setBufferSize(1024).setMaxBufferSize(1024 * 1024).setMaxRetainedSize(4096).build();
+        InputStream input = InputStream.nullInputStream();
+
+        for (int i = 0; i < 10; i++) {
+            pool.release(pool.borrow(input), 1024 * 1024);
+        }
+        assertThat(pool.getBufferSize(input)).isEqualTo(4096);
+        // 调整后的缓冲区归还时保留
+        byte[] buffer = pool.borrow(input);
+        pool.release(buffer, 1024 * 1024);
+        assertThat(pool.borrow(input)).isSameAs(buffer);
+    }
+
+    @Test
+    void testRelease_maxRetainedSize() {
+        CryptoBufferPool pool = CryptoBufferPool.newBuilder().setMaxRetainedSize(1024).build();
+
+        byte[] buffer = pool.borrow(1024);
+        pool.release(buffer);
+        assertThat(pool.borrow(1024)).isSameAs(buffer);
+        byte[] largeBuffer = pool.borrow(2048);
+        pool.release(largeBuffer);
+        assertThat(pool.borrow(2048)).isNotSameAs(largeBuffer);
+    }
+
+    @Test
+    void testSetDefault()
+        throws IOException {
+        CryptoBufferPool defaultPool = CryptoBufferPool.getDefault();
+        CryptoBufferPool.setDefault(CryptoBufferPool.newBuilder().setBufferSize(100).setAutoTuning(false).build());
+        try {
+            byte[] plainData = RandomUtils.nextBytes(10000);
+            byte[] digestData = CryptoMx.digest(new ByteArrayInputStream(plainData), CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256));
+
+            assertThat(digestData).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256)));
+        } finally {
+            CryptoBufferPool.setDefault(defaultPool);
+        }
+    }
+
+    @Test
+    void testBuild_invalid() {
+        assertThatThrownBy(() -> CryptoBufferPool.newBuilder().setBufferSize(0).build()).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CryptoBufferPool.newBuilder().setBufferSize(1024).setMaxBufferSize(512).build()).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Signature;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static net.matrix.data.convert.BinaryStringConverter.HEX;
+import static net.matrix.data.convert.BinaryStringConverter.UTF8;
+
+class CryptoEnginePoolTest {
+    @Test
+    void testOfMessageDigest() {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.SHA_256;
+
+        CryptoEnginePool<MessageDigest> pool = CryptoEnginePool.ofMessageDigest(algorithm);
+        assertThat(CryptoEnginePool.ofMessageDigest(algorithm.algorithm)).isSameAs(pool);
+        assertThat(pool.getAlgorithm()).isEqualTo(algorithm.algorithm);
+    }
+
+    @Test
+    void testOfMac() {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SM3;
+
+        CryptoEnginePool<Mac> pool = CryptoEnginePool.ofMac(algorithm);
+        assertThat(pool.borrow().getAlgorithm()).isEqualTo(algorithm.algorithm);
+    }
+
+    @Test
+    void testOfCipher() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.SM4_CBC_PKCS5PADDING;
+
+        CryptoEnginePool<Cipher> pool = CryptoEnginePool.ofCipher(algorithm);
+        assertThat(pool.borrow().getAlgorithm()).isEqualTo(algorithm.transformation);
+    }
+
+    @Test
+    void testOfSignature() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SM3_SM2;
+
+        CryptoEnginePool<Signature> pool = CryptoEnginePool.ofSignature(algorithm);
+        assertThat(pool.borrow().getAlgorithm()).isEqualTo(algorithm.signAlgorithm);
+    }
+
+    @Test
+    void testBorrow() {
+        CryptoEnginePool<MessageDigest> pool = new CryptoEnginePool<>(CryptoConstant.MD5, () -> CryptoMx.getMessageDigest(CryptoConstant.MD5),
+            MessageDigest::reset, 2);
+
+        MessageDigest digest = pool.borrow();
+        assertThat(pool.getMissCount()).isEqualTo(1);
+        pool.release(digest);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.borrow()).isSameAs(digest);
+        assertThat(pool.getHitCount()).isEqualTo(1);
+        assertThat(pool.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testRelease_reset() {
+        CryptoEnginePool<MessageDigest> pool = new CryptoEnginePool<>(CryptoConstant.MD5, () -> CryptoMx.getMessageDigest(CryptoConstant.MD5),
+            MessageDigest::reset, 2);
+        byte[] plainData = UTF8.toBinary("沧海月明");
+        byte[] digestData = HEX.toBinary("5b95c94bbc42391c190ae5e91b26c007");
+
+        MessageDigest digest = pool.borrow();
+        digest.update(UTF8.toBinary("桑田"));
+        pool.release(digest);
+        assertThat(CryptoMx.digest(plainData, pool.borrow())).isEqualTo(digestData);
+    }
+
+    @Test
+    void testRelease_scrubMac() {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build());
+        byte[] plainData = UTF8.toBinary("沧海月明");
+        byte[] signData = CryptoMx.sign(plainData, CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build());
+        CryptoEnginePool<Mac> pool = CryptoEnginePool.ofMac(algorithm);
+
+        Mac mac = pool.borrow();
+        CryptoMx.initMac(mac, key);
+        pool.release(mac);
+        assertThat(CryptoMx.sign(plainData, pool.borrow())).isNotEqualTo(signData);
+    }
+
+    @Test
+    void testRelease_scrubCipher() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_ECB_PKCS5PADDING;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        byte[] plainData = UTF8.toBinary("沧海月明");
+        byte[] cipherData = CryptoMx.encrypt(plainData, CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).buildForEncrypt());
+        CryptoEnginePool<Cipher> pool = CryptoEnginePool.ofCipher(algorithm);
+
+        Cipher cipher = pool.borrow();
+        CryptoMx.initCipherForEncrypt(cipher, key);
+        pool.release(cipher);
+        assertThat(CryptoMx.encrypt(plainData, pool.borrow())).isNotEqualTo(cipherData);
+    }
+
+    @Test
+    void testRelease_scrubSignature() {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        CryptoEnginePool<Signature> pool = CryptoEnginePool.ofSignature(algorithm);
+
+        Signature signature = pool.borrow();
+        CryptoMx.initSignatureForSign(signature, keyPair.getPrivate());
+        pool.release(signature);
+        Signature reused = pool.borrow();
+        assertThatThrownBy(() -> CryptoMx.sign(UTF8.toBinary("沧海月明"), reused)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRelease_rawCipher() {
+        CryptoEnginePool<Cipher> pool = CryptoEnginePool.ofCipher("AES/CTR/NoPadding");
+
+        pool.release(pool.borrow());
+        pool.release(pool.borrow());
+        assertThat(pool.getHitCount()).isEqualTo(1);
+        assertThat(pool.getDiscardCount()).isZero();
+    }
+
+    @Test
+    void testRelease_rawSignature() {
+        CryptoEnginePool<Signature> pool = CryptoEnginePool.ofSignature("SHA256withECDSA");
+        CryptoEnginePool.scrubKey("EC").join();
+
+        pool.release(pool.borrow());
+        Signature signature = pool.borrow();
+        assertThat(pool.getHitCount()).isEqualTo(1);
+        assertThat(pool.getDiscardCount()).isZero();
+        assertThatThrownBy(() -> CryptoMx.sign(UTF8.toBinary("沧海月明"), signature)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRelease_resetFailure() {
+        CryptoEnginePool<MessageDigest> pool = new CryptoEnginePool<>(CryptoConstant.MD5, () -> CryptoMx.getMessageDigest(CryptoConstant.MD5), digest -> {
+            throw new IllegalStateException();
+        }, 2);
+
+        pool.release(pool.borrow());
+        assertThat(pool.getIdleCount()).isZero();
+        assertThat(pool.getDiscardCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testRelease_discard() {
+        CryptoEnginePool<MessageDigest> pool = new CryptoEnginePool<>(CryptoConstant.MD5, () -> CryptoMx.getMessageDigest(CryptoConstant.MD5),
+            MessageDigest::reset, 1);
+
+        MessageDigest digest1 = pool.borrow();
+        MessageDigest digest2 = pool.borrow();
+        pool.release(digest1);
+        pool.release(digest2);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.getDiscardCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testLease() {
+        CryptoEnginePool<MessageDigest> pool = new CryptoEnginePool<>(CryptoConstant.MD5, () -> CryptoMx.getMessageDigest(CryptoConstant.MD5),
+            MessageDigest::reset, 2);
+
+        CryptoEnginePool.Lease<MessageDigest> lease = pool.lease();
+        try (lease) {
+            assertThat(lease.get().getAlgorithm()).isEqualTo(CryptoConstant.MD5);
+        }
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThatThrownBy(lease::get).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testClear() {
+        CryptoEnginePool<MessageDigest> pool = new CryptoEnginePool<>(CryptoConstant.MD5, () -> CryptoMx.getMessageDigest(CryptoConstant.MD5),
+            MessageDigest::reset, 2);
+        MessageDigest digest = pool.borrow();
+        pool.release(digest);
+
+        pool.clear();
+        assertThat(pool.getIdleCount()).isZero();
+        assertThat(pool.borrow()).isNotSameAs(digest);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static net.matrix.data.convert.BinaryStringConverter.HEX;
+
+class CryptoKeyCacheTest {
+    KeyPair sm2KeyPair = CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.SM2_NONE_NOPADDING).build());
+
+    @Test
+    void testGetSecretKey() {
+        CryptoKeyCache cache = CryptoKeyCache.newBuilder().build();
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+
+        SecretKey key = cache.getSecretKey(keyData, CryptoConstant.SM4);
+        assertThat(key.getEncoded()).isEqualTo(keyData);
+        assertThat(cache.getSecretKey(keyData.clone(), CryptoConstant.SM4)).isSameAs(key);
+        assertThat(cache.getSecretKey(keyData, CryptoConstant.AES)).isNotSameAs(key);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetSecretKey_modified() {
+        CryptoKeyCache cache = CryptoKeyCache.newBuilder().build();
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+
+        SecretKey key = cache.getSecretKey(keyData, CryptoConstant.SM4);
+        keyData[0] = 0;
+        assertThat(cache.getSecretKey(keyData, CryptoConstant.SM4)).isNotSameAs(key);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetPublicKey() {
+        CryptoKeyCache cache = CryptoKeyCache.newBuilder().build();
+        byte[] keyData = sm2KeyPair.getPublic().getEncoded();
+
+        PublicKey key = cache.getPublicKey(keyData, CryptoConstant.SM2);
+        assertThat(key).isEqualTo(sm2KeyPair.getPublic());
+        assertThat(cache.getPublicKey(keyData, CryptoConstant.SM2)).isSameAs(key);
+        assertThat(cache.stats().hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testGetPrivateKey() {
+        CryptoKeyCache cache = CryptoKeyCache.newBuilder().build();
+        byte[] keyData = sm2KeyPair.getPrivate().getEncoded();
+
+        PrivateKey key = cache.getPrivateKey(keyData, CryptoConstant.SM2);
+        assertThat(cache.getPrivateKey(keyData, CryptoConstant.SM2)).isSameAs(key);
+        assertThatThrownBy(() -> cache.getPublicKey(keyData, CryptoConstant.SM2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testMaximumSize() {
+        CryptoKeyCache cache = CryptoKeyCache.newBuilder().setMaximumSize(1).build();
+
+        cache.getSecretKey(HEX.toBinary("ae44c3716e699e8c"), CryptoConstant.DES);
+        cache.getSecretKey(HEX.toBinary("7d2d9dea2ba24a5f"), CryptoConstant.DES);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.stats().evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetDefault() {
+        byte[] keyData = sm2KeyPair.getPublic().getEncoded();
+        CryptoKeyCache cache = CryptoKeyCache.getDefault();
+        long hitCount = cache.stats().hitCount();
+
+        CryptoMx.SignatureBuilder.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setPublicKey(keyData, CryptoAlgorithm.Sign.SM3_SM2);
+        CryptoMx.SignatureBuilder.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setPublicKey(keyData, CryptoAlgorithm.Sign.SM3_SM2);
+        assertThat(cache.stats().hitCount()).isGreaterThan(hitCount);
+    }
+}
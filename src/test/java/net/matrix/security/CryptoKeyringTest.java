@@ -0,0 +1,147 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CryptoKeyringTest {
+    private static SecretKey newSecretKey(CryptoAlgorithm.Symmetric algorithm) {
+        return CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+    }
+
+    @Test
+    void testEncrypt() {
+        CryptoKeyring keyring = new CryptoKeyring();
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        SecretKey key = newSecretKey(algorithm);
+        keyring.addSymmetricKey("k1", algorithm, key);
+        byte[] plainData = RandomUtils.nextBytes(100);
+        byte[] aad = "tenant".getBytes(StandardCharsets.UTF_8);
+
+        for (int i = 0; i < 3; i++) {
+            byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+            byte[] cipherData = keyring.encrypt("k1", nonce, aad, plainData);
+            Cipher decryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).setAad(aad).buildForDecrypt();
+            assertThat(CryptoMx.decrypt(cipherData, decryptor)).isEqualTo(plainData);
+            assertThat(keyring.decrypt("k1", nonce, aad, cipherData)).isEqualTo(plainData);
+            assertThatThrownBy(() -> keyring.decrypt("k1", nonce, cipherData)).isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(keyring.getAlgorithm("k1")).isEqualTo(algorithm.transformation);
+    }
+
+    @Test
+    void testDecrypt_repeat() {
+        CryptoKeyring keyring = new CryptoKeyring();
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.CHACHA20_POLY1305;
+        keyring.addSymmetricKey("k1", algorithm, newSecretKey(algorithm));
+        byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+        byte[] cipherData = keyring.encrypt("k1", nonce, new byte[10]);
+
+        // 同一线程重复解密同一密文
+        assertThat(keyring.decrypt("k1", nonce, cipherData)).hasSize(10);
+        assertThat(keyring.decrypt("k1", nonce, cipherData)).hasSize(10);
+    }
+
+    @Test
+    void testRotate() {
+        CryptoKeyring keyring = new CryptoKeyring();
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        keyring.addMacKey("v1", algorithm, CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build()));
+        keyring.setPrimaryKeyId("v1");
+        byte[] plainData = RandomUtils.nextBytes(64);
+        byte[] oldSignData = keyring.sign(keyring.getPrimaryKeyId(), plainData);
+
+        keyring.addMacKey("v2", algorithm, CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build()));
+        keyring.setPrimaryKeyId("v2");
+        byte[] newSignData = keyring.sign(keyring.getPrimaryKeyId(), plainData);
+
+        assertThat(newSignData).isNotEqualTo(oldSignData);
+        assertThat(keyring.verify("v1", plainData, oldSignData)).isTrue();
+        assertThat(keyring.verify("v2", plainData, newSignData)).isTrue();
+        assertThat(keyring.verify("v2", plainData, oldSignData)).isFalse();
+        assertThat(keyring.getKeyIds()).containsExactlyInAnyOrder("v1", "v2");
+
+        assertThatThrownBy(() -> keyring.removeKey("v2")).isInstanceOf(IllegalArgumentException.class);
+        keyring.removeKey("v1");
+        assertThat(keyring.containsKey("v1")).isFalse();
+        assertThatThrownBy(() -> keyring.verify("v1", plainData, oldSignData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testSign() {
+        CryptoKeyring keyring = new CryptoKeyring();
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        keyring.addSignKey("s1", algorithm, keyPair.getPrivate(), keyPair.getPublic());
+        keyring.addSignKey("s1-public", algorithm, null, keyPair.getPublic());
+        byte[] plainData = RandomUtils.nextBytes(64);
+
+        byte[] signData = keyring.sign("s1", plainData);
+        assertThat(keyring.verify("s1", plainData, signData)).isTrue();
+        assertThat(keyring.verify("s1-public", plainData, signData)).isTrue();
+        assertThat(keyring.verify("s1-public", new byte[64], signData)).isFalse();
+        assertThatThrownBy(() -> keyring.sign("s1-public", plainData)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> keyring.encrypt("s1", new byte[12], plainData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testAdd_invalid() {
+        CryptoKeyring keyring = new CryptoKeyring();
+        SecretKey key = newSecretKey(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING);
+        keyring.addSymmetricKey("k1", CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING, key);
+
+        assertThatThrownBy(() -> keyring.addSymmetricKey("k1", CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING, key)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> keyring.addSymmetricKey("k2", CryptoAlgorithm.Symmetric.AES_CBC_PKCS5PADDING, key))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> keyring.addSignKey("k3", CryptoAlgorithm.Sign.SHA_256_RSA, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> keyring.setPrimaryKeyId("k4")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(keyring.getPrimaryKeyId()).isNull();
+    }
+
+    @Test
+    void testConcurrent()
+        throws Exception {
+        CryptoKeyring keyring = new CryptoKeyring();
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        keyring.addMacKey("v1", algorithm, CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build()));
+        keyring.setPrimaryKeyId("v1");
+        byte[] plainData = RandomUtils.nextBytes(64);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                if (i == 50) {
+                    keyring.addMacKey("v2", algorithm, CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build()));
+                    keyring.setPrimaryKeyId("v2");
+                }
+                futures.add(executor.submit(() -> {
+                    String keyId = keyring.getPrimaryKeyId();
+                    return keyring.verify(keyId, plainData, keyring.sign(keyId, plainData));
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertThat(future.get()).isTrue();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
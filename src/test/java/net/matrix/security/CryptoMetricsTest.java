@@ -0,0 +1,159 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CryptoMetricsTest {
+    @AfterEach
+    void afterEach() {
+        CryptoMx.setListener(null);
+    }
+
+    @Test
+    void testDigest() {
+        CryptoMetrics metrics = new CryptoMetrics();
+        CryptoMx.setListener(metrics);
+        MessageDigest digest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+
+        CryptoMx.digest(new byte[100], digest);
+        CryptoMx.digest(new byte[50], new byte[10], digest);
+
+        CryptoMetrics.Stats stats = metrics.getStats(CryptoAlgorithm.Digest.SHA_256);
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getFailureCount()).isZero();
+        assertThat(stats.getBytes()).isEqualTo(160);
+        assertThat(stats.getTotalTime()).isPositive();
+        assertThat(stats.getMaxTime()).isLessThanOrEqualTo(stats.getTotalTime());
+        assertThat(stats.getHistogram()).hasSize(CryptoMetrics.BUCKET_COUNT);
+        assertThat(metrics.getStats(CryptoAlgorithm.Digest.SM3)).isNull();
+    }
+
+    @Test
+    void testEncrypt_stream()
+        throws IOException {
+        CryptoMetrics metrics = new CryptoMetrics();
+        CryptoMx.setListener(metrics);
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+        byte[] nonce = CryptoMx.generateRandom(12, ThreadLocalSecureRandom.getDefault());
+        byte[] plainData = RandomUtils.nextBytes(20000);
+
+        Cipher encryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForEncrypt();
+        ByteArrayOutputStream cipherData = new ByteArrayOutputStream();
+        CryptoMx.encrypt(new ByteArrayInputStream(plainData), cipherData, encryptor);
+        Cipher decryptor = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(key).setNonce(nonce).buildForDecrypt();
+        byte[] tamperedData = cipherData.toByteArray();
+        tamperedData[0]++;
+        assertThatThrownBy(() -> CryptoMx.decrypt(tamperedData, decryptor)).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(metrics.getStats(CryptoListener.Operation.ENCRYPT, algorithm).getBytes()).isEqualTo(20000);
+        CryptoMetrics.Stats decryptStats = metrics.getStats(CryptoListener.Operation.DECRYPT, algorithm);
+        assertThat(decryptStats.getCount()).isZero();
+        assertThat(decryptStats.getFailureCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSign() {
+        CryptoMetrics metrics = new CryptoMetrics();
+        CryptoMx.setListener(metrics);
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SHA_256_RSA;
+        KeyPair keyPair = CryptoMx.generateKeyPair(CryptoMx.SignKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        Signature signer = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPrivateKey(keyPair.getPrivate()).buildForSign();
+        Signature verifier = CryptoMx.SignatureBuilder.newBuilder(algorithm).setPublicKey(keyPair.getPublic()).buildForVerify();
+        byte[] plainData = RandomUtils.nextBytes(64);
+
+        byte[] signData = CryptoMx.sign(plainData, signer);
+        assertThat(CryptoMx.verify(plainData, signData, verifier)).isTrue();
+        assertThat(CryptoMx.verify(new byte[64], signData, verifier)).isFalse();
+
+        assertThat(metrics.getStats(CryptoListener.Operation.SIGN, algorithm).getCount()).isEqualTo(1);
+        assertThat(metrics.getStats(CryptoListener.Operation.VERIFY, algorithm).getCount()).isEqualTo(2);
+        assertThat(metrics.getAllStats()).hasSize(2);
+    }
+
+    @Test
+    void testMac() {
+        CryptoMetrics metrics = new CryptoMetrics();
+        CryptoMx.setListener(metrics);
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build());
+        Mac mac = CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build();
+
+        byte[] signData = CryptoMx.sign(new byte[32], mac);
+        assertThat(CryptoMx.verify(new byte[32], signData, mac)).isTrue();
+
+        assertThat(metrics.getStats(algorithm).getCount()).isEqualTo(2);
+        assertThat(metrics.getStats(algorithm).getBytes()).isEqualTo(64);
+        metrics.reset();
+        assertThat(metrics.getAllStats()).isEmpty();
+    }
+
+    @Test
+    void testSetListener() {
+        List<String> events = new ArrayList<>();
+        CryptoMx.setListener(new CryptoListener() {
+            @Override
+            public void onStart(Operation operation, String algorithm) {
+                events.add("start " + operation + ' ' + algorithm);
+            }
+
+            @Override
+            public void onSuccess(Operation operation, String algorithm, long bytes, long nanos) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onFailure(Operation operation, String algorithm, long nanos, Throwable cause) {
+            }
+        });
+        MessageDigest digest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+
+        // 监听器抛出的异常不影响操作
+        assertThat(CryptoMx.digest(new byte[1], digest)).hasSize(32);
+        assertThat(events).containsExactly("start DIGEST SHA-256");
+        CryptoMx.setListener(null);
+        assertThat(CryptoMx.getListener()).isNull();
+        CryptoMx.digest(new byte[1], digest);
+        assertThat(events).hasSize(1);
+    }
+
+    @Test
+    void testGetPercentile() {
+        CryptoMetrics metrics = new CryptoMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.onSuccess(CryptoListener.Operation.DIGEST, "SHA-256", 1, i * 1000L);
+        }
+
+        CryptoMetrics.Stats stats = metrics.getStats(CryptoListener.Operation.DIGEST, "SHA-256");
+        assertThat(stats.getMeanTime()).isEqualTo(Duration.ofNanos(50500));
+        assertThat(stats.getMaxTime()).isEqualTo(Duration.ofNanos(100000));
+        assertThat(stats.getPercentile(0.5)).isEqualTo(Duration.ofNanos(65535));
+        assertThat(stats.getPercentile(1)).isEqualTo(Duration.ofNanos(100000));
+        assertThat(CryptoMetrics.bucketOf(0)).isZero();
+        assertThat(CryptoMetrics.bucketOf(1)).isEqualTo(1);
+        assertThat(CryptoMetrics.bucketOf(Long.MAX_VALUE)).isEqualTo(CryptoMetrics.BUCKET_COUNT - 1);
+        assertThatThrownBy(() -> stats.getPercentile(2)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
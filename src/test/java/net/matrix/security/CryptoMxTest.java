@@ -7,6 +7,10 @@ package net.matrix.security;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.AlgorithmParameterGenerator;
 import java.security.AlgorithmParameters;
 import java.security.KeyFactory;
@@ -25,14 +29,20 @@ import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 
 import org.apache.commons.lang3.RandomStringUtils;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import static net.matrix.data.convert.BinaryStringConverter.HEX;
 import static net.matrix.data.convert.BinaryStringConverter.UTF8;
 
 class CryptoMxTest {
+    @TempDir
+    Path tempDir;
+
     KeyPair rsaKeyPair = CryptoMx
         .generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING).build());
 
@@ -55,6 +65,34 @@ class CryptoMxTest {
         assertThat(randomData).hasSize(5);
     }
 
+    @Test
+    void testGetSecureRandom_threadLocal() {
+        CryptoAlgorithm.Random algorithm = CryptoAlgorithm.Random.THREAD_LOCAL;
+
+        SecureRandom random = CryptoMx.getSecureRandom(algorithm);
+        assertThat(random).isSameAs(ThreadLocalSecureRandom.getDefault());
+        assertThat(random.getAlgorithm()).isEqualTo(algorithm.algorithm);
+    }
+
+    @Test
+    void testGenerateRandom_range() {
+        SecureRandom random = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.DEFAULT);
+        byte[] randomData = new byte[40];
+
+        CryptoMx.generateRandom(randomData, 8, 32, random);
+        assertThat(Arrays.copyOf(randomData, 8)).containsOnly(0);
+        assertThat(Arrays.copyOfRange(randomData, 8, 40)).isNotEqualTo(new byte[32]);
+    }
+
+    @Test
+    void testGenerateRandom_byteBuffer() {
+        SecureRandom random = CryptoMx.getSecureRandom(CryptoAlgorithm.Random.DEFAULT);
+        ByteBuffer randomData = ByteBuffer.allocateDirect(32);
+
+        CryptoMx.generateRandom(randomData, random);
+        assertThat(randomData.hasRemaining()).isFalse();
+    }
+
     @Test
     void testGetMessageDigest() {
         CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.MD5;
@@ -63,6 +101,30 @@ class CryptoMxTest {
         assertThat(digest.getAlgorithm()).isEqualTo(algorithm.algorithm);
     }
 
+    @Test
+    void testGetMessageDigest_jdk() {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.SHA_256;
+
+        MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+        assertThat(digest.getProvider()).isNotInstanceOf(BouncyCastleProvider.class);
+    }
+
+    @Test
+    void testGetMessageDigest_bouncyCastle() {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.SM3;
+
+        MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+        assertThat(digest.getProvider()).isInstanceOf(BouncyCastleProvider.class);
+    }
+
+    @Test
+    void testGetMessageDigest_jdkProvider() {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.SHA_256;
+
+        MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+        assertThat(digest.getProvider().getName()).isEqualTo("SUN");
+    }
+
     @Test
     void testDigest_md5() {
         CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.MD5;
@@ -169,6 +231,50 @@ class CryptoMxTest {
         assertThat(CryptoMx.digest(new ByteArrayInputStream(plainData), saltData, digest)).isEqualTo(digestData);
     }
 
+    @Test
+    void testDigest_file()
+        throws IOException {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.MD5;
+        MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+        byte[] plainData = UTF8.toBinary("沧海月明");
+        byte[] digestData = HEX.toBinary("5b95c94bbc42391c190ae5e91b26c007");
+        Path file = tempDir.resolve("plain.dat");
+        Files.write(file, plainData);
+
+        assertThat(CryptoMx.digest(file, digest)).isEqualTo(digestData);
+    }
+
+    @Test
+    void testDigest_file_mapped()
+        throws IOException {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.SM3;
+        MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+        byte[] plainData = UTF8.toBinary(RandomStringUtils.random(2 * 1024 * 1024));
+        Path file = tempDir.resolve("plain.dat");
+        Files.write(file, plainData);
+
+        assertThat(plainData.length).isGreaterThan(4 * 1024 * 1024);
+        assertThat(CryptoMx.digest(file, digest, true)).isEqualTo(CryptoMx.digest(plainData, digest));
+        assertThat(CryptoMx.digest(file, digest)).isEqualTo(CryptoMx.digest(plainData, digest));
+    }
+
+    @Test
+    void testDigest_fileChannel()
+        throws IOException {
+        CryptoAlgorithm.Digest algorithm = CryptoAlgorithm.Digest.MD5;
+        MessageDigest digest = CryptoMx.getMessageDigest(algorithm);
+        byte[] plainData = UTF8.toBinary("桑田沧海月明");
+        byte[] digestData = HEX.toBinary("5b95c94bbc42391c190ae5e91b26c007");
+        Path file = tempDir.resolve("plain.dat");
+        Files.write(file, plainData);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            channel.position(6);
+            assertThat(CryptoMx.digest(channel, digest)).isEqualTo(digestData);
+            assertThat(channel.position()).isEqualTo(plainData.length);
+        }
+    }
+
     @Test
     void testGetAlgorithmParameterGenerator_symmetric() {
         CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.DES_CBC_NOPADDING;
@@ -721,6 +827,95 @@ class CryptoMxTest {
         assertThat(CryptoMx.decrypt(cipherData, decryptCipher)).isEqualTo(plainData);
     }
 
+    @Test
+    void testSymmetric_aes_gcm() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        byte[] nonce = HEX.toBinary("ae44c3716e699e8c7d2d9dea");
+        byte[] aad = UTF8.toBinary("沧海");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).setAad(aad).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).setAad(aad).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = CryptoMx.encrypt(plainData, encryptCipher);
+        assertThat(cipherData).hasSize(plainData.length + 16);
+        assertThat(CryptoMx.decrypt(cipherData, decryptCipher)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testSymmetric_aes_gcm_tampered() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        byte[] nonce = HEX.toBinary("ae44c3716e699e8c7d2d9dea");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce)
+            .setAad(UTF8.toBinary("沧海")).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce)
+            .setAad(UTF8.toBinary("桑田")).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = CryptoMx.encrypt(plainData, encryptCipher);
+        assertThatThrownBy(() -> CryptoMx.decrypt(cipherData, decryptCipher)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testSymmetric_aes_ccm() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_CCM_NOPADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        byte[] nonce = HEX.toBinary("ae44c3716e699e8c7d2d9dea");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).setTagLength(96)
+            .buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).setTagLength(96)
+            .buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = CryptoMx.encrypt(plainData, encryptCipher);
+        assertThat(cipherData).hasSize(plainData.length + 12);
+        assertThat(CryptoMx.decrypt(cipherData, decryptCipher)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testSymmetric_sm4_gcm() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.SM4_GCM_NOPADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        byte[] nonce = HEX.toBinary("ae44c3716e699e8c7d2d9dea");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = CryptoMx.encrypt(plainData, encryptCipher);
+        assertThat(CryptoMx.decrypt(cipherData, decryptCipher)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testSymmetric_chacha20_poly1305() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.CHACHA20_POLY1305;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5fae44c3716e699e8c7d2d9dea2ba24a5f");
+        byte[] nonce = HEX.toBinary("ae44c3716e699e8c7d2d9dea");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = CryptoMx.encrypt(plainData, encryptCipher);
+        assertThat(CryptoMx.decrypt(cipherData, decryptCipher)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testSymmetric_stream_gcm()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        byte[] nonce = HEX.toBinary("ae44c3716e699e8c7d2d9dea");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).setNonce(nonce).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary(RandomStringUtils.random(16 * 1024 + 200));
+
+        ByteArrayOutputStream cipherDataStream = new ByteArrayOutputStream();
+        CryptoMx.encrypt(new ByteArrayInputStream(plainData), cipherDataStream, encryptCipher);
+        ByteArrayOutputStream plainDataStream = new ByteArrayOutputStream();
+        CryptoMx.decrypt(new ByteArrayInputStream(cipherDataStream.toByteArray()), plainDataStream, decryptCipher);
+        assertThat(plainDataStream.toByteArray()).isEqualTo(plainData);
+    }
+
     @Test
     void testSymmetric_stream_ecb()
         throws IOException {
@@ -757,6 +952,87 @@ class CryptoMxTest {
         assertThat(plainDataStream.toByteArray()).isEqualTo(plainData);
     }
 
+    @Test
+    void testSymmetric_stream_releaseOnFailure() {
+        Cipher cipher = CryptoMx.getCipher(CryptoAlgorithm.Symmetric.AES_ECB_PKCS5PADDING);
+        CryptoBufferPool bufferPool = CryptoBufferPool.getDefault();
+        byte[] buffer = bufferPool.borrow(16);
+        bufferPool.release(buffer);
+
+        assertThatThrownBy(() -> CryptoMx.encrypt(new ByteArrayInputStream(new byte[16]), new ByteArrayOutputStream(), cipher))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(bufferPool.borrow(16)).isSameAs(buffer);
+        bufferPool.release(buffer);
+        assertThatThrownBy(() -> CryptoMx.decrypt(new ByteArrayInputStream(new byte[16]), new ByteArrayOutputStream(), cipher))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(bufferPool.borrow(16)).isSameAs(buffer);
+    }
+
+    @Test
+    void testSymmetric_array() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_ECB_PKCS5PADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = new byte[4 + CryptoMx.getOutputSize(plainData.length, encryptCipher)];
+        int cipherLength = CryptoMx.encrypt(plainData, 0, plainData.length, cipherData, 4, encryptCipher);
+        assertThat(cipherLength).isEqualTo(16);
+        assertThat(Arrays.copyOfRange(cipherData, 4, 4 + cipherLength)).isEqualTo(CryptoMx.encrypt(plainData, encryptCipher));
+        byte[] decryptedData = new byte[CryptoMx.getOutputSize(cipherLength, decryptCipher)];
+        int plainLength = CryptoMx.decrypt(cipherData, 4, cipherLength, decryptedData, 0, decryptCipher);
+        assertThat(Arrays.copyOf(decryptedData, plainLength)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testSymmetric_array_shortBuffer() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_ECB_PKCS5PADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForEncrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        assertThatThrownBy(() -> CryptoMx.encrypt(plainData, 0, plainData.length, new byte[8], 0, encryptCipher))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testSymmetric_byteBuffer() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.SM4_ECB_PKCS5PADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        ByteBuffer cipherData = CryptoMx.encrypt(ByteBuffer.wrap(plainData), encryptCipher);
+        assertThat(cipherData.isDirect()).isFalse();
+        ByteBuffer plainBuffer = CryptoMx.decrypt(cipherData, decryptCipher);
+        byte[] decryptedData = new byte[plainBuffer.remaining()];
+        plainBuffer.get(decryptedData);
+        assertThat(decryptedData).isEqualTo(plainData);
+    }
+
+    @Test
+    void testSymmetric_byteBuffer_direct() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_ECB_PKCS5PADDING;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+        Cipher encryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForEncrypt();
+        Cipher decryptCipher = CryptoMx.SymmetricCipherBuilder.newBuilder(algorithm).setKey(keyData, algorithm).buildForDecrypt();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+        ByteBuffer plainBuffer = ByteBuffer.allocateDirect(plainData.length);
+        plainBuffer.put(plainData).flip();
+
+        ByteBuffer cipherData = ByteBuffer.allocateDirect(CryptoMx.getOutputSize(plainData.length, encryptCipher));
+        assertThat(CryptoMx.encrypt(plainBuffer, cipherData, encryptCipher)).isEqualTo(16);
+        assertThat(plainBuffer.hasRemaining()).isFalse();
+        cipherData.flip();
+        ByteBuffer decryptedBuffer = CryptoMx.decrypt(cipherData, decryptCipher);
+        assertThat(decryptedBuffer.isDirect()).isTrue();
+        byte[] decryptedData = new byte[decryptedBuffer.remaining()];
+        decryptedBuffer.get(decryptedData);
+        assertThat(decryptedData).isEqualTo(plainData);
+    }
+
     @Test
     void testGetKeyGenerator_mac() {
         CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SM3;
@@ -1014,6 +1290,22 @@ class CryptoMxTest {
         assertThat(CryptoMx.verify(new ByteArrayInputStream(data), signature, mac)).isTrue();
     }
 
+    @Test
+    void testSign_file()
+        throws IOException {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c");
+        Mac mac = CryptoMx.MacBuilder.newBuilder(algorithm).setKey(keyData, algorithm).build();
+        byte[] data = UTF8.toBinary(RandomStringUtils.random(2 * 1024 * 1024));
+        Path file = tempDir.resolve("data.dat");
+        Files.write(file, data);
+
+        byte[] signature = CryptoMx.sign(file, mac);
+        assertThat(signature).isEqualTo(CryptoMx.sign(data, mac));
+        assertThat(CryptoMx.sign(file, mac, true)).isEqualTo(signature);
+        assertThat(CryptoMx.verify(file, signature, mac)).isTrue();
+    }
+
     @Test
     void testGetKeyPairGenerator_asymmetric() {
         CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING;
@@ -1361,4 +1653,20 @@ class CryptoMxTest {
         byte[] signature = CryptoMx.sign(data, signSignature);
         assertThat(CryptoMx.verify(data, signature, verifySignature)).isTrue();
     }
+
+    @Test
+    void testSign_signature_stream()
+        throws IOException {
+        CryptoAlgorithm.Sign algorithm = CryptoAlgorithm.Sign.SM3_SM2;
+        Signature signSignature = CryptoMx.getSignature(algorithm);
+        CryptoMx.initSignatureForSign(signSignature, sm2KeyPair.getPrivate());
+        Signature verifySignature = CryptoMx.getSignature(algorithm);
+        CryptoMx.initSignatureForVerify(verifySignature, sm2KeyPair.getPublic());
+        byte[] data = UTF8.toBinary(RandomStringUtils.random(10000));
+
+        byte[] signature = CryptoMx.sign(new ByteArrayInputStream(data), signSignature);
+        assertThat(CryptoMx.verify(new ByteArrayInputStream(data), signature, verifySignature)).isTrue();
+        assertThat(CryptoMx.verify(data, signature, verifySignature)).isTrue();
+        assertThat(CryptoMx.verify(new ByteArrayInputStream(new byte[10]), signature, verifySignature)).isFalse();
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DigestSubscriberTest {
+    @Test
+    void testGetResult()
+        throws Exception {
+        byte[] plainData = RandomUtils.nextBytes(100000);
+        DigestSubscriber subscriber = new DigestSubscriber(CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SM3), 4);
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            for (int offset = 0; offset < plainData.length; offset += 1000) {
+                publisher.submit(ByteBuffer.wrap(plainData, offset, 1000));
+            }
+        }
+
+        MessageDigest digest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SM3);
+        assertThat(subscriber.getResult().get(10, TimeUnit.SECONDS)).isEqualTo(CryptoMx.digest(plainData, digest));
+    }
+
+    @Test
+    void testGetResult_error() {
+        DigestSubscriber subscriber = new DigestSubscriber(CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256));
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            publisher.submit(ByteBuffer.wrap(new byte[10]));
+            publisher.closeExceptionally(new IOException());
+        }
+
+        assertThatThrownBy(() -> subscriber.getResult().get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    void testNew_invalidPrefetch() {
+        MessageDigest digest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+
+        assertThatThrownBy(() -> new DigestSubscriber(digest, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
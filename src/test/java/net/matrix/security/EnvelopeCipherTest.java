@@ -0,0 +1,131 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.KeyPair;
+import java.time.Duration;
+
+import javax.crypto.Cipher;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import static net.matrix.data.convert.BinaryStringConverter.UTF8;
+
+class EnvelopeCipherTest {
+    KeyPair rsaKeyPair = CryptoMx
+        .generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING).build());
+
+    KeyPair sm2KeyPair = CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(CryptoAlgorithm.Asymmetric.SM2_NONE_NOPADDING).build());
+
+    @Test
+    void testEncrypt() {
+        CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING;
+        EnvelopeCipher encryptor = EnvelopeCipher.newBuilder(algorithm).setPublicKey(rsaKeyPair.getPublic()).build();
+        EnvelopeCipher decryptor = EnvelopeCipher.newBuilder(algorithm).setPrivateKey(rsaKeyPair.getPrivate()).build();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        byte[] cipherData = encryptor.encrypt(plainData);
+        assertThat(decryptor.decrypt(cipherData)).isEqualTo(plainData);
+        assertThat(encryptor.encrypt(plainData)).isNotEqualTo(cipherData);
+    }
+
+    @Test
+    void testEncrypt_stream()
+        throws IOException {
+        CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.SM2_NONE_NOPADDING;
+        EnvelopeCipher cipher = EnvelopeCipher.newBuilder(algorithm).setPublicKey(sm2KeyPair.getPublic()).setPrivateKey(sm2KeyPair.getPrivate())
+            .setDataAlgorithm(CryptoAlgorithm.Symmetric.SM4_GCM_NOPADDING).setSegmentSize(1000).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+
+        ByteArrayOutputStream cipherData = new ByteArrayOutputStream();
+        try (OutputStream output = cipher.newEncryptingStream(cipherData)) {
+            output.write(plainData);
+        }
+        try (InputStream input = cipher.newDecryptingStream(new ByteArrayInputStream(cipherData.toByteArray()))) {
+            assertThat(IOUtils.toByteArray(input)).isEqualTo(plainData);
+        }
+    }
+
+    @Test
+    void testDecrypt_cache()
+        throws IOException {
+        CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING;
+        EnvelopeCipher cipher = EnvelopeCipher.newBuilder(algorithm).setPublicKey(rsaKeyPair.getPublic()).setPrivateKey(rsaKeyPair.getPrivate())
+            .setDataKeyCache(10, Duration.ofMinutes(1)).build();
+        byte[] plainData = RandomUtils.nextBytes(100);
+        byte[] cipherData = cipher.encrypt(plainData);
+
+        assertThat(cipher.decrypt(cipherData)).isEqualTo(plainData);
+        assertThat(cipher.decrypt(cipherData)).isEqualTo(plainData);
+        assertThat(cipher.getDataKeyCacheSize()).isEqualTo(1);
+        assertThat(EnvelopeCipher.readKeyId(new ByteArrayInputStream(cipherData))).hasSize(32);
+    }
+
+    @Test
+    void testDecrypt_tampered() {
+        CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING;
+        EnvelopeCipher cipher = EnvelopeCipher.newBuilder(algorithm).setPublicKey(rsaKeyPair.getPublic()).setPrivateKey(rsaKeyPair.getPrivate()).build();
+        byte[] cipherData = cipher.encrypt(RandomUtils.nextBytes(100));
+        cipherData[cipherData.length - 1]++;
+
+        assertThatThrownBy(() -> cipher.decrypt(cipherData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testDecrypt_invalidWrappedKey() {
+        CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING;
+        EnvelopeCipher cipher = EnvelopeCipher.newBuilder(algorithm).setPublicKey(rsaKeyPair.getPublic()).setPrivateKey(rsaKeyPair.getPrivate()).build();
+        byte[] cipherData = cipher.encrypt(RandomUtils.nextBytes(100));
+        byte[] tamperedData = cipherData.clone();
+        tamperedData[tamperedData.length - 1]++;
+        byte[] paddingData = cipherData.clone();
+        paddingData[10]++;
+        // 数据秘钥长度错误
+        Cipher rsa = CryptoMx.getCipher(algorithm);
+        CryptoMx.initCipherForEncrypt(rsa, rsaKeyPair.getPublic());
+        byte[] wrappedKey = CryptoMx.encrypt(new byte[10], rsa);
+        byte[] lengthData = cipherData.clone();
+        System.arraycopy(wrappedKey, 0, lengthData, 3, wrappedKey.length);
+
+        Throwable tagFailure = catchThrowable(() -> cipher.decrypt(tamperedData));
+        for (byte[] data : new byte[][] {
+            paddingData, lengthData
+        }) {
+            assertThatThrownBy(() -> cipher.decrypt(data)).isInstanceOf(IllegalArgumentException.class).hasMessage(tagFailure.getMessage())
+                .cause().isInstanceOf(tagFailure.getCause().getClass());
+        }
+    }
+
+    @Test
+    void testDecrypt_wrongKey() {
+        CryptoAlgorithm.Asymmetric algorithm = CryptoAlgorithm.Asymmetric.SM2_NONE_NOPADDING;
+        KeyPair otherKeyPair = CryptoMx.generateKeyPair(CryptoMx.AsymmetricKeyPairGeneratorBuilder.newBuilder(algorithm).build());
+        EnvelopeCipher encryptor = EnvelopeCipher.newBuilder(algorithm).setPublicKey(sm2KeyPair.getPublic()).build();
+        EnvelopeCipher decryptor = EnvelopeCipher.newBuilder(algorithm).setPrivateKey(otherKeyPair.getPrivate()).build();
+        byte[] cipherData = encryptor.encrypt(RandomUtils.nextBytes(100));
+
+        assertThatThrownBy(() -> decryptor.decrypt(cipherData)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decryptor.encrypt(cipherData)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testBuild_notAead() {
+        EnvelopeCipher.Builder builder = EnvelopeCipher.newBuilder(CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING).setPublicKey(rsaKeyPair.getPublic())
+            .setDataAlgorithm(CryptoAlgorithm.Symmetric.AES_CBC_NOPADDING);
+
+        assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FastCdcChunkerTest {
+    private static List<Integer> cutAll(FastCdcChunker chunker, byte[] data) {
+        List<Integer> boundaries = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            offset += chunker.cut(data, offset, data.length - offset);
+            boundaries.add(offset);
+        }
+        return boundaries;
+    }
+
+    @Test
+    void testCut() {
+        FastCdcChunker chunker = new FastCdcChunker(256, 1024, 4096);
+        byte[] data = RandomUtils.nextBytes(200000);
+
+        List<Integer> boundaries = cutAll(chunker, data);
+        int previous = 0;
+        for (int i = 0; i < boundaries.size(); i++) {
+            int size = boundaries.get(i) - previous;
+            assertThat(size).isLessThanOrEqualTo(4096);
+            if (i < boundaries.size() - 1) {
+                assertThat(size).isGreaterThan(256);
+            }
+            previous = boundaries.get(i);
+        }
+        // 平均长度接近设定值
+        assertThat(data.length / boundaries.size()).isBetween(512, 2048);
+        assertThat(cutAll(chunker, data)).isEqualTo(boundaries);
+        assertThat(chunker.cut(data, 0, 100)).isEqualTo(100);
+    }
+
+    @Test
+    void testCut_shift() {
+        FastCdcChunker chunker = new FastCdcChunker(256, 1024, 4096);
+        byte[] data = RandomUtils.nextBytes(100000);
+        byte[] shifted = ArrayUtils.addAll(RandomUtils.nextBytes(10), data);
+
+        List<Integer> boundaries = cutAll(chunker, data);
+        List<Integer> shiftedBoundaries = new ArrayList<>();
+        for (int boundary : cutAll(chunker, shifted)) {
+            shiftedBoundaries.add(boundary - 10);
+        }
+        // 开头插入数据后，除最前面的少数分块外边界不变
+        shiftedBoundaries.retainAll(boundaries);
+        assertThat(shiftedBoundaries.size()).isGreaterThan(boundaries.size() - 5);
+    }
+
+    @Test
+    void testNew_invalid() {
+        assertThatThrownBy(() -> new FastCdcChunker(256, 1000, 4096)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FastCdcChunker(2048, 1024, 4096)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FastCdcChunker(256, 1024, 1024)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.security.KeyPair;
+import java.security.interfaces.RSAPublicKey;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyPairPoolTest {
+    @Test
+    void testTake() {
+        KeyPairPool pool = KeyPairPool.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setCapacity(4).setExecutor(Runnable::run).build();
+        assertThat(pool.available()).isEqualTo(4);
+
+        KeyPair keyPair = pool.take();
+        assertThat(keyPair.getPublic().getAlgorithm()).isIn("EC", CryptoConstant.SM2);
+        assertThat(pool.available()).isEqualTo(3);
+        assertThat(pool.take()).isNotSameAs(keyPair);
+        assertThat(pool.available()).isEqualTo(4);
+
+        KeyPairPool.Stats stats = pool.stats();
+        assertThat(stats.getTakeCount()).isEqualTo(2);
+        assertThat(stats.getGenerateCount()).isEqualTo(6);
+        assertThat(stats.getStallCount()).isZero();
+        assertThat(stats.getDrainRate()).isPositive();
+    }
+
+    @Test
+    void testTake_keySize() {
+        KeyPairPool pool = KeyPairPool.newBuilder(CryptoAlgorithm.Asymmetric.RSA_NONE_PKCS1PADDING).setKeySize(1024).setCapacity(2)
+            .setExecutor(Runnable::run).build();
+
+        KeyPair keyPair = pool.take();
+        assertThat(((RSAPublicKey) keyPair.getPublic()).getModulus().bitLength()).isEqualTo(1024);
+    }
+
+    @Test
+    void testTake_stall() {
+        KeyPairPool pool = KeyPairPool.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setExecutor(task -> {
+        }).build();
+        assertThat(pool.available()).isZero();
+
+        assertThat(pool.take()).isNotNull();
+        KeyPairPool.Stats stats = pool.stats();
+        assertThat(stats.getStallCount()).isEqualTo(1);
+        assertThat(stats.getStallTime()).isPositive();
+        assertThat(stats.getGenerateCount()).isZero();
+    }
+
+    @Test
+    void testLowWatermark() {
+        KeyPairPool pool = KeyPairPool.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setCapacity(3).setLowWatermark(0).setExecutor(Runnable::run).build();
+
+        pool.take();
+        pool.take();
+        assertThat(pool.available()).isEqualTo(1);
+        pool.take();
+        assertThat(pool.available()).isEqualTo(3);
+    }
+
+    @Test
+    void testClose() {
+        KeyPairPool pool = KeyPairPool.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setCapacity(2).setExecutor(Runnable::run).build();
+
+        pool.close();
+        assertThat(pool.available()).isZero();
+        assertThatThrownBy(pool::take).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testBuild_invalid() {
+        KeyPairPool.Builder builder = KeyPairPool.newBuilder(CryptoAlgorithm.Sign.SM3_SM2).setCapacity(2).setLowWatermark(2);
+
+        assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    }
+}
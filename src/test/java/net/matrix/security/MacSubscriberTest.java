@@ -0,0 +1,56 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MacSubscriberTest {
+    @Test
+    void testGetResult()
+        throws Exception {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SM3;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build());
+        byte[] plainData = RandomUtils.nextBytes(65536);
+        MacSubscriber subscriber = new MacSubscriber(CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build());
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            for (int offset = 0; offset < plainData.length; offset += 4096) {
+                ByteBuffer item = ByteBuffer.allocateDirect(4096);
+                item.put(plainData, offset, 4096).flip();
+                publisher.submit(item);
+            }
+        }
+
+        Mac mac = CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build();
+        assertThat(subscriber.getResult().get(10, TimeUnit.SECONDS)).isEqualTo(CryptoMx.sign(plainData, mac));
+    }
+
+    @Test
+    void testGetResult_cancel() {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        SecretKey key = CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build());
+        MacSubscriber subscriber = new MacSubscriber(CryptoMx.MacBuilder.newBuilder(algorithm).setKey(key).build(), 1);
+
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(subscriber);
+            publisher.submit(ByteBuffer.wrap(new byte[10]));
+            subscriber.getResult().cancel(false);
+            publisher.submit(ByteBuffer.wrap(new byte[10]));
+        }
+
+        assertThat(subscriber.getResult()).isCancelled();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MerkleTreeDigesterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDigest_stream()
+        throws IOException {
+        MerkleTreeDigester digester = MerkleTreeDigester.newBuilder(CryptoAlgorithm.Digest.SHA_256).setChunkSize(1024).setMaxPendingChunks(2).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+
+        MerkleTree tree = digester.digest(new ByteArrayInputStream(plainData));
+        assertThat(tree.getLength()).isEqualTo(plainData.length);
+        assertThat(tree.getChunkCount()).isEqualTo(11);
+        assertThat(tree.getChunkLength(10)).isEqualTo(100);
+    }
+
+    @Test
+    void testDigest_stream_empty()
+        throws IOException {
+        MerkleTreeDigester digester = MerkleTreeDigester.newBuilder(CryptoAlgorithm.Digest.SHA_256).build();
+        MessageDigest digest = CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256);
+
+        MerkleTree tree = digester.digest(new ByteArrayInputStream(new byte[0]));
+        assertThat(tree.getChunkCount()).isEqualTo(1);
+        assertThat(tree.getRoot()).isEqualTo(CryptoMx.digest(new byte[] {
+            MerkleTree.LEAF_PREFIX
+        }, digest));
+    }
+
+    @Test
+    void testDigest_file()
+        throws IOException {
+        MerkleTreeDigester digester = MerkleTreeDigester.newBuilder(CryptoAlgorithm.Digest.SM3).setChunkSize(1024).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+        Path file = tempDir.resolve("plain.dat");
+        Files.write(file, plainData);
+
+        MerkleTree fileTree = digester.digest(file);
+        MerkleTree streamTree = digester.digest(new ByteArrayInputStream(plainData));
+        assertThat(fileTree.getRoot()).isEqualTo(streamTree.getRoot());
+        assertThat(fileTree.diff(streamTree)).isEmpty();
+    }
+
+    @Test
+    void testDigest_executor()
+        throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            MerkleTreeDigester digester = MerkleTreeDigester.newBuilder(CryptoAlgorithm.Digest.MD5).setChunkSize(1024).setExecutor(executor).build();
+            MerkleTreeDigester defaultDigester = MerkleTreeDigester.newBuilder(CryptoAlgorithm.Digest.MD5).setChunkSize(1024).build();
+            byte[] plainData = RandomUtils.nextBytes(5 * 1024);
+
+            MerkleTree tree = digester.digest(new ByteArrayInputStream(plainData));
+            assertThat(tree.getRoot()).isEqualTo(defaultDigester.digest(new ByteArrayInputStream(plainData)).getRoot());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MerkleTreeTest {
+    MerkleTreeDigester digester = MerkleTreeDigester.newBuilder(CryptoAlgorithm.Digest.SHA_256).setChunkSize(1024).build();
+
+    @Test
+    void testOf()
+        throws IOException {
+        byte[] plainData = RandomUtils.nextBytes(3 * 1024 + 10);
+        MerkleTree tree = digester.digest(new ByteArrayInputStream(plainData));
+
+        MerkleTree restoredTree = MerkleTree.of(CryptoAlgorithm.Digest.SHA_256, 1024, plainData.length, tree.getChunkDigests());
+        assertThat(restoredTree.getRoot()).isEqualTo(tree.getRoot());
+    }
+
+    @Test
+    void testVerifyChunk()
+        throws IOException {
+        byte[] plainData = RandomUtils.nextBytes(3 * 1024 + 10);
+        MerkleTree tree = digester.digest(new ByteArrayInputStream(plainData));
+
+        assertThat(tree.verifyChunk(1, Arrays.copyOfRange(plainData, 1024, 2048))).isTrue();
+        assertThat(tree.verifyChunk(3, Arrays.copyOfRange(plainData, 3072, plainData.length))).isTrue();
+        assertThat(tree.verifyChunk(2, Arrays.copyOfRange(plainData, 1024, 2048))).isFalse();
+    }
+
+    @Test
+    void testDiff()
+        throws IOException {
+        byte[] plainData = RandomUtils.nextBytes(3 * 1024 + 10);
+        MerkleTree tree = digester.digest(new ByteArrayInputStream(plainData));
+        byte[] changedData = Arrays.copyOf(plainData, plainData.length + 1024);
+        changedData[1500]++;
+
+        MerkleTree changedTree = digester.digest(new ByteArrayInputStream(changedData));
+        assertThat(changedTree.getRoot()).isNotEqualTo(tree.getRoot());
+        assertThat(tree.diff(changedTree)).containsExactly(1, 3, 4);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static net.matrix.data.convert.BinaryStringConverter.HEX;
+import static net.matrix.data.convert.BinaryStringConverter.UTF8;
+
+class MultiDigesterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDigest() {
+        MultiDigester digester = MultiDigester.newBuilder().addDigest(CryptoAlgorithm.Digest.MD5).addDigest(CryptoAlgorithm.Digest.SHA_256).build();
+        byte[] plainData = UTF8.toBinary("沧海月明");
+
+        Map<String, byte[]> results = digester.digest(plainData);
+        assertThat(results).containsOnlyKeys(CryptoConstant.MD5, CryptoConstant.SHA_256);
+        assertThat(results.get(CryptoConstant.MD5)).isEqualTo(HEX.toBinary("5b95c94bbc42391c190ae5e91b26c007"));
+    }
+
+    @Test
+    void testDigest_stream()
+        throws IOException {
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c");
+        MultiDigester digester = MultiDigester.newBuilder().addDigest(CryptoAlgorithm.Digest.MD5).addDigest(CryptoAlgorithm.Digest.SM3)
+            .addMac(CryptoAlgorithm.Mac.HMAC_SHA_256, keyData).setBufferSize(1000).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+
+        Map<String, byte[]> results = digester.digest(new ByteArrayInputStream(plainData));
+        assertThat(results.get(CryptoConstant.MD5)).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.MD5)));
+        assertThat(results.get(CryptoConstant.SM3)).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SM3)));
+        Mac mac = CryptoMx.MacBuilder.newBuilder(CryptoAlgorithm.Mac.HMAC_SHA_256).setKey(keyData, CryptoAlgorithm.Mac.HMAC_SHA_256).build();
+        assertThat(results.get(CryptoConstant.HMAC_SHA_256)).isEqualTo(CryptoMx.sign(plainData, mac));
+    }
+
+    @Test
+    void testDigest_stream_parallel()
+        throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            MultiDigester serialDigester = MultiDigester.newBuilder().addDigest(CryptoAlgorithm.Digest.MD5).addDigest(CryptoAlgorithm.Digest.SHA_512)
+                .addDigest(CryptoAlgorithm.Digest.SM3).setBufferSize(1000).build();
+            MultiDigester parallelDigester = MultiDigester.newBuilder().addDigest(CryptoAlgorithm.Digest.MD5).addDigest(CryptoAlgorithm.Digest.SHA_512)
+                .addDigest(CryptoAlgorithm.Digest.SM3).setBufferSize(1000).setExecutor(executor).build();
+            byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+
+            Map<String, byte[]> serialResults = serialDigester.digest(new ByteArrayInputStream(plainData));
+            Map<String, byte[]> parallelResults = parallelDigester.digest(new ByteArrayInputStream(plainData));
+            assertThat(parallelResults).containsOnlyKeys(serialResults.keySet());
+            for (Map.Entry<String, byte[]> entry : serialResults.entrySet()) {
+                assertThat(parallelResults.get(entry.getKey())).isEqualTo(entry.getValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testDigest_file()
+        throws IOException {
+        MultiDigester digester = MultiDigester.newBuilder().addDigest(CryptoAlgorithm.Digest.MD5).build();
+        Path file = tempDir.resolve("plain.dat");
+        Files.write(file, UTF8.toBinary("沧海月明"));
+
+        assertThat(digester.digest(file).get(CryptoConstant.MD5)).isEqualTo(HEX.toBinary("5b95c94bbc42391c190ae5e91b26c007"));
+    }
+
+    @Test
+    void testDigest_invalidMacKey() {
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA3_512;
+        // 第一次构建时可以初始化，之后秘钥失效
+        SecretKey key = new SecretKey() {
+            private static final long serialVersionUID = 1L;
+
+            private boolean used;
+
+            @Override
+            public String getAlgorithm() {
+                return algorithm.algorithm;
+            }
+
+            @Override
+            public String getFormat() {
+                return "RAW";
+            }
+
+            @Override
+            public byte[] getEncoded() {
+                if (used) {
+                    return null;
+                }
+                used = true;
+                return new byte[16];
+            }
+        };
+        MultiDigester digester = MultiDigester.newBuilder().addDigest(CryptoAlgorithm.Digest.MD5).addMac(algorithm, key).build();
+        CryptoEnginePool<Mac> pool = CryptoEnginePool.ofMac(algorithm);
+        pool.clear();
+        long discardCount = pool.getDiscardCount();
+
+        assertThatThrownBy(() -> digester.digest(new byte[10])).isInstanceOf(IllegalArgumentException.class);
+        // 初始化失败的实例已归还，无法重新初始化而被丢弃
+        assertThat(pool.getDiscardCount()).isEqualTo(discardCount + 1);
+    }
+
+    @Test
+    void testBuild_empty() {
+        MultiDigester.Builder builder = MultiDigester.newBuilder();
+
+        assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    }
+}
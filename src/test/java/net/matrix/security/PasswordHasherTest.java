@@ -0,0 +1,116 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTest {
+    @Test
+    void testHash_pbkdf2() {
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.PBKDF2_SHA_256).setIterations(1000).build()) {
+            String encoded = hasher.hash("沧海月明".toCharArray());
+
+            assertThat(encoded).startsWith("$pbkdf2-sha256$i=1000$");
+            assertThat(hasher.verify("沧海月明".toCharArray(), encoded)).isTrue();
+            assertThat(hasher.verify("沧海月暗".toCharArray(), encoded)).isFalse();
+            assertThat(hasher.hash("沧海月明".toCharArray())).isNotEqualTo(encoded);
+        }
+    }
+
+    @Test
+    void testHash_scrypt() {
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.SCRYPT).setMemoryCost(1024).build()) {
+            String encoded = hasher.hash("沧海月明".toCharArray());
+
+            assertThat(encoded).startsWith("$scrypt$ln=10,r=8,p=1$");
+            assertThat(hasher.verify("沧海月明".toCharArray(), encoded)).isTrue();
+            assertThat(hasher.verify("沧海月暗".toCharArray(), encoded)).isFalse();
+        }
+    }
+
+    @Test
+    void testHash_argon2() {
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.ARGON2ID).setMemoryCost(1024).setIterations(1).build()) {
+            String encoded = hasher.hash("沧海月明".toCharArray());
+
+            assertThat(encoded).startsWith("$argon2id$v=19$m=1024,t=1,p=1$");
+            assertThat(hasher.verify("沧海月明".toCharArray(), encoded)).isTrue();
+            assertThat(hasher.verify("沧海月暗".toCharArray(), encoded)).isFalse();
+        }
+    }
+
+    @Test
+    void testVerify_argon2Reference() {
+        // 参考实现的测试向量
+        String encoded = "$argon2id$v=19$m=65536,t=2,p=1$c29tZXNhbHQ$CTFhFdXPJO1aFaMaO6Mm5c8y7cJHAph8ArZWb2GRPPc";
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.ARGON2ID).build()) {
+            assertThat(hasher.verify("password".toCharArray(), encoded)).isTrue();
+            assertThat(hasher.needsRehash(encoded)).isTrue();
+        }
+    }
+
+    @Test
+    void testVerify_rehash() {
+        String encoded;
+        try (PasswordHasher oldHasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.PBKDF2_SHA_256).setIterations(1000).build()) {
+            encoded = oldHasher.hash("沧海月明".toCharArray());
+        }
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.SCRYPT).setMemoryCost(1024).build()) {
+            List<String> rehashed = new ArrayList<>();
+
+            assertThat(hasher.needsRehash(encoded)).isTrue();
+            assertThat(hasher.verify("沧海月暗".toCharArray(), encoded, rehashed::add)).isFalse();
+            assertThat(rehashed).isEmpty();
+            assertThat(hasher.verify("沧海月明".toCharArray(), encoded, rehashed::add)).isTrue();
+            assertThat(rehashed).hasSize(1);
+            assertThat(hasher.needsRehash(rehashed.get(0))).isFalse();
+            assertThat(hasher.verify("沧海月明".toCharArray(), rehashed.get(0), rehashed::add)).isTrue();
+            assertThat(rehashed).hasSize(1);
+        }
+    }
+
+    @Test
+    void testHashAsync() {
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.PBKDF2_SHA_256).setIterations(1000).build()) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(hasher.hashAsync(("口令" + i).toCharArray()));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertThat(hasher.verifyAsync(("口令" + i).toCharArray(), futures.get(i).join(), null).join()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void testVerify_invalid() {
+        try (PasswordHasher hasher = PasswordHasher.newBuilder(CryptoAlgorithm.PasswordHash.PBKDF2_SHA_256).setIterations(1000).build()) {
+            char[] password = "沧海月明".toCharArray();
+
+            assertThatThrownBy(() -> hasher.verify(password, "沧海月明")).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> hasher.verify(password, "$bcrypt$i=1000$c29tZXNhbHQ$c29tZXNhbHQ")).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> hasher.verify(password, "$pbkdf2-sha256$i=x$c29tZXNhbHQ$c29tZXNhbHQ")).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> hasher.verify(password, "$scrypt$ln=10,r=8,p=1$c29tZXNhbHQ")).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testCalibrate() {
+        PasswordHasher.Builder builder = PasswordHasher.calibrate(CryptoAlgorithm.PasswordHash.PBKDF2_SHA_256, Duration.ofMillis(20));
+
+        try (PasswordHasher hasher = builder.build()) {
+            String encoded = hasher.hash("沧海月明".toCharArray());
+            assertThat(hasher.verify("沧海月明".toCharArray(), encoded)).isTrue();
+        }
+    }
+}
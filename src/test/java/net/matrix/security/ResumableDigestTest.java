@@ -0,0 +1,131 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.bouncycastle.util.Pack;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResumableDigestTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRestore() {
+        for (CryptoAlgorithm.Digest algorithm : CryptoAlgorithm.Digest.values()) {
+            if (ResumableDigest.isSupported(algorithm)) {
+                testRestore(algorithm);
+            }
+        }
+    }
+
+    private static void testRestore(CryptoAlgorithm.Digest algorithm) {
+        // 覆盖分组内和分组边界的各种位置
+        for (int split : new int[] {
+            0, 1, 55, 56, 63, 64, 111, 112, 127, 128, 1000
+        }) {
+            byte[] plainData = RandomUtils.nextBytes(split + 300);
+            ResumableDigest digest = ResumableDigest.newInstance(algorithm);
+            digest.update(plainData, 0, split);
+            byte[] checkpoint = digest.checkpoint();
+            assertThat(checkpoint.length).isLessThanOrEqualTo(250);
+
+            ResumableDigest restored = ResumableDigest.restore(checkpoint);
+            assertThat(restored.getAlgorithm()).isEqualTo(algorithm);
+            assertThat(restored.getLength()).isEqualTo(split);
+            restored.update(plainData, split, plainData.length - split);
+            assertThat(restored.digest()).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(algorithm)));
+        }
+    }
+
+    @Test
+    void testDigest() {
+        byte[] plainData = RandomUtils.nextBytes(200);
+        ResumableDigest digest = ResumableDigest.newInstance(CryptoAlgorithm.Digest.SM3);
+
+        digest.update(ByteBuffer.wrap(plainData, 0, 100));
+        assertThat(digest.digest()).isEqualTo(CryptoMx.digest(ArrayUtils.subarray(plainData, 0, 100), CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SM3)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(100);
+        direct.put(plainData, 100, 100).flip();
+        digest.update(direct);
+        assertThat(direct.hasRemaining()).isFalse();
+        assertThat(digest.getLength()).isEqualTo(200);
+        assertThat(digest.digest()).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SM3)));
+    }
+
+    @Test
+    void testUpdate_stream()
+        throws IOException {
+        byte[] plainData = RandomUtils.nextBytes(20000);
+        ResumableDigest digest = ResumableDigest.newInstance(CryptoAlgorithm.Digest.SHA_256);
+
+        assertThat(digest.update(new ByteArrayInputStream(plainData))).isEqualTo(20000);
+        assertThat(digest.digest()).isEqualTo(CryptoMx.digest(plainData, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_256)));
+    }
+
+    @Test
+    void testUpdate_file()
+        throws IOException {
+        Path file = tempDir.resolve("segment.log");
+        byte[] firstData = RandomUtils.nextBytes(10000);
+        byte[] appendedData = RandomUtils.nextBytes(5000);
+        Files.write(file, firstData);
+
+        ResumableDigest digest = ResumableDigest.newInstance(CryptoAlgorithm.Digest.SHA_512);
+        assertThat(digest.update(file)).isEqualTo(10000);
+        byte[] checkpoint = digest.checkpoint();
+
+        Files.write(file, appendedData, StandardOpenOption.APPEND);
+        ResumableDigest restored = ResumableDigest.restore(checkpoint);
+        assertThat(restored.update(file)).isEqualTo(5000);
+        assertThat(restored.digest()).isEqualTo(CryptoMx.digest(file, CryptoMx.getMessageDigest(CryptoAlgorithm.Digest.SHA_512)));
+
+        Files.write(file, firstData);
+        assertThatThrownBy(() -> restored.update(file)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testNewInstance_unsupported() {
+        assertThat(ResumableDigest.isSupported(CryptoAlgorithm.Digest.SHA3_256)).isFalse();
+        assertThatThrownBy(() -> ResumableDigest.newInstance(CryptoAlgorithm.Digest.SHA3_256)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRestore_invalid() {
+        byte[] checkpoint = ResumableDigest.newInstance(CryptoAlgorithm.Digest.SHA_256).checkpoint();
+
+        assertThatThrownBy(() -> ResumableDigest.restore(new byte[0])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ResumableDigest.restore(ArrayUtils.subarray(checkpoint, 0, 10))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ResumableDigest.restore(ArrayUtils.subarray(checkpoint, 0, checkpoint.length - 20)))
+            .isInstanceOf(IllegalArgumentException.class);
+        byte[] version = checkpoint.clone();
+        version[0] = 2;
+        assertThatThrownBy(() -> ResumableDigest.restore(version)).isInstanceOf(IllegalArgumentException.class);
+        // SM3 状态中当前分组已填充的字数超出范围或与状态长度不符
+        byte[] sm3Checkpoint = ResumableDigest.newInstance(CryptoAlgorithm.Digest.SM3).checkpoint();
+        int xOffIndex = sm3Checkpoint.length - 53 + 48;
+        for (int xOff : new int[] {
+            -1, 1, 16
+        }) {
+            byte[] invalid = sm3Checkpoint.clone();
+            Pack.intToBigEndian(xOff, invalid, xOffIndex);
+            assertThatThrownBy(() -> ResumableDigest.restore(invalid)).isInstanceOf(IllegalArgumentException.class);
+        }
+        byte[] padded = ArrayUtils.addAll(sm3Checkpoint, new byte[4]);
+        assertThatThrownBy(() -> ResumableDigest.restore(padded)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.util.Base64;
+
+import javax.crypto.SecretKey;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SealedTokenCodecTest {
+    private static SecretKey newSecretKey(CryptoAlgorithm.Symmetric algorithm) {
+        return CryptoMx.generateSecretKey(CryptoMx.SymmetricKeyGeneratorBuilder.newBuilder(algorithm).build());
+    }
+
+    private static CryptoKeyring newKeyring(CryptoAlgorithm.Symmetric algorithm) {
+        CryptoKeyring keyring = new CryptoKeyring();
+        keyring.addSymmetricKey("v1", algorithm, newSecretKey(algorithm));
+        keyring.setPrimaryKeyId("v1");
+        return keyring;
+    }
+
+    @Test
+    void testSeal() {
+        for (CryptoAlgorithm.Symmetric algorithm : new CryptoAlgorithm.Symmetric[] {
+            CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING, CryptoAlgorithm.Symmetric.CHACHA20_POLY1305
+        }) {
+            SealedTokenCodec codec = SealedTokenCodec.newBuilder(newKeyring(algorithm)).build();
+            for (int length : new int[] {
+                0, 1, 100
+            }) {
+                byte[] payload = RandomUtils.nextBytes(length);
+                String token = codec.seal(payload);
+
+                assertThat(token).matches("[A-Za-z0-9_-]+");
+                assertThat(codec.open(token)).isEqualTo(payload);
+                assertThat(codec.open(token)).isEqualTo(payload);
+                assertThat(codec.seal(payload)).isNotEqualTo(token);
+            }
+        }
+    }
+
+    @Test
+    void testRotate() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        CryptoKeyring keyring = newKeyring(algorithm);
+        SealedTokenCodec codec = SealedTokenCodec.newBuilder(keyring).build();
+        byte[] payload = RandomUtils.nextBytes(32);
+        String oldToken = codec.seal(payload);
+
+        keyring.addSymmetricKey("v2", algorithm, newSecretKey(algorithm));
+        keyring.setPrimaryKeyId("v2");
+        String newToken = codec.seal(payload);
+        assertThat(codec.open(oldToken)).isEqualTo(payload);
+        assertThat(codec.open(newToken)).isEqualTo(payload);
+
+        keyring.removeKey("v1");
+        assertThatThrownBy(() -> codec.open(oldToken)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testOpen_tampered() {
+        SealedTokenCodec codec = SealedTokenCodec.newBuilder(newKeyring(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING)).build();
+        byte[] data = Base64.getUrlDecoder().decode(codec.seal(RandomUtils.nextBytes(32)));
+
+        for (int i = 0; i < data.length; i++) {
+            byte[] tamperedData = data.clone();
+            tamperedData[i] ^= 1;
+            String tamperedToken = Base64.getUrlEncoder().withoutPadding().encodeToString(tamperedData);
+            assertThatThrownBy(() -> codec.open(tamperedToken)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testOpen_invalid() {
+        CryptoKeyring keyring = newKeyring(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING);
+        SealedTokenCodec codec = SealedTokenCodec.newBuilder(keyring).setMaxTokenLength(100).build();
+        SealedTokenCodec unlimitedCodec = SealedTokenCodec.newBuilder(keyring).build();
+        SealedTokenCodec otherCodec = SealedTokenCodec.newBuilder(newKeyring(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING)).build();
+        CryptoKeyring unknownKeyring = new CryptoKeyring();
+        unknownKeyring.addSymmetricKey("v2", CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING, newSecretKey(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING));
+        unknownKeyring.setPrimaryKeyId("v2");
+        String unknownToken = SealedTokenCodec.newBuilder(unknownKeyring).build().seal(new byte[10]);
+
+        assertThatThrownBy(() -> codec.open("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.open("!!!!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.open("AQJ2MQ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.open(unlimitedCodec.seal(new byte[100]))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.open(otherCodec.seal(new byte[10]))).isInstanceOf(IllegalArgumentException.class);
+        // 不回显令牌中的秘钥标识
+        assertThatThrownBy(() -> codec.open(unknownToken)).isInstanceOf(IllegalArgumentException.class).hasMessage("无效的令牌");
+    }
+
+    @Test
+    void testSeal_maxTokenLength() {
+        SealedTokenCodec codec = SealedTokenCodec.newBuilder(newKeyring(CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING)).setMaxTokenLength(100).build();
+
+        // 头部 4 字节、初始向量 12 字节、认证标签 16 字节，编码后长度为 (32 + 载荷长度) * 4 / 3 向上取整
+        assertThat(codec.seal(new byte[43])).hasSize(100);
+        assertThat(codec.open(codec.seal(new byte[43]))).hasSize(43);
+        assertThatThrownBy(() -> codec.seal(new byte[44])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testSeal_invalid() {
+        CryptoKeyring keyring = new CryptoKeyring();
+        SealedTokenCodec codec = SealedTokenCodec.newBuilder(keyring).build();
+        assertThatThrownBy(() -> codec.seal(new byte[10])).isInstanceOf(IllegalArgumentException.class);
+
+        CryptoAlgorithm.Mac algorithm = CryptoAlgorithm.Mac.HMAC_SHA_256;
+        keyring.addMacKey("m1", algorithm, CryptoMx.generateSecretKey(CryptoMx.MacKeyGeneratorBuilder.newBuilder(algorithm).build()));
+        keyring.setPrimaryKeyId("m1");
+        assertThatThrownBy(() -> codec.seal(new byte[10])).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static net.matrix.data.convert.BinaryStringConverter.HEX;
+import static net.matrix.data.convert.BinaryStringConverter.UTF8;
+
+class StreamingAeadTest {
+    private static final byte[] KEY_DATA = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5f");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testEncrypt_aesGcm()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+
+        byte[] cipherData = encrypt(aead, plainData);
+        assertThat(cipherData).hasSize((int) aead.getCipherLength(plainData.length));
+        assertThat(decrypt(aead, cipherData)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testEncrypt_sm4Gcm()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.SM4_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).setAad(UTF8.toBinary("沧海"))
+            .build();
+        byte[] plainData = RandomUtils.nextBytes(2048);
+
+        byte[] cipherData = encrypt(aead, plainData);
+        assertThat(cipherData).hasSize((int) aead.getCipherLength(plainData.length));
+        assertThat(decrypt(aead, cipherData)).isEqualTo(plainData);
+    }
+
+    @Test
+    void testEncrypt_chacha20Poly1305()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.CHACHA20_POLY1305;
+        byte[] keyData = HEX.toBinary("ae44c3716e699e8c7d2d9dea2ba24a5fae44c3716e699e8c7d2d9dea2ba24a5f");
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(keyData, algorithm).setSegmentSize(1024).build();
+        byte[] plainData = RandomUtils.nextBytes(3000);
+
+        assertThat(decrypt(aead, encrypt(aead, plainData))).isEqualTo(plainData);
+    }
+
+    @Test
+    void testEncrypt_empty()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).build();
+
+        byte[] cipherData = encrypt(aead, new byte[0]);
+        assertThat(cipherData).hasSize(StreamingAead.HEADER_LENGTH + StreamingAead.TAG_LENGTH);
+        assertThat(decrypt(aead, cipherData)).isEmpty();
+    }
+
+    @Test
+    void testEncrypt_stream()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(16).build();
+        byte[] plainData = RandomUtils.nextBytes(100);
+
+        ByteArrayOutputStream cipherStream = new ByteArrayOutputStream();
+        try (OutputStream output = aead.newEncryptingStream(cipherStream)) {
+            for (byte b : plainData) {
+                output.write(b);
+            }
+        }
+        try (InputStream input = aead.newDecryptingStream(new ByteArrayInputStream(cipherStream.toByteArray()))) {
+            for (byte b : plainData) {
+                assertThat(input.read()).isEqualTo(b & 0xFF);
+            }
+            assertThat(input.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void testDeriveSegmentKey() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).build();
+        byte[] header = aead.newHeader();
+        byte[] otherHeader = aead.newHeader();
+        byte[] salt = new byte[StreamingAead.SALT_LENGTH];
+        Arrays.fill(salt, (byte) 1);
+        System.arraycopy(salt, 0, header, 5, salt.length);
+        System.arraycopy(salt, 0, otherHeader, 5, salt.length);
+
+        // 盐相同时派生相同的分段秘钥
+        byte[] segmentKeyData = aead.deriveSegmentKey(header).getEncoded();
+        assertThat(segmentKeyData).hasSize(KEY_DATA.length).isNotEqualTo(KEY_DATA);
+        assertThat(aead.deriveSegmentKey(otherHeader).getEncoded()).isEqualTo(segmentKeyData);
+
+        // 盐不同时派生不同的分段秘钥
+        otherHeader[5] ^= 1;
+        assertThat(aead.deriveSegmentKey(otherHeader).getEncoded()).isNotEqualTo(segmentKeyData);
+        assertThat(aead.deriveSegmentKey(aead.newHeader()).getEncoded()).isNotEqualTo(aead.deriveSegmentKey(aead.newHeader()).getEncoded());
+    }
+
+    @Test
+    void testDecrypt_tampered()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] cipherData = encrypt(aead, RandomUtils.nextBytes(3000));
+        cipherData[2000] ^= 1;
+
+        InputStream input = aead.newDecryptingStream(new ByteArrayInputStream(cipherData));
+        // 第一段验证通过
+        assertThat(input.readNBytes(1024)).hasSize(1024);
+        assertThatThrownBy(() -> input.read()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testDecrypt_truncated()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] cipherData = encrypt(aead, RandomUtils.nextBytes(3000));
+        byte[] truncatedData = Arrays.copyOf(cipherData, StreamingAead.HEADER_LENGTH + 2 * (1024 + StreamingAead.TAG_LENGTH));
+
+        assertThatThrownBy(() -> decrypt(aead, truncatedData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testDecrypt_wrongAad()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setAad(UTF8.toBinary("沧海")).build();
+        StreamingAead otherAead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setAad(UTF8.toBinary("月明")).build();
+        byte[] cipherData = encrypt(aead, RandomUtils.nextBytes(100));
+
+        assertThatThrownBy(() -> decrypt(otherAead, cipherData)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testEncrypt_parallel()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int length : new int[] {
+                0, 100, 1024, 10 * 1024, 10 * 1024 + 100
+            }) {
+                byte[] plainData = RandomUtils.nextBytes(length);
+
+                ByteArrayOutputStream cipherData = new ByteArrayOutputStream();
+                aead.encrypt(new ByteArrayInputStream(plainData), cipherData, executor);
+                assertThat(cipherData.size()).isEqualTo(aead.getCipherLength(length));
+                assertThat(decrypt(aead, cipherData.toByteArray())).isEqualTo(plainData);
+                ByteArrayOutputStream decryptedData = new ByteArrayOutputStream();
+                aead.decrypt(new ByteArrayInputStream(encrypt(aead, plainData)), decryptedData, executor);
+                assertThat(decryptedData.toByteArray()).isEqualTo(plainData);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testDecrypt_parallel_tampered()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] cipherData = encrypt(aead, RandomUtils.nextBytes(10 * 1024));
+        cipherData[5000] ^= 1;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertThatThrownBy(() -> aead.decrypt(new ByteArrayInputStream(cipherData), new ByteArrayOutputStream(), executor))
+                .isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testDecryptSegment()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+        Path file = tempDir.resolve("cipher.dat");
+        Files.write(file, encrypt(aead, plainData));
+
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            assertThat(aead.getSegmentCount(channel)).isEqualTo(11);
+            assertThat(aead.decryptSegment(channel, 3)).isEqualTo(Arrays.copyOfRange(plainData, 3 * 1024, 4 * 1024));
+            assertThat(aead.decryptSegment(channel, 10)).isEqualTo(Arrays.copyOfRange(plainData, 10 * 1024, plainData.length));
+            assertThatThrownBy(() -> aead.decryptSegment(channel, 11)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testNewDecryptingChannel()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] plainData = RandomUtils.nextBytes(10 * 1024 + 100);
+        Path file = tempDir.resolve("cipher.dat");
+        try (WritableByteChannel channel = aead.newEncryptingChannel(Files.newByteChannel(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE))) {
+            channel.write(ByteBuffer.wrap(plainData));
+        }
+
+        try (SeekableByteChannel channel = aead.newDecryptingChannel(Files.newByteChannel(file))) {
+            assertThat(channel.size()).isEqualTo(plainData.length);
+            ByteBuffer buffer = ByteBuffer.allocate(2000);
+            channel.position(3000);
+            assertThat(channel.read(buffer)).isEqualTo(2000);
+            assertThat(buffer.array()).isEqualTo(Arrays.copyOfRange(plainData, 3000, 5000));
+            assertThat(channel.position()).isEqualTo(5000);
+
+            buffer.clear();
+            channel.position(plainData.length - 50);
+            assertThat(channel.read(buffer)).isEqualTo(50);
+            assertThat(channel.read(buffer)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void testNewDecryptingChannel_tampered()
+        throws IOException {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_GCM_NOPADDING;
+        StreamingAead aead = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm).setSegmentSize(1024).build();
+        byte[] cipherData = encrypt(aead, RandomUtils.nextBytes(10 * 1024));
+        cipherData[5000] ^= 1;
+        Path file = tempDir.resolve("cipher.dat");
+        Files.write(file, cipherData);
+
+        try (SeekableByteChannel channel = aead.newDecryptingChannel(Files.newByteChannel(file))) {
+            // 只读取未被篡改的段
+            assertThat(channel.read(ByteBuffer.allocate(1024))).isEqualTo(1024);
+            channel.position(4 * 1024);
+            assertThatThrownBy(() -> channel.read(ByteBuffer.allocate(1))).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void testBuild_notAead() {
+        CryptoAlgorithm.Symmetric algorithm = CryptoAlgorithm.Symmetric.AES_CBC_PKCS5PADDING;
+        StreamingAead.Builder builder = StreamingAead.newBuilder(algorithm).setKey(KEY_DATA, algorithm);
+
+        assertThatThrownBy(builder::build).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] encrypt(StreamingAead aead, byte[] plainData)
+        throws IOException {
+        ByteArrayOutputStream cipherData = new ByteArrayOutputStream();
+        aead.encrypt(new ByteArrayInputStream(plainData), cipherData);
+        return cipherData.toByteArray();
+    }
+
+    private static byte[] decrypt(StreamingAead aead, byte[] cipherData)
+        throws IOException {
+        try (InputStream input = aead.newDecryptingStream(new ByteArrayInputStream(cipherData))) {
+            return IOUtils.toByteArray(input);
+        }
+    }
+}
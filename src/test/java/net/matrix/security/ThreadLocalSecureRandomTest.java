@@ -0,0 +1,112 @@
+/*
+ * 版权所有 2024 Matrix。
+ * 保留所有权利。
+ */
+package net.matrix.security;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import static net.matrix.data.convert.BinaryStringConverter.HEX;
+
+class ThreadLocalSecureRandomTest {
+    @Test
+    void testNextBytes() {
+        ThreadLocalSecureRandom random = ThreadLocalSecureRandom.getDefault();
+        byte[] randomData1 = new byte[16];
+        byte[] randomData2 = new byte[16];
+
+        random.nextBytes(randomData1);
+        random.nextBytes(randomData2);
+        assertThat(randomData1).isNotEqualTo(new byte[16]);
+        assertThat(randomData1).isNotEqualTo(randomData2);
+    }
+
+    @Test
+    void testNextBytes_large() {
+        ThreadLocalSecureRandom random = ThreadLocalSecureRandom.getDefault();
+        byte[] randomData = new byte[ThreadLocalSecureRandom.BUFFER_SIZE * 3 + 7];
+
+        random.nextBytes(randomData);
+        assertThat(Arrays.copyOfRange(randomData, randomData.length - 32, randomData.length)).isNotEqualTo(new byte[32]);
+    }
+
+    @Test
+    void testNextBytes_overRequestLimit() {
+        ThreadLocalSecureRandom random = ThreadLocalSecureRandom.getDefault();
+
+        // 超过 DRBG 单次请求上限 32 KiB
+        for (int length : new int[] {
+            40000, 1024 * 1024 + 3
+        }) {
+            byte[] randomData = new byte[length];
+            random.nextBytes(randomData);
+            assertThat(Arrays.copyOfRange(randomData, length - 32, length)).isNotEqualTo(new byte[32]);
+            assertThat(Arrays.copyOfRange(randomData, 32 * 1024 - 16, 32 * 1024 + 16)).isNotEqualTo(new byte[32]);
+        }
+    }
+
+    @Test
+    void testNextBytes_range() {
+        ThreadLocalSecureRandom random = ThreadLocalSecureRandom.getDefault();
+        byte[] randomData = new byte[ThreadLocalSecureRandom.BUFFER_SIZE * 2];
+
+        random.nextBytes(randomData, 10, ThreadLocalSecureRandom.BUFFER_SIZE + 100);
+        assertThat(Arrays.copyOf(randomData, 10)).containsOnly(0);
+        assertThat(Arrays.copyOfRange(randomData, ThreadLocalSecureRandom.BUFFER_SIZE + 110, randomData.length)).containsOnly(0);
+        assertThat(Arrays.copyOfRange(randomData, ThreadLocalSecureRandom.BUFFER_SIZE + 78, ThreadLocalSecureRandom.BUFFER_SIZE + 110))
+            .isNotEqualTo(new byte[32]);
+        assertThatThrownBy(() -> random.nextBytes(randomData, 10, randomData.length)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void testNextBytes_byteBuffer() {
+        ThreadLocalSecureRandom random = ThreadLocalSecureRandom.getDefault();
+        ByteBuffer heapBuffer = ByteBuffer.allocate(100);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(ThreadLocalSecureRandom.BUFFER_SIZE + 100);
+        heapBuffer.position(10);
+
+        random.nextBytes(heapBuffer);
+        random.nextBytes(directBuffer);
+        assertThat(heapBuffer.hasRemaining()).isFalse();
+        assertThat(directBuffer.hasRemaining()).isFalse();
+        byte[] directData = new byte[32];
+        directBuffer.position(directBuffer.capacity() - 32);
+        directBuffer.get(directData);
+        assertThat(directData).isNotEqualTo(new byte[32]);
+    }
+
+    @Test
+    void testNextBytes_threads() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Set<String> randomData = new HashSet<>();
+            for (int i = 0; i < 16; i++) {
+                randomData.add(CompletableFuture.supplyAsync(() -> HEX.toString(CryptoMx.generateRandom(16, ThreadLocalSecureRandom.getDefault())), executor)
+                    .join());
+            }
+            assertThat(randomData).hasSize(16);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSetSeed() {
+        ThreadLocalSecureRandom random = ThreadLocalSecureRandom.getDefault();
+
+        random.setSeed(HEX.toBinary("0102030405060708"));
+        assertThat(random.nextInt()).isNotNull();
+        assertThat(random.generateSeed(8)).hasSize(8);
+    }
+}